@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2015 Yohan Liyanage
+ *
+ * Release under the MIT License (MIT). See LICENSE file for details.
+ */
+
+package com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs all benchmarks with the GC profiler, so that allocation rates are reported along with throughput and latency,
+ * and writes the results to jmh-result.json. Any standard JMH command line option can be passed to override these.
+ *
+ * @author Yohan Liyanage
+ */
+public final class BenchmarkRunner {
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .include(BenchmarkRunner.class.getPackage().getName() + ".*Benchmark")
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result("jmh-result.json")
+                .build();
+        new Runner(options).run();
+    }
+
+    private BenchmarkRunner() {
+        // No instantiation
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright (C) 2015 Yohan Liyanage
+ *
+ * Release under the MIT License (MIT). See LICENSE file for details.
+ */
+
+package com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drives many simulated jobs deploying concurrently against a {@link FakeSparkMaster}, and reports throughput, time to
+ * RUNNING, thread counts and heap usage of this JVM, which plays the Jenkins controller.
+ * <p>
+ * Each job runs on its own thread, as a build holds an executor, and deploys the way the publisher does with kill
+ * before submit enabled: it kills its previous submission, submits, and waits for the driver through the shared
+ * {@link DriverStatePoller} until it runs. Options are given as <code>--name value</code>:
+ * <pre>
+ *   --jobs 50               concurrent jobs
+ *   --deploys 5             deployments per job
+ *   --latency 20            latency of each REST call (ms)
+ *   --latency-jitter 10     random latency added to each call (ms)
+ *   --error-rate 0          share of calls failing with HTTP 503
+ *   --reject-rate 0         share of calls answered unsuccessfully
+ *   --startup 1000          time until a driver runs (ms)
+ *   --startup-jitter 500    random time added to the startup (ms)
+ *   --driver-failure-rate 0 share of drivers failing instead of running
+ *   --master-threads 32     calls served by the fake master at a time
+ * </pre>
+ *
+ * @author Yohan Liyanage
+ */
+public final class DeploymentLoadTest {
+
+    private static final Map<String, String> DEFAULTS = new TreeMap<String, String>();
+
+    static {
+        DEFAULTS.put("jobs", "50");
+        DEFAULTS.put("deploys", "5");
+        DEFAULTS.put("latency", "20");
+        DEFAULTS.put("latency-jitter", "10");
+        DEFAULTS.put("error-rate", "0");
+        DEFAULTS.put("reject-rate", "0");
+        DEFAULTS.put("startup", "1000");
+        DEFAULTS.put("startup-jitter", "500");
+        DEFAULTS.put("driver-failure-rate", "0");
+        DEFAULTS.put("master-threads", "32");
+    }
+
+    /**
+     * Polls of a driver before giving up on it reaching RUNNING.
+     */
+    private static final int MAX_ATTEMPTS = 10;
+
+    private static final long SAMPLE_MILLIS = 100;
+
+    private final Map<String, String> options;
+    private final List<Long> timesToRunning = Collections.synchronizedList(new ArrayList<Long>());
+    private final Map<String, AtomicLong> outcomes = new TreeMap<String, AtomicLong>();
+    private final AtomicLong peakHeap = new AtomicLong();
+
+    private DeploymentLoadTest(Map<String, String> options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new TreeMap<String, String>(DEFAULTS);
+        for (int i = 0; i < args.length; i++) {
+            String name = args[i].startsWith("--") ? args[i].substring(2) : args[i];
+            if (! DEFAULTS.containsKey(name) || i + 1 >= args.length) {
+                System.err.println("Unknown option or missing value : " + args[i] + ". Options are " + DEFAULTS);
+                System.exit(2);
+            }
+            options.put(name, args[++i]);
+        }
+        new DeploymentLoadTest(options).run();
+    }
+
+    private void run() throws Exception {
+        final int jobs = getInt("jobs");
+        final int deploys = getInt("deploys");
+        FakeSparkMaster master = new FakeSparkMaster(getInt("master-threads"))
+                .latency(getInt("latency"), getInt("latency-jitter"))
+                .errorRate(getDouble("error-rate"))
+                .rejectRate(getDouble("reject-rate"))
+                .startup(getInt("startup"), getInt("startup-jitter"))
+                .driverFailureRate(getDouble("driver-failure-rate"));
+        final String url = master.getUrl();
+        final PrintStream quiet = new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+                // Job logs are not of interest
+            }
+        });
+
+        System.out.println("Load test " + options);
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        int threadsBefore = threads.getThreadCount();
+        threads.resetPeakThreadCount();
+        ExecutorService sampler = startHeapSampler();
+
+        ExecutorService builds = Executors.newFixedThreadPool(jobs, new DaemonThreadFactory("load-test-job"));
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(jobs);
+        for (int i = 0; i < jobs; i++) {
+            builds.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        runJob(url, deploys, quiet);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            });
+        }
+
+        long startedAt = System.nanoTime();
+        start.countDown();
+        done.await();
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+        int peakThreads = threads.getPeakThreadCount();
+        builds.shutdownNow();
+        sampler.shutdownNow();
+        System.gc();
+        long heapAfter = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        master.stop();
+
+        report(jobs * deploys, elapsedMillis, threadsBefore, peakThreads, heapAfter, master);
+    }
+
+    /**
+     * Deploys like a job with kill before submit enabled, the given number of times.
+     */
+    private void runJob(String url, int deploys, PrintStream logger) throws InterruptedException {
+        DeploymentManager deployer = new DeploymentManager(url, logger, false);
+        DeploymentRequest request = new DeploymentRequestBuilder()
+                .masterUrl("spark://127.0.0.1:7077")
+                .appResource("hdfs://namenode/spark/apps/load-test-1.0.0.jar")
+                .mainClass("com.example.spark.LoadTest")
+                .appArgs("--batch 10")
+                .sparkProperties("spark.executor.memory=1G,spark.cores.max=2")
+                .build(logger);
+
+        String previous = null;
+        for (int i = 0; i < deploys; i++) {
+            long submittedAt = System.currentTimeMillis();
+            String outcome;
+            try {
+                if (previous != null) {
+                    deployer.kill(previous);
+                }
+                String submissionId = deployer.submit(request);
+                outcome = DriverStatePoller.getInstance().watch(deployer, submissionId,
+                        DriverStatePoller.STARTING_STATES, MAX_ATTEMPTS).await();
+                if ("RUNNING".equals(outcome)) {
+                    timesToRunning.add(System.currentTimeMillis() - submittedAt);
+                }
+                previous = submissionId;
+            } catch (IOException e) {
+                outcome = "error: " + DeploymentMetrics.reasonOf(e);
+            } catch (RuntimeException e) {
+                outcome = "error: " + e.getClass().getSimpleName();
+            }
+            count(outcome);
+        }
+    }
+
+    private void count(String outcome) {
+        synchronized (outcomes) {
+            AtomicLong count = outcomes.get(outcome);
+            if (count == null) {
+                count = new AtomicLong();
+                outcomes.put(outcome, count);
+            }
+            count.incrementAndGet();
+        }
+    }
+
+    /**
+     * Samples the heap usage until shut down, keeping the peak.
+     */
+    private ExecutorService startHeapSampler() {
+        final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        ExecutorService sampler = Executors.newSingleThreadExecutor(new DaemonThreadFactory("load-test-heap"));
+        sampler.execute(new Runnable() {
+            @Override
+            public void run() {
+                while (! Thread.currentThread().isInterrupted()) {
+                    long used = memory.getHeapMemoryUsage().getUsed();
+                    if (used > peakHeap.get()) {
+                        peakHeap.set(used);
+                    }
+                    try {
+                        Thread.sleep(SAMPLE_MILLIS);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+        });
+        return sampler;
+    }
+
+    private void report(int deployments, long elapsedMillis, int threadsBefore, int peakThreads, long heapAfter,
+                        FakeSparkMaster master) {
+        List<Long> times;
+        synchronized (timesToRunning) {
+            times = new ArrayList<Long>(timesToRunning);
+        }
+        Collections.sort(times);
+
+        System.out.println("Deployments        : " + deployments + " in " + elapsedMillis + " ms");
+        System.out.println("Throughput         : " + String.format("%.2f", deployments * 1000.0 / elapsedMillis)
+                + " deployments/s");
+        System.out.println("Outcomes           : " + outcomes);
+        System.out.println("Time to RUNNING    : p50 " + percentile(times, 50) + " ms, p99 " + percentile(times, 99)
+                + " ms, max " + percentile(times, 100) + " ms");
+        System.out.println("Threads            : " + threadsBefore + " before, peak " + peakThreads
+                + " (including " + getInt("jobs") + " job threads)");
+        System.out.println("Heap               : peak " + mb(peakHeap.get()) + " MB, " + mb(heapAfter)
+                + " MB after GC");
+        System.out.println("Master             : " + master.getCalls() + " calls, peak " + master.getPeakInFlight()
+                + " in flight");
+        System.out.println("Still watched      : " + DriverStatePoller.getInstance().getPendingCount() + " drivers");
+    }
+
+    private static String percentile(List<Long> sorted, int percentile) {
+        if (sorted.isEmpty()) {
+            return "-";
+        }
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.size()) - 1;
+        return String.valueOf(sorted.get(Math.max(0, Math.min(index, sorted.size() - 1))));
+    }
+
+    private static long mb(long bytes) {
+        return bytes / (1024 * 1024);
+    }
+
+    private int getInt(String name) {
+        return Integer.parseInt(options.get(name));
+    }
+
+    private double getDouble(String name) {
+        return Double.parseDouble(options.get(name));
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2015 Yohan Liyanage
+ *
+ * Release under the MIT License (MIT). See LICENSE file for details.
+ */
+
+package com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks building a deployment request from the publisher configuration and serializing it, both from scratch and
+ * by rendering a compiled template.
+ *
+ * @author Yohan Liyanage
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class RequestBenchmark {
+
+    private PrintStream logger;
+    private DeploymentRequest request;
+    private ByteArrayOutputStream sink;
+    private DeploymentTemplate template;
+    private Map<String, String> variables;
+
+    @Setup
+    public void setUp() {
+        logger = new PrintStream(new NullOutputStream());
+        request = newBuilder().build(logger);
+        sink = new ByteArrayOutputStream(4096);
+        template = newBuilder().compile();
+        variables = Collections.singletonMap("BUILD_NUMBER", "1234");
+    }
+
+    @Benchmark
+    public DeploymentRequest buildRequest() {
+        return newBuilder().build(logger);
+    }
+
+    @Benchmark
+    public int serializeRequest() throws IOException {
+        sink.reset();
+        SparkJson.REQUEST_WRITER.writeValue(sink, request);
+        return sink.size();
+    }
+
+    @Benchmark
+    public int buildAndSerializeRequest() throws IOException {
+        sink.reset();
+        SparkJson.REQUEST_WRITER.writeValue(sink, newBuilder().build(logger));
+        return sink.size();
+    }
+
+    @Benchmark
+    public int renderTemplate() {
+        return template.render(variables, null).getPayload().length;
+    }
+
+    static DeploymentRequestBuilder newBuilder() {
+        return new DeploymentRequestBuilder()
+                .masterUrl("spark://master.spark.cluster.com:6066")
+                .scalaVersion("2.10")
+                .appResource("hdfs://namenode/spark/apps/streaming-app-1.0.0.jar")
+                .mainClass("com.example.spark.streaming.Main")
+                .appArgs("--input kafka://broker:9092/events --output hdfs://namenode/out/${BUILD_NUMBER} --batch 10")
+                .sparkProperties("spark.executor.memory=4G,spark.executor.cores=2,spark.cores.max=16,"
+                        + "spark.driver.memory=2G,spark.streaming.backpressure.enabled=true");
+    }
+
+    /**
+     * Discards everything written to it.
+     */
+    static final class NullOutputStream extends OutputStream {
+
+        @Override
+        public void write(int b) {
+            // Discard
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            // Discard
+        }
+    }
+}
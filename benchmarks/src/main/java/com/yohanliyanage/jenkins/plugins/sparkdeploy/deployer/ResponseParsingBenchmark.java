@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2015 Yohan Liyanage
+ *
+ * Release under the MIT License (MIT). See LICENSE file for details.
+ */
+
+package com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks parsing of Spark REST responses, both in isolation and through {@link DeploymentManager} against an
+ * in-process {@link StubSparkRestServer}.
+ *
+ * @author Yohan Liyanage
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ResponseParsingBenchmark {
+
+    private StubSparkRestServer server;
+    private DeploymentManager deployer;
+    private DeploymentRequest request;
+
+    @Setup
+    public void setUp() throws IOException {
+        server = new StubSparkRestServer();
+        PrintStream logger = new PrintStream(new RequestBenchmark.NullOutputStream());
+        deployer = new DeploymentManager(server.getUrl(), logger, false);
+        request = RequestBenchmark.newBuilder().build(logger);
+    }
+
+    @TearDown
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Benchmark
+    public SubmissionStatusResponse parseStatusResponse() throws IOException {
+        return SparkJson.STATUS_READER.readValue(new ByteArrayInputStream(StubSparkRestServer.STATUS_RESPONSE));
+    }
+
+    @Benchmark
+    public CreateSubmissionResponse parseCreateResponse() throws IOException {
+        return SparkJson.CREATE_READER.readValue(new ByteArrayInputStream(StubSparkRestServer.CREATE_RESPONSE));
+    }
+
+    @Benchmark
+    public String getDriverStateOverHttp() throws IOException {
+        return deployer.getDriverState("driver-20151101120000-0001");
+    }
+
+    @Benchmark
+    public String submitOverHttp() throws IOException {
+        return deployer.submit(request);
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2015 Yohan Liyanage
+ *
+ * Release under the MIT License (MIT). See LICENSE file for details.
+ */
+
+package com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.Executors;
+
+/**
+ * In-process stand-in for the Spark REST submission API that answers every call with a canned response, so that
+ * benchmarks measure the client rather than a cluster.
+ *
+ * @author Yohan Liyanage
+ */
+public class StubSparkRestServer {
+
+    static final byte[] CREATE_RESPONSE = ("{\n"
+            + "  \"action\" : \"CreateSubmissionResponse\",\n"
+            + "  \"message\" : \"Driver successfully submitted as driver-20151101120000-0001\",\n"
+            + "  \"serverSparkVersion\" : \"1.5.1\",\n"
+            + "  \"submissionId\" : \"driver-20151101120000-0001\",\n"
+            + "  \"success\" : true\n"
+            + "}").getBytes();
+
+    static final byte[] KILL_RESPONSE = ("{\n"
+            + "  \"action\" : \"KillSubmissionResponse\",\n"
+            + "  \"message\" : \"Kill request for driver-20151101120000-0001 submitted\",\n"
+            + "  \"serverSparkVersion\" : \"1.5.1\",\n"
+            + "  \"submissionId\" : \"driver-20151101120000-0001\",\n"
+            + "  \"success\" : true\n"
+            + "}").getBytes();
+
+    static final byte[] STATUS_RESPONSE = ("{\n"
+            + "  \"action\" : \"SubmissionStatusResponse\",\n"
+            + "  \"driverState\" : \"RUNNING\",\n"
+            + "  \"serverSparkVersion\" : \"1.5.1\",\n"
+            + "  \"submissionId\" : \"driver-20151101120000-0001\",\n"
+            + "  \"success\" : true,\n"
+            + "  \"workerHostPort\" : \"192.168.1.10:7078\",\n"
+            + "  \"workerId\" : \"worker-20151101110000-192.168.1.10-7078\"\n"
+            + "}").getBytes();
+
+    private final HttpServer server;
+
+    /**
+     * Starts the server on an ephemeral port.
+     *
+     * @throws IOException if the server cannot be started
+     */
+    public StubSparkRestServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newFixedThreadPool(4, new DaemonThreadFactory("stub-spark-rest")));
+        server.createContext("/v1/submissions/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                String path = exchange.getRequestURI().getPath();
+                byte[] response;
+                if (path.startsWith("/v1/submissions/create")) {
+                    response = CREATE_RESPONSE;
+                } else if (path.startsWith("/v1/submissions/kill/")) {
+                    response = KILL_RESPONSE;
+                } else {
+                    response = STATUS_RESPONSE;
+                }
+
+                InputStream in = exchange.getRequestBody();
+                byte[] buffer = new byte[4096];
+                while (in.read(buffer) != -1) {
+                    // Discard request body
+                }
+
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, response.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(response);
+                out.close();
+            }
+        });
+        server.start();
+    }
+
+    /**
+     * Returns the URL of this server.
+     *
+     * @return URL
+     */
+    public String getUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /**
+     * Stops the server.
+     */
+    public void stop() {
+        server.stop(0);
+    }
+}
@@ -0,0 +1,299 @@
+/*
+ * Copyright (C) 2015 Yohan Liyanage
+ *
+ * Release under the MIT License (MIT). See LICENSE file for details.
+ */
+
+package com.yohanliyanage.jenkins.plugins.sparkdeploy;
+
+import com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer.ClusterAdmission;
+import com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer.DeploymentFuture;
+import com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer.DeploymentManager;
+import com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer.DeploymentRequest;
+import com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer.DriverLogTailer;
+import com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer.DriverStatePoller;
+import com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer.TransportSettings;
+import com.yohanliyanage.jenkins.plugins.sparkdeploy.history.DeploymentTiming;
+import com.yohanliyanage.jenkins.plugins.sparkdeploy.history.SubmissionRecord;
+import hudson.model.TaskListener;
+import jenkins.security.MasterToSlaveCallable;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the kill, submit and wait steps of a deployment on the node of the build, so that the REST calls to Spark, and
+ * the threads waiting for the driver, use the agent instead of the controller. Only the {@link Outcome} is sent back;
+ * the controller keeps the submission history.
+ *
+ * @author Yohan Liyanage
+ */
+class AgentDeployment extends MasterToSlaveCallable<AgentDeployment.Outcome, IOException> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String masterRestUrl;
+    private final TransportSettings settings;
+    private final boolean verbose;
+    private final String request;
+    private final TaskListener listener;
+    private SubmissionRecord previous;
+    private boolean untilRunning;
+    private List<String> masterUiUrls;
+    private long resourceTimeoutMillis;
+    private boolean streamDriverLogs;
+
+    /**
+     * Creates a deployment.
+     *
+     * @param masterRestUrl master REST URL, or comma separated masters of a highly available cluster
+     * @param settings transport settings
+     * @param verbose verbose mode
+     * @param request request
+     * @param listener listener, which receives the log of the deployment
+     * @throws IOException if the request cannot be serialized
+     */
+    AgentDeployment(String masterRestUrl, TransportSettings settings, boolean verbose, DeploymentRequest request,
+                    TaskListener listener) throws IOException {
+        this.masterRestUrl = masterRestUrl;
+        this.settings = settings;
+        this.verbose = verbose;
+        this.request = request.toJson();
+        this.listener = listener;
+    }
+
+    /**
+     * Sets the submission to kill before submitting.
+     *
+     * @param previous previous submission, or null
+     * @return this
+     */
+    AgentDeployment killBeforeSubmit(SubmissionRecord previous) {
+        this.previous = previous;
+        return this;
+    }
+
+    /**
+     * Waits for the driver until it runs, as for a rollover, rather than until it leaves the LOADING state. The
+     * regression gate does not change the wait.
+     *
+     * @param untilRunning whether to wait until the driver runs
+     * @return this
+     */
+    AgentDeployment untilRunning(boolean untilRunning) {
+        this.untilRunning = untilRunning;
+        return this;
+    }
+
+    /**
+     * Sets the web UI URLs of the masters, needed to wait for cluster resources and to copy driver logs.
+     *
+     * @param masterUiUrls web UI URLs
+     * @return this
+     */
+    AgentDeployment masterUiUrls(List<String> masterUiUrls) {
+        this.masterUiUrls = new ArrayList<String>(masterUiUrls);
+        return this;
+    }
+
+    /**
+     * Waits for cluster resources before submitting.
+     *
+     * @param resourceTimeoutMillis maximum time to wait, or 0 to submit right away
+     * @return this
+     */
+    AgentDeployment waitForResources(long resourceTimeoutMillis) {
+        this.resourceTimeoutMillis = resourceTimeoutMillis;
+        return this;
+    }
+
+    /**
+     * Copies the driver logs into the build log while the driver starts.
+     *
+     * @param streamDriverLogs whether to copy driver logs
+     * @return this
+     */
+    AgentDeployment streamDriverLogs(boolean streamDriverLogs) {
+        this.streamDriverLogs = streamDriverLogs;
+        return this;
+    }
+
+    @Override
+    public Outcome call() throws IOException {
+        PrintStream logger = listener.getLogger();
+        DeploymentManager deployer = new DeploymentManager(masterRestUrl, logger, verbose, settings);
+        Outcome outcome = new Outcome(deployer.getMasterRestUrl());
+        try {
+            if (previous == null) {
+                logger.println("[Spark-Deployer] No previous submission data found. Skipping kill step");
+            } else {
+                DeploymentManager previousDeployer = previous.getMaster() == null
+                        || previous.getMaster().equals(deployer.getMasterRestUrl()) ?
+                        deployer : new DeploymentManager(previous.getMaster(), logger, verbose, settings);
+                long killStart = System.currentTimeMillis();
+                outcome.previousKilled = previousDeployer.kill(previous.getSubmissionId());
+                outcome.killMillis = System.currentTimeMillis() - killStart;
+            }
+
+            DeploymentRequest deploymentRequest = DeploymentRequest.fromJson(request);
+            if (resourceTimeoutMillis > 0) {
+                ClusterAdmission.getInstance().admit(masterUiUrls, deploymentRequest, resourceTimeoutMillis, logger);
+            }
+            outcome.submittedAt = System.currentTimeMillis();
+            outcome.submissionId = deployer.submit(deploymentRequest);
+            outcome.submitMillis = System.currentTimeMillis() - outcome.submittedAt;
+
+            AtomicLong firstStateAt = new AtomicLong();
+            DeploymentFuture<String> watching = DriverStatePoller.getInstance().watch(deployer, outcome.submissionId,
+                    untilRunning ? DriverStatePoller.STARTING_STATES : DriverStatePoller.DEFAULT_PENDING_STATES,
+                    untilRunning ? SparkDeployPublisher.STARTING_MAX_ATTEMPTS : DriverStatePoller.DEFAULT_MAX_ATTEMPTS,
+                    SparkDeployPublisher.firstStateClock(firstStateAt));
+            if (streamDriverLogs) {
+                new DriverLogTailer(deployer, outcome.submissionId, masterUiUrls, logger).follow(watching);
+            }
+            outcome.driverState = watching.await();
+            outcome.finishedAt = System.currentTimeMillis();
+            outcome.firstStateAt = firstStateAt.get();
+            if (verbose) {
+                logger.println("[Spark-Deployer] VERBOSE : Connection statistics : " + deployer.getStatistics());
+            }
+        } catch (InterruptedException e) {
+            // Returned rather than thrown, so that the controller still records what was killed and submitted
+            outcome.interrupted = true;
+            outcome.error = "Deployment interrupted";
+        } catch (IOException e) {
+            outcome.error = e.toString();
+        } catch (RuntimeException e) {
+            outcome.error = e.toString();
+        }
+        return outcome;
+    }
+
+    /**
+     * What a deployment on an agent did. Failures and interruptions after the previous submission was killed are
+     * reported here rather than thrown, so that the controller still records the kill and the submission.
+     */
+    static final class Outcome implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String masterRestUrl;
+        private boolean previousKilled;
+        private String submissionId;
+        private String driverState;
+        private long submittedAt;
+        private long finishedAt;
+        private long killMillis = DeploymentTiming.UNKNOWN;
+        private long submitMillis = DeploymentTiming.UNKNOWN;
+        private long firstStateAt;
+        private String error;
+        private boolean interrupted;
+
+        Outcome(String masterRestUrl) {
+            this.masterRestUrl = masterRestUrl;
+        }
+
+        /**
+         * Returns the REST URL(s) of the cluster the application was submitted to.
+         *
+         * @return master REST URL
+         */
+        String getMasterRestUrl() {
+            return masterRestUrl;
+        }
+
+        /**
+         * Returns true if the previous submission was killed.
+         *
+         * @return true if killed
+         */
+        boolean isPreviousKilled() {
+            return previousKilled;
+        }
+
+        /**
+         * Returns submission id.
+         *
+         * @return submission id, or null if not submitted
+         */
+        String getSubmissionId() {
+            return submissionId;
+        }
+
+        /**
+         * Returns driver state.
+         *
+         * @return driver state, or null if the driver was not watched to the end
+         */
+        String getDriverState() {
+            return driverState;
+        }
+
+        /**
+         * Returns the time of the submission.
+         *
+         * @return time in milliseconds
+         */
+        long getSubmittedAt() {
+            return submittedAt;
+        }
+
+        /**
+         * Returns the time the driver state was known.
+         *
+         * @return time in milliseconds
+         */
+        long getFinishedAt() {
+            return finishedAt;
+        }
+
+        /**
+         * Returns the time the kill of the previous submission took.
+         *
+         * @return time in milliseconds, or {@link DeploymentTiming#UNKNOWN} if there was nothing to kill
+         */
+        long getKillMillis() {
+            return killMillis;
+        }
+
+        /**
+         * Returns the time the submit call took.
+         *
+         * @return time in milliseconds, or {@link DeploymentTiming#UNKNOWN} if not submitted
+         */
+        long getSubmitMillis() {
+            return submitMillis;
+        }
+
+        /**
+         * Returns the time the first driver state was known.
+         *
+         * @return time in milliseconds, or 0 if unknown
+         */
+        long getFirstStateAt() {
+            return firstStateAt;
+        }
+
+        /**
+         * Returns the failure of the deployment.
+         *
+         * @return failure, or null if successful
+         */
+        String getError() {
+            return error;
+        }
+
+        /**
+         * Returns true if the deployment was interrupted, such as by aborting the build.
+         *
+         * @return true if interrupted
+         */
+        boolean isInterrupted() {
+            return interrupted;
+        }
+    }
+}
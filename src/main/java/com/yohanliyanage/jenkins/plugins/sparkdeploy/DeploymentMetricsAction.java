@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2015 Yohan Liyanage
+ *
+ * Release under the MIT License (MIT). See LICENSE file for details.
+ */
+
+package com.yohanliyanage.jenkins.plugins.sparkdeploy;
+
+import com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer.DeploymentLeases;
+import com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer.DeploymentMetrics;
+import hudson.Extension;
+import hudson.model.RootAction;
+import jenkins.model.Jenkins;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Exposes the {@link DeploymentMetrics} at <code>/spark-deploy-metrics/</code> in the Prometheus text format, for
+ * scraping by monitoring systems. Requires the overall read permission.
+ *
+ * @author Yohan Liyanage
+ */
+@Extension
+@SuppressWarnings("unused")
+public class DeploymentMetricsAction implements RootAction {
+
+    /**
+     * Content type of the Prometheus text exposition format.
+     */
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    @Override
+    public String getIconFileName() {
+        // Not shown in the side panel
+        return null;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "Spark Deploy Metrics";
+    }
+
+    @Override
+    public String getUrlName() {
+        return "spark-deploy-metrics";
+    }
+
+    /**
+     * Writes the metrics.
+     *
+     * @param req request
+     * @param rsp response
+     * @throws IOException if writing fails
+     */
+    public void doIndex(StaplerRequest req, StaplerResponse rsp) throws IOException {
+        Jenkins.getInstance().checkPermission(Jenkins.READ);
+        rsp.setContentType(CONTENT_TYPE);
+        PrintWriter writer = rsp.getWriter();
+        try {
+            DeploymentMetrics.getInstance().writePrometheus(writer);
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Lists the deployment leases that are held or waited for, as tab separated lines of master, application, holder,
+     * seconds held and number of waiting deployments.
+     *
+     * @param req request
+     * @param rsp response
+     * @throws IOException if writing fails
+     */
+    public void doLeases(StaplerRequest req, StaplerResponse rsp) throws IOException {
+        Jenkins.getInstance().checkPermission(Jenkins.READ);
+        rsp.setContentType("text/plain; charset=utf-8");
+        PrintWriter writer = rsp.getWriter();
+        try {
+            long now = System.currentTimeMillis();
+            for (DeploymentLeases.LeaseInfo lease : DeploymentLeases.getInstance().getLeases()) {
+                writer.println(lease.getMaster() + "\t" + lease.getApp() + "\t"
+                        + (lease.getHolder() != null ? lease.getHolder() : "-") + "\t"
+                        + (lease.getHeldSince() > 0 ? (now - lease.getHeldSince()) / 1000 : 0) + "\t"
+                        + lease.getWaiting());
+            }
+        } finally {
+            writer.close();
+        }
+    }
+}
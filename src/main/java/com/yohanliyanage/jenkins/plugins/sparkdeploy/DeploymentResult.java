@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2015 Yohan Liyanage
+ *
+ * Release under the MIT License (MIT). See LICENSE file for details.
+ */
+
+package com.yohanliyanage.jenkins.plugins.sparkdeploy;
+
+import com.yohanliyanage.jenkins.plugins.sparkdeploy.history.DeploymentTiming;
+
+/**
+ * Outcome of deploying a single Spark application.
+ *
+ * @author Yohan Liyanage
+ */
+public class DeploymentResult {
+
+    private final String appName;
+    private final String submissionId;
+    private final String driverState;
+    private final String error;
+    private final DeploymentTiming timing;
+
+    /**
+     * Creates a deployment result.
+     *
+     * @param appName application name
+     * @param submissionId submission ID, or null if the submission failed
+     * @param driverState last known driver state, or null if unknown
+     * @param error error message, or null if the deployment was successful
+     */
+    public DeploymentResult(String appName, String submissionId, String driverState, String error) {
+        this(appName, submissionId, driverState, error, null);
+    }
+
+    /**
+     * Creates a deployment result with the timing of the deployment.
+     *
+     * @param appName application name
+     * @param submissionId submission ID, or null if the submission failed
+     * @param driverState last known driver state, or null if unknown
+     * @param error error message, or null if the deployment was successful
+     * @param timing timing, or null if the application was not submitted
+     */
+    public DeploymentResult(String appName, String submissionId, String driverState, String error,
+                            DeploymentTiming timing) {
+        this.appName = appName;
+        this.submissionId = submissionId;
+        this.driverState = driverState;
+        this.error = error;
+        this.timing = timing;
+    }
+
+    /**
+     * Returns a copy of this result with the given timing.
+     *
+     * @param timing timing
+     * @return result
+     */
+    public DeploymentResult withTiming(DeploymentTiming timing) {
+        return new DeploymentResult(appName, submissionId, driverState, error, timing);
+    }
+
+    /**
+     * Returns app name.
+     *
+     * @return app name
+     */
+    public String getAppName() {
+        return appName;
+    }
+
+    /**
+     * Returns submission id.
+     *
+     * @return submission id
+     */
+    public String getSubmissionId() {
+        return submissionId;
+    }
+
+    /**
+     * Returns driver state.
+     *
+     * @return driver state
+     */
+    public String getDriverState() {
+        return driverState;
+    }
+
+    /**
+     * Returns error.
+     *
+     * @return error message, or null
+     */
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * Returns timing.
+     *
+     * @return timing, or null if the application was not submitted
+     */
+    public DeploymentTiming getTiming() {
+        return timing;
+    }
+
+    /**
+     * Is successful.
+     *
+     * @return boolean
+     */
+    public boolean isSuccessful() {
+        return error == null;
+    }
+
+    @Override
+    public String toString() {
+        return appName + " : " + (isSuccessful() ? "SUCCESS" : "FAILED") + " - Submission ID = " + submissionId
+                + ", Driver State = " + driverState + (error == null ? "" : ", Error = " + error);
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2015 Yohan Liyanage
+ *
+ * Release under the MIT License (MIT). See LICENSE file for details.
+ */
+
+package com.yohanliyanage.jenkins.plugins.sparkdeploy;
+
+import com.yohanliyanage.jenkins.plugins.sparkdeploy.history.DeploymentTiming;
+import hudson.model.Run;
+import jenkins.model.RunAction2;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Shows how long the phases of the deployments of a build took, on the page of the build. The timings are saved with
+ * the build; the {@link DeploymentTrendAction} of the job draws them from the timing index of the job instead, so
+ * that it does not load every build.
+ *
+ * @author Yohan Liyanage
+ */
+public class DeploymentTimingAction implements RunAction2 {
+
+    private final List<DeploymentTiming> timings;
+    private transient Run<?, ?> build;
+
+    /**
+     * Creates the action.
+     *
+     * @param timings timings of the applications deployed by the build
+     */
+    public DeploymentTimingAction(List<DeploymentTiming> timings) {
+        this.timings = new ArrayList<DeploymentTiming>(timings);
+    }
+
+    @Override
+    public String getIconFileName() {
+        return "clock.png";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "Spark Deployment Timing";
+    }
+
+    @Override
+    public String getUrlName() {
+        return "spark-deploy-timing";
+    }
+
+    @Override
+    public void onAttached(Run<?, ?> build) {
+        this.build = build;
+    }
+
+    @Override
+    public void onLoad(Run<?, ?> build) {
+        this.build = build;
+    }
+
+    /**
+     * Returns build.
+     *
+     * @return build
+     */
+    @SuppressWarnings("unused")
+    public Run<?, ?> getBuild() {
+        return build;
+    }
+
+    /**
+     * Returns timings.
+     *
+     * @return timings of the applications deployed by the build
+     */
+    public List<DeploymentTiming> getTimings() {
+        return Collections.unmodifiableList(timings);
+    }
+
+    /**
+     * Formats a duration for display.
+     *
+     * @param millis duration in milliseconds, or {@link DeploymentTiming#UNKNOWN}
+     * @return duration in seconds, or "-" if unknown
+     */
+    public static String formatMillis(long millis) {
+        return millis == DeploymentTiming.UNKNOWN ? "-" : String.format("%.1f s", millis / 1000.0);
+    }
+
+    /**
+     * Formats a size for display.
+     *
+     * @param bytes size in bytes, or {@link DeploymentTiming#UNKNOWN}
+     * @return size in megabytes, or "-" if unknown
+     */
+    public static String formatBytes(long bytes) {
+        return bytes == DeploymentTiming.UNKNOWN ? "-" : String.format("%.1f MB", bytes / (1024.0 * 1024.0));
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright (C) 2015 Yohan Liyanage
+ *
+ * Release under the MIT License (MIT). See LICENSE file for details.
+ */
+
+package com.yohanliyanage.jenkins.plugins.sparkdeploy;
+
+import com.yohanliyanage.jenkins.plugins.sparkdeploy.history.DeploymentTiming;
+import com.yohanliyanage.jenkins.plugins.sparkdeploy.history.TimingIndex;
+import hudson.model.AbstractProject;
+import hudson.model.Action;
+import hudson.model.Item;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Shows the trend of the time to RUNNING of the applications of a job, from its {@link TimingIndex}. The chart is an
+ * SVG image at <code>spark-deploy-trend/chart</code>, also shown on the page of the job.
+ *
+ * @author Yohan Liyanage
+ */
+public class DeploymentTrendAction implements Action {
+
+    /**
+     * Number of latest timings shown.
+     */
+    public static final int MAX_TIMINGS = 60;
+
+    private static final int WIDTH = 500;
+    private static final int HEIGHT = 200;
+    private static final int MARGIN = 40;
+    private static final String[] COLORS = { "#1f77b4", "#d62728", "#2ca02c", "#ff7f0e", "#9467bd", "#8c564b" };
+
+    private final AbstractProject<?, ?> project;
+
+    /**
+     * Creates the action.
+     *
+     * @param project project
+     */
+    public DeploymentTrendAction(AbstractProject<?, ?> project) {
+        this.project = project;
+    }
+
+    @Override
+    public String getIconFileName() {
+        return "graph.png";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "Spark Deployment Trend";
+    }
+
+    @Override
+    public String getUrlName() {
+        return "spark-deploy-trend";
+    }
+
+    /**
+     * Returns project.
+     *
+     * @return project
+     */
+    @SuppressWarnings("unused")
+    public AbstractProject<?, ?> getProject() {
+        return project;
+    }
+
+    /**
+     * Returns the latest timings of the job, newest first.
+     *
+     * @return timings
+     * @throws IOException if the timing index cannot be read
+     */
+    public List<DeploymentTiming> getTimings() throws IOException {
+        List<DeploymentTiming> timings = getLatestTimings();
+        Collections.reverse(timings);
+        return timings;
+    }
+
+    /**
+     * Formats a duration for display.
+     *
+     * @param millis duration in milliseconds, or {@link DeploymentTiming#UNKNOWN}
+     * @return duration in seconds, or "-" if unknown
+     */
+    public String formatMillis(long millis) {
+        return DeploymentTimingAction.formatMillis(millis);
+    }
+
+    /**
+     * Formats a size for display.
+     *
+     * @param bytes size in bytes, or {@link DeploymentTiming#UNKNOWN}
+     * @return size in megabytes, or "-" if unknown
+     */
+    public String formatBytes(long bytes) {
+        return DeploymentTimingAction.formatBytes(bytes);
+    }
+
+    /**
+     * Writes the chart of the time to RUNNING of each application as an SVG image.
+     *
+     * @param req request
+     * @param rsp response
+     * @throws IOException if the timing index cannot be read, or writing fails
+     */
+    public void doChart(StaplerRequest req, StaplerResponse rsp) throws IOException {
+        project.checkPermission(Item.READ);
+        rsp.setContentType("image/svg+xml; charset=utf-8");
+        PrintWriter writer = rsp.getWriter();
+        try {
+            writer.print(renderChart(getLatestTimings()));
+        } finally {
+            writer.close();
+        }
+    }
+
+    private List<DeploymentTiming> getLatestTimings() throws IOException {
+        List<DeploymentTiming> timings = TimingIndex.forJob(project.getRootDir()).getTimings();
+        return new ArrayList<DeploymentTiming>(timings.subList(Math.max(0, timings.size() - MAX_TIMINGS),
+                timings.size()));
+    }
+
+    /**
+     * Draws the time to RUNNING of each application against the build number, one line per application. Deployments
+     * whose driver was not seen RUNNING are left out.
+     *
+     * @param timings timings, oldest first
+     * @return SVG document
+     */
+    static String renderChart(List<DeploymentTiming> timings) {
+        TreeSet<Integer> builds = new TreeSet<Integer>();
+        Map<String, List<DeploymentTiming>> byApp = new LinkedHashMap<String, List<DeploymentTiming>>();
+        long max = 1;
+        for (DeploymentTiming timing : timings) {
+            if (timing.getRunningMillis() == DeploymentTiming.UNKNOWN) {
+                continue;
+            }
+            builds.add(timing.getBuildNumber());
+            List<DeploymentTiming> series = byApp.get(timing.getApp());
+            if (series == null) {
+                series = new ArrayList<DeploymentTiming>();
+                byApp.put(timing.getApp(), series);
+            }
+            series.add(timing);
+            max = Math.max(max, timing.getRunningMillis());
+        }
+        List<Integer> columns = new ArrayList<Integer>(builds);
+
+        StringBuilder svg = new StringBuilder();
+        svg.append("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"").append(WIDTH).append("\" height=\"")
+                .append(HEIGHT).append("\" font-family=\"sans-serif\" font-size=\"10\">\n");
+        int left = MARGIN;
+        int right = WIDTH - 10;
+        int top = 10;
+        int bottom = HEIGHT - MARGIN;
+        svg.append("<polyline fill=\"none\" stroke=\"#999\" points=\"").append(left).append(',').append(top)
+                .append(' ').append(left).append(',').append(bottom).append(' ').append(right).append(',')
+                .append(bottom).append("\"/>\n");
+        svg.append(text(left - 4, top + 8, "end", String.format("%.1f s", max / 1000.0)));
+        svg.append(text(left - 4, bottom, "end", "0"));
+        if (columns.isEmpty()) {
+            svg.append(text((left + right) / 2, (top + bottom) / 2, "middle", "No deployment reached RUNNING yet"));
+            return svg.append("</svg>\n").toString();
+        }
+        svg.append(text(left, bottom + 14, "start", "#" + columns.get(0)));
+        svg.append(text(right, bottom + 14, "end", "#" + columns.get(columns.size() - 1)));
+
+        int color = 0;
+        for (Map.Entry<String, List<DeploymentTiming>> entry : byApp.entrySet()) {
+            String stroke = COLORS[color % COLORS.length];
+            StringBuilder points = new StringBuilder();
+            for (DeploymentTiming timing : entry.getValue()) {
+                int column = columns.indexOf(timing.getBuildNumber());
+                long x = columns.size() == 1 ?
+                        (left + right) / 2 : left + (long) column * (right - left) / (columns.size() - 1);
+                long y = bottom - timing.getRunningMillis() * (bottom - top) / max;
+                points.append(x).append(',').append(y).append(' ');
+                svg.append("<circle cx=\"").append(x).append("\" cy=\"").append(y).append("\" r=\"2\" fill=\"")
+                        .append(stroke).append("\"><title>#").append(timing.getBuildNumber()).append(" : ")
+                        .append(timing.getRunningMillis()).append(" ms</title></circle>\n");
+            }
+            svg.append("<polyline fill=\"none\" stroke=\"").append(stroke).append("\" points=\"")
+                    .append(points.toString().trim()).append("\"/>\n");
+            // Legend below the axis, one slot per application
+            svg.append(text(left + (long) color * (right - left) / byApp.size(), bottom + 28, "start", stroke,
+                    getSimpleName(entry.getKey())));
+            color++;
+        }
+        return svg.append("</svg>\n").toString();
+    }
+
+    private static String text(long x, long y, String anchor, String value) {
+        return text(x, y, anchor, "#333", value);
+    }
+
+    private static String text(long x, long y, String anchor, String fill, String value) {
+        return "<text x=\"" + x + "\" y=\"" + y + "\" text-anchor=\"" + anchor + "\" fill=\"" + fill + "\">"
+                + escape(value) + "</text>\n";
+    }
+
+    private static String getSimpleName(String mainClass) {
+        return mainClass.substring(mainClass.lastIndexOf('.') + 1);
+    }
+
+    private static String escape(String value) {
+        return value.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+}
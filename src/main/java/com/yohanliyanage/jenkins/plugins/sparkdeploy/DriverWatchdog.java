@@ -0,0 +1,418 @@
+/*
+ * Copyright (C) 2015 Yohan Liyanage
+ *
+ * Release under the MIT License (MIT). See LICENSE file for details.
+ */
+
+package com.yohanliyanage.jenkins.plugins.sparkdeploy;
+
+import com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer.ClusterAdmission;
+import com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer.ClusterState;
+import com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer.ClusterTarget;
+import com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer.DaemonThreadFactory;
+import com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer.DeploymentLeases;
+import com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer.DeploymentManager;
+import com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer.DeploymentMetrics;
+import com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer.DeploymentRequest;
+import com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer.Utils;
+import com.yohanliyanage.jenkins.plugins.sparkdeploy.history.SubmissionHistory;
+import com.yohanliyanage.jenkins.plugins.sparkdeploy.history.SubmissionRecord;
+import hudson.Extension;
+import hudson.model.AbstractProject;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.Job;
+import hudson.model.TaskListener;
+import hudson.security.ACL;
+import jenkins.model.Jenkins;
+import org.acegisecurity.context.SecurityContext;
+import org.acegisecurity.context.SecurityContextHolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Controller level watchdog of supervised submissions. Periodically checks the drivers of the latest live submissions
+ * of all jobs, and submits an application again from its recorded request if its driver failed, up to a number of
+ * restarts per hour. Cycles run as the system user, so that every job is seen.
+ * <p>
+ * Each cycle groups the supervised submissions by Spark Master, and checks each group in one batch on a small, fixed
+ * pool, starting at a random offset within the first half of the interval so that masters are not all hit at once.
+ * The interval itself is jittered as well. Only one batch per master runs at a time. The states of all drivers of a
+ * batch are read at once from the web UI of the master (/json), as configured for the job or the cluster pool; a driver
+ * that it does not list, or all of them if it cannot be reached, is checked with a status request of its own.
+ * <p>
+ * A failed driver is restarted under the deployment lease of its application, and only if its submission is still the
+ * latest one, so that the watchdog does not race a build deploying the application meanwhile.
+ *
+ * @author Yohan Liyanage
+ */
+@Extension
+public final class DriverWatchdog extends AsyncPeriodicWork {
+
+    private static final Logger LOGGER = Logger.getLogger(DriverWatchdog.class.getName());
+
+    /**
+     * Driver states after which a supervised application is submitted again.
+     */
+    private static final Set<String> RESTART_STATES =
+            Collections.unmodifiableSet(new HashSet<String>(Arrays.asList("FAILED", "ERROR")));
+
+    private static final int MAX_CHECKING_THREADS = 4;
+    private static final long TICK_MILLIS = TimeUnit.SECONDS.toMillis(10);
+    private static final double JITTER = 0.1;
+    private static final long RESTART_WINDOW_MILLIS = TimeUnit.HOURS.toMillis(1);
+    private static final long RESTART_LEASE_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(10);
+    private static final String LEASE_HOLDER = "Spark driver watchdog";
+
+    private final ScheduledExecutorService executor;
+    private final Random random = new Random();
+    private final Set<String> busyMasters = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final Map<String, LinkedList<Long>> restarts = new HashMap<String, LinkedList<Long>>();
+    private volatile long nextCycleAt;
+
+    public DriverWatchdog() {
+        super("Spark driver watchdog");
+        ScheduledThreadPoolExecutor pool = new ScheduledThreadPoolExecutor(MAX_CHECKING_THREADS,
+                new DaemonThreadFactory("spark-deploy-watchdog"));
+        pool.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        this.executor = pool;
+    }
+
+    /**
+     * Returns how often the watchdog wakes up. A cycle only runs once its own, configurable and jittered, interval has
+     * elapsed, so that changes of the interval apply without a restart.
+     *
+     * @return period in milliseconds
+     */
+    @Override
+    public long getRecurrencePeriod() {
+        return TICK_MILLIS;
+    }
+
+    @Override
+    protected void execute(TaskListener listener) throws IOException, InterruptedException {
+        long now = System.currentTimeMillis();
+        if (now < nextCycleAt) {
+            return;
+        }
+        long interval = TimeUnit.SECONDS.toMillis(getDescriptor().getWatchdogInterval());
+        nextCycleAt = now + jitter(interval);
+
+        SecurityContext context = ACL.impersonate(ACL.SYSTEM);
+        try {
+            cycle(interval);
+        } finally {
+            SecurityContextHolder.setContext(context);
+        }
+    }
+
+    private void cycle(long interval) throws IOException {
+        Map<String, List<Supervised>> byMaster = new HashMap<String, List<Supervised>>();
+        Set<String> supervisedApps = new HashSet<String>();
+
+        for (Job<?, ?> job : Jenkins.getInstance().getAllItems(Job.class)) {
+            File root = job.getRootDir();
+            if (! new File(root, SubmissionHistory.LOG_FILE).exists()) {
+                continue;
+            }
+            SubmissionHistory history = SubmissionHistory.forJob(root);
+            for (SubmissionRecord record : history.getLive()) {
+                SubmissionRecord latest = history.getLatestLive(record.getApp());
+                if (record.isSupervised() && latest.getSubmissionId().equals(record.getSubmissionId())) {
+                    List<Supervised> batch = byMaster.get(record.getMaster());
+                    if (batch == null) {
+                        batch = new ArrayList<Supervised>();
+                        byMaster.put(record.getMaster(), batch);
+                    }
+                    batch.add(new Supervised(job.getFullName(), root, history, record,
+                            getMasterUiUrls(job, record.getMaster())));
+                    supervisedApps.add(job.getFullName() + "/" + record.getApp());
+                }
+            }
+        }
+        pruneRestarts(supervisedApps);
+
+        for (final Map.Entry<String, List<Supervised>> entry : byMaster.entrySet()) {
+            if (! busyMasters.add(entry.getKey())) {
+                // Previous batch of this master is still running
+                continue;
+            }
+            executor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    SecurityContext context = ACL.impersonate(ACL.SYSTEM);
+                    try {
+                        check(entry.getKey(), entry.getValue());
+                    } catch (Throwable e) {
+                        LOGGER.log(Level.WARNING, "Spark driver watchdog check failed for " + entry.getKey(), e);
+                    } finally {
+                        SecurityContextHolder.setContext(context);
+                        busyMasters.remove(entry.getKey());
+                    }
+                }
+            }, randomDelay(interval / 2), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Returns the web UI URLs of the given master as configured in the publisher of the job or in the cluster pool, and
+     * on the default UI port of the master otherwise.
+     */
+    private static List<String> getMasterUiUrls(Job<?, ?> job, String master) {
+        List<ClusterTarget> targets = new ArrayList<ClusterTarget>();
+        if (job instanceof AbstractProject) {
+            SparkDeployPublisher publisher =
+                    ((AbstractProject<?, ?>) job).getPublishersList().get(SparkDeployPublisher.class);
+            if (publisher != null) {
+                targets.addAll(publisher.getSweepTargets());
+            }
+        }
+        for (SparkCluster cluster : getDescriptor().getClusters()) {
+            targets.add(cluster.toTarget());
+        }
+        for (ClusterTarget target : targets) {
+            if (target.getMasterRestUrl() != null
+                    && master.equals(Utils.join(Utils.getActualSparkMasterUrls(target.getMasterRestUrl()), ","))) {
+                return target.getMasterUiUrls();
+            }
+        }
+        return ClusterAdmission.getMasterUiUrls(master);
+    }
+
+    /**
+     * Checks the drivers of the given supervised submissions, which were all made to the given master. A failure to
+     * check one submission does not skip the others. The log of the batch is kept at a fine level, unless a driver was
+     * restarted or found failed.
+     */
+    private void check(String master, List<Supervised> batch) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        PrintStream logger = createLogger(buffer);
+        boolean restarted = false;
+        try {
+            DeploymentManager deployer = new DeploymentManager(master, logger, false);
+            Map<String, String> states = getDriverStates(batch.get(0).masterUiUrls, logger);
+            for (Supervised supervised : batch) {
+                try {
+                    restarted |= check(deployer, supervised, states.get(supervised.record.getSubmissionId()), logger);
+                } catch (IOException e) {
+                    // Master is unreachable; try again in the next cycle
+                    logger.println("[Spark-Deployer] Watchdog could not check " + supervised.record + " on Spark Master "
+                            + master + " : " + e);
+                } catch (RuntimeException e) {
+                    logger.println("[Spark-Deployer] Watchdog check failed for " + supervised.record + " : " + e);
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.println("[Spark-Deployer] Watchdog check failed for Spark Master " + master + " : " + e);
+        } finally {
+            logger.flush();
+            LOGGER.log(restarted ? Level.INFO : Level.FINE, toString(buffer));
+        }
+    }
+
+    /**
+     * Reads the states of the drivers listed by the web UI of a master.
+     *
+     * @return states by submission ID, empty if the web UI cannot be reached
+     */
+    private static Map<String, String> getDriverStates(List<String> masterUiUrls, PrintStream logger) {
+        Map<String, String> states = new HashMap<String, String>();
+        ClusterState cluster = ClusterAdmission.fetchState(masterUiUrls, logger);
+        if (cluster != null) {
+            for (ClusterState.Driver driver : cluster.getCompletedDrivers()) {
+                states.put(driver.getId(), driver.getState());
+            }
+            for (ClusterState.Driver driver : cluster.getActiveDrivers()) {
+                states.put(driver.getId(), driver.getState());
+            }
+        }
+        return states;
+    }
+
+    /**
+     * Checks the driver of a supervised submission.
+     *
+     * @return true if it failed and a restart was considered
+     */
+    private boolean check(DeploymentManager deployer, Supervised supervised, String listedState, PrintStream logger)
+            throws IOException {
+        SubmissionRecord record = supervised.record;
+        String state = listedState;
+        if (state == null) {
+            try {
+                state = deployer.pollDriverState(record.getSubmissionId());
+            } catch (RuntimeException e) {
+                // Submission is not known to the master, or the status check was rejected
+                logger.println("[Spark-Deployer] Watchdog could not check " + record + " : " + e.getMessage());
+                return false;
+            }
+        }
+
+        if (state.equals(record.getDriverState())) {
+            return false;
+        }
+        if (! RESTART_STATES.contains(state)) {
+            supervised.history.updateDriverState(record.getSubmissionId(), state);
+            return false;
+        }
+        restart(deployer, supervised, state, logger);
+        return true;
+    }
+
+    /**
+     * Records the failed state of a supervised submission and submits the application again, unless a build deploys
+     * it meanwhile. The watchdog never supersedes a coalescing build. If a build holds the lease, nothing is recorded,
+     * so that the next cycle tries again.
+     */
+    private void restart(DeploymentManager deployer, Supervised supervised, String state, PrintStream logger)
+            throws IOException {
+        SubmissionRecord record = supervised.record;
+        DeploymentLeases.Lease lease;
+        try {
+            lease = DeploymentLeases.getInstance().acquire(record.getMaster(), record.getApp(), LEASE_HOLDER,
+                    Long.MIN_VALUE, RESTART_LEASE_TIMEOUT_MILLIS, false);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if (! lease.isAcquired()) {
+            logger.println("[Spark-Deployer] Watchdog did not restart " + record + ", since it is being deployed by "
+                    + lease.getHolder());
+            return;
+        }
+
+        try {
+            SubmissionHistory history = SubmissionHistory.forJob(supervised.root);
+            history.updateDriverState(record.getSubmissionId(), state);
+            SubmissionRecord latest = history.getLatestLive(record.getApp());
+            if (latest == null || ! latest.getSubmissionId().equals(record.getSubmissionId())) {
+                logger.println("[Spark-Deployer] Watchdog did not restart " + record + ", since it was replaced by "
+                        + latest);
+                return;
+            }
+
+            String key = supervised.job + "/" + record.getApp();
+            if (! acquireRestart(key)) {
+                DeploymentMetrics.getInstance().recordRestart(deployer.getMasterRestUrl(), false);
+                LOGGER.warning("Driver of " + record.getApp() + " in " + supervised.job + " is " + state
+                        + ". Not restarting, since it was restarted " + getDescriptor().getWatchdogMaxRestarts()
+                        + " times within the last hour");
+                return;
+            }
+
+            DeploymentRequest request = DeploymentRequest.fromJson(record.getRequest());
+            long now = System.currentTimeMillis();
+            String submissionId = deployer.submit(request);
+            history.record(new SubmissionRecord(record.getBuildNumber(), submissionId, record.getApp(),
+                    record.getMaster(), "SUBMITTED", now, now, record.getRequest(), record.getFingerprint()));
+            DeploymentMetrics.getInstance().recordRestart(deployer.getMasterRestUrl(), true);
+            LOGGER.info("Driver of " + record.getApp() + " in " + supervised.job + " was " + state
+                    + ". Submitted again under Submission ID " + submissionId);
+        } finally {
+            lease.release();
+        }
+    }
+
+    /**
+     * Takes a restart from the budget of the given application, if any is left within the restart window.
+     */
+    private synchronized boolean acquireRestart(String key) {
+        long now = System.currentTimeMillis();
+        LinkedList<Long> times = restarts.get(key);
+        if (times == null) {
+            times = new LinkedList<Long>();
+            restarts.put(key, times);
+        }
+        Iterator<Long> iterator = times.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next() < now - RESTART_WINDOW_MILLIS) {
+                iterator.remove();
+            }
+        }
+        if (times.size() >= getDescriptor().getWatchdogMaxRestarts()) {
+            return false;
+        }
+        times.add(now);
+        return true;
+    }
+
+    /**
+     * Drops the restart budgets of applications that are no longer supervised.
+     */
+    private synchronized void pruneRestarts(Set<String> supervisedApps) {
+        restarts.keySet().retainAll(supervisedApps);
+    }
+
+    private long jitter(long interval) {
+        return (long) (interval * (1 - JITTER + 2 * JITTER * nextDouble()));
+    }
+
+    private long randomDelay(long bound) {
+        return (long) (bound * nextDouble());
+    }
+
+    private synchronized double nextDouble() {
+        return random.nextDouble();
+    }
+
+    private static SparkDeployPublisher.Descriptor getDescriptor() {
+        return Jenkins.getInstance().getDescriptorByType(SparkDeployPublisher.Descriptor.class);
+    }
+
+    private static PrintStream createLogger(ByteArrayOutputStream buffer) {
+        try {
+            return new PrintStream(buffer, true, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toString(ByteArrayOutputStream buffer) {
+        try {
+            return buffer.toString("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * A supervised submission, along with the job and the history it belongs to.
+     */
+    private static final class Supervised {
+
+        private final String job;
+        private final File root;
+        private final SubmissionHistory history;
+        private final SubmissionRecord record;
+        private final List<String> masterUiUrls;
+
+        Supervised(String job, File root, SubmissionHistory history, SubmissionRecord record,
+                   List<String> masterUiUrls) {
+            this.job = job;
+            this.root = root;
+            this.history = history;
+            this.record = record;
+            this.masterUiUrls = masterUiUrls;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2015 Yohan Liyanage
+ *
+ * Release under the MIT License (MIT). See LICENSE file for details.
+ */
+
+package com.yohanliyanage.jenkins.plugins.sparkdeploy;
+
+import hudson.model.AbstractProject;
+import hudson.model.Action;
+import hudson.model.Item;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+import org.kohsuke.stapler.interceptor.RequirePOST;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+
+/**
+ * Lets users kill the orphaned drivers of the applications of a job on demand, from the page of the job. Requires the
+ * build permission on the job.
+ *
+ * @author Yohan Liyanage
+ */
+public class OrphanSweepAction implements Action {
+
+    private final AbstractProject<?, ?> project;
+    private final SparkDeployPublisher publisher;
+
+    /**
+     * Creates the action.
+     *
+     * @param project project
+     * @param publisher Spark Deploy publisher of the project
+     */
+    public OrphanSweepAction(AbstractProject<?, ?> project, SparkDeployPublisher publisher) {
+        this.project = project;
+        this.publisher = publisher;
+    }
+
+    @Override
+    public String getIconFileName() {
+        return "edit-delete.png";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "Sweep Spark Orphans";
+    }
+
+    @Override
+    public String getUrlName() {
+        return "spark-sweep";
+    }
+
+    /**
+     * Returns project.
+     *
+     * @return project
+     */
+    @SuppressWarnings("unused")
+    public AbstractProject<?, ?> getProject() {
+        return project;
+    }
+
+    /**
+     * Kills the active drivers of the applications of the job, other than their latest submissions, and writes the
+     * log of the sweep as plain text.
+     *
+     * @param req request
+     * @param rsp response
+     * @throws IOException if the submission history cannot be read, or writing fails
+     */
+    @RequirePOST
+    public void doSweep(StaplerRequest req, StaplerResponse rsp) throws IOException {
+        project.checkPermission(Item.BUILD);
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        PrintStream logger = new PrintStream(buffer, true, "UTF-8");
+        publisher.sweepOrphans(project, logger);
+        logger.flush();
+
+        rsp.setContentType("text/plain; charset=utf-8");
+        PrintWriter writer = rsp.getWriter();
+        try {
+            writer.print(buffer.toString("UTF-8"));
+        } finally {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2015 Yohan Liyanage
+ *
+ * Release under the MIT License (MIT). See LICENSE file for details.
+ */
+
+package com.yohanliyanage.jenkins.plugins.sparkdeploy;
+
+import com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer.DeploymentTemplate;
+import hudson.Extension;
+import hudson.model.AbstractDescribableImpl;
+import hudson.model.Descriptor;
+import hudson.util.FormValidation;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.QueryParameter;
+
+/**
+ * A Spark application to be deployed by {@link SparkDeployPublisher}, in addition to the main application of the
+ * publisher. All applications of a publisher are deployed to the same cluster.
+ *
+ * @author Yohan Liyanage
+ */
+public class SparkApplication extends AbstractDescribableImpl<SparkApplication> {
+
+    private String appResource;
+    private String mainClass;
+    private String appArgs;
+    private String sparkProperties;
+
+    /**
+     * Constructor for Spark Application.
+     *
+     * @param appResource Application Resource - JAR File URL (HTTP / HDFS URL or file path if available to executors).
+     * @param mainClass Fully qualified main class name.
+     * @param appArgs Space separated application command line arguments
+     * @param sparkProperties Comma separated series name value pairs (ex. prop1=value1,prop2=value2,...)
+     */
+    @DataBoundConstructor
+    public SparkApplication(String appResource, String mainClass, String appArgs, String sparkProperties) {
+        this.appResource = appResource.trim();
+        this.mainClass = mainClass.trim();
+        this.appArgs = appArgs == null ? "" : appArgs.trim();
+        this.sparkProperties = sparkProperties == null ? "" : sparkProperties.trim();
+
+        // Fail on save rather than on deploy
+        DeploymentTemplate.parseArgs(this.appArgs);
+        DeploymentTemplate.parseProperties(this.sparkProperties);
+    }
+
+    /**
+     * Returns app resource.
+     *
+     * @return app resource
+     */
+    public String getAppResource() {
+        return appResource;
+    }
+
+    /**
+     * Returns main class.
+     *
+     * @return main class
+     */
+    public String getMainClass() {
+        return mainClass;
+    }
+
+    /**
+     * Returns app args.
+     *
+     * @return app args
+     */
+    public String getAppArgs() {
+        return appArgs;
+    }
+
+    /**
+     * Returns spark properties.
+     *
+     * @return spark properties
+     */
+    public String getSparkProperties() {
+        return sparkProperties;
+    }
+
+    /**
+     * Spark Application Descriptor.
+     */
+    @Extension
+    @SuppressWarnings("unused")
+    public static class DescriptorImpl extends Descriptor<SparkApplication> {
+
+        @Override
+        public String getDisplayName() {
+            return "Spark Application";
+        }
+
+        /**
+         * Validates App Resource.
+         * @param value value
+         * @return validation result
+         */
+        public FormValidation doCheckAppResource(@QueryParameter String value) {
+            if (value.trim().isEmpty()) {
+                return FormValidation.error("Application Resource is required");
+            }
+            return FormValidation.ok();
+        }
+
+        /**
+         * Validates Main Class.
+         * @param value value
+         * @return validation result
+         */
+        public FormValidation doCheckMainClass(@QueryParameter String value) {
+            if (value.trim().isEmpty()) {
+                return FormValidation.error("Main Class is required");
+            }
+            return FormValidation.ok();
+        }
+
+        /**
+         * Validate Application Arguments if specified.
+         * @param value value
+         * @return validation result
+         */
+        public FormValidation doCheckAppArgs(@QueryParameter String value) {
+            return SparkDeployPublisher.Descriptor.checkAppArgs(value);
+        }
+
+        /**
+         * Validate Spark Properties if specified.
+         * @param value value
+         * @return validation result
+         */
+        public FormValidation doCheckSparkProperties(@QueryParameter String value) {
+            return SparkDeployPublisher.Descriptor.checkSparkProperties(value);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2015 Yohan Liyanage
+ *
+ * Release under the MIT License (MIT). See LICENSE file for details.
+ */
+
+package com.yohanliyanage.jenkins.plugins.sparkdeploy;
+
+import com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer.ClusterAdmission;
+import com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer.ClusterTarget;
+import com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer.Utils;
+import hudson.Extension;
+import hudson.model.AbstractDescribableImpl;
+import hudson.model.Descriptor;
+import hudson.util.FormValidation;
+import jenkins.model.Jenkins;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.QueryParameter;
+
+import java.util.List;
+
+/**
+ * A Spark standalone cluster of the global cluster pool, which {@link SparkDeployPublisher} may deploy to instead of
+ * its own cluster.
+ *
+ * @author Yohan Liyanage
+ */
+public class SparkCluster extends AbstractDescribableImpl<SparkCluster> {
+
+    private String name;
+    private String masterUrl;
+    private String masterRestUrl;
+    private String masterUiUrl;
+
+    /**
+     * Constructor for Spark Cluster.
+     *
+     * @param name Name of the cluster, shown in build logs
+     * @param masterUrl Spark Master URL (ex. spark://localhost:6066), or comma separated masters of a HA cluster
+     * @param masterRestUrl Custom Spark Master URL (HTTP / HTTPS REST URL), or comma separated URLs - Optional
+     * @param masterUiUrl Spark Master web UI URL, or comma separated URLs - Optional
+     */
+    @DataBoundConstructor
+    public SparkCluster(String name, String masterUrl, String masterRestUrl, String masterUiUrl) {
+        this.masterUrl = masterUrl.trim().toLowerCase();
+        this.name = name == null || name.trim().isEmpty() ? this.masterUrl : name.trim();
+        this.masterRestUrl = masterRestUrl == null || masterRestUrl.trim().isEmpty() ?
+                null : masterRestUrl.trim().toLowerCase();
+        this.masterUiUrl = masterUiUrl == null || masterUiUrl.trim().isEmpty() ? null : masterUiUrl.trim();
+    }
+
+    /**
+     * Returns name.
+     *
+     * @return name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns master url.
+     *
+     * @return master url
+     */
+    public String getMasterUrl() {
+        return masterUrl;
+    }
+
+    /**
+     * Returns master rest url.
+     *
+     * @return master rest url, or null if derived from the master url
+     */
+    public String getMasterRestUrl() {
+        return masterRestUrl;
+    }
+
+    /**
+     * Returns master ui url.
+     *
+     * @return master ui url, or null if derived from the master url
+     */
+    public String getMasterUiUrl() {
+        return masterUiUrl;
+    }
+
+    /**
+     * Returns the cluster as a placement target.
+     *
+     * @return target
+     */
+    public ClusterTarget toTarget() {
+        String restUrl = masterRestUrl != null ? masterRestUrl : Utils.getActualSparkMasterUrl(masterUrl);
+        List<String> uiUrls = masterUiUrl != null ?
+                Utils.getActualSparkMasterUrls(masterUiUrl) : ClusterAdmission.getMasterUiUrls(restUrl);
+        return new ClusterTarget(name, masterUrl, restUrl, uiUrls);
+    }
+
+    /**
+     * Spark Cluster Descriptor.
+     */
+    @Extension
+    @SuppressWarnings("unused")
+    public static class DescriptorImpl extends Descriptor<SparkCluster> {
+
+        @Override
+        public String getDisplayName() {
+            return "Spark Cluster";
+        }
+
+        /**
+         * Validate Master URL.
+         * @param value value
+         * @return validation result
+         */
+        public FormValidation doCheckMasterUrl(@QueryParameter String value) {
+            return getPublisherDescriptor().doCheckMasterUrl(value);
+        }
+
+        /**
+         * Validate Master REST URL if specified.
+         * @param value value
+         * @return validation result
+         */
+        public FormValidation doCheckMasterRestUrl(@QueryParameter String value) {
+            return getPublisherDescriptor().doCheckMasterRestUrl(value);
+        }
+
+        /**
+         * Validate Master Web UI URL if specified.
+         * @param value value
+         * @return validation result
+         */
+        public FormValidation doCheckMasterUiUrl(@QueryParameter String value) {
+            return getPublisherDescriptor().doCheckMasterUiUrl(value);
+        }
+
+        private static SparkDeployPublisher.Descriptor getPublisherDescriptor() {
+            return Jenkins.getInstance().getDescriptorByType(SparkDeployPublisher.Descriptor.class);
+        }
+    }
+}
@@ -6,26 +6,70 @@
 
 package com.yohanliyanage.jenkins.plugins.sparkdeploy;
 
+import com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer.ClusterAdmission;
+import com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer.ClusterPlacement;
+import com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer.ClusterTarget;
+import com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer.DaemonThreadFactory;
+import com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer.DeploymentFuture;
+import com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer.DeploymentLeases;
 import com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer.DeploymentManager;
+import com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer.DeploymentMetrics;
 import com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer.DeploymentRequest;
+import com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer.DeploymentRequestBuilder;
+import com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer.DeploymentTemplate;
+import com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer.DriverLogTailer;
+import com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer.DriverStatePoller;
+import com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer.HealthCheck;
+import com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer.OrphanSweeper;
+import com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer.ResourceDemand;
+import com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer.TransportSettings;
 import com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer.Utils;
+import com.yohanliyanage.jenkins.plugins.sparkdeploy.history.DeploymentTiming;
+import com.yohanliyanage.jenkins.plugins.sparkdeploy.history.SubmissionHistory;
+import com.yohanliyanage.jenkins.plugins.sparkdeploy.history.SubmissionRecord;
+import com.yohanliyanage.jenkins.plugins.sparkdeploy.history.TimingIndex;
+import com.yohanliyanage.jenkins.plugins.sparkdeploy.staging.ArtifactStager;
+import com.yohanliyanage.jenkins.plugins.sparkdeploy.staging.ArtifactStores;
 import hudson.Extension;
+import hudson.FilePath;
 import hudson.Launcher;
 import hudson.model.AbstractBuild;
+import hudson.model.Action;
 import hudson.model.AbstractProject;
 import hudson.model.BuildListener;
 import hudson.model.Result;
+import hudson.remoting.VirtualChannel;
 import hudson.tasks.BuildStepDescriptor;
 import hudson.tasks.BuildStepMonitor;
 import hudson.tasks.Publisher;
 import hudson.tasks.Recorder;
 import hudson.util.FormValidation;
+import hudson.util.StreamTaskListener;
+import jenkins.model.Jenkins;
+import net.sf.json.JSONObject;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
 import org.kohsuke.stapler.QueryParameter;
+import org.kohsuke.stapler.StaplerRequest;
 
 import java.io.*;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Spark Deployer is a Jenkins {@code Recorder} that does the following.
@@ -44,6 +88,63 @@ public class SparkDeployPublisher extends Recorder {
      */
     public static final String SPARK_DEPLOY_SUBMISSION_FILE = ".spark-deploy-submission";
 
+    /**
+     * Number of applications deployed at the same time if not configured.
+     */
+    public static final int DEFAULT_PARALLELISM = 4;
+
+    /**
+     * Name of the file in JENKINS_HOME that indexes staged artifacts.
+     */
+    public static final String STAGING_INDEX_FILE = "spark-deploy-staging.index";
+
+    /**
+     * Health check timeout in seconds if not configured.
+     */
+    public static final int DEFAULT_HEALTH_CHECK_TIMEOUT = 120;
+
+    /**
+     * Time in seconds to wait for other deployments of the same application if not configured.
+     */
+    public static final int DEFAULT_LEASE_TIMEOUT = 600;
+
+    /**
+     * Time in seconds to wait for cluster resources if not configured.
+     */
+    public static final int DEFAULT_RESOURCE_TIMEOUT = 300;
+
+    /**
+     * Polls of a driver that must reach RUNNING before giving up, which is a little under two minutes with the
+     * poller's backoff.
+     */
+    static final int STARTING_MAX_ATTEMPTS = 10;
+
+    /**
+     * Number of polls until the driver of a submission killed in pipelined mode is expected to have stopped.
+     */
+    private static final int STOPPING_MAX_ATTEMPTS = 10;
+
+    /**
+     * Driver states in which a deployment failed, since the driver did not start or stopped right away.
+     */
+    private static final Set<String> FAILED_STATES = Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(
+            "ERROR", "FAILED", "KILLED", DriverStatePoller.ATTEMPTS_EXCEEDED_NO_RESPONSE)));
+
+    /**
+     * Number of earlier deployments of an application the regression gate compares a deployment with.
+     */
+    public static final int REGRESSION_WINDOW = 30;
+
+    /**
+     * Number of earlier deployments of an application needed before the regression gate applies.
+     */
+    public static final int REGRESSION_MIN_SAMPLES = 5;
+
+    /**
+     * Deployment outcome recorded in the metrics when an unchanged application is not submitted again.
+     */
+    private static final String UNCHANGED = "UNCHANGED";
+
     private String masterUrl;
     private String masterRestUrl;
     private String scalaVersion;
@@ -54,12 +155,37 @@ public class SparkDeployPublisher extends Recorder {
     private boolean killBeforeSubmit;
     private boolean failBuildOnFailure;
     private boolean verbose;
+    private int connectTimeout;
+    private int readTimeout;
+    private int requestTimeout;
+    private int maxConnections;
+    private List<SparkApplication> applications;
+    private int parallelism;
+    private boolean stageAppResource;
+    private boolean rollover;
+    private String healthCheckUrl;
+    private int healthCheckTimeout;
+    private boolean supervise;
+    private int leaseTimeout;
+    private boolean coalesce;
+    private boolean waitForResources;
+    private int resourceTimeout;
+    private String masterUiUrl;
+    private boolean useClusterPool;
+    private boolean streamDriverLogs;
+    private boolean sweepOrphans;
+    private boolean runOnAgent;
+    private boolean skipUnchanged;
+    private boolean pipelineKill;
+    private int regressionPercentile;
+    private boolean failOnRegression;
+    private transient List<DeploymentTemplate> templates;
 
     /**
      * Constructor for Spark Deploy Publisher.
      *
-     * @param masterUrl Spark Master URL (ex. spark://localhost:6066)
-     * @param masterRestUrl Custom Spark Master URL (HTTP / HTTPS REST URL) - Optional
+     * @param masterUrl Spark Master URL (ex. spark://localhost:6066), or comma separated masters of a HA cluster
+     * @param masterRestUrl Custom Spark Master URL (HTTP / HTTPS REST URL), or comma separated URLs - Optional
      * @param scalaVersion Spark Scala Version
      * @param appResource Application Resource - JAR File URL (HTTP / HDFS URL or file path if available to executors).
      * @param mainClass Fully qualified main class name.
@@ -84,6 +210,10 @@ public class SparkDeployPublisher extends Recorder {
         this.killBeforeSubmit = killBeforeSubmit;
         this.failBuildOnFailure = failBuildOnFailure;
         this.verbose = verbose;
+
+        // Fail on save rather than on deploy
+        DeploymentTemplate.parseArgs(this.appArgs);
+        DeploymentTemplate.parseProperties(this.sparkProperties);
     }
 
     @Override
@@ -92,356 +222,2095 @@ public class SparkDeployPublisher extends Recorder {
 
         logger.println("[Spark-Deployer] Starting Spark Deployment on cluster: " + masterUrl);
 
-        DeploymentManager deployer = new DeploymentManager(masterRestUrl, logger, verbose);
-
-        if (killBeforeSubmit) {
-            killPreviousSubmission(build, logger, deployer);
+        List<SparkApplication> apps = getAllApplications();
+        List<DeploymentTemplate> templates = getTemplates();
+        Map<String, String> variables = build.getEnvironment(listener);
+        VirtualChannel channel = null;
+        if (runOnAgent) {
+            channel = launcher.getChannel();
+            if (channel == null) {
+                throw new IOException("Cannot deploy from the node of the build, since it is offline");
+            }
         }
+        List<DeploymentResult> results;
 
-        // Submit
-        DeploymentRequest request = buildRequest(logger);
-        String submissionId = deployer.submit(request);
-
-        // Check State
-        String driverState = getDriverState(deployer, submissionId);
-
-        logger.println("[Spark-Deployer] Submitted Spark application under Submission ID " + submissionId + " - Driver State : " + driverState);
+        if (apps.size() == 1) {
+            results = Collections.singletonList(deploy(build, apps.get(0), templates.get(0), true, variables, channel,
+                    logger));
+        } else {
+            results = deployConcurrently(build, apps, templates, variables, channel, logger);
+        }
 
         // Handle Result
-        if (! ("ERROR".equals(driverState) || "ATTEMPTS_EXCEEDED_NO_RESPONSE".endsWith(driverState))) {
-            saveSubmissionId(submissionId, build);
-        } else {
-            // Failed
-            if (failBuildOnFailure) {
-                logger.println("[Spark-Deployer] Failing build since Spark Deployment was not successful. Enable verbose mode for more information.");
-                build.setResult(Result.FAILURE);
-                return false;
+        boolean failed = false;
+        List<DeploymentTiming> timings = new ArrayList<DeploymentTiming>();
+        for (DeploymentResult result : results) {
+            failed |= ! result.isSuccessful();
+            if (result.getTiming() != null) {
+                timings.add(result.getTiming());
             }
         }
+        if (! timings.isEmpty()) {
+            recordTimings(build, timings, logger);
+        }
+
+        if (failed && failBuildOnFailure) {
+            logger.println("[Spark-Deployer] Failing build since Spark Deployment was not successful. Enable verbose mode for more information.");
+            build.setResult(Result.FAILURE);
+            return false;
+        }
 
         return true;
     }
 
-    private String getDriverState(DeploymentManager deployer, String submissionId) throws IOException, InterruptedException {
-        String driverState = deployer.getDriverState(submissionId);
-        int attempts = 0;
-
-        while ("LOADING".equals(driverState)) {
-            attempts++;
-            driverState = deployer.getDriverState(submissionId);
-            Thread.sleep(2000 * attempts);
-
-            if (attempts > 4) {
-                driverState = "ATTEMPTS_EXCEEDED_NO_RESPONSE";
+    /**
+     * Attaches the timings of the deployments to the build and adds them to the timing index of the job. If the
+     * regression gate is enabled, they are first compared with the earlier deployments in the index.
+     * @param build build
+     * @param timings timings of the applications that were submitted
+     * @param logger logger
+     */
+    private void recordTimings(AbstractBuild<?, ?> build, List<DeploymentTiming> timings, PrintStream logger) {
+        build.addAction(new DeploymentTimingAction(timings));
+        try {
+            TimingIndex index = TimingIndex.forJob(build.getProject().getRootDir());
+            if (isRegressionGateEnabled()) {
+                checkRegressions(build, index, timings, logger);
             }
-        }
-        return driverState;
-    }
-
-    private void killPreviousSubmission(AbstractBuild<?, ?> build, PrintStream logger, DeploymentManager deployer) throws IOException {
-        String previousSubmission = getPreviousSubmissionId(build);
-        if (previousSubmission == null) {
-            logger.println("[Spark-Deployer] Kill before submit is enabled, but no previous submission data found. Skipping kill step");
-        } else {
-            deployer.kill(previousSubmission);
+            for (DeploymentTiming timing : timings) {
+                index.record(timing);
+            }
+        } catch (IOException e) {
+            logger.println("[Spark-Deployer] Failed to record deployment timings : " + e);
         }
     }
 
     /**
-     * Builds a Deployment Request using the configuration of the plugin.
+     * Marks the build as unstable (or failed) if the time to RUNNING of an application is above the configured
+     * percentile of its earlier deployments. The time is only known if the driver was seen RUNNING while it was
+     * watched, which the gate does not wait for; other deployments are not checked.
+     * @param build build
+     * @param index timing index of the job, without the timings of this build
+     * @param timings timings of this build
      * @param logger logger
-     * @return request
      */
-    private DeploymentRequest buildRequest(PrintStream logger) {
-        DeploymentRequest request = new DeploymentRequest();
-        request.setAppArgs(appArgs != null ? appArgs.trim().split("\\s+") : new String[] {});
-        request.setAppResource(appResource);
-        request.setMainClass(mainClass);
-
-        // Default Properties
-        request.getSparkProperties().put("spark.jars", request.getAppResource());
-        request.getSparkProperties().put("spark.driver.supervise", "false");
-        request.getSparkProperties().put("spark.app.name", request.getMainClass());
-        request.getSparkProperties().put("spark.master", masterUrl);
-
-        // Environment Variables
-        request.getEnvironmentVariables().put("SPARK_SCALA_VERSION", scalaVersion);
-        request.getEnvironmentVariables().put("SPARK_ENV_LOADED", "1");
-
-        // Add spark properties
-        String[] props = sparkProperties.split(",");
-        for (String prop : props) {
-            String[] pair = prop.split("=");
-            if (request.getSparkProperties().containsKey(pair[0])) {
-                // Log about overriding properties
-                logger.println("[Spark-Deployer] Overriding Spark Property '" + pair[0] + "' : Previous Value = " +
-                        request.getSparkProperties().get(pair[0]) + ", New Value = " + pair[1] + System.lineSeparator());
+    private void checkRegressions(AbstractBuild<?, ?> build, TimingIndex index, List<DeploymentTiming> timings,
+                                  PrintStream logger) {
+        Result regressed = failOnRegression ? Result.FAILURE : Result.UNSTABLE;
+        for (DeploymentTiming timing : timings) {
+            if (timing.getRunningMillis() == DeploymentTiming.UNKNOWN) {
+                logger.println("[Spark-Deployer] Not checking " + timing.getApp() + " for regressions, since its "
+                        + "driver was not seen RUNNING (" + timing.getDriverState() + ")");
+                continue;
+            }
+            List<Long> earlier = index.getRunningMillis(timing.getApp(), build.getNumber(), REGRESSION_WINDOW);
+            if (earlier.size() < REGRESSION_MIN_SAMPLES) {
+                logger.println("[Spark-Deployer] Not checking " + timing.getApp() + " for regressions, since it has "
+                        + earlier.size() + " earlier deployments that ran, out of " + REGRESSION_MIN_SAMPLES
+                        + " needed");
+                continue;
+            }
+            long threshold = TimingIndex.percentile(earlier, regressionPercentile);
+            if (timing.getRunningMillis() > threshold) {
+                logger.println("[Spark-Deployer] Time to RUNNING of " + timing.getApp() + " regressed : "
+                        + timing.getRunningMillis() + " ms, above the p" + regressionPercentile + " of " + threshold
+                        + " ms over the last " + earlier.size() + " deployments. Marking build as " + regressed);
+                build.setResult(regressed);
             }
-            request.getSparkProperties().put(pair[0].trim(), pair[1].trim());
         }
-        return request;
     }
 
     /**
-     * Returns the last submission ID if exists, or null.
-     * @param build build reference
-     * @return last submission ID or null
-     * @throws IOException
+     * Returns true if builds are checked for regressions of the time to RUNNING.
+     * @return true if enabled
      */
-    private String getPreviousSubmissionId(AbstractBuild<?, ?> build) throws IOException {
-
-        String submissionId = null;
-        File root = build.getProject().getRootDir();
-        File file = new File(root, SPARK_DEPLOY_SUBMISSION_FILE);
-
-        if (file.exists()) {
-            BufferedReader reader = null;
-            try {
-                reader = new BufferedReader(new InputStreamReader(new FileInputStream(file)));
-                String text = reader.readLine();
-                if (text != null && ! text.trim().isEmpty()) {
-                    submissionId =  text;
-                }
-            } finally {
-                if (reader != null) {
-                    reader.close();
-                }
-            }
-        }
-        return submissionId;
+    private boolean isRegressionGateEnabled() {
+        return regressionPercentile > 0 && regressionPercentile <= 100;
     }
 
     /**
-     * Saves the given submission ID so that it can be fetched later on. This is stored in JOB ROOT.
-     * @param submissionid submission ID to save
-     * @param build build reference
-     * @throws IOException
+     * Deploys the given applications concurrently, limited by the configured parallelism. Output of each application
+     * is written to the build log as one block once that application completes.
+     * @param build build
+     * @param apps applications to deploy
+     * @param templates templates of the applications
+     * @param variables build variables
+     * @param channel channel to the node of the build, or null to deploy from the controller
+     * @param logger logger
+     * @return results, in the order of the applications
+     * @throws InterruptedException
      */
-    private void saveSubmissionId(String submissionid, AbstractBuild<?, ?> build) throws IOException {
-        File root =  build.getProject().getRootDir();
-        File file = new File(root, SPARK_DEPLOY_SUBMISSION_FILE);
+    private List<DeploymentResult> deployConcurrently(final AbstractBuild<?, ?> build, List<SparkApplication> apps,
+                                                      List<DeploymentTemplate> templates,
+                                                      final Map<String, String> variables,
+                                                      final VirtualChannel channel,
+                                                      final PrintStream logger) throws InterruptedException {
+        int threads = Math.min(apps.size(), parallelism > 0 ? parallelism : DEFAULT_PARALLELISM);
+        logger.println("[Spark-Deployer] Deploying " + apps.size() + " applications, " + threads + " at a time");
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads,
+                new DaemonThreadFactory("spark-deploy-" + build.getFullDisplayName()));
+        List<Future<DeploymentResult>> futures = new ArrayList<Future<DeploymentResult>>();
 
-        PrintWriter writer = null;
         try {
-            writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file)));
-            writer.write(submissionid);
-        } finally {
-            if (writer != null) {
-                writer.close();
+            for (int i = 0; i < apps.size(); i++) {
+                final SparkApplication app = apps.get(i);
+                final DeploymentTemplate template = templates.get(i);
+                final boolean primary = i == 0;
+                futures.add(executor.submit(new Callable<DeploymentResult>() {
+                    @Override
+                    public DeploymentResult call() throws Exception {
+                        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                        PrintStream appLogger = new PrintStream(buffer, true, "UTF-8");
+                        try {
+                            return deploy(build, app, template, primary, variables, channel, appLogger);
+                        } catch (Exception e) {
+                            appLogger.println("[Spark-Deployer] Deployment of " + app.getMainClass() + " failed : " + e);
+                            return new DeploymentResult(app.getMainClass(), null, null, e.toString());
+                        } finally {
+                            appLogger.flush();
+                            synchronized (logger) {
+                                logger.println("[Spark-Deployer] ---- " + app.getMainClass() + " ----");
+                                logger.print(buffer.toString("UTF-8"));
+                            }
+                        }
+                    }
+                }));
             }
-        }
-    }
 
-    @Override
-    public BuildStepMonitor getRequiredMonitorService() {
-        return BuildStepMonitor.NONE;
+            List<DeploymentResult> results = new ArrayList<DeploymentResult>();
+            for (Future<DeploymentResult> future : futures) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+
+            logger.println("[Spark-Deployer] Deployment summary :");
+            for (DeploymentResult result : results) {
+                logger.println("[Spark-Deployer]   " + result);
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
     }
 
     /**
-     * Plugin Descriptor.
+     * Kills the previous submission (if enabled), submits the given application and waits for its driver. In rollover
+     * mode, the previous submission is killed only once the new driver is running and healthy.
+     * @param build build
+     * @param app application
+     * @param template template of the application
+     * @param primary whether this is the main application of the publisher
+     * @param variables build variables, substituted for placeholders
+     * @param channel channel to the node of the build, which kills, submits and waits for the driver, or null to do
+     *                so from the controller
+     * @param logger logger
+     * @return result
+     * @throws IOException
+     * @throws InterruptedException
      */
-    @Extension
-    @SuppressWarnings("unused")
-    public static class Descriptor extends BuildStepDescriptor<Publisher> {
+    private DeploymentResult deploy(AbstractBuild<?, ?> build, SparkApplication app, DeploymentTemplate template,
+                                    boolean primary, Map<String, String> variables, VirtualChannel channel,
+                                    PrintStream logger)
+            throws IOException, InterruptedException {
+        SubmissionHistory history = getSubmissionHistory(build, app, primary);
 
-        @Override
-        public boolean isApplicable(Class<? extends AbstractProject> jobType) {
-            // Supports all project types
-            return true;
-        }
+        // Stage before killing, so that a failed upload leaves the previous submission running
+        String stagedResource = stageAppResource ? stageAppResource(build, app, logger) : null;
 
-        @Override
-        public String getDisplayName() {
-            return "Deploy to Apache Spark";
+        // Only one deployment of the application kills and submits at a time, whichever cluster of the pool it uses
+        DeploymentLeases.Lease lease = acquireLease(build, app, logger);
+        if (lease.getOutcome() == DeploymentLeases.Outcome.COALESCED) {
+            logger.println("[Spark-Deployer] Skipping deployment of " + app.getMainClass() + ", since it is " +
+                    "superseded by " + lease.getHolder());
+            return new DeploymentResult(app.getMainClass(), null, null, null);
         }
 
-        /**
-         * Validate Master URL.
-         * @param value value
-         * @return validation result
-         */
-        public FormValidation doCheckMasterUrl(@QueryParameter String value) {
-            String master = value.trim().toLowerCase();
-            if (master.isEmpty()) {
-                return FormValidation.error("Master URL is required");
+        try {
+            for (String warning : template.getWarnings()) {
+                logger.println("[Spark-Deployer] " + warning);
             }
-
-            if (master.startsWith("mesos") || master.startsWith("yarn")) {
-                return FormValidation.error("This plugin currently supports only Spark Standalone clusters. " +
-                        "Mesos / YARN support is not available yet.");
+            DeploymentRequest request = template.render(variables, stagedResource);
+            // Fingerprint before placement, so that the cluster chosen from the pool does not count as a change
+            String fingerprint = skipUnchanged ? fingerprintOf(build, request, stagedResource, logger) : null;
+            if (fingerprint != null) {
+                DeploymentResult unchanged = skipIfUnchanged(history, app, request, fingerprint, logger);
+                if (unchanged != null) {
+                    return unchanged;
+                }
             }
-            master = Utils.getActualSparkMasterUrl(master);
 
-            try {
-                new URL(master);
-            } catch (MalformedURLException e) {
-                return FormValidation.error("Master URL is not a valid URL", e);
-            }
+            SubmissionRecord previous = history.getLatestLive(app.getMainClass());
+            boolean killPrevious = killBeforeSubmit && ! rollover;
 
-            return FormValidation.ok();
-        }
+            ClusterTarget cluster = useClusterPool ? chooseCluster(request, logger) : null;
+            if (cluster != null) {
+                request = template.render(variables, stagedResource, cluster.getMasterUrl());
+            }
+            DeploymentManager deployer = new DeploymentManager(
+                    cluster != null ? cluster.getMasterRestUrl() : masterRestUrl, logger, verbose,
+                    getTransportSettings());
+            List<String> masterUiUrls = cluster != null ? cluster.getMasterUiUrls() : getMasterUiUrls();
 
-        /**
-         * Validate Master REST URL if specified.
-         * @param value value
-         * @return validation result
-         */
-        public FormValidation doCheckMasterRestUrl(@QueryParameter String value) {
-            String masterRest = value.trim();
-            if (masterRest.isEmpty()) {
-                // Optional Field
-                return FormValidation.ok();
+            if (waitForResources) {
+                // Fail before killing if the cluster can never run the application
+                ClusterAdmission.getInstance().checkCapacity(masterUiUrls, request, logger);
             }
 
-            try {
-                new URL(masterRest);
-            } catch (MalformedURLException e) {
-                return FormValidation.error("Master REST URL is not a valid URL", e);
+            // In pipelined mode, the request is submitted while the kill is in flight. It starts only once the
+            // deployment can no longer fail for reasons known beforehand, and is always joined
+            AtomicLong killDuration = new AtomicLong(DeploymentTiming.UNKNOWN);
+            DeploymentFuture<String> killing = killPrevious && pipelineKill && channel == null ?
+                    killInBackground(history, previous, killDuration, logger) : null;
+            boolean killHere = killPrevious && channel == null && killing == null;
+            long killMillis = DeploymentTiming.UNKNOWN;
+            if (killHere) {
+                long killStart = System.currentTimeMillis();
+                killPreviousSubmission(history, previous, logger, deployer);
+                killMillis = previous != null ? System.currentTimeMillis() - killStart : DeploymentTiming.UNKNOWN;
             }
 
-            return FormValidation.ok();
-        }
+            String appName = request.getSparkProperties().get("spark.app.name");
+            String submissionId;
+            String driverState;
+            long submittedAt;
+            long submitMillis;
+            long finishedAt;
+            AtomicLong firstStateAt = new AtomicLong();
+            String killFailure = null;
+            try {
+                if (sweepOrphans) {
+                    // Before admission, so that resources of the swept drivers count as free
+                    sweepOrphans(history, app.getMainClass(), killHere ? null : previous, logger);
+                }
 
-        /**
-         * Validate Spark Properties if specified.
-         *
-         * @param value value
-         * @return validation result
-         */
-        public FormValidation doCheckSparkProperties(@QueryParameter String value) {
-            String sparkProps = value.trim();
-            if (sparkProps.isEmpty()) {
-                // Optional Field
-                return FormValidation.ok();
-            }
+                if (channel != null) {
+                    AgentDeployment.Outcome outcome = deployOnAgent(channel, build, app, history,
+                            killPrevious ? previous : null, deployer, request, fingerprint, masterUiUrls, logger);
+                    submissionId = outcome.getSubmissionId();
+                    driverState = outcome.getDriverState();
+                    submittedAt = outcome.getSubmittedAt();
+                    submitMillis = outcome.getSubmitMillis();
+                    finishedAt = outcome.getFinishedAt();
+                    killMillis = outcome.getKillMillis();
+                    firstStateAt.set(outcome.getFirstStateAt());
+                } else {
+                    // Submit
+                    if (waitForResources) {
+                        ClusterAdmission.getInstance().admit(masterUiUrls, request, getResourceTimeoutMillis(), logger);
+                    }
+                    submittedAt = System.currentTimeMillis();
+                    submissionId = deployer.submit(request);
+                    submitMillis = System.currentTimeMillis() - submittedAt;
+                    // Recorded before waiting, so that the next deployment kills it even if the wait fails
+                    history.record(new SubmissionRecord(build.getNumber(), submissionId, app.getMainClass(),
+                            deployer.getMasterRestUrl(), "SUBMITTED", submittedAt, System.currentTimeMillis(),
+                            supervise ? request.toJson() : null, fingerprint));
 
-            String[] tokens = sparkProps.split(",");
+                    // Check State
+                    DeploymentFuture<String> watching = rollover ?
+                            watchUntilRunning(deployer, submissionId, firstStateAt) :
+                            watchDriverState(deployer, submissionId, firstStateAt);
+                    if (streamDriverLogs) {
+                        new DriverLogTailer(deployer, submissionId, masterUiUrls, logger).follow(watching);
+                    }
+                    driverState = watching.await();
+                    finishedAt = System.currentTimeMillis();
+                    history.updateDriverState(submissionId, driverState);
 
-            for (String token :  tokens) {
-                String[] pair = token.split("=");
-                if (pair.length != 2) {
-                    return FormValidation.error("Invalid Spark Properties. It should be = separated key value pairs " +
-                            "combined using a comma. Example: spark.driver.supervise=false,spark.executor.memory=2G");
+                    if (verbose) {
+                        logger.println("[Spark-Deployer] VERBOSE : Connection statistics : " +
+                                deployer.getStatistics());
+                    }
+                }
+                DeploymentMetrics.getInstance().recordDeployment(deployer.getMasterRestUrl(), driverState,
+                        finishedAt - submittedAt);
+            } catch (InterruptedException e) {
+                if (killing != null) {
+                    // Stop watching the killed driver, since the build is aborted
+                    killing.cancel(true);
+                }
+                throw e;
+            } finally {
+                if (killing != null && ! killing.isCancelled()) {
+                    // Report the outcome of the kill, even if the submission failed
+                    killFailure = joinKill(killing, previous, logger);
+                    killMillis = killDuration.get();
                 }
             }
+            DeploymentTiming timing = new DeploymentTiming(build.getNumber(), app.getMainClass(), driverState,
+                    submittedAt, killMillis, submitMillis,
+                    firstStateAt.get() > 0 ? firstStateAt.get() - submittedAt : DeploymentTiming.UNKNOWN,
+                    "RUNNING".equals(driverState) ? finishedAt - submittedAt : DeploymentTiming.UNKNOWN,
+                    getArtifactSize(build, stagedResource != null ? app.getAppResource() : request.getAppResource()));
 
-            return FormValidation.ok();
-        }
+            logger.println("[Spark-Deployer] Submitted Spark application under Submission ID " + submissionId + " - Driver State : " + driverState);
 
-        /**
-         * Validates App Resource.
-         * @param value value
-         * @return validation result
-         */
-        public FormValidation doCheckAppResource(@QueryParameter String value) {
-            String appResource = value.trim();
-            if (appResource.isEmpty()) {
-                return FormValidation.error("Application Resource is required");
+            if (rollover) {
+                return completeRollover(history, previous, deployer, appName, submissionId, driverState, logger)
+                        .withTiming(timing);
             }
-            return FormValidation.ok();
-        }
 
-        /**
-         * Validates Main Class.
-         * @param value value
-         * @return validation result
-         */
-        public FormValidation doCheckMainClass(@QueryParameter String value) {
-            String mainClass = value.trim();
-            if (mainClass.isEmpty()) {
-                return FormValidation.error("Main Class is required");
+            if (FAILED_STATES.contains(driverState)) {
+                return new DeploymentResult(appName, submissionId, driverState, "Driver did not start", timing);
             }
-            return FormValidation.ok();
+            if (killFailure != null) {
+                return new DeploymentResult(appName, submissionId, driverState, killFailure, timing);
+            }
+
+            return new DeploymentResult(appName, submissionId, driverState, null, timing);
+        } finally {
+            lease.release();
         }
     }
 
     /**
-     * Returns master url.
-     *
-     * @return master url
+     * Returns the fingerprint of the given request, including the digest of its application resource.
+     * @param build build
+     * @param request request
+     * @param stagedResource URL of the staged application resource, or null if not staged
+     * @param logger logger
+     * @return fingerprint, or null if the application resource is neither staged nor in the workspace, so that its
+     *         content is not known
+     * @throws IOException if the application resource cannot be read
+     * @throws InterruptedException
      */
-    @SuppressWarnings("unused")
-    public String getMasterUrl() {
-        return masterUrl;
+    private String fingerprintOf(AbstractBuild<?, ?> build, DeploymentRequest request, String stagedResource,
+                                 PrintStream logger) throws IOException, InterruptedException {
+        if (stagedResource != null) {
+            // Staged artifacts are named after their digest
+            return request.fingerprint(stagedResource);
+        }
+
+        String path = getLocalPath(request.getAppResource());
+        FilePath workspace = build.getWorkspace();
+        FilePath artifact = path != null && workspace != null ? workspace.child(path) : null;
+        if (artifact == null || ! artifact.exists()) {
+            logger.println("[Spark-Deployer] Cannot tell whether " + request.getAppResource() + " changed, since it " +
+                    "is not in the workspace. Deploying");
+            return null;
+        }
+        return request.fingerprint(ArtifactStager.digest(artifact));
     }
 
     /**
-     * Returns master rest url.
-     *
-     * @return master rest url
+     * Returns the size of the given application resource if it is a file in the workspace of the build.
+     * @param build build
+     * @param resource application resource
+     * @return size in bytes, or {@link DeploymentTiming#UNKNOWN} if the resource is not in the workspace
+     * @throws InterruptedException
      */
-    @SuppressWarnings("unused")
-    public String getMasterRestUrl() {
-        return masterRestUrl;
+    private static long getArtifactSize(AbstractBuild<?, ?> build, String resource) throws InterruptedException {
+        String path = getLocalPath(resource);
+        FilePath workspace = build.getWorkspace();
+        if (path == null || workspace == null) {
+            return DeploymentTiming.UNKNOWN;
+        }
+        try {
+            FilePath artifact = workspace.child(path);
+            return artifact.exists() ? artifact.length() : DeploymentTiming.UNKNOWN;
+        } catch (IOException e) {
+            return DeploymentTiming.UNKNOWN;
+        }
     }
 
     /**
-     * Returns scala version.
-     *
-     * @return scala version
+     * Returns the path of the given application resource if it is a file, relative to the workspace or absolute.
+     * @param resource application resource
+     * @return path, or null if the resource is a URL of another scheme
      */
-    @SuppressWarnings("unused")
-    public String getScalaVersion() {
-        return scalaVersion;
+    private static String getLocalPath(String resource) {
+        if (resource.startsWith("file://")) {
+            return resource.substring("file://".length());
+        }
+        if (resource.startsWith("file:")) {
+            return resource.substring("file:".length());
+        }
+        return resource.matches("[a-zA-Z][a-zA-Z0-9+.-]*:.*") ? null : resource;
     }
 
     /**
-     * Returns app resource.
-     *
-     * @return app resource
+     * Skips the deployment if the latest submission of the application was made from the same request, and its driver
+     * is still running.
+     * @param history submission history
+     * @param app application
+     * @param request request
+     * @param fingerprint fingerprint of the request
+     * @param logger logger
+     * @return result of the skipped deployment, or null to deploy
+     * @throws IOException if the submission history cannot be updated
      */
-    @SuppressWarnings("unused")
-    public String getAppResource() {
-        return appResource;
+    private DeploymentResult skipIfUnchanged(SubmissionHistory history, SparkApplication app,
+                                             DeploymentRequest request, String fingerprint, PrintStream logger)
+            throws IOException {
+        SubmissionRecord previous = history.getLatestLive(app.getMainClass());
+        if (previous == null || ! fingerprint.equals(previous.getFingerprint())) {
+            return null;
+        }
+
+        DeploymentManager deployer = new DeploymentManager(
+                previous.getMaster() != null ? previous.getMaster() : masterRestUrl, logger, verbose,
+                getTransportSettings());
+        String driverState;
+        try {
+            driverState = deployer.getDriverState(previous.getSubmissionId());
+        } catch (IOException e) {
+            logger.println("[Spark-Deployer] Could not check the driver of unchanged submission "
+                    + previous.getSubmissionId() + " : " + e + ". Deploying");
+            return null;
+        } catch (RuntimeException e) {
+            logger.println("[Spark-Deployer] Could not check the driver of unchanged submission "
+                    + previous.getSubmissionId() + " : " + e + ". Deploying");
+            return null;
+        }
+        history.updateDriverState(previous.getSubmissionId(), driverState);
+        if (! "RUNNING".equals(driverState)) {
+            logger.println("[Spark-Deployer] " + app.getMainClass() + " is unchanged, but its driver "
+                    + previous.getSubmissionId() + " is " + driverState + ". Deploying");
+            return null;
+        }
+
+        logger.println("[Spark-Deployer] " + app.getMainClass() + " is unchanged since build #"
+                + previous.getBuildNumber() + ", and its driver " + previous.getSubmissionId()
+                + " is RUNNING. Skipping deployment");
+        DeploymentMetrics.getInstance().recordDeployment(deployer.getMasterRestUrl(), UNCHANGED, 0);
+        return new DeploymentResult(request.getSparkProperties().get("spark.app.name"), previous.getSubmissionId(),
+                driverState, null);
     }
 
     /**
-     * Returns main class.
-     *
-     * @return main class
+     * Kills the previous submission, submits and waits for the driver on the node of the build. Only the outcome is
+     * sent back to the controller, which records the kill and the submission, even if the deployment failed or was
+     * interrupted after submitting.
+     * @param channel channel to the node of the build
+     * @param build build
+     * @param app application
+     * @param history submission history
+     * @param previous submission to kill before submitting, or null
+     * @param deployer deployer for the cluster to submit to
+     * @param request request
+     * @param fingerprint fingerprint of the request, or null
+     * @param masterUiUrls web UI URLs of the masters
+     * @param logger logger
+     * @return outcome
+     * @throws IOException if the deployment failed
+     * @throws InterruptedException
      */
-    @SuppressWarnings("unused")
-    public String getMainClass() {
-        return mainClass;
+    private AgentDeployment.Outcome deployOnAgent(VirtualChannel channel, AbstractBuild<?, ?> build,
+                                                  SparkApplication app, SubmissionHistory history,
+                                                  SubmissionRecord previous, DeploymentManager deployer,
+                                                  DeploymentRequest request, String fingerprint,
+                                                  List<String> masterUiUrls, PrintStream logger)
+            throws IOException, InterruptedException {
+        logger.println("[Spark-Deployer] Deploying from the node of the build");
+        AgentDeployment.Outcome outcome = channel.call(new AgentDeployment(deployer.getMasterRestUrl(),
+                getTransportSettings(), verbose, request, new StreamTaskListener(logger, Charset.forName("UTF-8")))
+                .killBeforeSubmit(previous)
+                .untilRunning(rollover)
+                .masterUiUrls(masterUiUrls)
+                .waitForResources(waitForResources ? getResourceTimeoutMillis() : 0)
+                .streamDriverLogs(streamDriverLogs));
+
+        if (outcome.isPreviousKilled()) {
+            history.updateDriverState(previous.getSubmissionId(), "KILLED");
+        }
+        if (outcome.getSubmissionId() != null) {
+            // A driver that was not watched to the end is UNKNOWN, which the next deployment still kills
+            history.record(new SubmissionRecord(build.getNumber(), outcome.getSubmissionId(), app.getMainClass(),
+                    outcome.getMasterRestUrl(), outcome.getDriverState() != null ? outcome.getDriverState() : "UNKNOWN",
+                    outcome.getSubmittedAt(), System.currentTimeMillis(), supervise ? request.toJson() : null,
+                    fingerprint));
+        }
+        if (outcome.isInterrupted()) {
+            throw new InterruptedException("Deployment on the node of the build was interrupted");
+        }
+        if (outcome.getError() != null) {
+            throw new IOException("Deployment on the node of the build failed : " + outcome.getError());
+        }
+        return outcome;
     }
 
-    /**
-     * Returns app args.
-     *
-     * @return app args
-     */
-    @SuppressWarnings("unused")
-    public String getAppArgs() {
-        return appArgs;
+    private long getResourceTimeoutMillis() {
+        return (resourceTimeout > 0 ? resourceTimeout : DEFAULT_RESOURCE_TIMEOUT) * 1000L;
     }
 
     /**
-     * Returns spark properties.
-     *
-     * @return spark properties
+     * Returns the web UI URLs of the Spark Masters, which report the cluster state.
+     * @return web UI URLs
      */
-    public String getSparkProperties() {
-        return sparkProperties;
+    private List<String> getMasterUiUrls() {
+        return masterUiUrl != null ?
+                Utils.getActualSparkMasterUrls(masterUiUrl) : ClusterAdmission.getMasterUiUrls(masterRestUrl);
     }
 
     /**
-     * Is kill before submit.
-     *
-     * @return boolean
+     * Chooses the least loaded cluster of the global cluster pool for the given request.
+     * @param request request
+     * @param logger logger
+     * @return chosen cluster, or null to deploy to the cluster of this publisher
+     * @throws IOException if a resource property of the request is malformed
      */
-    @SuppressWarnings("unused")
-    public boolean isKillBeforeSubmit() {
-        return killBeforeSubmit;
-    }
+    private ClusterTarget chooseCluster(DeploymentRequest request, PrintStream logger) throws IOException {
+        List<SparkCluster> clusters = getDescriptor().getClusters();
+        if (clusters.isEmpty()) {
+            logger.println("[Spark-Deployer] Cluster pool is empty. Deploying to " + masterUrl);
+            return null;
+        }
 
-    /**
-     * Is fail build on failure.
+        ResourceDemand demand;
+        try {
+            demand = ResourceDemand.of(request);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage());
+        }
+        List<ClusterTarget> targets = new ArrayList<ClusterTarget>();
+        for (SparkCluster cluster : clusters) {
+            targets.add(cluster.toTarget());
+        }
+
+        ClusterTarget chosen = ClusterPlacement.choose(targets, demand, logger);
+        if (chosen == null) {
+            logger.println("[Spark-Deployer] No cluster of the pool can take the application. Deploying to " +
+                    masterUrl);
+            return null;
+        }
+        logger.println("[Spark-Deployer] Deploying to cluster " + chosen);
+        if (! waitForResources) {
+            // Admission reserves the resources otherwise
+            ClusterAdmission.getInstance().reserve(chosen.getMasterUiUrls(), demand, logger);
+        }
+        return chosen;
+    }
+
+    /**
+     * Acquires the deployment lease of the given application, waiting for other deployments of it to complete. With
+     * the cluster pool, the lease of the application is taken on every cluster it may be deployed to, so that pool
+     * deployments also exclude direct deployments of the same application to any of those clusters.
+     * @param build build
+     * @param app application
+     * @param logger logger
+     * @return lease, which is either acquired or coalesced
+     * @throws IOException if the lease could not be acquired in time
+     * @throws InterruptedException
+     */
+    private DeploymentLeases.Lease acquireLease(AbstractBuild<?, ?> build, SparkApplication app, PrintStream logger)
+            throws IOException, InterruptedException {
+        int timeout = leaseTimeout > 0 ? leaseTimeout : DEFAULT_LEASE_TIMEOUT;
+        List<String> masters = new ArrayList<String>();
+        for (ClusterTarget target : getSweepTargets()) {
+            masters.add(target.getMasterRestUrl());
+        }
+        DeploymentLeases.Lease lease = DeploymentLeases.getInstance().acquireAll(masters, app.getMainClass(), build.getFullDisplayName(), build.getTimeInMillis(), timeout * 1000L,
+                coalesce);
+        if (lease.getOutcome() == DeploymentLeases.Outcome.TIMED_OUT) {
+            throw new IOException("Timed out after " + timeout + " seconds waiting for the deployment of " +
+                    app.getMainClass() + " by " + lease.getHolder());
+        }
+        if (lease.getWaitMillis() > 0) {
+            logger.println("[Spark-Deployer] Waited " + lease.getWaitMillis() + " ms for other deployments of " +
+                    app.getMainClass());
+        }
+        return lease;
+    }
+
+    /**
+     * Stages the application resource, which is a path relative to the workspace, using the staging store configured
+     * globally.
+     * @param build build
+     * @param app application
+     * @param logger logger
+     * @return URL of the staged resource
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    private String stageAppResource(AbstractBuild<?, ?> build, SparkApplication app, PrintStream logger)
+            throws IOException, InterruptedException {
+        Descriptor descriptor = getDescriptor();
+        if (descriptor.getStagingLocation() == null || descriptor.getStagingLocation().isEmpty()) {
+            throw new IOException("Artifact staging is enabled, but no staging location is configured in the global " +
+                    "configuration");
+        }
+        FilePath workspace = build.getWorkspace();
+        if (workspace == null) {
+            throw new IOException("Artifact staging is enabled, but the build has no workspace");
+        }
+
+        ArtifactStager stager = ArtifactStager.getInstance(descriptor.getStagingLocation(),
+                descriptor.getStagingUrl(), descriptor.getStagingMaxSize() * 1024L * 1024L,
+                new File(Jenkins.getInstance().getRootDir(), STAGING_INDEX_FILE));
+        return stager.stage(workspace.child(app.getAppResource()), logger);
+    }
+
+    /**
+     * Returns the main application of this publisher, followed by any additional applications.
+     * @return applications
+     */
+    private List<SparkApplication> getAllApplications() {
+        List<SparkApplication> apps = new ArrayList<SparkApplication>();
+        apps.add(new SparkApplication(appResource, mainClass, appArgs, sparkProperties));
+        if (applications != null) {
+            apps.addAll(applications);
+        }
+        return apps;
+    }
+
+    /**
+     * Returns the name of the file that kept the last submission of the given application before the submission
+     * history was introduced. The main application used {@link #SPARK_DEPLOY_SUBMISSION_FILE}.
+     * @param app application
+     * @param primary whether this is the main application of the publisher
+     * @return file name
+     */
+    private static String getSubmissionFileName(SparkApplication app, boolean primary) {
+        if (primary) {
+            return SPARK_DEPLOY_SUBMISSION_FILE;
+        }
+        return SPARK_DEPLOY_SUBMISSION_FILE + "-" + app.getMainClass().replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+
+    /**
+     * Builds the transport settings for this cluster. Timeouts are configured in seconds.
+     * @return transport settings
+     */
+    private TransportSettings getTransportSettings() {
+        return new TransportSettings(connectTimeout * 1000, readTimeout * 1000, requestTimeout * 1000, maxConnections);
+    }
+
+    /**
+     * Watches the driver until it leaves the LOADING state. Polling is done by the shared {@link DriverStatePoller},
+     * which batches status checks of all builds per master.
+     * @param deployer deployer
+     * @param submissionId submission ID
+     * @param firstStateAt set to the time the first driver state is known
+     * @return future driver state
+     */
+    private DeploymentFuture<String> watchDriverState(DeploymentManager deployer, String submissionId,
+                                                      AtomicLong firstStateAt) {
+        return DriverStatePoller.getInstance().watch(deployer, submissionId, DriverStatePoller.DEFAULT_PENDING_STATES,
+                DriverStatePoller.DEFAULT_MAX_ATTEMPTS, firstStateClock(firstStateAt));
+    }
+
+    /**
+     * Watches the driver of a rollover until it runs, for longer than a regular deployment waits.
+     * @param deployer deployer
+     * @param submissionId submission ID
+     * @param firstStateAt set to the time the first driver state is known
+     * @return future driver state
+     */
+    private DeploymentFuture<String> watchUntilRunning(DeploymentManager deployer, String submissionId,
+                                                       AtomicLong firstStateAt) {
+        return DriverStatePoller.getInstance().watch(deployer, submissionId, DriverStatePoller.STARTING_STATES,
+                STARTING_MAX_ATTEMPTS, firstStateClock(firstStateAt));
+    }
+
+    /**
+     * Returns a callback for {@link DriverStatePoller} that records the time the first driver state is known.
+     * @param firstStateAt set to the time in milliseconds, and left at 0 if the first poll fails
+     * @return callback
+     */
+    static DeploymentFuture.Callback<String> firstStateClock(final AtomicLong firstStateAt) {
+        return new DeploymentFuture.Callback<String>() {
+            @Override
+            public void onSuccess(String driverState) {
+                firstStateAt.compareAndSet(0, System.currentTimeMillis());
+            }
+
+            @Override
+            public void onFailure(Throwable cause) {
+                // Reported by the watch
+            }
+        };
+    }
+
+    /**
+     * Completes a rollover. If the new driver is running and passes the health check, the previous submission is
+     * killed. Otherwise, the new submission is killed and the previous one is left running.
+     * @param history submission history
+     * @param previous previous submission, or null
+     * @param deployer deployer
+     * @param appName application name
+     * @param submissionId new submission ID
+     * @param driverState driver state of the new submission
+     * @param logger logger
+     * @return result
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    private DeploymentResult completeRollover(SubmissionHistory history, SubmissionRecord previous,
+                                              DeploymentManager deployer, String appName, String submissionId,
+                                              String driverState, PrintStream logger)
+            throws IOException, InterruptedException {
+        String failure = null;
+        if (! "RUNNING".equals(driverState)) {
+            failure = "Driver did not reach the RUNNING state";
+        } else if (healthCheckUrl != null && ! healthCheckUrl.isEmpty() && ! HealthCheck.await(healthCheckUrl,
+                (healthCheckTimeout > 0 ? healthCheckTimeout : DEFAULT_HEALTH_CHECK_TIMEOUT) * 1000L, logger)) {
+            failure = "Health check failed";
+        }
+
+        if (failure != null) {
+            logger.println("[Spark-Deployer] Rollover failed : " + failure + ". Rolling back to "
+                    + (previous == null ? "no previous submission" : "previous submission " + previous.getSubmissionId()));
+            if (! SubmissionRecord.TERMINAL_STATES.contains(driverState)) {
+                try {
+                    if (deployer.kill(submissionId)) {
+                        history.updateDriverState(submissionId, "KILLED");
+                    }
+                } catch (IOException e) {
+                    logger.println("[Spark-Deployer] Failed to kill new submission " + submissionId + " : " + e);
+                } catch (RuntimeException e) {
+                    logger.println("[Spark-Deployer] Failed to kill new submission " + submissionId + " : " + e);
+                }
+            }
+            return new DeploymentResult(appName, submissionId, driverState, failure);
+        }
+
+        logger.println("[Spark-Deployer] New submission " + submissionId + " is running. Retiring previous submission");
+        killPreviousSubmission(history, previous, logger, deployer);
+        return new DeploymentResult(appName, submissionId, driverState, null);
+    }
+
+    /**
+     * Kills the previous submission without waiting for it, and watches its driver until it stops. The submission
+     * history is updated once the master has killed it, whether or not the deployment gets that far.
+     * @param history submission history
+     * @param previous previous submission, or null
+     * @param killDuration set to the time from sending the kill until the driver stopped, or the kill failed, before
+     *                     the returned future completes; left {@link DeploymentTiming#UNKNOWN} if there is no
+     *                     previous submission
+     * @param logger logger
+     * @return future state of the killed driver, which is null if there is no previous submission or the master did
+     *         not kill it
+     */
+    private DeploymentFuture<String> killInBackground(final SubmissionHistory history,
+                                                      final SubmissionRecord previous, final AtomicLong killDuration,
+                                                      final PrintStream logger) {
+        if (previous == null) {
+            logger.println("[Spark-Deployer] No previous submission data found. Skipping kill step");
+            return DeploymentFuture.completed(null);
+        }
+
+        final String submissionId = previous.getSubmissionId();
+        final DeploymentManager deployer = new DeploymentManager(
+                previous.getMaster() != null ? previous.getMaster() : masterRestUrl, logger, verbose,
+                getTransportSettings());
+        logger.println("[Spark-Deployer] Killing previous submission " + submissionId + " while submitting");
+        final long killStart = System.currentTimeMillis();
+        DeploymentFuture<String> stopped = deployer.killAsync(submissionId)
+                .thenCompose(new DeploymentFuture.Step<Boolean, String>() {
+                    @Override
+                    public DeploymentFuture<String> apply(Boolean killed) {
+                        if (! killed) {
+                            return DeploymentFuture.completed(null);
+                        }
+                        return DriverStatePoller.getInstance().watch(deployer, submissionId,
+                                DriverStatePoller.STOPPING_STATES, STOPPING_MAX_ATTEMPTS);
+                    }
+                });
+        stopped.addCallback(new DeploymentFuture.Callback<String>() {
+            @Override
+            public void onSuccess(String state) {
+                if (state == null) {
+                    return;
+                }
+                try {
+                    // Killed, even if the driver has not stopped within the attempts
+                    history.updateDriverState(submissionId,
+                            DriverStatePoller.ATTEMPTS_EXCEEDED_NO_RESPONSE.equals(state) ? "KILLED" : state);
+                } catch (IOException e) {
+                    logger.println("[Spark-Deployer] Failed to record the kill of " + submissionId + " : " + e);
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable cause) {
+                // Reported by joinKill
+            }
+        });
+
+        // Completed only once the duration is set, so that it is known when the kill is joined
+        final DeploymentFuture<String> timed = new DeploymentFuture<String>();
+        timed.propagateCancelTo(stopped);
+        stopped.addCallback(new DeploymentFuture.Callback<String>() {
+            @Override
+            public void onSuccess(String state) {
+                killDuration.set(System.currentTimeMillis() - killStart);
+                timed.complete(state);
+            }
+
+            @Override
+            public void onFailure(Throwable cause) {
+                killDuration.set(System.currentTimeMillis() - killStart);
+                timed.fail(cause);
+            }
+        });
+        return timed;
+    }
+
+    /**
+     * Waits for the kill of the previous submission started by {@link #killInBackground}.
+     * @param killing future state of the killed driver
+     * @param previous previous submission, or null
+     * @param logger logger
+     * @return failure of the kill, or null if the master killed the previous submission or refused to
+     * @throws InterruptedException
+     */
+    private String joinKill(DeploymentFuture<String> killing, SubmissionRecord previous, PrintStream logger)
+            throws InterruptedException {
+        if (previous == null) {
+            return null;
+        }
+        String state;
+        String failure = null;
+        try {
+            state = killing.await();
+        } catch (IOException e) {
+            failure = "Failed to kill previous submission " + previous.getSubmissionId() + " : " + e;
+            state = null;
+        } catch (RuntimeException e) {
+            failure = "Failed to kill previous submission " + previous.getSubmissionId() + " : " + e;
+            state = null;
+        }
+
+        if (failure != null) {
+            logger.println("[Spark-Deployer] " + failure);
+        } else if (state == null) {
+            logger.println("[Spark-Deployer] Previous submission " + previous.getSubmissionId() + " was not killed");
+        } else if (DriverStatePoller.ATTEMPTS_EXCEEDED_NO_RESPONSE.equals(state)) {
+            logger.println("[Spark-Deployer] Previous submission " + previous.getSubmissionId() + " was killed, but "
+                    + "its driver has not stopped yet");
+        } else {
+            logger.println("[Spark-Deployer] Previous submission " + previous.getSubmissionId() + " is " + state);
+        }
+        return failure;
+    }
+
+    private void killPreviousSubmission(SubmissionHistory history, SubmissionRecord previousSubmission,
+                                        PrintStream logger, DeploymentManager deployer) throws IOException {
+        if (previousSubmission == null) {
+            logger.println("[Spark-Deployer] No previous submission data found. Skipping kill step");
+        } else if (getDeployerOf(previousSubmission, deployer, logger).kill(previousSubmission.getSubmissionId())) {
+            history.updateDriverState(previousSubmission.getSubmissionId(), "KILLED");
+        }
+    }
+
+    /**
+     * Kills the drivers of the given application that are active on the cluster (or any cluster of the pool) but are
+     * not its current submission. Failures are logged, and do not fail the deployment.
+     * @param history submission history
+     * @param app main class of the application
+     * @param current submission to leave running, or null
+     * @param logger logger
+     * @return result, or null if the sweep was interrupted
+     */
+    OrphanSweeper.Result sweepOrphans(SubmissionHistory history, String app, SubmissionRecord current,
+                                      PrintStream logger) {
+        Set<String> known = new HashSet<String>();
+        for (SubmissionRecord record : history.getLive()) {
+            if (app.equals(record.getApp())) {
+                known.add(record.getSubmissionId());
+            }
+        }
+        Set<String> keep = current == null ?
+                Collections.<String>emptySet() : Collections.singleton(current.getSubmissionId());
+
+        OrphanSweeper sweeper = new OrphanSweeper(OrphanSweeper.DEFAULT_PARALLELISM, logger);
+        for (ClusterTarget target : getSweepTargets()) {
+            sweeper.scan(new DeploymentManager(target.getMasterRestUrl(), logger, verbose, getTransportSettings()),
+                    target.getMasterUiUrls(), app, known, keep);
+        }
+
+        try {
+            OrphanSweeper.Result result = sweeper.killAll();
+            for (String submissionId : result.getKilled()) {
+                history.updateDriverState(submissionId, "KILLED");
+            }
+            logger.println("[Spark-Deployer] " + result);
+            return result;
+        } catch (IOException e) {
+            logger.println("[Spark-Deployer] Failed to record swept drivers : " + e);
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.println("[Spark-Deployer] Orphan sweep interrupted");
+            return null;
+        }
+    }
+
+    /**
+     * Sweeps the orphaned drivers of all applications of this publisher, leaving their latest submissions running.
+     * @param project project of this publisher
+     * @param logger logger
+     * @throws IOException if the submission history cannot be read
+     */
+    void sweepOrphans(AbstractProject<?, ?> project, PrintStream logger) throws IOException {
+        SubmissionHistory history = SubmissionHistory.forJob(project.getRootDir());
+        for (SparkApplication app : getAllApplications()) {
+            logger.println("[Spark-Deployer] ---- " + app.getMainClass() + " ----");
+            sweepOrphans(history, app.getMainClass(), history.getLatestLive(app.getMainClass()), logger);
+        }
+    }
+
+    /**
+     * Returns the clusters that may run applications of this publisher: its own, and the clusters of the pool if
+     * enabled.
+     * @return clusters
+     */
+    List<ClusterTarget> getSweepTargets() {
+        List<ClusterTarget> targets = new ArrayList<ClusterTarget>();
+        targets.add(new ClusterTarget(masterUrl, masterUrl, masterRestUrl, getMasterUiUrls()));
+        if (useClusterPool) {
+            for (SparkCluster cluster : getDescriptor().getClusters()) {
+                targets.add(cluster.toTarget());
+            }
+        }
+        return targets;
+    }
+
+    /**
+     * Returns a deployer for the master of the given submission, which may be another cluster of the cluster pool than
+     * the current deployment uses.
+     * @param submission submission
+     * @param deployer deployer of the current deployment
+     * @param logger logger
+     * @return deployer
+     */
+    private DeploymentManager getDeployerOf(SubmissionRecord submission, DeploymentManager deployer,
+                                            PrintStream logger) {
+        if (submission.getMaster() == null || submission.getMaster().equals(deployer.getMasterRestUrl())) {
+            return deployer;
+        }
+        return new DeploymentManager(submission.getMaster(), logger, verbose, getTransportSettings());
+    }
+
+    /**
+     * Returns the compiled templates of all applications, in the order of {@link #getAllApplications()}. Templates are
+     * compiled on first use and kept for the lifetime of this configuration.
+     * @return templates
+     */
+    private synchronized List<DeploymentTemplate> getTemplates() {
+        if (templates == null) {
+            List<DeploymentTemplate> compiled = new ArrayList<DeploymentTemplate>();
+            for (SparkApplication app : getAllApplications()) {
+                compiled.add(new DeploymentRequestBuilder()
+                        .masterUrl(masterUrl)
+                        .scalaVersion(scalaVersion)
+                        .appResource(app.getAppResource())
+                        .mainClass(app.getMainClass())
+                        .appArgs(app.getAppArgs())
+                        .sparkProperties(app.getSparkProperties())
+                        .compile());
+            }
+            templates = Collections.unmodifiableList(compiled);
+        }
+        return templates;
+    }
+
+    /**
+     * Returns the submission history of the job. The last submission of the given application is imported from the
+     * legacy submission file if the history has no live submission of it yet.
+     * @param build build reference
+     * @param app application
+     * @param primary whether this is the main application of the publisher
+     * @return submission history
+     * @throws IOException
+     */
+    private SubmissionHistory getSubmissionHistory(AbstractBuild<?, ?> build, SparkApplication app, boolean primary)
+            throws IOException {
+        File root = build.getProject().getRootDir();
+        SubmissionHistory history = SubmissionHistory.forJob(root);
+
+        File legacyFile = new File(root, getSubmissionFileName(app, primary));
+        if (legacyFile.exists() && history.getLatestLive(app.getMainClass()) == null) {
+            String submissionId = null;
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(legacyFile), "UTF-8"));
+            try {
+                String text = reader.readLine();
+                if (text != null && ! text.trim().isEmpty()) {
+                    submissionId = text.trim();
+                }
+            } finally {
+                reader.close();
+            }
+
+            if (submissionId != null) {
+                history.record(new SubmissionRecord(0, submissionId, app.getMainClass(), masterRestUrl, "UNKNOWN",
+                        legacyFile.lastModified(), legacyFile.lastModified()));
+            }
+            if (! legacyFile.delete()) {
+                throw new IOException("Failed to remove legacy submission file " + legacyFile);
+            }
+        }
+        return history;
+    }
+
+    @Override
+    public Descriptor getDescriptor() {
+        return (Descriptor) super.getDescriptor();
+    }
+
+    @Override
+    public Collection<? extends Action> getProjectActions(AbstractProject<?, ?> project) {
+        return Arrays.asList(new OrphanSweepAction(project, this), new DeploymentTrendAction(project));
+    }
+
+    @Override
+    public BuildStepMonitor getRequiredMonitorService() {
+        return BuildStepMonitor.NONE;
+    }
+
+    /**
+     * Plugin Descriptor.
+     */
+    @Extension
+    @SuppressWarnings("unused")
+    public static class Descriptor extends BuildStepDescriptor<Publisher> {
+
+        /**
+         * Default maximum size of the staging store, in megabytes.
+         */
+        public static final long DEFAULT_STAGING_MAX_SIZE = 10 * 1024;
+
+        /**
+         * Default interval between driver watchdog checks, in seconds.
+         */
+        public static final int DEFAULT_WATCHDOG_INTERVAL = 60;
+
+        /**
+         * Default number of times the watchdog restarts a supervised application per hour.
+         */
+        public static final int DEFAULT_WATCHDOG_MAX_RESTARTS = 3;
+
+        private String stagingLocation;
+        private String stagingUrl;
+        private long stagingMaxSize;
+        private int watchdogInterval;
+        private int watchdogMaxRestarts;
+        private List<SparkCluster> clusters;
+
+        public Descriptor() {
+            load();
+        }
+
+        @Override
+        public boolean configure(StaplerRequest req, JSONObject json) throws FormException {
+            // An empty pool is not submitted at all
+            setClusters(null);
+            req.bindJSON(this, json);
+            save();
+            return true;
+        }
+
+        @Override
+        public boolean isApplicable(Class<? extends AbstractProject> jobType) {
+            // Supports all project types
+            return true;
+        }
+
+        @Override
+        public String getDisplayName() {
+            return "Deploy to Apache Spark";
+        }
+
+        /**
+         * Returns staging location.
+         *
+         * @return staging location (directory, http(s):// or webhdfs:// URL)
+         */
+        public String getStagingLocation() {
+            return stagingLocation;
+        }
+
+        /**
+         * Sets staging location.
+         *
+         * @param stagingLocation staging location
+         */
+        public void setStagingLocation(String stagingLocation) {
+            this.stagingLocation = stagingLocation == null ? null : stagingLocation.trim();
+        }
+
+        /**
+         * Returns staging url.
+         *
+         * @return base URL under which the cluster fetches staged artifacts, or empty
+         */
+        public String getStagingUrl() {
+            return stagingUrl == null ? "" : stagingUrl;
+        }
+
+        /**
+         * Sets staging url.
+         *
+         * @param stagingUrl base URL under which the cluster fetches staged artifacts
+         */
+        public void setStagingUrl(String stagingUrl) {
+            this.stagingUrl = stagingUrl == null ? null : stagingUrl.trim();
+        }
+
+        /**
+         * Returns staging max size.
+         *
+         * @return maximum size of the staging store in megabytes
+         */
+        public long getStagingMaxSize() {
+            return stagingMaxSize > 0 ? stagingMaxSize : DEFAULT_STAGING_MAX_SIZE;
+        }
+
+        /**
+         * Sets staging max size.
+         *
+         * @param stagingMaxSize maximum size of the staging store in megabytes
+         */
+        public void setStagingMaxSize(long stagingMaxSize) {
+            this.stagingMaxSize = stagingMaxSize;
+        }
+
+        /**
+         * Returns watchdog interval.
+         *
+         * @return interval between driver watchdog checks in seconds
+         */
+        public int getWatchdogInterval() {
+            return watchdogInterval > 0 ? watchdogInterval : DEFAULT_WATCHDOG_INTERVAL;
+        }
+
+        /**
+         * Sets watchdog interval.
+         *
+         * @param watchdogInterval interval between driver watchdog checks in seconds
+         */
+        public void setWatchdogInterval(int watchdogInterval) {
+            this.watchdogInterval = watchdogInterval;
+        }
+
+        /**
+         * Returns watchdog max restarts.
+         *
+         * @return number of times a supervised application is restarted per hour
+         */
+        public int getWatchdogMaxRestarts() {
+            return watchdogMaxRestarts > 0 ? watchdogMaxRestarts : DEFAULT_WATCHDOG_MAX_RESTARTS;
+        }
+
+        /**
+         * Sets watchdog max restarts.
+         *
+         * @param watchdogMaxRestarts number of times a supervised application is restarted per hour
+         */
+        public void setWatchdogMaxRestarts(int watchdogMaxRestarts) {
+            this.watchdogMaxRestarts = watchdogMaxRestarts;
+        }
+
+        /**
+         * Returns the clusters of the cluster pool.
+         *
+         * @return clusters
+         */
+        public List<SparkCluster> getClusters() {
+            return clusters == null ? Collections.<SparkCluster>emptyList() : clusters;
+        }
+
+        /**
+         * Sets the clusters of the cluster pool.
+         *
+         * @param clusters clusters
+         */
+        public void setClusters(List<SparkCluster> clusters) {
+            this.clusters = clusters == null ? null : new ArrayList<SparkCluster>(clusters);
+        }
+
+        /**
+         * Validate Staging Location.
+         * @param value value
+         * @return validation result
+         */
+        public FormValidation doCheckStagingLocation(@QueryParameter String value) {
+            if (value.trim().isEmpty()) {
+                // Optional Field
+                return FormValidation.ok();
+            }
+
+            try {
+                ArtifactStores.create(value, null);
+            } catch (IllegalArgumentException e) {
+                return FormValidation.error(e.getMessage());
+            }
+
+            return FormValidation.ok();
+        }
+
+        /**
+         * Validate Master URL.
+         * @param value value
+         * @return validation result
+         */
+        public FormValidation doCheckMasterUrl(@QueryParameter String value) {
+            String master = value.trim().toLowerCase();
+            if (master.isEmpty()) {
+                return FormValidation.error("Master URL is required");
+            }
+
+            if (master.startsWith("mesos") || master.startsWith("yarn")) {
+                return FormValidation.error("This plugin currently supports only Spark Standalone clusters. " +
+                        "Mesos / YARN support is not available yet.");
+            }
+            for (String url : Utils.getActualSparkMasterUrls(master)) {
+                try {
+                    new URL(url);
+                } catch (MalformedURLException e) {
+                    return FormValidation.error("Master URL is not a valid URL: " + url, e);
+                }
+            }
+
+            return FormValidation.ok();
+        }
+
+        /**
+         * Validate Master REST URL if specified.
+         * @param value value
+         * @return validation result
+         */
+        public FormValidation doCheckMasterRestUrl(@QueryParameter String value) {
+            String masterRest = value.trim();
+            if (masterRest.isEmpty()) {
+                // Optional Field
+                return FormValidation.ok();
+            }
+
+            for (String url : Utils.getActualSparkMasterUrls(masterRest)) {
+                try {
+                    new URL(url);
+                } catch (MalformedURLException e) {
+                    return FormValidation.error("Master REST URL is not a valid URL: " + url, e);
+                }
+            }
+
+            return FormValidation.ok();
+        }
+
+        /**
+         * Validate Master Web UI URL if specified.
+         *
+         * @param value value
+         * @return validation result
+         */
+        public FormValidation doCheckMasterUiUrl(@QueryParameter String value) {
+            if (value.trim().isEmpty()) {
+                // Optional Field
+                return FormValidation.ok();
+            }
+
+            for (String url : Utils.getActualSparkMasterUrls(value)) {
+                try {
+                    new URL(url);
+                } catch (MalformedURLException e) {
+                    return FormValidation.error("Master Web UI URL is not a valid URL: " + url, e);
+                }
+            }
+
+            return FormValidation.ok();
+        }
+
+        /**
+         * Validate Application Arguments if specified.
+         *
+         * @param value value
+         * @return validation result
+         */
+        public FormValidation doCheckAppArgs(@QueryParameter String value) {
+            return checkAppArgs(value);
+        }
+
+        /**
+         * Validate Spark Properties if specified.
+         *
+         * @param value value
+         * @return validation result
+         */
+        public FormValidation doCheckSparkProperties(@QueryParameter String value) {
+            return checkSparkProperties(value);
+        }
+
+        /**
+         * Validate Parallelism.
+         * @param value value
+         * @return validation result
+         */
+        public FormValidation doCheckParallelism(@QueryParameter String value) {
+            return checkOptionalPositiveInteger(value, "Parallelism");
+        }
+
+        /**
+         * Validate Regression Percentile.
+         * @param value value
+         * @return validation result
+         */
+        public FormValidation doCheckRegressionPercentile(@QueryParameter String value) {
+            String number = value.trim();
+            if (number.isEmpty()) {
+                // Optional Field
+                return FormValidation.ok();
+            }
+
+            try {
+                int percentile = Integer.parseInt(number);
+                if (percentile < 0 || percentile > 100) {
+                    return FormValidation.error("Regression Percentile should be between 1 and 100, or 0 to disable");
+                }
+            } catch (NumberFormatException e) {
+                return FormValidation.error("Regression Percentile should be a number");
+            }
+
+            return FormValidation.ok();
+        }
+
+        /**
+         * Validate Health Check URL if specified.
+         * @param value value
+         * @return validation result
+         */
+        public FormValidation doCheckHealthCheckUrl(@QueryParameter String value) {
+            if (value.trim().isEmpty()) {
+                return FormValidation.ok();
+            }
+            try {
+                new URL(value.trim());
+                return FormValidation.ok();
+            } catch (MalformedURLException e) {
+                return FormValidation.error("Invalid Health Check URL");
+            }
+        }
+
+        /**
+         * Validate Health Check Timeout.
+         * @param value value
+         * @return validation result
+         */
+        public FormValidation doCheckHealthCheckTimeout(@QueryParameter String value) {
+            return checkOptionalPositiveInteger(value, "Health Check Timeout");
+        }
+
+        /**
+         * Validate Resource Timeout.
+         * @param value value
+         * @return validation result
+         */
+        public FormValidation doCheckResourceTimeout(@QueryParameter String value) {
+            return checkOptionalPositiveInteger(value, "Resource Timeout");
+        }
+
+        /**
+         * Validate Lease Timeout.
+         * @param value value
+         * @return validation result
+         */
+        public FormValidation doCheckLeaseTimeout(@QueryParameter String value) {
+            return checkOptionalPositiveInteger(value, "Lease Timeout");
+        }
+
+        /**
+         * Validate Watchdog Interval.
+         * @param value value
+         * @return validation result
+         */
+        public FormValidation doCheckWatchdogInterval(@QueryParameter String value) {
+            return checkOptionalPositiveInteger(value, "Watchdog Interval");
+        }
+
+        /**
+         * Validate Watchdog Max Restarts.
+         * @param value value
+         * @return validation result
+         */
+        public FormValidation doCheckWatchdogMaxRestarts(@QueryParameter String value) {
+            return checkOptionalPositiveInteger(value, "Max Restarts");
+        }
+
+        static FormValidation checkSparkProperties(String value) {
+            try {
+                DeploymentTemplate.parseProperties(value);
+                return FormValidation.ok();
+            } catch (IllegalArgumentException e) {
+                return FormValidation.error(e.getMessage());
+            }
+        }
+
+        static FormValidation checkAppArgs(String value) {
+            try {
+                DeploymentTemplate.parseArgs(value);
+                return FormValidation.ok();
+            } catch (IllegalArgumentException e) {
+                return FormValidation.error(e.getMessage());
+            }
+        }
+
+        /**
+         * Validate Connect Timeout.
+         * @param value value
+         * @return validation result
+         */
+        public FormValidation doCheckConnectTimeout(@QueryParameter String value) {
+            return checkOptionalPositiveInteger(value, "Connect Timeout");
+        }
+
+        /**
+         * Validate Read Timeout.
+         * @param value value
+         * @return validation result
+         */
+        public FormValidation doCheckReadTimeout(@QueryParameter String value) {
+            return checkOptionalPositiveInteger(value, "Read Timeout");
+        }
+
+        /**
+         * Validate Request Timeout.
+         * @param value value
+         * @return validation result
+         */
+        public FormValidation doCheckRequestTimeout(@QueryParameter String value) {
+            return checkOptionalPositiveInteger(value, "Request Timeout");
+        }
+
+        /**
+         * Validate Max Connections.
+         * @param value value
+         * @return validation result
+         */
+        public FormValidation doCheckMaxConnections(@QueryParameter String value) {
+            return checkOptionalPositiveInteger(value, "Max Connections");
+        }
+
+        private static FormValidation checkOptionalPositiveInteger(String value, String name) {
+            String number = value.trim();
+            if (number.isEmpty()) {
+                // Optional Field
+                return FormValidation.ok();
+            }
+
+            try {
+                if (Integer.parseInt(number) < 0) {
+                    return FormValidation.error(name + " cannot be negative");
+                }
+            } catch (NumberFormatException e) {
+                return FormValidation.error(name + " should be a number");
+            }
+
+            return FormValidation.ok();
+        }
+
+        /**
+         * Validates App Resource.
+         * @param value value
+         * @return validation result
+         */
+        public FormValidation doCheckAppResource(@QueryParameter String value) {
+            String appResource = value.trim();
+            if (appResource.isEmpty()) {
+                return FormValidation.error("Application Resource is required");
+            }
+            return FormValidation.ok();
+        }
+
+        /**
+         * Validates Main Class.
+         * @param value value
+         * @return validation result
+         */
+        public FormValidation doCheckMainClass(@QueryParameter String value) {
+            String mainClass = value.trim();
+            if (mainClass.isEmpty()) {
+                return FormValidation.error("Main Class is required");
+            }
+            return FormValidation.ok();
+        }
+    }
+
+    /**
+     * Returns master url.
+     *
+     * @return master url
+     */
+    @SuppressWarnings("unused")
+    public String getMasterUrl() {
+        return masterUrl;
+    }
+
+    /**
+     * Returns master rest url.
+     *
+     * @return master rest url
+     */
+    @SuppressWarnings("unused")
+    public String getMasterRestUrl() {
+        return masterRestUrl;
+    }
+
+    /**
+     * Returns scala version.
+     *
+     * @return scala version
+     */
+    @SuppressWarnings("unused")
+    public String getScalaVersion() {
+        return scalaVersion;
+    }
+
+    /**
+     * Returns app resource.
+     *
+     * @return app resource
+     */
+    @SuppressWarnings("unused")
+    public String getAppResource() {
+        return appResource;
+    }
+
+    /**
+     * Returns main class.
+     *
+     * @return main class
+     */
+    @SuppressWarnings("unused")
+    public String getMainClass() {
+        return mainClass;
+    }
+
+    /**
+     * Returns app args.
+     *
+     * @return app args
+     */
+    @SuppressWarnings("unused")
+    public String getAppArgs() {
+        return appArgs;
+    }
+
+    /**
+     * Returns spark properties.
+     *
+     * @return spark properties
+     */
+    public String getSparkProperties() {
+        return sparkProperties;
+    }
+
+    /**
+     * Is kill before submit.
+     *
+     * @return boolean
+     */
+    @SuppressWarnings("unused")
+    public boolean isKillBeforeSubmit() {
+        return killBeforeSubmit;
+    }
+
+    /**
+     * Is fail build on failure.
+     *
+     * @return boolean
+     */
+    @SuppressWarnings("unused")
+    public boolean isFailBuildOnFailure() {
+        return failBuildOnFailure;
+    }
+
+    /**
+     * Returns connect timeout.
+     *
+     * @return connect timeout in seconds
+     */
+    @SuppressWarnings("unused")
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    /**
+     * Sets connect timeout. Zero uses the default.
+     *
+     * @param connectTimeout connect timeout in seconds
+     */
+    @DataBoundSetter
+    public void setConnectTimeout(int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    /**
+     * Returns read timeout.
+     *
+     * @return read timeout in seconds
+     */
+    @SuppressWarnings("unused")
+    public int getReadTimeout() {
+        return readTimeout;
+    }
+
+    /**
+     * Sets read timeout. Zero uses the default.
+     *
+     * @param readTimeout read timeout in seconds
+     */
+    @DataBoundSetter
+    public void setReadTimeout(int readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
+    /**
+     * Returns request timeout.
+     *
+     * @return request timeout in seconds
+     */
+    @SuppressWarnings("unused")
+    public int getRequestTimeout() {
+        return requestTimeout;
+    }
+
+    /**
+     * Sets request timeout. Zero uses the default.
+     *
+     * @param requestTimeout total deadline of a single REST call in seconds
+     */
+    @DataBoundSetter
+    public void setRequestTimeout(int requestTimeout) {
+        this.requestTimeout = requestTimeout;
+    }
+
+    /**
+     * Returns max connections.
+     *
+     * @return max connections
+     */
+    @SuppressWarnings("unused")
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    /**
+     * Sets max connections. Zero uses the default.
+     *
+     * @param maxConnections maximum concurrent connections to the master, shared by all builds
+     */
+    @DataBoundSetter
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    /**
+     * Returns additional applications.
+     *
+     * @return applications deployed along with the main application
+     */
+    @SuppressWarnings("unused")
+    public List<SparkApplication> getApplications() {
+        return applications == null ? Collections.<SparkApplication>emptyList() : applications;
+    }
+
+    /**
+     * Sets additional applications.
+     *
+     * @param applications applications deployed along with the main application
+     */
+    @DataBoundSetter
+    public void setApplications(List<SparkApplication> applications) {
+        this.applications = applications == null ? null : new ArrayList<SparkApplication>(applications);
+        this.templates = null;
+    }
+
+    /**
+     * Returns parallelism.
+     *
+     * @return maximum number of applications deployed at the same time
+     */
+    @SuppressWarnings("unused")
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Sets parallelism. Zero uses {@link #DEFAULT_PARALLELISM}.
+     *
+     * @param parallelism maximum number of applications deployed at the same time
+     */
+    @DataBoundSetter
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Is stage app resource.
      *
      * @return boolean
      */
     @SuppressWarnings("unused")
-    public boolean isFailBuildOnFailure() {
-        return failBuildOnFailure;
+    public boolean isStageAppResource() {
+        return stageAppResource;
+    }
+
+    /**
+     * Sets stage app resource. When enabled, application resources are workspace paths which are staged before
+     * deploying.
+     *
+     * @param stageAppResource stage app resource
+     */
+    @DataBoundSetter
+    public void setStageAppResource(boolean stageAppResource) {
+        this.stageAppResource = stageAppResource;
+    }
+
+    /**
+     * Is rollover.
+     *
+     * @return boolean
+     */
+    @SuppressWarnings("unused")
+    public boolean isRollover() {
+        return rollover;
+    }
+
+    /**
+     * Sets rollover. When enabled, the previous submission is killed only after the new one is running, and is kept
+     * running if the new one fails.
+     *
+     * @param rollover rollover
+     */
+    @DataBoundSetter
+    public void setRollover(boolean rollover) {
+        this.rollover = rollover;
+    }
+
+    /**
+     * Returns health check url.
+     *
+     * @return health check url
+     */
+    @SuppressWarnings("unused")
+    public String getHealthCheckUrl() {
+        return healthCheckUrl;
+    }
+
+    /**
+     * Sets health check url. Empty disables the health check.
+     *
+     * @param healthCheckUrl URL which responds with a 2xx status code once a new deployment is healthy
+     */
+    @DataBoundSetter
+    public void setHealthCheckUrl(String healthCheckUrl) {
+        this.healthCheckUrl = healthCheckUrl == null || healthCheckUrl.trim().isEmpty() ? null : healthCheckUrl.trim();
+    }
+
+    /**
+     * Returns health check timeout.
+     *
+     * @return health check timeout in seconds
+     */
+    @SuppressWarnings("unused")
+    public int getHealthCheckTimeout() {
+        return healthCheckTimeout;
+    }
+
+    /**
+     * Sets health check timeout. Zero uses {@link #DEFAULT_HEALTH_CHECK_TIMEOUT}.
+     *
+     * @param healthCheckTimeout health check timeout in seconds
+     */
+    @DataBoundSetter
+    public void setHealthCheckTimeout(int healthCheckTimeout) {
+        this.healthCheckTimeout = healthCheckTimeout;
+    }
+
+    /**
+     * Is supervise.
+     *
+     * @return boolean
+     */
+    @SuppressWarnings("unused")
+    public boolean isSupervise() {
+        return supervise;
+    }
+
+    /**
+     * Sets supervise. When enabled, the {@link DriverWatchdog} submits the application again if its driver fails.
+     *
+     * @param supervise supervise
+     */
+    @DataBoundSetter
+    public void setSupervise(boolean supervise) {
+        this.supervise = supervise;
+    }
+
+    /**
+     * Returns lease timeout.
+     *
+     * @return lease timeout in seconds
+     */
+    @SuppressWarnings("unused")
+    public int getLeaseTimeout() {
+        return leaseTimeout;
+    }
+
+    /**
+     * Sets lease timeout, which limits the wait for other deployments of the same application. Zero uses
+     * {@link #DEFAULT_LEASE_TIMEOUT}.
+     *
+     * @param leaseTimeout lease timeout in seconds
+     */
+    @DataBoundSetter
+    public void setLeaseTimeout(int leaseTimeout) {
+        this.leaseTimeout = leaseTimeout;
+    }
+
+    /**
+     * Is coalesce.
+     *
+     * @return boolean
+     */
+    @SuppressWarnings("unused")
+    public boolean isCoalesce() {
+        return coalesce;
+    }
+
+    /**
+     * Sets coalesce. When enabled, a deployment waiting for another deployment of the same application is skipped if
+     * a newer build deploys the application meanwhile.
+     *
+     * @param coalesce coalesce
+     */
+    @DataBoundSetter
+    public void setCoalesce(boolean coalesce) {
+        this.coalesce = coalesce;
+    }
+
+    /**
+     * Is wait for resources.
+     *
+     * @return boolean
+     */
+    @SuppressWarnings("unused")
+    public boolean isWaitForResources() {
+        return waitForResources;
+    }
+
+    /**
+     * Sets wait for resources. When enabled, the application is submitted only once the cluster has the free cores
+     * and memory it asks for, and fails right away if the cluster could never run it.
+     *
+     * @param waitForResources wait for resources
+     */
+    @DataBoundSetter
+    public void setWaitForResources(boolean waitForResources) {
+        this.waitForResources = waitForResources;
+    }
+
+    /**
+     * Returns resource timeout.
+     *
+     * @return resource timeout in seconds
+     */
+    @SuppressWarnings("unused")
+    public int getResourceTimeout() {
+        return resourceTimeout;
+    }
+
+    /**
+     * Sets resource timeout. Zero uses {@link #DEFAULT_RESOURCE_TIMEOUT}.
+     *
+     * @param resourceTimeout resource timeout in seconds
+     */
+    @DataBoundSetter
+    public void setResourceTimeout(int resourceTimeout) {
+        this.resourceTimeout = resourceTimeout;
+    }
+
+    /**
+     * Returns master ui url.
+     *
+     * @return master web UI URL(s), or null to derive them from the master REST URL
+     */
+    @SuppressWarnings("unused")
+    public String getMasterUiUrl() {
+        return masterUiUrl;
+    }
+
+    /**
+     * Sets master ui url.
+     *
+     * @param masterUiUrl web UI URL of the Spark Master (ex. http://localhost:8080), or comma separated URLs
+     */
+    @DataBoundSetter
+    public void setMasterUiUrl(String masterUiUrl) {
+        this.masterUiUrl = masterUiUrl == null || masterUiUrl.trim().isEmpty() ? null : masterUiUrl.trim();
+    }
+
+    /**
+     * Returns use cluster pool.
+     *
+     * @return boolean
+     */
+    @SuppressWarnings("unused")
+    public boolean isUseClusterPool() {
+        return useClusterPool;
+    }
+
+    /**
+     * Sets use cluster pool. When enabled, each application is deployed to the least loaded cluster of the global
+     * cluster pool instead of the cluster of this publisher.
+     *
+     * @param useClusterPool use cluster pool
+     */
+    @DataBoundSetter
+    public void setUseClusterPool(boolean useClusterPool) {
+        this.useClusterPool = useClusterPool;
+    }
+
+    /**
+     * Returns stream driver logs.
+     *
+     * @return boolean
+     */
+    @SuppressWarnings("unused")
+    public boolean isStreamDriverLogs() {
+        return streamDriverLogs;
+    }
+
+    /**
+     * Sets stream driver logs. When enabled, the stdout and stderr of the driver are copied into the build log until
+     * the driver is running or has failed.
+     *
+     * @param streamDriverLogs stream driver logs
+     */
+    @DataBoundSetter
+    public void setStreamDriverLogs(boolean streamDriverLogs) {
+        this.streamDriverLogs = streamDriverLogs;
+    }
+
+    /**
+     * Returns sweep orphans.
+     *
+     * @return boolean
+     */
+    @SuppressWarnings("unused")
+    public boolean isSweepOrphans() {
+        return sweepOrphans;
     }
-}
 
+    /**
+     * Sets sweep orphans. When enabled, active drivers of the application other than its current submission are
+     * killed before submitting.
+     *
+     * @param sweepOrphans sweep orphans
+     */
+    @DataBoundSetter
+    public void setSweepOrphans(boolean sweepOrphans) {
+        this.sweepOrphans = sweepOrphans;
+    }
+
+    /**
+     * Returns run on agent.
+     *
+     * @return boolean
+     */
+    @SuppressWarnings("unused")
+    public boolean isRunOnAgent() {
+        return runOnAgent;
+    }
+
+    /**
+     * Sets run on agent. When enabled, the previous submission is killed, the application is submitted and its driver
+     * is watched on the node of the build rather than on the controller.
+     *
+     * @param runOnAgent run on agent
+     */
+    @DataBoundSetter
+    public void setRunOnAgent(boolean runOnAgent) {
+        this.runOnAgent = runOnAgent;
+    }
+
+    /**
+     * Returns skip unchanged.
+     *
+     * @return boolean
+     */
+    @SuppressWarnings("unused")
+    public boolean isSkipUnchanged() {
+        return skipUnchanged;
+    }
+
+    /**
+     * Sets skip unchanged. When enabled, an application is not submitted again if its artifact and configuration are
+     * the same as those of its latest submission, and the driver of that submission is running.
+     *
+     * @param skipUnchanged skip unchanged
+     */
+    @DataBoundSetter
+    public void setSkipUnchanged(boolean skipUnchanged) {
+        this.skipUnchanged = skipUnchanged;
+    }
+
+    /**
+     * Returns pipeline kill.
+     *
+     * @return boolean
+     */
+    @SuppressWarnings("unused")
+    public boolean isPipelineKill() {
+        return pipelineKill;
+    }
+
+    /**
+     * Sets pipeline kill. When enabled along with killing the previous submission, the new submission is prepared
+     * and submitted while the previous one is being killed, so the two may run side by side for a short while.
+     *
+     * @param pipelineKill pipeline kill
+     */
+    @DataBoundSetter
+    public void setPipelineKill(boolean pipelineKill) {
+        this.pipelineKill = pipelineKill;
+    }
+
+    /**
+     * Returns regression percentile.
+     *
+     * @return percentile of earlier times to RUNNING above which a deployment regressed, or 0 if not checked
+     */
+    @SuppressWarnings("unused")
+    public int getRegressionPercentile() {
+        return regressionPercentile;
+    }
+
+    /**
+     * Sets regression percentile. When set, the time to RUNNING of each application is compared with its last
+     * {@value #REGRESSION_WINDOW} deployments, and the build is marked as unstable if it is above the given percentile
+     * of them. The gate does not change how long deployments wait for the driver; deployments whose driver was not
+     * seen RUNNING within that wait are not checked.
+     *
+     * @param regressionPercentile percentile from 1 to 100, or 0 to disable
+     */
+    @DataBoundSetter
+    public void setRegressionPercentile(int regressionPercentile) {
+        this.regressionPercentile = regressionPercentile;
+    }
+
+    /**
+     * Returns fail on regression.
+     *
+     * @return boolean
+     */
+    @SuppressWarnings("unused")
+    public boolean isFailOnRegression() {
+        return failOnRegression;
+    }
+
+    /**
+     * Sets fail on regression. When enabled, a regression of the time to RUNNING fails the build instead of marking
+     * it as unstable.
+     *
+     * @param failOnRegression fail on regression
+     */
+    @DataBoundSetter
+    public void setFailOnRegression(boolean failOnRegression) {
+        this.failOnRegression = failOnRegression;
+    }
+}
@@ -0,0 +1,742 @@
+/*
+ * Copyright (C) 2015 Yohan Liyanage
+ *
+ * Release under the MIT License (MIT). See LICENSE file for details.
+ */
+
+package com.yohanliyanage.jenkins.plugins.sparkdeploy;
+
+import com.google.inject.Inject;
+import com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer.ClusterAdmission;
+import com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer.DeploymentFuture;
+import com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer.DeploymentLeases;
+import com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer.DeploymentManager;
+import com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer.DeploymentMetrics;
+import com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer.DeploymentRequest;
+import com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer.DeploymentRequestBuilder;
+import com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer.DeploymentTemplate;
+import com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer.DriverLogTailer;
+import com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer.DriverStatePoller;
+import com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer.Utils;
+import com.yohanliyanage.jenkins.plugins.sparkdeploy.history.SubmissionHistory;
+import com.yohanliyanage.jenkins.plugins.sparkdeploy.history.SubmissionRecord;
+import hudson.AbortException;
+import hudson.Extension;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.util.FormValidation;
+import jenkins.model.Jenkins;
+import org.jenkinsci.plugins.workflow.steps.AbstractStepDescriptorImpl;
+import org.jenkinsci.plugins.workflow.steps.AbstractStepExecutionImpl;
+import org.jenkinsci.plugins.workflow.steps.AbstractStepImpl;
+import org.jenkinsci.plugins.workflow.steps.StepContextParameter;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.QueryParameter;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pipeline step that deploys a Spark application: <code>sparkDeploy masterUrl: ..., appResource: ...,
+ * mainClass: ...</code>. Returns the submission ID.
+ * <p>
+ * The step does not need a node, and waits for the driver asynchronously, so no executor is held while the driver
+ * starts. Submissions are recorded in the submission history of the job as soon as they are made, which lets the step
+ * resume waiting for its driver after Jenkins restarts.
+ *
+ * @author Yohan Liyanage
+ */
+public class SparkDeployStep extends AbstractStepImpl {
+
+    private final String masterUrl;
+    private final String appResource;
+    private final String mainClass;
+    private String masterRestUrl;
+    private String scalaVersion;
+    private String appArgs;
+    private String sparkProperties;
+    private boolean killBeforeSubmit;
+    private boolean verbose;
+    private int leaseTimeout;
+    private boolean coalesce;
+    private boolean waitForResources;
+    private boolean streamDriverLogs;
+    private int resourceTimeout;
+    private String masterUiUrl;
+
+    /**
+     * Constructor for Spark Deploy Step.
+     *
+     * @param masterUrl Spark Master URL (ex. spark://localhost:6066), or comma separated masters of a HA cluster
+     * @param appResource Application Resource - JAR File URL (HTTP / HDFS URL or file path if available to executors).
+     * @param mainClass Fully qualified main class name.
+     */
+    @DataBoundConstructor
+    public SparkDeployStep(String masterUrl, String appResource, String mainClass) {
+        this.masterUrl = masterUrl.trim().toLowerCase();
+        this.appResource = appResource.trim();
+        this.mainClass = mainClass.trim();
+    }
+
+    /**
+     * Returns master url.
+     *
+     * @return master url
+     */
+    public String getMasterUrl() {
+        return masterUrl;
+    }
+
+    /**
+     * Returns app resource.
+     *
+     * @return app resource
+     */
+    public String getAppResource() {
+        return appResource;
+    }
+
+    /**
+     * Returns main class.
+     *
+     * @return main class
+     */
+    public String getMainClass() {
+        return mainClass;
+    }
+
+    /**
+     * Returns master rest url.
+     *
+     * @return master rest url, or null to derive it from the master URL
+     */
+    public String getMasterRestUrl() {
+        return masterRestUrl;
+    }
+
+    /**
+     * Sets master rest url.
+     *
+     * @param masterRestUrl custom Spark Master REST URL, or comma separated URLs
+     */
+    @DataBoundSetter
+    public void setMasterRestUrl(String masterRestUrl) {
+        this.masterRestUrl = masterRestUrl == null || masterRestUrl.trim().isEmpty() ?
+                null : masterRestUrl.trim().toLowerCase();
+    }
+
+    /**
+     * Returns scala version.
+     *
+     * @return scala version
+     */
+    public String getScalaVersion() {
+        return scalaVersion;
+    }
+
+    /**
+     * Sets scala version.
+     *
+     * @param scalaVersion Spark Scala Version
+     */
+    @DataBoundSetter
+    public void setScalaVersion(String scalaVersion) {
+        this.scalaVersion = scalaVersion == null || scalaVersion.trim().isEmpty() ? null : scalaVersion.trim();
+    }
+
+    /**
+     * Returns app args.
+     *
+     * @return app args
+     */
+    public String getAppArgs() {
+        return appArgs;
+    }
+
+    /**
+     * Sets app args.
+     *
+     * @param appArgs Space separated application command line arguments
+     */
+    @DataBoundSetter
+    public void setAppArgs(String appArgs) {
+        this.appArgs = appArgs == null ? null : appArgs.trim();
+        DeploymentTemplate.parseArgs(this.appArgs);
+    }
+
+    /**
+     * Returns spark properties.
+     *
+     * @return spark properties
+     */
+    public String getSparkProperties() {
+        return sparkProperties;
+    }
+
+    /**
+     * Sets spark properties.
+     *
+     * @param sparkProperties Comma separated series name value pairs (ex. prop1=value1,prop2=value2,...)
+     */
+    @DataBoundSetter
+    public void setSparkProperties(String sparkProperties) {
+        this.sparkProperties = sparkProperties == null ? null : sparkProperties.trim();
+        DeploymentTemplate.parseProperties(this.sparkProperties);
+    }
+
+    /**
+     * Is kill before submit.
+     *
+     * @return boolean
+     */
+    public boolean isKillBeforeSubmit() {
+        return killBeforeSubmit;
+    }
+
+    /**
+     * Sets kill before submit.
+     *
+     * @param killBeforeSubmit Kill previous submission before submitting new one
+     */
+    @DataBoundSetter
+    public void setKillBeforeSubmit(boolean killBeforeSubmit) {
+        this.killBeforeSubmit = killBeforeSubmit;
+    }
+
+    /**
+     * Is verbose.
+     *
+     * @return boolean
+     */
+    public boolean isVerbose() {
+        return verbose;
+    }
+
+    /**
+     * Sets verbose.
+     *
+     * @param verbose enables verbose mode which logs request / response of REST calls
+     */
+    @DataBoundSetter
+    public void setVerbose(boolean verbose) {
+        this.verbose = verbose;
+    }
+
+    /**
+     * Returns lease timeout.
+     *
+     * @return lease timeout in seconds
+     */
+    public int getLeaseTimeout() {
+        return leaseTimeout;
+    }
+
+    /**
+     * Sets lease timeout. Zero uses {@link SparkDeployPublisher#DEFAULT_LEASE_TIMEOUT}.
+     *
+     * @param leaseTimeout time to wait for other deployments of the same application, in seconds
+     */
+    @DataBoundSetter
+    public void setLeaseTimeout(int leaseTimeout) {
+        this.leaseTimeout = leaseTimeout;
+    }
+
+    /**
+     * Is coalesce.
+     *
+     * @return boolean
+     */
+    public boolean isCoalesce() {
+        return coalesce;
+    }
+
+    /**
+     * Sets coalesce.
+     *
+     * @param coalesce skip the deployment if a newer build deploys the application while waiting for the lease
+     */
+    @DataBoundSetter
+    public void setCoalesce(boolean coalesce) {
+        this.coalesce = coalesce;
+    }
+
+    /**
+     * Is wait for resources.
+     *
+     * @return boolean
+     */
+    public boolean isWaitForResources() {
+        return waitForResources;
+    }
+
+    /**
+     * Sets wait for resources.
+     *
+     * @param waitForResources submit only once the cluster has the free cores and memory the application asks for
+     */
+    @DataBoundSetter
+    public void setWaitForResources(boolean waitForResources) {
+        this.waitForResources = waitForResources;
+    }
+
+    /**
+     * Returns resource timeout.
+     *
+     * @return resource timeout in seconds
+     */
+    public int getResourceTimeout() {
+        return resourceTimeout;
+    }
+
+    /**
+     * Sets resource timeout. Zero uses {@link SparkDeployPublisher#DEFAULT_RESOURCE_TIMEOUT}.
+     *
+     * @param resourceTimeout time to wait for cluster resources, in seconds
+     */
+    @DataBoundSetter
+    public void setResourceTimeout(int resourceTimeout) {
+        this.resourceTimeout = resourceTimeout;
+    }
+
+    /**
+     * Returns master ui url.
+     *
+     * @return master web UI URL(s), or null to derive them from the master REST URL
+     */
+    public String getMasterUiUrl() {
+        return masterUiUrl;
+    }
+
+    /**
+     * Sets master ui url.
+     *
+     * @param masterUiUrl web UI URL of the Spark Master (ex. http://localhost:8080), or comma separated URLs
+     */
+    @DataBoundSetter
+    public void setMasterUiUrl(String masterUiUrl) {
+        this.masterUiUrl = masterUiUrl == null || masterUiUrl.trim().isEmpty() ? null : masterUiUrl.trim();
+    }
+
+    /**
+     * Is stream driver logs.
+     *
+     * @return boolean
+     */
+    public boolean isStreamDriverLogs() {
+        return streamDriverLogs;
+    }
+
+    /**
+     * Sets stream driver logs.
+     *
+     * @param streamDriverLogs copy the stdout and stderr of the driver into the build log until it runs or fails
+     */
+    @DataBoundSetter
+    public void setStreamDriverLogs(boolean streamDriverLogs) {
+        this.streamDriverLogs = streamDriverLogs;
+    }
+
+    /**
+     * Returns the web UI URLs of the Spark Masters, which report the cluster state.
+     *
+     * @return web UI URLs
+     */
+    List<String> getMasterUiUrls() {
+        return masterUiUrl != null ?
+                Utils.getActualSparkMasterUrls(masterUiUrl) : ClusterAdmission.getMasterUiUrls(getActualMasterRestUrl());
+    }
+
+    /**
+     * Returns the REST URL(s) of the cluster.
+     *
+     * @return master REST URL
+     */
+    String getActualMasterRestUrl() {
+        return masterRestUrl != null ? masterRestUrl : Utils.getActualSparkMasterUrl(masterUrl);
+    }
+
+    /**
+     * Builds a Deployment Request using the configuration of the step.
+     *
+     * @param variables build variables, substituted for placeholders
+     * @param logger logger
+     * @return request
+     */
+    DeploymentRequest buildRequest(Map<String, String> variables, PrintStream logger) {
+        DeploymentTemplate template = new DeploymentRequestBuilder()
+                .masterUrl(masterUrl)
+                .scalaVersion(scalaVersion)
+                .appResource(appResource)
+                .mainClass(mainClass)
+                .appArgs(appArgs)
+                .sparkProperties(sparkProperties)
+                .compile();
+        for (String warning : template.getWarnings()) {
+            logger.println("[Spark-Deployer] " + warning);
+        }
+        return template.render(variables, null);
+    }
+
+    /**
+     * Executes the step without blocking a thread while the driver starts.
+     */
+    public static class Execution extends AbstractStepExecutionImpl {
+
+        private static final long serialVersionUID = 1L;
+
+        @Inject(optional = true)
+        private transient SparkDeployStep step;
+
+        @StepContextParameter
+        private transient Run<?, ?> run;
+
+        @StepContextParameter
+        private transient TaskListener listener;
+
+        private String masterRestUrl;
+        private String app;
+        private boolean verbose;
+
+        private transient List<String> masterUiUrls;
+        private transient long resourceTimeoutMillis;
+        private transient List<String> driverLogUiUrls;
+        private transient volatile DeploymentFuture<DeploymentLeases.Lease> leasing;
+        private transient volatile DeploymentFuture<String> future;
+
+        @Override
+        public boolean start() throws Exception {
+            PrintStream logger = listener.getLogger();
+            masterRestUrl = step.getActualMasterRestUrl();
+            app = step.getMainClass();
+            verbose = step.isVerbose();
+
+            logger.println("[Spark-Deployer] Starting Spark Deployment on cluster: " + step.getMasterUrl());
+
+            final PrintStream stepLogger = logger;
+            final DeploymentManager deployer = new DeploymentManager(masterRestUrl, logger, verbose);
+            final SubmissionHistory history = SubmissionHistory.forJob(run.getParent().getRootDir());
+            final DeploymentRequest request = step.buildRequest(run.getEnvironment(listener), logger);
+            final int buildNumber = run.getNumber();
+            final boolean killBeforeSubmit = step.isKillBeforeSubmit();
+            if (step.isStreamDriverLogs()) {
+                driverLogUiUrls = step.getMasterUiUrls();
+            }
+            if (step.isWaitForResources()) {
+                masterUiUrls = step.getMasterUiUrls();
+                resourceTimeoutMillis = (step.getResourceTimeout() > 0 ?
+                        step.getResourceTimeout() : SparkDeployPublisher.DEFAULT_RESOURCE_TIMEOUT) * 1000L;
+            }
+            final int timeout = step.getLeaseTimeout() > 0 ?
+                    step.getLeaseTimeout() : SparkDeployPublisher.DEFAULT_LEASE_TIMEOUT;
+
+            // Only one deployment of the application kills and submits at a time
+            leasing = DeploymentLeases.getInstance().acquireAsync(masterRestUrl, app, run.getFullDisplayName(),
+                    run.getTimeInMillis(), timeout * 1000L, step.isCoalesce());
+            future = leasing.thenCompose(new DeploymentFuture.Step<DeploymentLeases.Lease, String>() {
+                @Override
+                public DeploymentFuture<String> apply(DeploymentLeases.Lease lease) throws IOException {
+                    switch (lease.getOutcome()) {
+                        case COALESCED:
+                            stepLogger.println("[Spark-Deployer] Skipping deployment of " + app + ", since it is "
+                                    + "superseded by " + lease.getHolder());
+                            return DeploymentFuture.completed(null);
+                        case TIMED_OUT:
+                            return DeploymentFuture.failed(new AbortException("Timed out after " + timeout
+                                    + " seconds waiting for the deployment of " + app + " by " + lease.getHolder()));
+                        default:
+                            return submit(lease, deployer, history, request, buildNumber, killBeforeSubmit,
+                                    stepLogger);
+                    }
+                }
+            });
+            future.addCallback(new Completion());
+            return false;
+        }
+
+        @Override
+        public void onResume() {
+            super.onResume();
+            try {
+                Run<?, ?> resumed = getContext().get(Run.class);
+                PrintStream logger = getContext().get(TaskListener.class).getLogger();
+                SubmissionHistory history = SubmissionHistory.forJob(resumed.getParent().getRootDir());
+                SubmissionRecord record = history.getLatestLive(app);
+
+                if (record == null || record.getBuildNumber() != resumed.getNumber()) {
+                    throw new AbortException("Jenkins restarted before the submission of " + app + " was recorded. "
+                            + "Its state is unknown, and the deployment must be run again.");
+                }
+
+                logger.println("[Spark-Deployer] Resuming wait for submission " + record.getSubmissionId());
+                DeploymentManager deployer = getDeployerOf(record,
+                        new DeploymentManager(masterRestUrl, logger, verbose), logger);
+                future = watch(deployer, history, record.getSubmissionId(), record.getSubmittedAt(), logger);
+                future.addCallback(new Completion());
+            } catch (Exception e) {
+                getContext().onFailure(e);
+            }
+        }
+
+        @Override
+        public void stop(Throwable cause) throws Exception {
+            DeploymentFuture<DeploymentLeases.Lease> currentLeasing = leasing;
+            if (currentLeasing != null) {
+                currentLeasing.cancel(true);
+            }
+            DeploymentFuture<String> current = future;
+            if (current != null) {
+                current.cancel(true);
+            }
+            getContext().onFailure(cause);
+        }
+
+        /**
+         * Returns a deployer for the master of the given submission, which differs from the master of the step if the
+         * step was reconfigured, or the submission was made to a cluster of the pool by the post build action.
+         */
+        private DeploymentManager getDeployerOf(SubmissionRecord submission, DeploymentManager deployer,
+                                                PrintStream logger) {
+            if (submission.getMaster() == null || submission.getMaster().equals(deployer.getMasterRestUrl())) {
+                return deployer;
+            }
+            return new DeploymentManager(submission.getMaster(), logger, verbose);
+        }
+
+        /**
+         * Kills the previous submission (if enabled) and submits the application, holding the given lease until the
+         * submission is recorded. Then waits for the driver.
+         */
+        private DeploymentFuture<String> submit(final DeploymentLeases.Lease lease, final DeploymentManager deployer,
+                                                final SubmissionHistory history, final DeploymentRequest request,
+                                                final int buildNumber, final boolean killBeforeSubmit,
+                                                final PrintStream logger) {
+            // Fail before killing if the cluster can never run the application
+            DeploymentFuture<Boolean> checked = masterUiUrls == null ? DeploymentFuture.completed(Boolean.TRUE) :
+                    ClusterAdmission.getInstance().checkCapacityAsync(masterUiUrls, request, logger);
+
+            final SubmissionRecord previous = history.getLatestLive(app);
+            final AtomicLong submittedAt = new AtomicLong();
+            DeploymentFuture<String> submitted = checked.thenCompose(new DeploymentFuture.Step<Boolean, Boolean>() {
+                @Override
+                public DeploymentFuture<Boolean> apply(Boolean ignored) {
+                    if (! killBeforeSubmit) {
+                        return DeploymentFuture.completed(Boolean.FALSE);
+                    }
+                    if (previous == null) {
+                        logger.println("[Spark-Deployer] No previous submission data found. Skipping kill step");
+                        return DeploymentFuture.completed(Boolean.FALSE);
+                    }
+                    return getDeployerOf(previous, deployer, logger).killAsync(previous.getSubmissionId());
+                }
+            }).thenCompose(new DeploymentFuture.Step<Boolean, Boolean>() {
+                @Override
+                public DeploymentFuture<Boolean> apply(Boolean killed) throws IOException {
+                    if (previous != null && killed) {
+                        history.updateDriverState(previous.getSubmissionId(), "KILLED");
+                    }
+                    return masterUiUrls == null ? DeploymentFuture.completed(Boolean.TRUE) :
+                            ClusterAdmission.getInstance().admitAsync(masterUiUrls, request, resourceTimeoutMillis,
+                                    logger);
+                }
+            }).thenCompose(new DeploymentFuture.Step<Boolean, String>() {
+                @Override
+                public DeploymentFuture<String> apply(Boolean admitted) {
+                    submittedAt.set(System.currentTimeMillis());
+                    return deployer.submitAsync(request);
+                }
+            }).thenCompose(new DeploymentFuture.Step<String, String>() {
+                @Override
+                public DeploymentFuture<String> apply(String submissionId) throws IOException {
+                    // Recorded before waiting, so that the wait can be resumed after a restart
+                    history.record(new SubmissionRecord(buildNumber, submissionId, app, masterRestUrl, "SUBMITTED",
+                            submittedAt.get(), System.currentTimeMillis()));
+                    return DeploymentFuture.completed(submissionId);
+                }
+            });
+            submitted.addCallback(new DeploymentFuture.Callback<String>() {
+                @Override
+                public void onSuccess(String submissionId) {
+                    lease.release();
+                }
+
+                @Override
+                public void onFailure(Throwable cause) {
+                    lease.release();
+                }
+            });
+
+            return submitted.thenCompose(new DeploymentFuture.Step<String, String>() {
+                @Override
+                public DeploymentFuture<String> apply(String submissionId) {
+                    return watch(deployer, history, submissionId, submittedAt.get(), logger);
+                }
+            });
+        }
+
+        /**
+         * Waits for the driver of the given submission to run, copying its logs meanwhile if enabled, and records its
+         * state in the history.
+         */
+        private DeploymentFuture<String> watch(final DeploymentManager deployer, final SubmissionHistory history,
+                                               final String submissionId, final long submittedAt,
+                                               PrintStream logger) {
+            final DeploymentFuture<String> polled = DriverStatePoller.getInstance().watch(deployer, submissionId,
+                    DriverStatePoller.STARTING_STATES, SparkDeployPublisher.STARTING_MAX_ATTEMPTS);
+            DeploymentFuture<String> watched = polled;
+            if (driverLogUiUrls != null) {
+                watched = new DriverLogTailer(deployer, submissionId, driverLogUiUrls, logger).followAsync(polled)
+                        .thenCompose(new DeploymentFuture.Step<Boolean, String>() {
+                            @Override
+                            public DeploymentFuture<String> apply(Boolean copied) {
+                                return polled;
+                            }
+                        });
+            }
+            return watched
+                    .thenCompose(new DeploymentFuture.Step<String, String>() {
+                        @Override
+                        public DeploymentFuture<String> apply(String driverState) throws IOException {
+                            DeploymentMetrics.getInstance().recordDeployment(deployer.getMasterRestUrl(), driverState,
+                                    System.currentTimeMillis() - submittedAt);
+                            history.updateDriverState(submissionId, driverState);
+
+                            if (! "RUNNING".equals(driverState)) {
+                                return DeploymentFuture.failed(new AbortException("Spark application " + app
+                                        + " did not start. Submission ID " + submissionId + " - Driver State : "
+                                        + driverState));
+                            }
+                            return DeploymentFuture.completed(submissionId);
+                        }
+                    });
+        }
+
+        /**
+         * Completes the step once the driver is running, or the deployment failed.
+         */
+        private final class Completion implements DeploymentFuture.Callback<String> {
+
+            @Override
+            public void onSuccess(String submissionId) {
+                if (submissionId == null) {
+                    // Superseded by a newer deployment
+                    getContext().onSuccess(null);
+                    return;
+                }
+                try {
+                    getContext().get(TaskListener.class).getLogger().println("[Spark-Deployer] Submitted Spark "
+                            + "application under Submission ID " + submissionId + " - Driver State : RUNNING");
+                } catch (Exception e) {
+                    // Logging is best effort
+                }
+                getContext().onSuccess(submissionId);
+            }
+
+            @Override
+            public void onFailure(Throwable cause) {
+                getContext().onFailure(cause);
+            }
+        }
+    }
+
+    /**
+     * Spark Deploy Step Descriptor.
+     */
+    @Extension(optional = true)
+    @SuppressWarnings("unused")
+    public static class DescriptorImpl extends AbstractStepDescriptorImpl {
+
+        public DescriptorImpl() {
+            super(Execution.class);
+        }
+
+        @Override
+        public String getFunctionName() {
+            return "sparkDeploy";
+        }
+
+        @Override
+        public String getDisplayName() {
+            return "Deploy to Apache Spark";
+        }
+
+        /**
+         * Validates Master URL.
+         * @param value value
+         * @return validation result
+         */
+        public FormValidation doCheckMasterUrl(@QueryParameter String value) {
+            return getPublisherDescriptor().doCheckMasterUrl(value);
+        }
+
+        /**
+         * Validates App Resource.
+         * @param value value
+         * @return validation result
+         */
+        public FormValidation doCheckAppResource(@QueryParameter String value) {
+            return getPublisherDescriptor().doCheckAppResource(value);
+        }
+
+        /**
+         * Validates Main Class.
+         * @param value value
+         * @return validation result
+         */
+        public FormValidation doCheckMainClass(@QueryParameter String value) {
+            return getPublisherDescriptor().doCheckMainClass(value);
+        }
+
+        /**
+         * Validate Application Arguments if specified.
+         * @param value value
+         * @return validation result
+         */
+        public FormValidation doCheckAppArgs(@QueryParameter String value) {
+            return SparkDeployPublisher.Descriptor.checkAppArgs(value);
+        }
+
+        /**
+         * Validate Spark Properties if specified.
+         * @param value value
+         * @return validation result
+         */
+        public FormValidation doCheckSparkProperties(@QueryParameter String value) {
+            return SparkDeployPublisher.Descriptor.checkSparkProperties(value);
+        }
+
+        /**
+         * Validate Master Web UI URL if specified.
+         * @param value value
+         * @return validation result
+         */
+        public FormValidation doCheckMasterUiUrl(@QueryParameter String value) {
+            return getPublisherDescriptor().doCheckMasterUiUrl(value);
+        }
+
+        /**
+         * Validate Resource Timeout.
+         * @param value value
+         * @return validation result
+         */
+        public FormValidation doCheckResourceTimeout(@QueryParameter String value) {
+            return getPublisherDescriptor().doCheckResourceTimeout(value);
+        }
+
+        /**
+         * Validate Lease Timeout.
+         * @param value value
+         * @return validation result
+         */
+        public FormValidation doCheckLeaseTimeout(@QueryParameter String value) {
+            return getPublisherDescriptor().doCheckLeaseTimeout(value);
+        }
+
+        private static SparkDeployPublisher.Descriptor getPublisherDescriptor() {
+            return Jenkins.getInstance().getDescriptorByType(SparkDeployPublisher.Descriptor.class);
+        }
+    }
+}
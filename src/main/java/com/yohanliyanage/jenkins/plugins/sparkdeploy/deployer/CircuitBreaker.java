@@ -0,0 +1,224 @@
+/*
+ * Copyright (C) 2015 Yohan Liyanage
+ *
+ * Release under the MIT License (MIT). See LICENSE file for details.
+ */
+
+package com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Stops calling a Spark Master that keeps failing, shared by all builds of this JVM.
+ * <p>
+ * Each master has a circuit that opens after {@link #FAILURE_THRESHOLD} consecutive failed calls. While it is open,
+ * calls fail right away with a {@link CircuitOpenException} instead of waiting for the master to time out. After
+ * {@link #COOLDOWN_MILLIS}, the circuit is half open: a single call is let through as a probe, which closes the circuit
+ * if it succeeds, and opens it again if it fails.
+ *
+ * @author Yohan Liyanage
+ */
+public final class CircuitBreaker {
+
+    /**
+     * Number of consecutive failures after which the circuit of a master opens.
+     */
+    public static final int FAILURE_THRESHOLD = 5;
+
+    /**
+     * How long a circuit stays open before a probe is let through.
+     */
+    public static final long COOLDOWN_MILLIS = 30 * 1000;
+
+    private static final CircuitBreaker INSTANCE = new CircuitBreaker();
+
+    private final ConcurrentMap<String, Circuit> circuits = new ConcurrentHashMap<String, Circuit>();
+
+    /**
+     * State of the circuit of a master.
+     */
+    public enum State {
+        CLOSED, HALF_OPEN, OPEN
+    }
+
+    /**
+     * Returns the circuit breaker of this JVM.
+     *
+     * @return circuit breaker
+     */
+    public static CircuitBreaker getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Checks that the given master may be called. Once the cooldown is over, only the first caller is let through
+     * until the outcome of its call is known.
+     *
+     * @param master master REST URL
+     * @throws CircuitOpenException if the circuit of the master is open
+     */
+    public void check(String master) throws CircuitOpenException {
+        Circuit circuit = circuits.get(master);
+        if (circuit == null) {
+            return;
+        }
+        synchronized (circuit) {
+            if (circuit.openedAt == 0) {
+                return;
+            }
+            long remaining = circuit.openedAt + COOLDOWN_MILLIS - System.currentTimeMillis();
+            if (remaining <= 0 && ! circuit.probing) {
+                circuit.probing = true;
+                return;
+            }
+            throw new CircuitOpenException(master, circuit.failures, Math.max(remaining, 0));
+        }
+    }
+
+    /**
+     * Records a successful call to the given master, which closes its circuit.
+     *
+     * @param master master REST URL
+     */
+    public void onSuccess(String master) {
+        Circuit circuit = circuits.get(master);
+        if (circuit == null) {
+            return;
+        }
+        synchronized (circuit) {
+            circuit.failures = 0;
+            circuit.openedAt = 0;
+            circuit.probing = false;
+        }
+    }
+
+    /**
+     * Records a failed call to the given master, which opens its circuit if it failed too often, or if the call was
+     * the probe of a half open circuit.
+     *
+     * @param master master REST URL
+     * @return true if the circuit was opened by this failure
+     */
+    public boolean onFailure(String master) {
+        Circuit circuit = getCircuit(master);
+        synchronized (circuit) {
+            circuit.failures++;
+            boolean opening = circuit.openedAt == 0 ? circuit.failures >= FAILURE_THRESHOLD : circuit.probing;
+            if (opening) {
+                circuit.openedAt = System.currentTimeMillis();
+                circuit.probing = false;
+            }
+            return opening;
+        }
+    }
+
+    /**
+     * Returns the state of the circuit of the given master.
+     *
+     * @param master master REST URL
+     * @return state
+     */
+    public State getState(String master) {
+        Circuit circuit = circuits.get(master);
+        if (circuit == null) {
+            return State.CLOSED;
+        }
+        synchronized (circuit) {
+            return circuit.getState();
+        }
+    }
+
+    /**
+     * Returns true if calls to the given master fail right away, that is if its circuit is open and not ready for a
+     * probe.
+     *
+     * @param master master REST URL
+     * @return true if open
+     */
+    public boolean isOpen(String master) {
+        Circuit circuit = circuits.get(master);
+        if (circuit == null) {
+            return false;
+        }
+        synchronized (circuit) {
+            return circuit.openedAt != 0
+                    && (circuit.probing || System.currentTimeMillis() - circuit.openedAt < COOLDOWN_MILLIS);
+        }
+    }
+
+    /**
+     * Returns the state of the circuit of every master called so far.
+     *
+     * @return states by master REST URL
+     */
+    public Map<String, State> getStates() {
+        Map<String, State> states = new TreeMap<String, State>();
+        for (Map.Entry<String, Circuit> entry : circuits.entrySet()) {
+            synchronized (entry.getValue()) {
+                states.put(entry.getKey(), entry.getValue().getState());
+            }
+        }
+        return states;
+    }
+
+    private Circuit getCircuit(String master) {
+        Circuit circuit = circuits.get(master);
+        if (circuit == null) {
+            Circuit created = new Circuit();
+            circuit = circuits.putIfAbsent(master, created);
+            if (circuit == null) {
+                circuit = created;
+            }
+        }
+        return circuit;
+    }
+
+    /**
+     * Circuit of a master.
+     */
+    private static final class Circuit {
+
+        private int failures;
+        private long openedAt;
+        private boolean probing;
+
+        State getState() {
+            if (openedAt == 0) {
+                return State.CLOSED;
+            }
+            if (probing || System.currentTimeMillis() - openedAt >= COOLDOWN_MILLIS) {
+                return State.HALF_OPEN;
+            }
+            return State.OPEN;
+        }
+    }
+
+    /**
+     * Thrown when a master is not called because its circuit is open.
+     */
+    public static final class CircuitOpenException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String master;
+
+        CircuitOpenException(String master, int failures, long remainingMillis) {
+            super("Spark Master " + master + " failed " + failures + " times in a row. Not calling it for another "
+                    + ((remainingMillis + 999) / 1000) + " seconds");
+            this.master = master;
+        }
+
+        /**
+         * Returns the master that was not called.
+         *
+         * @return master REST URL
+         */
+        public String getMaster() {
+            return master;
+        }
+    }
+}
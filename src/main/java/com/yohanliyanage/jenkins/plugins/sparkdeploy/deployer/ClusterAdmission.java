@@ -0,0 +1,328 @@
+/*
+ * Copyright (C) 2015 Yohan Liyanage
+ *
+ * Release under the MIT License (MIT). See LICENSE file for details.
+ */
+
+package com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds back submissions until the Spark standalone cluster has the free cores and memory they need, using the cluster
+ * state reported by the web UI of the master (/json). A submission that cannot run on the cluster even if it were
+ * empty fails right away.
+ * <p>
+ * Cluster states are cached for a few seconds per master, and fetched by one thread at a time, so a burst of
+ * deployments reads the state once. Resources of admitted submissions are marked as used in the cached state until it
+ * is fetched again, so that a burst does not admit more than the cluster can take.
+ *
+ * @author Yohan Liyanage
+ */
+public final class ClusterAdmission {
+
+    /**
+     * Port of the Spark Master web UI if not given.
+     */
+    public static final int DEFAULT_UI_PORT = 8080;
+
+    private static final long CACHE_MILLIS = 5000;
+    private static final int TIMEOUT_MILLIS = 5000;
+    private static final ObjectReader STATE_READER = SparkJson.MAPPER.readerFor(ClusterState.class);
+
+    private static final ClusterAdmission INSTANCE = new ClusterAdmission();
+
+    private final ConcurrentMap<String, Snapshot> snapshots = new ConcurrentHashMap<String, Snapshot>();
+    private final ExecutorService waiters;
+
+    private ClusterAdmission() {
+        this.waiters = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<Runnable>(), new DaemonThreadFactory("spark-deploy-admission"));
+    }
+
+    /**
+     * Returns the admission of this JVM.
+     *
+     * @return admission
+     */
+    public static ClusterAdmission getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the web UI URLs of the masters of the given Spark Master URL, on the default UI port.
+     *
+     * @param masterUrl Master URL, with one or more comma separated masters
+     * @return web UI URLs
+     */
+    public static List<String> getMasterUiUrls(String masterUrl) {
+        List<String> urls = new ArrayList<String>();
+        for (String url : Utils.getActualSparkMasterUrls(masterUrl)) {
+            try {
+                URL parsed = new URL(url);
+                urls.add(new URL(parsed.getProtocol(), parsed.getHost(), DEFAULT_UI_PORT, "").toString());
+            } catch (IOException e) {
+                urls.add(url);
+            }
+        }
+        return urls;
+    }
+
+    /**
+     * Checks that the request could run on the cluster at all, so that a deployment can fail before it kills the
+     * previous submission.
+     *
+     * @param masterUiUrls web UI URLs of the masters; the one reporting ALIVE is used
+     * @param request request
+     * @param logger logger
+     * @throws IOException if the request can never fit
+     */
+    public void checkCapacity(List<String> masterUiUrls, DeploymentRequest request, PrintStream logger)
+            throws IOException {
+        ResourceDemand demand = demandOf(request);
+        Snapshot snapshot = getSnapshot(masterUiUrls, logger);
+        if (snapshot != null) {
+            synchronized (snapshot) {
+                checkCapacity(demand, snapshot.state);
+            }
+        }
+    }
+
+    /**
+     * Waits until the request fits into the free resources of the cluster, and marks its resources as used.
+     *
+     * @param masterUiUrls web UI URLs of the masters; the one reporting ALIVE is used
+     * @param request request
+     * @param timeoutMillis maximum time to wait
+     * @param logger logger
+     * @throws IOException if the request can never fit, or did not fit in time
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void admit(List<String> masterUiUrls, DeploymentRequest request, long timeoutMillis, PrintStream logger)
+            throws IOException, InterruptedException {
+        ResourceDemand demand = demandOf(request);
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        boolean waiting = false;
+        while (true) {
+            Snapshot snapshot = getSnapshot(masterUiUrls, logger);
+            if (snapshot == null) {
+                logger.println("[Spark-Deployer] Cluster state is not available. Submitting without checking " +
+                        "resources");
+                return;
+            }
+
+            String reason;
+            synchronized (snapshot) {
+                checkCapacity(demand, snapshot.state);
+                reason = demand.checkFree(snapshot.state);
+                if (reason == null) {
+                    demand.reserve(snapshot.state);
+                    if (waiting) {
+                        logger.println("[Spark-Deployer] Cluster resources are available");
+                    }
+                    return;
+                }
+            }
+
+            long now = System.currentTimeMillis();
+            if (now >= deadline) {
+                throw new IOException("Timed out after " + (timeoutMillis / 1000) + " seconds waiting for cluster "
+                        + "resources (" + demand + ") : " + reason);
+            }
+            if (! waiting) {
+                logger.println("[Spark-Deployer] Waiting for cluster resources (" + demand + ") : " + reason);
+                waiting = true;
+            }
+            Thread.sleep(Math.min(CACHE_MILLIS, deadline - now));
+        }
+    }
+
+    /**
+     * Waits until the request fits into the free resources of the cluster without blocking the calling thread.
+     *
+     * @param masterUiUrls web UI URLs of the masters
+     * @param request request
+     * @param timeoutMillis maximum time to wait
+     * @param logger logger
+     * @return future, which fails if the request can never fit, or did not fit in time
+     * @see #admit(List, DeploymentRequest, long, PrintStream)
+     */
+    public DeploymentFuture<Boolean> admitAsync(final List<String> masterUiUrls, final DeploymentRequest request,
+                                                final long timeoutMillis, final PrintStream logger) {
+        return DeploymentFuture.supply(waiters, new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                admit(masterUiUrls, request, timeoutMillis, logger);
+                return Boolean.TRUE;
+            }
+        });
+    }
+
+    /**
+     * Checks that the request could run on the cluster at all without blocking the calling thread.
+     *
+     * @param masterUiUrls web UI URLs of the masters
+     * @param request request
+     * @param logger logger
+     * @return future, which fails if the request can never fit
+     * @see #checkCapacity(List, DeploymentRequest, PrintStream)
+     */
+    public DeploymentFuture<Boolean> checkCapacityAsync(final List<String> masterUiUrls,
+                                                        final DeploymentRequest request, final PrintStream logger) {
+        return DeploymentFuture.supply(waiters, new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                checkCapacity(masterUiUrls, request, logger);
+                return Boolean.TRUE;
+            }
+        });
+    }
+
+    /**
+     * Returns the state of the cluster, from the cache if recent, including resources reserved by admitted
+     * submissions.
+     *
+     * @param masterUiUrls web UI URLs of the masters; the one reporting ALIVE is used
+     * @param logger logger
+     * @return copy of the state, or null if no master reported ALIVE
+     */
+    public ClusterState getState(List<String> masterUiUrls, PrintStream logger) {
+        Snapshot snapshot = getSnapshot(masterUiUrls, logger);
+        if (snapshot == null) {
+            return null;
+        }
+        synchronized (snapshot) {
+            return snapshot.state.copy();
+        }
+    }
+
+    /**
+     * Marks the resources of a submission as used in the cached state of the cluster, without waiting for them, so
+     * that deployments placed until the state is fetched again account for it.
+     *
+     * @param masterUiUrls web UI URLs of the masters
+     * @param demand resources of the submission
+     * @param logger logger
+     */
+    public void reserve(List<String> masterUiUrls, ResourceDemand demand, PrintStream logger) {
+        Snapshot snapshot = getSnapshot(masterUiUrls, logger);
+        if (snapshot != null) {
+            synchronized (snapshot) {
+                if (demand.checkFree(snapshot.state) == null) {
+                    demand.reserve(snapshot.state);
+                }
+            }
+        }
+    }
+
+    private static ResourceDemand demandOf(DeploymentRequest request) throws IOException {
+        try {
+            return ResourceDemand.of(request);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage());
+        }
+    }
+
+    private static void checkCapacity(ResourceDemand demand, ClusterState state) throws IOException {
+        String reason = demand.checkCapacity(state);
+        if (reason != null) {
+            throw new IOException("Spark cluster cannot run the application (" + demand + ") : " + reason);
+        }
+    }
+
+    /**
+     * Returns the cached state of the cluster, fetching it if expired.
+     *
+     * @return snapshot, or null if no master reported ALIVE
+     */
+    private Snapshot getSnapshot(List<String> masterUiUrls, PrintStream logger) {
+        String key = Utils.join(masterUiUrls, ",");
+        Snapshot snapshot = snapshots.get(key);
+        if (snapshot == null) {
+            Snapshot created = new Snapshot();
+            snapshot = snapshots.putIfAbsent(key, created);
+            if (snapshot == null) {
+                snapshot = created;
+            }
+        }
+
+        synchronized (snapshot) {
+            if (System.currentTimeMillis() - snapshot.fetchedAt >= CACHE_MILLIS) {
+                snapshot.state = fetch(masterUiUrls, logger);
+                snapshot.fetchedAt = System.currentTimeMillis();
+            }
+            return snapshot.state != null ? snapshot : null;
+        }
+    }
+
+    /**
+     * Reads the current state of the cluster, bypassing the cache.
+     *
+     * @param masterUiUrls web UI URLs of the masters; the one reporting ALIVE is used
+     * @param logger logger
+     * @return state, or null if no master reported ALIVE
+     */
+    public static ClusterState fetchState(List<String> masterUiUrls, PrintStream logger) {
+        return fetch(masterUiUrls, logger);
+    }
+
+    private static ClusterState fetch(List<String> masterUiUrls, PrintStream logger) {
+        for (String url : masterUiUrls) {
+            try {
+                ClusterState state = fetch(url);
+                if ("ALIVE".equals(state.getStatus())) {
+                    return state;
+                }
+            } catch (IOException e) {
+                logger.println("[Spark-Deployer] Could not read cluster state from " + url + " : " + e);
+            }
+        }
+        return null;
+    }
+
+    private static ClusterState fetch(String masterUiUrl) throws IOException {
+        String base = masterUiUrl.endsWith("/") ? masterUiUrl : masterUiUrl + "/";
+        HttpURLConnection connection = (HttpURLConnection) new URL(base + "json/").openConnection();
+        connection.setConnectTimeout(TIMEOUT_MILLIS);
+        connection.setReadTimeout(TIMEOUT_MILLIS);
+        connection.setUseCaches(false);
+        try {
+            int code = connection.getResponseCode();
+            if (code != HttpURLConnection.HTTP_OK) {
+                throw new IOException("HTTP " + code);
+            }
+            InputStream in = connection.getInputStream();
+            try {
+                return STATE_READER.readValue(in);
+            } finally {
+                in.close();
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * Cached cluster state of a master (or the masters of a highly available cluster).
+     */
+    private static final class Snapshot {
+
+        private ClusterState state;
+        private long fetchedAt;
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2015 Yohan Liyanage
+ *
+ * Release under the MIT License (MIT). See LICENSE file for details.
+ */
+
+package com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer;
+
+import java.io.PrintStream;
+import java.util.List;
+
+/**
+ * Picks the least loaded cluster of a pool for a deployment.
+ * <p>
+ * Clusters on which the application fits right now are preferred over clusters on which it would have to wait, and
+ * clusters that could never run it are skipped. Among the rest, each cluster is scored by the share of its cores and
+ * memory that is free, discounted by the recent latency of submissions to its master, so that a cluster whose master
+ * is slow to respond is picked only if it has clearly more room. Cluster states come from {@link ClusterAdmission},
+ * and include the resources of deployments placed on the cluster since its state was last fetched.
+ *
+ * @author Yohan Liyanage
+ */
+public final class ClusterPlacement {
+
+    /**
+     * Submit latency in milliseconds at which the score of a cluster is halved.
+     */
+    private static final double LATENCY_HALVING_MILLIS = 1000;
+
+    private ClusterPlacement() {
+        // Utility class
+    }
+
+    /**
+     * Chooses the cluster to deploy to.
+     *
+     * @param clusters candidate clusters, in order of preference on equal scores
+     * @param demand resources the application needs
+     * @param logger logger
+     * @return chosen cluster, or null if no cluster reported its state, or the application never fits on any of them
+     */
+    public static ClusterTarget choose(List<ClusterTarget> clusters, ResourceDemand demand, PrintStream logger) {
+        ClusterTarget best = null;
+        boolean bestFits = false;
+        double bestScore = -1;
+
+        for (ClusterTarget cluster : clusters) {
+            if (isCircuitOpen(cluster)) {
+                logger.println("[Spark-Deployer] Skipping cluster " + cluster.getName() + " : masters keep failing");
+                continue;
+            }
+            ClusterState state = ClusterAdmission.getInstance().getState(cluster.getMasterUiUrls(), logger);
+            if (state == null) {
+                logger.println("[Spark-Deployer] Skipping cluster " + cluster.getName() + " : state not available");
+                continue;
+            }
+            String reason = demand.checkCapacity(state);
+            if (reason != null) {
+                logger.println("[Spark-Deployer] Skipping cluster " + cluster.getName() + " : " + reason);
+                continue;
+            }
+
+            boolean fits = demand.checkFree(state) == null;
+            long latency = getRecentSubmitLatency(cluster);
+            double score = getFreeShare(state) * LATENCY_HALVING_MILLIS
+                    / (LATENCY_HALVING_MILLIS + Math.max(latency, 0));
+            logger.println("[Spark-Deployer] Cluster " + cluster.getName() + " : score " + String.format("%.3f", score)
+                    + (fits ? "" : ", application does not fit now")
+                    + (latency >= 0 ? ", recent submit latency " + latency + " ms" : ""));
+
+            if (best == null || (fits && ! bestFits) || (fits == bestFits && score > bestScore)) {
+                best = cluster;
+                bestFits = fits;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns the average of the free shares of cores and memory of the alive workers.
+     */
+    static double getFreeShare(ClusterState state) {
+        long cores = 0;
+        long coresFree = 0;
+        long memory = 0;
+        long memoryFree = 0;
+        for (ClusterState.Worker worker : state.getAliveWorkers()) {
+            cores += worker.getCores();
+            coresFree += worker.getCoresFree();
+            memory += worker.getMemory();
+            memoryFree += worker.getMemoryFree();
+        }
+        double coreShare = cores > 0 ? (double) coresFree / cores : 0;
+        double memoryShare = memory > 0 ? (double) memoryFree / memory : 0;
+        return (coreShare + memoryShare) / 2;
+    }
+
+    /**
+     * Returns true if calls to every master of the cluster fail fast, so that deployments go to another cluster until
+     * a master recovers.
+     */
+    private static boolean isCircuitOpen(ClusterTarget cluster) {
+        for (String master : Utils.getActualSparkMasterUrls(cluster.getMasterRestUrl())) {
+            if (! CircuitBreaker.getInstance().isOpen(master)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the lowest recent submit latency among the masters of the cluster, since the ALIVE one serves the
+     * submissions.
+     */
+    private static long getRecentSubmitLatency(ClusterTarget cluster) {
+        long latency = -1;
+        for (String master : Utils.getActualSparkMasterUrls(cluster.getMasterRestUrl())) {
+            long recent = DeploymentMetrics.getInstance().getRecentLatency(master, "submit");
+            if (recent >= 0 && (latency < 0 || recent < latency)) {
+                latency = recent;
+            }
+        }
+        return latency;
+    }
+}
@@ -0,0 +1,389 @@
+/*
+ * Copyright (C) 2015 Yohan Liyanage
+ *
+ * Release under the MIT License (MIT). See LICENSE file for details.
+ */
+
+package com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * State of a Spark standalone cluster, as returned by /json of the Spark Master web UI. Memory is in MB.
+ *
+ * @author Yohan Liyanage
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ClusterState {
+
+    private String url;
+    private String status;
+    private List<Worker> workers = new ArrayList<Worker>();
+    private List<Driver> activeDrivers = new ArrayList<Driver>();
+    private List<Driver> completedDrivers = new ArrayList<Driver>();
+
+    /**
+     * Returns url.
+     *
+     * @return url
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * Sets url.
+     *
+     * @param url url
+     */
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    /**
+     * Returns the status of the master, which is ALIVE for the leader of a highly available cluster.
+     *
+     * @return status
+     */
+    public String getStatus() {
+        return status;
+    }
+
+    /**
+     * Sets status.
+     *
+     * @param status status
+     */
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    /**
+     * Returns workers.
+     *
+     * @return workers
+     */
+    public List<Worker> getWorkers() {
+        return workers;
+    }
+
+    /**
+     * Sets workers.
+     *
+     * @param workers workers
+     */
+    public void setWorkers(List<Worker> workers) {
+        this.workers = workers == null ? new ArrayList<Worker>() : workers;
+    }
+
+    /**
+     * Returns the drivers that are submitted, running or relaunching.
+     *
+     * @return active drivers
+     */
+    public List<Driver> getActiveDrivers() {
+        return activeDrivers;
+    }
+
+    /**
+     * Sets active drivers.
+     *
+     * @param activeDrivers active drivers
+     */
+    @JsonProperty("activedrivers")
+    public void setActiveDrivers(List<Driver> activeDrivers) {
+        this.activeDrivers = activeDrivers == null ? new ArrayList<Driver>() : activeDrivers;
+    }
+
+    /**
+     * Returns the drivers that finished, failed or were killed, as far as the master still lists them.
+     *
+     * @return completed drivers
+     */
+    public List<Driver> getCompletedDrivers() {
+        return completedDrivers;
+    }
+
+    /**
+     * Sets completed drivers.
+     *
+     * @param completedDrivers completed drivers
+     */
+    @JsonProperty("completeddrivers")
+    public void setCompletedDrivers(List<Driver> completedDrivers) {
+        this.completedDrivers = completedDrivers == null ? new ArrayList<Driver>() : completedDrivers;
+    }
+
+    /**
+     * Returns the workers that accept drivers and executors.
+     *
+     * @return alive workers
+     */
+    public List<Worker> getAliveWorkers() {
+        List<Worker> alive = new ArrayList<Worker>();
+        for (Worker worker : workers) {
+            if ("ALIVE".equals(worker.getState())) {
+                alive.add(worker);
+            }
+        }
+        return alive;
+    }
+
+    /**
+     * Returns a copy of this state, which is not affected by resources reserved in this one later.
+     *
+     * @return copy
+     */
+    public ClusterState copy() {
+        ClusterState copy = new ClusterState();
+        copy.url = url;
+        copy.status = status;
+        for (Worker worker : workers) {
+            Worker workerCopy = new Worker();
+            workerCopy.id = worker.id;
+            workerCopy.state = worker.state;
+            workerCopy.cores = worker.cores;
+            workerCopy.coresUsed = worker.coresUsed;
+            workerCopy.memory = worker.memory;
+            workerCopy.memoryUsed = worker.memoryUsed;
+            workerCopy.webUiAddress = worker.webUiAddress;
+            copy.workers.add(workerCopy);
+        }
+        // Drivers are not modified by reservations
+        copy.activeDrivers = new ArrayList<Driver>(activeDrivers);
+        copy.completedDrivers = new ArrayList<Driver>(completedDrivers);
+        return copy;
+    }
+
+    /**
+     * A driver of the cluster. The main class is reported by Spark 2.3 and later only.
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Driver {
+
+        private String id;
+        private String state;
+        private String mainClass;
+
+        /**
+         * Returns id.
+         *
+         * @return submission ID of the driver
+         */
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * Sets id.
+         *
+         * @param id submission ID of the driver
+         */
+        public void setId(String id) {
+            this.id = id;
+        }
+
+        /**
+         * Returns state.
+         *
+         * @return state
+         */
+        public String getState() {
+            return state;
+        }
+
+        /**
+         * Sets state.
+         *
+         * @param state state
+         */
+        public void setState(String state) {
+            this.state = state;
+        }
+
+        /**
+         * Returns main class.
+         *
+         * @return main class, or null if not reported
+         */
+        public String getMainClass() {
+            return mainClass;
+        }
+
+        /**
+         * Sets main class.
+         *
+         * @param mainClass main class
+         */
+        @JsonProperty("mainclass")
+        public void setMainClass(String mainClass) {
+            this.mainClass = mainClass;
+        }
+    }
+
+    /**
+     * A worker of the cluster.
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Worker {
+
+        private String id;
+        private String state;
+        private int cores;
+        private int coresUsed;
+        private long memory;
+        private long memoryUsed;
+        private String webUiAddress;
+
+        /**
+         * Returns id.
+         *
+         * @return id
+         */
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * Sets id.
+         *
+         * @param id id
+         */
+        public void setId(String id) {
+            this.id = id;
+        }
+
+        /**
+         * Returns state.
+         *
+         * @return state
+         */
+        public String getState() {
+            return state;
+        }
+
+        /**
+         * Sets state.
+         *
+         * @param state state
+         */
+        public void setState(String state) {
+            this.state = state;
+        }
+
+        /**
+         * Returns cores.
+         *
+         * @return cores
+         */
+        public int getCores() {
+            return cores;
+        }
+
+        /**
+         * Sets cores.
+         *
+         * @param cores cores
+         */
+        public void setCores(int cores) {
+            this.cores = cores;
+        }
+
+        /**
+         * Returns cores used.
+         *
+         * @return cores used
+         */
+        public int getCoresUsed() {
+            return coresUsed;
+        }
+
+        /**
+         * Sets cores used.
+         *
+         * @param coresUsed cores used
+         */
+        @JsonProperty("coresused")
+        public void setCoresUsed(int coresUsed) {
+            this.coresUsed = coresUsed;
+        }
+
+        /**
+         * Returns memory.
+         *
+         * @return memory in MB
+         */
+        public long getMemory() {
+            return memory;
+        }
+
+        /**
+         * Sets memory.
+         *
+         * @param memory memory in MB
+         */
+        public void setMemory(long memory) {
+            this.memory = memory;
+        }
+
+        /**
+         * Returns memory used.
+         *
+         * @return memory used in MB
+         */
+        public long getMemoryUsed() {
+            return memoryUsed;
+        }
+
+        /**
+         * Sets memory used.
+         *
+         * @param memoryUsed memory used in MB
+         */
+        @JsonProperty("memoryused")
+        public void setMemoryUsed(long memoryUsed) {
+            this.memoryUsed = memoryUsed;
+        }
+
+        /**
+         * Returns the URL of the web UI of the worker, which serves the logs of its drivers.
+         *
+         * @return web UI URL, or null if not reported
+         */
+        public String getWebUiAddress() {
+            return webUiAddress;
+        }
+
+        /**
+         * Sets web ui address.
+         *
+         * @param webUiAddress web UI URL
+         */
+        @JsonProperty("webuiaddress")
+        public void setWebUiAddress(String webUiAddress) {
+            this.webUiAddress = webUiAddress;
+        }
+
+        /**
+         * Returns free cores.
+         *
+         * @return free cores
+         */
+        public int getCoresFree() {
+            return Math.max(0, cores - coresUsed);
+        }
+
+        /**
+         * Returns free memory.
+         *
+         * @return free memory in MB
+         */
+        public long getMemoryFree() {
+            return Math.max(0, memory - memoryUsed);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2015 Yohan Liyanage
+ *
+ * Release under the MIT License (MIT). See LICENSE file for details.
+ */
+
+package com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A Spark standalone cluster that deployments can be placed on.
+ *
+ * @author Yohan Liyanage
+ */
+public final class ClusterTarget {
+
+    private final String name;
+    private final String masterUrl;
+    private final String masterRestUrl;
+    private final List<String> masterUiUrls;
+
+    /**
+     * Creates a target.
+     *
+     * @param name name of the cluster
+     * @param masterUrl Spark Master URL, passed to the driver as spark.master
+     * @param masterRestUrl REST URL(s) of the masters
+     * @param masterUiUrls web UI URLs of the masters, which report the cluster state
+     */
+    public ClusterTarget(String name, String masterUrl, String masterRestUrl, List<String> masterUiUrls) {
+        this.name = name;
+        this.masterUrl = masterUrl;
+        this.masterRestUrl = masterRestUrl;
+        this.masterUiUrls = Collections.unmodifiableList(masterUiUrls);
+    }
+
+    /**
+     * Returns name.
+     *
+     * @return name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns master url.
+     *
+     * @return master url
+     */
+    public String getMasterUrl() {
+        return masterUrl;
+    }
+
+    /**
+     * Returns master rest url.
+     *
+     * @return master rest url
+     */
+    public String getMasterRestUrl() {
+        return masterRestUrl;
+    }
+
+    /**
+     * Returns master ui urls.
+     *
+     * @return master ui urls
+     */
+    public List<String> getMasterUiUrls() {
+        return masterUiUrls;
+    }
+
+    @Override
+    public String toString() {
+        return name + " (" + masterUrl + ")";
+    }
+}
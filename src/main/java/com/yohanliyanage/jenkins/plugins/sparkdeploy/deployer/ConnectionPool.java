@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2015 Yohan Liyanage
+ *
+ * Release under the MIT License (MIT). See LICENSE file for details.
+ */
+
+package com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * JVM wide registry of {@link SparkRestTransport}s, keyed by Spark Master REST URL. All deployments to the same master
+ * share one transport, and therefore share its connection limit and keep-alive connections.
+ *
+ * @author Yohan Liyanage
+ */
+public final class ConnectionPool {
+
+    private static final ConnectionPool INSTANCE = new ConnectionPool();
+
+    private final ConcurrentMap<String, SparkRestTransport> transports =
+            new ConcurrentHashMap<String, SparkRestTransport>();
+
+    /**
+     * Returns the shared connection pool.
+     *
+     * @return connection pool
+     */
+    public static ConnectionPool getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the transport for the given master, creating it if required. If the transport already exists, the given
+     * settings replace the current settings.
+     *
+     * @param masterRestUrl master REST URL
+     * @param settings transport settings
+     * @return transport
+     */
+    public SparkRestTransport getTransport(String masterRestUrl, TransportSettings settings) {
+        String key = normalize(masterRestUrl);
+        SparkRestTransport transport = transports.get(key);
+        if (transport == null) {
+            SparkRestTransport created = new SparkRestTransport(key, settings);
+            transport = transports.putIfAbsent(key, created);
+            if (transport == null) {
+                return created;
+            }
+        }
+        transport.updateSettings(settings);
+        return transport;
+    }
+
+    /**
+     * Returns statistics of all transports in the pool.
+     *
+     * @return statistics, one per master
+     */
+    public List<TransportStatistics> getStatistics() {
+        List<TransportStatistics> statistics = new ArrayList<TransportStatistics>();
+        for (SparkRestTransport transport : transports.values()) {
+            statistics.add(transport.getStatistics());
+        }
+        return statistics;
+    }
+
+    private static String normalize(String masterRestUrl) {
+        String url = masterRestUrl.trim().toLowerCase();
+        while (url.endsWith("/")) {
+            url = url.substring(0, url.length() - 1);
+        }
+        return url;
+    }
+
+    private ConnectionPool() {
+        // Singleton
+    }
+}
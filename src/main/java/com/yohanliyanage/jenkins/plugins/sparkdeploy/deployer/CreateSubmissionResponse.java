@@ -0,0 +1,15 @@
+/*
+ * Copyright (C) 2015 Yohan Liyanage
+ *
+ * Release under the MIT License (MIT). See LICENSE file for details.
+ */
+
+package com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer;
+
+/**
+ * Spark CreateSubmissionResponse returned by /v1/submissions/create.
+ *
+ * @author Yohan Liyanage
+ */
+public class CreateSubmissionResponse extends SubmissionResponse {
+}
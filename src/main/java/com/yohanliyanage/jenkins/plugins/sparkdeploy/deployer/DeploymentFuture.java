@@ -0,0 +1,364 @@
+/*
+ * Copyright (C) 2015 Yohan Liyanage
+ *
+ * Release under the MIT License (MIT). See LICENSE file for details.
+ */
+
+package com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A {@link Future} that is completed explicitly by the deployer, with support for completion callbacks.
+ *
+ * @param <T> result type
+ * @author Yohan Liyanage
+ */
+public class DeploymentFuture<T> implements Future<T> {
+
+    private final CountDownLatch done = new CountDownLatch(1);
+    private final List<Callback<? super T>> callbacks = new ArrayList<Callback<? super T>>();
+    private final List<Future<?>> cancelTargets = new ArrayList<Future<?>>();
+
+    private T result;
+    private Throwable failure;
+    private boolean cancelled;
+    private boolean completed;
+
+    /**
+     * Returns a future that is already completed with the given result.
+     *
+     * @param value result
+     * @param <T> result type
+     * @return completed future
+     */
+    public static <T> DeploymentFuture<T> completed(T value) {
+        DeploymentFuture<T> future = new DeploymentFuture<T>();
+        future.complete(value);
+        return future;
+    }
+
+    /**
+     * Returns a future that is already failed with the given cause.
+     *
+     * @param cause failure
+     * @param <T> result type
+     * @return failed future
+     */
+    public static <T> DeploymentFuture<T> failed(Throwable cause) {
+        DeploymentFuture<T> future = new DeploymentFuture<T>();
+        future.fail(cause);
+        return future;
+    }
+
+    /**
+     * Returns a future that runs the given task on the given executor.
+     *
+     * @param executor executor
+     * @param task task
+     * @param <T> result type
+     * @return future result of the task
+     */
+    public static <T> DeploymentFuture<T> supply(Executor executor, final Callable<T> task) {
+        final DeploymentFuture<T> future = new DeploymentFuture<T>();
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (future.isDone()) {
+                        // Cancelled before it started
+                        return;
+                    }
+                    try {
+                        future.complete(task.call());
+                    } catch (Throwable e) {
+                        future.fail(e);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.fail(e);
+        }
+        return future;
+    }
+
+    /**
+     * Chains an asynchronous step after this future. The step runs on the thread that completes this future, and
+     * should therefore only start work, not block. Failures of this future skip the step and propagate. Cancelling
+     * the returned future cancels this future, and the future of the step if it has started, so that an aborted chain
+     * stops at whatever it was waiting for.
+     *
+     * @param step next step
+     * @param <R> result type of the next step
+     * @return future result of the next step
+     */
+    public <R> DeploymentFuture<R> thenCompose(final Step<? super T, R> step) {
+        final DeploymentFuture<R> next = new DeploymentFuture<R>();
+        next.propagateCancelTo(this);
+        addCallback(new Callback<T>() {
+            @Override
+            public void onSuccess(T result) {
+                DeploymentFuture<R> stage;
+                try {
+                    stage = step.apply(result);
+                } catch (Throwable e) {
+                    next.fail(e);
+                    return;
+                }
+                next.propagateCancelTo(stage);
+                stage.addCallback(new Callback<R>() {
+                    @Override
+                    public void onSuccess(R value) {
+                        next.complete(value);
+                    }
+
+                    @Override
+                    public void onFailure(Throwable cause) {
+                        next.fail(cause);
+                    }
+                });
+            }
+
+            @Override
+            public void onFailure(Throwable cause) {
+                next.fail(cause);
+            }
+        });
+        return next;
+    }
+
+    /**
+     * Completes this future with the given result. Has no effect if already completed.
+     *
+     * @param value result
+     * @return true if this call completed the future
+     */
+    public boolean complete(T value) {
+        List<Callback<? super T>> toNotify;
+        synchronized (this) {
+            if (completed) {
+                return false;
+            }
+            result = value;
+            toNotify = markCompleted();
+        }
+        notifyCallbacks(toNotify);
+        return true;
+    }
+
+    /**
+     * Completes this future with the given failure. Has no effect if already completed.
+     *
+     * @param cause failure
+     * @return true if this call completed the future
+     */
+    public boolean fail(Throwable cause) {
+        List<Callback<? super T>> toNotify;
+        synchronized (this) {
+            if (completed) {
+                return false;
+            }
+            failure = cause;
+            toNotify = markCompleted();
+        }
+        notifyCallbacks(toNotify);
+        return true;
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        List<Callback<? super T>> toNotify;
+        List<Future<?>> toCancel;
+        synchronized (this) {
+            if (completed) {
+                return false;
+            }
+            cancelled = true;
+            failure = new CancellationException();
+            toCancel = new ArrayList<Future<?>>(cancelTargets);
+            toNotify = markCompleted();
+        }
+        for (Future<?> target : toCancel) {
+            target.cancel(mayInterruptIfRunning);
+        }
+        notifyCallbacks(toNotify);
+        return true;
+    }
+
+    /**
+     * Cancels the given future along with this one, such as the work that this future waits for. The given future is
+     * cancelled right away if this one is already cancelled, and never if this one completed otherwise.
+     *
+     * @param target future to cancel
+     */
+    public void propagateCancelTo(Future<?> target) {
+        synchronized (this) {
+            if (! completed) {
+                cancelTargets.add(target);
+                return;
+            }
+            if (! cancelled) {
+                return;
+            }
+        }
+        target.cancel(true);
+    }
+
+    /**
+     * Registers a callback which is invoked once this future completes. If already completed, the callback is
+     * invoked immediately on the calling thread.
+     *
+     * @param callback callback
+     */
+    public void addCallback(Callback<? super T> callback) {
+        synchronized (this) {
+            if (! completed) {
+                callbacks.add(callback);
+                return;
+            }
+        }
+        invoke(callback);
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public synchronized boolean isDone() {
+        return completed;
+    }
+
+    @Override
+    public T get() throws InterruptedException, ExecutionException {
+        done.await();
+        return getNow();
+    }
+
+    @Override
+    public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        if (! done.await(timeout, unit)) {
+            throw new TimeoutException();
+        }
+        return getNow();
+    }
+
+    /**
+     * Waits for the result, unwrapping the failure to the exception types used by the blocking deployer API.
+     *
+     * @return result
+     * @throws IOException if the operation failed with an I/O error
+     * @throws InterruptedException if interrupted while waiting, in which case this future is cancelled
+     */
+    public T await() throws IOException, InterruptedException {
+        try {
+            return get();
+        } catch (InterruptedException e) {
+            cancel(true);
+            throw e;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private synchronized T getNow() throws ExecutionException {
+        if (cancelled) {
+            throw (CancellationException) failure;
+        }
+        if (failure != null) {
+            throw new ExecutionException(failure);
+        }
+        return result;
+    }
+
+    private List<Callback<? super T>> markCompleted() {
+        completed = true;
+        done.countDown();
+        List<Callback<? super T>> toNotify = new ArrayList<Callback<? super T>>(callbacks);
+        callbacks.clear();
+        cancelTargets.clear();
+        return toNotify;
+    }
+
+    private void notifyCallbacks(List<Callback<? super T>> toNotify) {
+        for (Callback<? super T> callback : toNotify) {
+            invoke(callback);
+        }
+    }
+
+    private void invoke(Callback<? super T> callback) {
+        Throwable cause;
+        T value;
+        synchronized (this) {
+            cause = failure;
+            value = result;
+        }
+        if (cause == null) {
+            callback.onSuccess(value);
+        } else {
+            callback.onFailure(cause);
+        }
+    }
+
+    /**
+     * An asynchronous step of a chain built with {@link #thenCompose(Step)}.
+     *
+     * @param <T> input type
+     * @param <R> result type
+     */
+    public interface Step<T, R> {
+
+        /**
+         * Starts this step.
+         *
+         * @param input result of the previous step
+         * @return future result of this step
+         * @throws Exception if the step cannot be started
+         */
+        DeploymentFuture<R> apply(T input) throws Exception;
+    }
+
+    /**
+     * Completion callback.
+     *
+     * @param <T> result type
+     */
+    public interface Callback<T> {
+
+        /**
+         * Invoked when the future completes successfully.
+         *
+         * @param result result
+         */
+        void onSuccess(T result);
+
+        /**
+         * Invoked when the future fails or is cancelled.
+         *
+         * @param cause failure
+         */
+        void onFailure(Throwable cause);
+    }
+}
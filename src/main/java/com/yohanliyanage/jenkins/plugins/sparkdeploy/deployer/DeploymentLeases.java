@@ -0,0 +1,622 @@
+/*
+ * Copyright (C) 2015 Yohan Liyanage
+ *
+ * Release under the MIT License (MIT). See LICENSE file for details.
+ */
+
+package com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Serializes deployments of the same application to the same Spark Master, so that concurrent builds do not both kill
+ * the previous submission and both submit, leaving one driver orphaned. Deployments of different applications do not
+ * wait for each other.
+ * <p>
+ * Leases are guarded by a fixed set of striped monitors rather than one global lock; a lease only exists while it is
+ * held or waited for. A waiter gives up once its timeout elapses. A waiter that coalesces gives up as soon as a newer
+ * deployment of the same application (by the order given, ex. the build start time) holds the lease, since that
+ * deployment supersedes it; among coalescing waiters, the newest is let through first.
+ * <p>
+ * Masters are compared by {@link Utils#normalizeMasterKey(String)}, so that the post build action, the Pipeline step
+ * and the driver watchdog take the same lease for the same cluster however its URL was written. Asynchronous waiters
+ * hold no thread: they are kept with the lease and completed by the thread that releases it, or by a shared timer
+ * once their timeout elapses.
+ *
+ * @author Yohan Liyanage
+ */
+public final class DeploymentLeases {
+
+    /**
+     * Outcome of a lease request.
+     */
+    public enum Outcome {
+        /**
+         * The lease was acquired.
+         */
+        ACQUIRED,
+        /**
+         * A newer deployment of the application took the lease, so this one was not needed.
+         */
+        COALESCED,
+        /**
+         * The lease was not acquired before the timeout elapsed.
+         */
+        TIMED_OUT
+    }
+
+    /**
+     * Upper bounds of the buckets of the lease wait time histogram, in milliseconds.
+     */
+    public static final long[] WAIT_BUCKETS = {10, 100, 1000, 5000, 15000, 30000, 60000, 120000, 300000, 600000};
+
+    private static final int STRIPES = 64;
+
+    private static final DeploymentLeases INSTANCE = new DeploymentLeases();
+
+    private final Object[] stripes = new Object[STRIPES];
+    private final ConcurrentMap<String, State> leases = new ConcurrentHashMap<String, State>();
+    private final LatencyHistogram waitTimes = new LatencyHistogram(WAIT_BUCKETS);
+    private final AtomicLong[] outcomes = new AtomicLong[Outcome.values().length];
+    private final ScheduledThreadPoolExecutor timer;
+
+    private DeploymentLeases() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Object();
+        }
+        for (int i = 0; i < outcomes.length; i++) {
+            outcomes[i] = new AtomicLong();
+        }
+        timer = new ScheduledThreadPoolExecutor(1, new DaemonThreadFactory("spark-deploy-lease-timer"));
+        timer.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Returns the leases of this JVM.
+     *
+     * @return leases
+     */
+    public static DeploymentLeases getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Acquires the lease of the given application, waiting for the current holder if any.
+     *
+     * @param master master REST URL(s)
+     * @param app application (main class)
+     * @param holder description of the requesting deployment, shown while it holds the lease (ex. a build name)
+     * @param order order of the deployment; a higher order is newer (ex. the build start time)
+     * @param timeoutMillis maximum time to wait
+     * @param coalesce whether to give up once a newer deployment of the application takes the lease
+     * @return lease, which must be released if acquired
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public Lease acquire(String master, String app, String holder, long order, long timeoutMillis, boolean coalesce)
+            throws InterruptedException {
+        return acquireAll(Collections.singleton(master), app, holder, order, timeoutMillis, coalesce);
+    }
+
+    /**
+     * Acquires the leases of the given application on all of the given masters, for a deployment that may go to any
+     * of them (ex. a cluster pool). Leases are taken in a fixed order so that such deployments cannot deadlock, and
+     * the ones already taken are released if one of them is not acquired.
+     *
+     * @param masters master REST URL(s) of each cluster
+     * @param app application (main class)
+     * @param holder description of the requesting deployment, shown while it holds the leases
+     * @param order order of the deployment; a higher order is newer
+     * @param timeoutMillis maximum time to wait for all leases
+     * @param coalesce whether to give up once a newer deployment of the application takes one of the leases
+     * @return lease covering all masters, which must be released if acquired
+     * @throws InterruptedException if interrupted while waiting
+     * @see #acquire(String, String, String, long, long, boolean)
+     */
+    public Lease acquireAll(Collection<String> masters, String app, String holder, long order, long timeoutMillis,
+                            boolean coalesce) throws InterruptedException {
+        TreeSet<String> keyed = new TreeSet<String>();
+        for (String master : masters) {
+            keyed.add(Utils.normalizeMasterKey(master));
+        }
+        long start = System.currentTimeMillis();
+        long deadline = start + timeoutMillis;
+        List<String> taken = new ArrayList<String>();
+        try {
+            for (String master : keyed) {
+                Lease lease = acquireKey(master, app, holder, order, deadline, coalesce);
+                if (! lease.isAcquired()) {
+                    releaseAll(taken);
+                    taken.clear();
+                    return complete(new Lease(this, Collections.<String>emptyList(), lease.getOutcome(),
+                            lease.getHolder(), System.currentTimeMillis() - start));
+                }
+                taken.add(keyOf(master, app));
+            }
+        } catch (InterruptedException e) {
+            releaseAll(taken);
+            throw e;
+        } catch (RuntimeException e) {
+            releaseAll(taken);
+            throw e;
+        }
+        return complete(new Lease(this, taken, Outcome.ACQUIRED, holder, System.currentTimeMillis() - start));
+    }
+
+    /**
+     * Acquires the lease of the given application without blocking the calling thread. The request waits along with
+     * blocking ones, but holds no thread while it does. If the returned future is cancelled before the lease is
+     * acquired, the request is withdrawn, and a lease acquired meanwhile is released right away.
+     *
+     * @param master master REST URL(s)
+     * @param app application (main class)
+     * @param holder description of the requesting deployment
+     * @param order order of the deployment; a higher order is newer
+     * @param timeoutMillis maximum time to wait
+     * @param coalesce whether to give up once a newer deployment of the application takes the lease
+     * @return future lease
+     * @see #acquire(String, String, String, long, long, boolean)
+     */
+    public DeploymentFuture<Lease> acquireAsync(String master, String app, String holder, long order,
+                                                long timeoutMillis, boolean coalesce) {
+        final String normalized = Utils.normalizeMasterKey(master);
+        final String key = keyOf(normalized, app);
+        final Waiter waiter = new Waiter(holder, order, coalesce, new DeploymentFuture<Lease>());
+        List<Grant> grants = new ArrayList<Grant>();
+        Object stripe = stripeOf(key);
+        synchronized (stripe) {
+            State state = stateOf(key, normalized, app);
+            state.waiters.add(waiter);
+            dispatch(key, state, grants);
+            stripe.notifyAll();
+        }
+        grant(grants);
+
+        if (! waiter.future.isDone()) {
+            waiter.timeout = timer.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    withdraw(key, waiter, true);
+                }
+            }, timeoutMillis, TimeUnit.MILLISECONDS);
+            waiter.future.addCallback(new DeploymentFuture.Callback<Lease>() {
+                @Override
+                public void onSuccess(Lease lease) {
+                    // Granted
+                }
+
+                @Override
+                public void onFailure(Throwable cause) {
+                    // Cancelled by the requester
+                    withdraw(key, waiter, false);
+                }
+            });
+        }
+        return waiter.future;
+    }
+
+    /**
+     * Returns the leases that are currently held or waited for.
+     *
+     * @return leases
+     */
+    public List<LeaseInfo> getLeases() {
+        List<LeaseInfo> result = new ArrayList<LeaseInfo>();
+        for (Map.Entry<String, State> entry : leases.entrySet()) {
+            synchronized (stripeOf(entry.getKey())) {
+                State state = entry.getValue();
+                result.add(new LeaseInfo(state.master, state.app, state.holder, state.heldSince,
+                        state.waiters.size()));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the histogram of the time spent waiting for leases, whatever the outcome.
+     *
+     * @return histogram
+     */
+    public LatencyHistogram getWaitTimes() {
+        return waitTimes;
+    }
+
+    /**
+     * Returns the number of lease requests with the given outcome.
+     *
+     * @param outcome outcome
+     * @return count
+     */
+    public long getCount(Outcome outcome) {
+        return outcomes[outcome.ordinal()].get();
+    }
+
+    /**
+     * Waits for the lease with the given key on the calling thread, until the given deadline.
+     */
+    private Lease acquireKey(String master, String app, String holder, long order, long deadline, boolean coalesce)
+            throws InterruptedException {
+        String key = keyOf(master, app);
+        Object stripe = stripeOf(key);
+        long start = System.currentTimeMillis();
+        Waiter waiter = new Waiter(holder, order, coalesce, null);
+        List<Grant> grants = new ArrayList<Grant>();
+
+        try {
+            synchronized (stripe) {
+                State state = stateOf(key, master, app);
+                if (state.holder == null && state.waiters.isEmpty()) {
+                    state.take(waiter, start);
+                    return new Lease(this, Collections.singletonList(key), Outcome.ACQUIRED, holder, 0);
+                }
+
+                state.waiters.add(waiter);
+                try {
+                    while (true) {
+                        long now = System.currentTimeMillis();
+                        if (coalesce && state.latestOrder > order) {
+                            return new Lease(this, Collections.<String>emptyList(), Outcome.COALESCED,
+                                    state.latestHolder, now - start);
+                        }
+                        if (state.holder == null && state.mayTake(waiter)) {
+                            state.take(waiter, now);
+                            return new Lease(this, Collections.singletonList(key), Outcome.ACQUIRED, holder,
+                                    now - start);
+                        }
+                        if (now >= deadline) {
+                            return new Lease(this, Collections.<String>emptyList(), Outcome.TIMED_OUT, state.holder,
+                                    now - start);
+                        }
+                        stripe.wait(deadline - now);
+                    }
+                } finally {
+                    state.waiters.remove(waiter);
+                    // Let the remaining waiters of the lease re-evaluate
+                    dispatch(key, state, grants);
+                    stripe.notifyAll();
+                }
+            }
+        } finally {
+            grant(grants);
+        }
+    }
+
+    /**
+     * Removes an asynchronous waiter that is still waiting, completing it as timed out if requested.
+     */
+    private void withdraw(String key, Waiter waiter, boolean timedOut) {
+        List<Grant> grants = new ArrayList<Grant>();
+        Object stripe = stripeOf(key);
+        synchronized (stripe) {
+            State state = leases.get(key);
+            if (state == null || ! state.waiters.remove(waiter)) {
+                return;
+            }
+            if (timedOut) {
+                grants.add(new Grant(waiter, new Lease(this, Collections.<String>emptyList(), Outcome.TIMED_OUT,
+                        state.holder, System.currentTimeMillis() - waiter.since)));
+            }
+            dispatch(key, state, grants);
+            stripe.notifyAll();
+        }
+        grant(grants);
+    }
+
+    private void release(String key) {
+        List<Grant> grants = new ArrayList<Grant>();
+        Object stripe = stripeOf(key);
+        synchronized (stripe) {
+            State state = leases.get(key);
+            if (state == null) {
+                return;
+            }
+            state.holder = null;
+            state.heldSince = 0;
+            dispatch(key, state, grants);
+            stripe.notifyAll();
+        }
+        grant(grants);
+    }
+
+    private void releaseAll(List<String> keys) {
+        for (String key : keys) {
+            release(key);
+        }
+    }
+
+    /**
+     * Hands the lease to the asynchronous waiters that may now have it, or that are superseded, and forgets the lease
+     * if it is no longer used. Blocking waiters check for themselves once notified. Must be called with the stripe of
+     * the key held; the returned grants are completed once it is released, so that no callback runs under it.
+     */
+    private void dispatch(String key, State state, List<Grant> grants) {
+        long now = System.currentTimeMillis();
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Waiter waiter : new ArrayList<Waiter>(state.waiters)) {
+                if (waiter.future == null) {
+                    continue;
+                }
+                if (waiter.coalesce && state.latestOrder > waiter.order) {
+                    state.waiters.remove(waiter);
+                    grants.add(new Grant(waiter, new Lease(this, Collections.<String>emptyList(), Outcome.COALESCED,
+                            state.latestHolder, now - waiter.since)));
+                    changed = true;
+                } else if (state.holder == null && state.mayTake(waiter)) {
+                    state.waiters.remove(waiter);
+                    state.take(waiter, now);
+                    grants.add(new Grant(waiter, new Lease(this, Collections.singletonList(key), Outcome.ACQUIRED,
+                            waiter.holder, now - waiter.since)));
+                    changed = true;
+                }
+            }
+        }
+        if (state.isUnused()) {
+            leases.remove(key);
+        }
+    }
+
+    private void grant(List<Grant> grants) {
+        for (Grant grant : grants) {
+            ScheduledFuture<?> timeout = grant.waiter.timeout;
+            if (timeout != null) {
+                timeout.cancel(false);
+            }
+            if (! grant.waiter.future.complete(complete(grant.lease))) {
+                // Cancelled meanwhile
+                grant.lease.release();
+            }
+        }
+    }
+
+    private State stateOf(String key, String master, String app) {
+        State state = leases.get(key);
+        if (state == null) {
+            state = new State(master, app);
+            leases.put(key, state);
+        }
+        return state;
+    }
+
+    private static String keyOf(String normalizedMaster, String app) {
+        return normalizedMaster + " " + app;
+    }
+
+    private Lease complete(Lease lease) {
+        waitTimes.record(lease.getWaitMillis());
+        outcomes[lease.getOutcome().ordinal()].incrementAndGet();
+        return lease;
+    }
+
+    private Object stripeOf(String key) {
+        return stripes[(key.hashCode() & Integer.MAX_VALUE) % STRIPES];
+    }
+
+    /**
+     * Result of a lease request. Releasing is idempotent, and has no effect if the lease was not acquired.
+     */
+    public static final class Lease {
+
+        private final DeploymentLeases leases;
+        private final List<String> keys;
+        private final Outcome outcome;
+        private final String holder;
+        private final long waitMillis;
+        private boolean released;
+
+        private Lease(DeploymentLeases leases, List<String> keys, Outcome outcome, String holder, long waitMillis) {
+            this.leases = leases;
+            this.keys = keys;
+            this.outcome = outcome;
+            this.holder = holder;
+            this.waitMillis = waitMillis;
+        }
+
+        /**
+         * Returns outcome.
+         *
+         * @return outcome
+         */
+        public Outcome getOutcome() {
+            return outcome;
+        }
+
+        /**
+         * Returns whether the lease was acquired.
+         *
+         * @return true if acquired
+         */
+        public boolean isAcquired() {
+            return outcome == Outcome.ACQUIRED;
+        }
+
+        /**
+         * Returns the holder of the lease: the requesting deployment if acquired, the newer deployment if coalesced,
+         * or the deployment that held it when the timeout elapsed.
+         *
+         * @return holder
+         */
+        public String getHolder() {
+            return holder;
+        }
+
+        /**
+         * Returns the time spent waiting for the lease.
+         *
+         * @return wait time in milliseconds
+         */
+        public long getWaitMillis() {
+            return waitMillis;
+        }
+
+        /**
+         * Releases the lease.
+         */
+        public void release() {
+            synchronized (this) {
+                if (released || ! isAcquired()) {
+                    return;
+                }
+                released = true;
+            }
+            leases.releaseAll(keys);
+        }
+    }
+
+    /**
+     * A lease as seen at one point in time.
+     */
+    public static final class LeaseInfo {
+
+        private final String master;
+        private final String app;
+        private final String holder;
+        private final long heldSince;
+        private final int waiting;
+
+        LeaseInfo(String master, String app, String holder, long heldSince, int waiting) {
+            this.master = master;
+            this.app = app;
+            this.holder = holder;
+            this.heldSince = heldSince;
+            this.waiting = waiting;
+        }
+
+        /**
+         * Returns master.
+         *
+         * @return master
+         */
+        public String getMaster() {
+            return master;
+        }
+
+        /**
+         * Returns app.
+         *
+         * @return app
+         */
+        public String getApp() {
+            return app;
+        }
+
+        /**
+         * Returns holder.
+         *
+         * @return holder, or null if the lease is between holders
+         */
+        public String getHolder() {
+            return holder;
+        }
+
+        /**
+         * Returns the time the lease was acquired by its holder.
+         *
+         * @return time in milliseconds, or 0 if not held
+         */
+        public long getHeldSince() {
+            return heldSince;
+        }
+
+        /**
+         * Returns the number of deployments waiting for the lease.
+         *
+         * @return waiting deployments
+         */
+        public int getWaiting() {
+            return waiting;
+        }
+    }
+
+    /**
+     * Lease of one application on one master. Guarded by the stripe of its key.
+     */
+    private static final class State {
+
+        private final String master;
+        private final String app;
+        private final List<Waiter> waiters = new ArrayList<Waiter>();
+        private String holder;
+        private long heldSince;
+        private String latestHolder;
+        private long latestOrder = Long.MIN_VALUE;
+
+        State(String master, String app) {
+            this.master = master;
+            this.app = app;
+        }
+
+        void take(Waiter waiter, long now) {
+            holder = waiter.holder;
+            heldSince = now;
+            if (waiter.order >= latestOrder) {
+                latestOrder = waiter.order;
+                latestHolder = waiter.holder;
+            }
+        }
+
+        /**
+         * A coalescing waiter lets newer coalescing waiters through first, since it gives up once they take the lease.
+         */
+        boolean mayTake(Waiter waiter) {
+            if (! waiter.coalesce) {
+                return true;
+            }
+            for (Waiter other : waiters) {
+                if (other != waiter && other.coalesce && other.order > waiter.order) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        boolean isUnused() {
+            return holder == null && waiters.isEmpty();
+        }
+    }
+
+    private static final class Waiter {
+
+        private final String holder;
+        private final long order;
+        private final boolean coalesce;
+        private final DeploymentFuture<Lease> future;
+        private final long since = System.currentTimeMillis();
+        private volatile ScheduledFuture<?> timeout;
+
+        /**
+         * Creates a waiter, which is asynchronous if it has a future to complete.
+         */
+        Waiter(String holder, long order, boolean coalesce, DeploymentFuture<Lease> future) {
+            this.holder = holder;
+            this.order = order;
+            this.coalesce = coalesce;
+            this.future = future;
+        }
+    }
+
+    /**
+     * A lease request of an asynchronous waiter that was decided, to be completed outside of the stripe.
+     */
+    private static final class Grant {
+
+        private final Waiter waiter;
+        private final Lease lease;
+
+        Grant(Waiter waiter, Lease lease) {
+            this.waiter = waiter;
+            this.lease = lease;
+        }
+    }
+}
@@ -6,36 +6,120 @@
 
 package com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 
 import java.io.*;
-import java.net.HttpURLConnection;
+import java.net.ConnectException;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * This is the REST client for Spark REST API. Allows to kill, submit and poll status of applications.
+ * <p>
+ * Instances are cheap and are created per build. The underlying connections are shared with all other builds
+ * through the {@link ConnectionPool}.
  *
  * @author Yohan Liyanage
  */
 public class DeploymentManager {
 
-    private URL masterRestUrl;
+    private static final int ASYNC_THREADS = 16;
+
+    /**
+     * Number of times an idempotent call is retried after the master failed.
+     */
+    private static final int MAX_RETRIES = 3;
+    private static final long INITIAL_BACKOFF_MILLIS = 200;
+    private static final long MAX_BACKOFF_MILLIS = 5000;
+
+    /**
+     * Runs the REST round trips of the asynchronous API. Threads are only held for the duration of a single call;
+     * waiting for drivers is done by the {@link DriverStatePoller}.
+     */
+    private static final ExecutorService ASYNC_EXECUTOR;
+
+    static {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(ASYNC_THREADS, ASYNC_THREADS, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new DaemonThreadFactory("spark-deploy-async"));
+        executor.allowCoreThreadTimeOut(true);
+        ASYNC_EXECUTOR = executor;
+    }
+
+    /**
+     * Schedules the retries of the asynchronous API, so that no pooled thread sleeps while waiting to retry.
+     */
+    private static final ScheduledExecutorService RETRY_TIMER =
+            Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("spark-deploy-retry"));
+
+    private String clusterUrl;
+    private List<String> masters;
     private PrintStream logger;
-    private ObjectMapper mapper = new ObjectMapper();
     private boolean verbose;
+    private TransportSettings settings;
+    private volatile String leader;
 
     public DeploymentManager(String masterRestUrl, PrintStream logger, boolean verbose) {
+        this(masterRestUrl, logger, verbose, TransportSettings.DEFAULTS);
+    }
+
+    /**
+     * Creates a deployment manager.
+     * @param masterRestUrl master REST URL, or a comma separated list of masters of a highly available cluster
+     * @param logger logger
+     * @param verbose verbose mode
+     * @param settings transport settings for this cluster
+     */
+    public DeploymentManager(String masterRestUrl, PrintStream logger, boolean verbose, TransportSettings settings) {
         this.logger = logger;
         this.verbose = verbose;
-        try {
-            this.masterRestUrl = new URL(Utils.getActualSparkMasterUrl(masterRestUrl));
-            logger.println("Spark REST Service endpoint resolved to " + this.masterRestUrl);
-        } catch (MalformedURLException e) {
+        this.settings = settings;
+        this.masters = Utils.getActualSparkMasterUrls(masterRestUrl);
+        for (String master : masters) {
+            try {
+                new URL(master);
+            } catch (MalformedURLException e) {
+                throw new IllegalArgumentException("Invalid Master REST URL: " + masterRestUrl);
+            }
+        }
+        if (masters.isEmpty()) {
             throw new IllegalArgumentException("Invalid Master REST URL: " + masterRestUrl);
         }
+        this.clusterUrl = Utils.join(masters, ",");
+
+        if (isHighlyAvailable()) {
+            logger.println("Spark REST Service endpoints are " + masters + ". The ALIVE master will be used.");
+        } else {
+            this.leader = masters.get(0);
+            logger.println("Spark REST Service endpoint resolved to " + leader);
+        }
+    }
+
+    /**
+     * Returns the REST URL(s) of the cluster, as a comma separated list if it has several masters. This identifies the
+     * cluster regardless of which master is currently the leader.
+     * @return master REST URL
+     */
+    public String getMasterRestUrl() {
+        return clusterUrl;
+    }
+
+    /**
+     * Returns statistics of the connections to the current master, shared with all other builds.
+     * @return statistics
+     */
+    public TransportStatistics getStatistics() {
+        String master = leader != null ? leader : masters.get(0);
+        return ConnectionPool.getInstance().getTransport(master, settings).getStatistics();
     }
 
     /**
@@ -45,18 +129,42 @@ public class DeploymentManager {
      * @throws IOException
      */
     public boolean kill(String submissionId) throws IOException {
-        URL killUrl = new URL(masterRestUrl, "/v1/submissions/kill/" + submissionId);
+        return doKill(submissionId);
+    }
+
+    /**
+     * Kills the submission with given ID without blocking the caller.
+     * @param submissionId submission to kill
+     * @return future, true if successful, false otherwise
+     */
+    public DeploymentFuture<Boolean> killAsync(final String submissionId) {
+        logger.println("[Spark-Deployer] Killing previous submission with ID: " + submissionId);
+        return supplyWithRetries("kill", new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws IOException {
+                return onKilled(submissionId, tryKill(submissionId, 0));
+            }
+        });
+    }
 
+    private boolean doKill(String submissionId) throws IOException {
         logger.println("[Spark-Deployer] Killing previous submission with ID: " + submissionId);
-        Map<String, Object> response = invokePost(killUrl);
+        return onKilled(submissionId, tryKill(submissionId, MAX_RETRIES));
+    }
+
+    private KillSubmissionResponse tryKill(String submissionId, int retries) throws IOException {
+        return invoke("kill", "POST", "/v1/submissions/kill/" + submissionId, null, SparkJson.KILL_READER, retries);
+    }
 
-        boolean success = (Boolean) response.get("success");
+    private boolean onKilled(String submissionId, KillSubmissionResponse response) {
+
+        boolean success = response.isSuccess();
 
         if (success) {
             logger.println("[Spark-Deployer] Successfully killed previous submission with ID " + submissionId);
         } else {
             logger.println("[Spark-Deployer] Failed to kill previous submission with ID  " + submissionId + " : "
-                    + response.get("message"));
+                    + response.getMessage());
         }
 
         return success;
@@ -69,112 +177,439 @@ public class DeploymentManager {
      * @throws IOException
      */
     public String submit(DeploymentRequest request) throws IOException {
-        URL createUrl = new URL(masterRestUrl, "/v1/submissions/create");
-        logger.println("[Spark-Deployer] Submitting Spark Application...");
-
-        String payload;
+        return doSubmit(request);
+    }
 
-        if (verbose) {
-            payload = mapper.writerWithDefaultPrettyPrinter().writeValueAsString(request);
-        } else {
-            payload = mapper.writeValueAsString(request);
-        }
+    /**
+     * Submits a Deployment to Spark without blocking the caller.
+     * @param request deployment metadata
+     * @return future Submission ID.
+     */
+    public DeploymentFuture<String> submitAsync(final DeploymentRequest request) {
+        return DeploymentFuture.supply(ASYNC_EXECUTOR, new Callable<String>() {
+            @Override
+            public String call() throws IOException {
+                return doSubmit(request);
+            }
+        });
+    }
 
-        Map<String, Object> response = invokePost(createUrl, payload);
+    private String doSubmit(DeploymentRequest request) throws IOException {
+        logger.println("[Spark-Deployer] Submitting Spark Application...");
 
-        boolean success = (Boolean) response.get("success");
+        CreateSubmissionResponse response = invoke("submit", "POST", "/v1/submissions/create", request,
+                SparkJson.CREATE_READER, 0);
 
-        if (! success) {
-            throw new RuntimeException("Submission Failed. Response success flag is false");
+        if (! response.isSuccess()) {
+            throw new RuntimeException("Submission Failed. Response success flag is false : " + response.getMessage());
         }
 
-        return (String) response.get("submissionId");
+        return response.getSubmissionId();
     }
 
     /**
      * Returns Driver State for given Submission ID.
      * @param submissionId submission id.
-     * @return driver state (ex. "RUNNING").
+     * @return driver state (ex. "RUNNING"), or "UNKNOWN" if Spark did not report one.
      * @throws IOException
      */
     public String getDriverState(String submissionId) throws IOException {
-        URL statusUrl = new URL(masterRestUrl, "/v1/submissions/status/" + submissionId);
+        return getStatus(submissionId).getDriverState();
+    }
+
+    /**
+     * Returns Driver State for given Submission ID without blocking the caller.
+     * @param submissionId submission id.
+     * @return future driver state.
+     */
+    public DeploymentFuture<String> getDriverStateAsync(final String submissionId) {
+        return supplyWithRetries("status", new Callable<String>() {
+            @Override
+            public String call() throws IOException {
+                return pollDriverState(submissionId);
+            }
+        });
+    }
+
+    /**
+     * Returns Driver State for given Submission ID with a single call, without retrying. For callers on shared
+     * threads, which retry on their own schedule rather than sleeping.
+     * @param submissionId submission id.
+     * @return driver state (ex. "RUNNING"), or "UNKNOWN" if Spark did not report one.
+     * @throws IOException
+     */
+    public String pollDriverState(String submissionId) throws IOException {
+        return getStatus(submissionId, 0).getDriverState();
+    }
+
+    /**
+     * Kills the previous submission (if any), submits the given request and waits for the new driver to leave the
+     * LOADING state, without blocking the caller at any point.
+     * @param request deployment metadata
+     * @param previousSubmissionId submission to kill first, or null
+     * @return future submission with the driver state observed
+     */
+    public DeploymentFuture<Submission> deployAsync(final DeploymentRequest request, String previousSubmissionId) {
+        DeploymentFuture<Boolean> killed = previousSubmissionId == null ?
+                DeploymentFuture.completed(Boolean.TRUE) : killAsync(previousSubmissionId);
+
+        final long[] submittedAt = new long[1];
+        return killed.thenCompose(new DeploymentFuture.Step<Boolean, String>() {
+            @Override
+            public DeploymentFuture<String> apply(Boolean ignored) {
+                submittedAt[0] = System.currentTimeMillis();
+                return submitAsync(request);
+            }
+        }).thenCompose(new DeploymentFuture.Step<String, Submission>() {
+            @Override
+            public DeploymentFuture<Submission> apply(final String submissionId) {
+                return DriverStatePoller.getInstance().watch(DeploymentManager.this, submissionId)
+                        .thenCompose(new DeploymentFuture.Step<String, Submission>() {
+                            @Override
+                            public DeploymentFuture<Submission> apply(String driverState) {
+                                DeploymentMetrics.getInstance().recordDeployment(clusterUrl, driverState,
+                                        System.currentTimeMillis() - submittedAt[0]);
+                                return DeploymentFuture.completed(new Submission(submissionId, driverState));
+                            }
+                        });
+            }
+        });
+    }
+
+    /**
+     * Returns the full status of the given Submission ID.
+     * @param submissionId submission id.
+     * @return status, never with a null driver state.
+     * @throws IOException
+     */
+    public SubmissionStatusResponse getStatus(String submissionId) throws IOException {
+        return getStatus(submissionId, MAX_RETRIES);
+    }
+
+    private SubmissionStatusResponse getStatus(String submissionId, int retries) throws IOException {
+        SubmissionStatusResponse response = invoke("status", "GET", "/v1/submissions/status/" + submissionId,
+                null, SparkJson.STATUS_READER, retries);
+
+        if (! response.isSuccess()) {
+            throw new RuntimeException("Status check failed for submission " + submissionId + " : " + response.getMessage());
+        }
+
+        if (response.getDriverState() == null) {
+            response.setDriverState("UNKNOWN");
+        }
+
+        return response;
+    }
+
+    private boolean isHighlyAvailable() {
+        return masters.size() > 1;
+    }
+
+    /**
+     * Invokes the given path on the current leader. In a highly available cluster, the cached leader is dropped on
+     * failure, and the call is retried once on the new leader if the old one refused the connection or its circuit is
+     * open. Idempotent calls (everything but submit) are also retried up to the given number of times, with backoff,
+     * when the master fails or answers with a server error.
+     */
+    private <T> T invoke(String operation, String method, String path, DeploymentRequest request,
+                         ObjectReader reader, int retries) throws IOException {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                return invokeLeader(operation, method, path, request, reader);
+            } catch (IOException e) {
+                if (attempt >= retries || ! isRetriable(e)) {
+                    throw e;
+                }
+                backOff(retryDelay(operation, attempt, e), operation);
+            } catch (HttpStatusException e) {
+                if (attempt >= retries || ! isRetriable(e)) {
+                    throw e;
+                }
+                backOff(retryDelay(operation, attempt, e), operation);
+            }
+        }
+    }
+
+    /**
+     * Runs the given single attempt call on the asynchronous executor. Failed attempts are retried like
+     * {@link #invoke} does, but the wait is scheduled on the retry timer instead of sleeping on a pooled thread.
+     */
+    private <T> DeploymentFuture<T> supplyWithRetries(String operation, Callable<T> call) {
+        DeploymentFuture<T> future = new DeploymentFuture<T>();
+        attemptAsync(future, operation, call, 0);
+        return future;
+    }
 
-        Map<String, Object> response = invokeGet(statusUrl);
+    private <T> void attemptAsync(final DeploymentFuture<T> future, final String operation, final Callable<T> call,
+                                  final int attempt) {
+        try {
+            ASYNC_EXECUTOR.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (future.isDone()) {
+                        // Cancelled while waiting
+                        return;
+                    }
+                    try {
+                        future.complete(call.call());
+                    } catch (Throwable e) {
+                        if (attempt >= MAX_RETRIES || ! isRetriable(e)) {
+                            future.fail(e);
+                            return;
+                        }
+                        scheduleRetry(future, operation, call, attempt + 1, retryDelay(operation, attempt, e));
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.fail(e);
+        }
+    }
 
-        boolean success = (Boolean) response.get("success");
+    private <T> void scheduleRetry(final DeploymentFuture<T> future, final String operation, final Callable<T> call,
+                                   final int attempt, long delay) {
+        try {
+            RETRY_TIMER.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    if (! future.isDone()) {
+                        attemptAsync(future, operation, call, attempt);
+                    }
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            future.fail(e);
+        }
+    }
 
-        if (! success) {
-            throw new RuntimeException("Status check failed for submission " + submissionId + " : " + response.get("message"));
+    /**
+     * Whether a failed idempotent call may be retried : the master failed or answered with a server error. Calls
+     * failing fast on an open circuit are not retried.
+     */
+    static boolean isRetriable(Throwable e) {
+        if (e instanceof CircuitBreaker.CircuitOpenException) {
+            return false;
+        }
+        if (e instanceof HttpStatusException) {
+            return ((HttpStatusException) e).getCode() >= 500;
         }
+        return e instanceof IOException && ! (e instanceof InterruptedIOException);
+    }
+
+    private <T> T invokeLeader(String operation, String method, String path, DeploymentRequest request,
+                               ObjectReader reader) throws IOException {
+        String master = resolveLeader();
+        try {
+            return invokeUrl(operation, method, new URL(new URL(master), path), master, request, reader);
+        } catch (IOException e) {
+            if (! isHighlyAvailable()) {
+                throw e;
+            }
+            MasterResolver.getInstance().invalidate(clusterUrl);
+            if (! (e instanceof ConnectException) && ! (e instanceof CircuitBreaker.CircuitOpenException)) {
+                throw e;
+            }
+            logger.println("[Spark-Deployer] Spark Master " + master + " is not reachable. Looking for the new leader.");
+            master = resolveLeader();
+            DeploymentMetrics.getInstance().recordRetry(master, operation);
+            return invokeUrl(operation, method, new URL(new URL(master), path), master, request, reader);
+        }
+    }
 
-        return (String) response.get("driverState");
+    /**
+     * Returns how long to wait before retrying a failed call, an exponentially growing time with full jitter, so
+     * that builds retrying against the same master spread out. The retry is logged and recorded.
+     */
+    private long retryDelay(String operation, int attempt, Throwable cause) {
+        long limit = Math.min(MAX_BACKOFF_MILLIS, INITIAL_BACKOFF_MILLIS << attempt);
+        long delay = (long) (ThreadLocalRandom.current().nextDouble() * limit);
+        String master = leader != null ? leader : clusterUrl;
+        logger.println("[Spark-Deployer] " + operation + " call to " + master + " failed (" + cause.getMessage()
+                + "). Retrying in " + delay + " ms (" + (attempt + 1) + " of " + MAX_RETRIES + ")");
+        DeploymentMetrics.getInstance().recordRetry(master, operation);
+        return delay;
+    }
+
+    /**
+     * Waits before retrying a failed call on the calling thread. Only the blocking API, called from build threads,
+     * does so.
+     */
+    private static void backOff(long delay, String operation) throws IOException {
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to retry " + operation);
+        }
     }
 
-    private Map<String, Object> invokePost(URL url) throws IOException {
-        return invokeUrl("POST", url, null);
+    private String resolveLeader() throws IOException {
+        if (! isHighlyAvailable()) {
+            return leader;
+        }
+        String resolved = MasterResolver.getInstance().resolve(clusterUrl, settings);
+        if (! resolved.equals(leader)) {
+            logger.println("[Spark-Deployer] Using ALIVE Spark Master " + resolved);
+            leader = resolved;
+        }
+        return resolved;
     }
 
-    private Map<String, Object> invokePost(URL url, String payload) throws IOException {
-        return invokeUrl("POST", url, payload);
+    /**
+     * Invokes the given URL. The request, if any, is serialized straight to the connection and the response is
+     * parsed straight from it. In verbose mode, both are buffered so that they can be logged. The outcome and the
+     * duration of the call are recorded in the {@link DeploymentMetrics}.
+     */
+    private <T> T invokeUrl(String operation, String method, URL url, String master, DeploymentRequest request,
+                            ObjectReader reader) throws IOException {
+        CircuitBreaker breaker = CircuitBreaker.getInstance();
+        try {
+            breaker.check(master);
+        } catch (CircuitBreaker.CircuitOpenException e) {
+            DeploymentMetrics.getInstance().recordFailure(master, operation, "circuit_open");
+            throw e;
+        }
+
+        long start = System.currentTimeMillis();
+        boolean success = false;
+        String reason = null;
+        try {
+            T body = doInvokeUrl(method, url, master, request, reader);
+            success = ! (body instanceof SubmissionResponse) || ((SubmissionResponse) body).isSuccess();
+            if (! success) {
+                reason = "rejected";
+            }
+            return body;
+        } catch (HttpStatusException e) {
+            reason = "http_" + (e.getCode() / 100) + "xx";
+            throw e;
+        } catch (IOException e) {
+            reason = DeploymentMetrics.reasonOf(e);
+            throw e;
+        } catch (RuntimeException e) {
+            reason = DeploymentMetrics.reasonOf(e);
+            throw e;
+        } finally {
+            DeploymentMetrics metrics = DeploymentMetrics.getInstance();
+            metrics.recordCall(master, operation, System.currentTimeMillis() - start, success);
+            if (reason != null) {
+                metrics.recordFailure(master, operation, reason);
+            }
+            if (isMasterFailure(reason)) {
+                if (breaker.onFailure(master)) {
+                    logger.println("[Spark-Deployer] Spark Master " + master + " keeps failing. Calls to it fail fast "
+                            + "for " + (CircuitBreaker.COOLDOWN_MILLIS / 1000) + " seconds.");
+                }
+            } else {
+                breaker.onSuccess(master);
+            }
+        }
     }
 
-    private Map<String, Object> invokeGet(URL url) throws IOException {
-        return invokeUrl("GET", url, null);
+    /**
+     * Returns true if the given failure reason means the master is unhealthy, rather than that it turned the call
+     * down.
+     */
+    private static boolean isMasterFailure(String reason) {
+        return "connect".equals(reason) || "timeout".equals(reason) || "io".equals(reason)
+                || "http_5xx".equals(reason);
     }
 
-    @SuppressWarnings("unchecked")
-    private Map<String, Object> invokeUrl(String method, URL url, String payload) throws IOException {
-        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-        connection.setRequestMethod(method);
-        connection.setRequestProperty("Accept", "application/json");
+    private <T> T doInvokeUrl(String method, URL url, String master, final DeploymentRequest request,
+                              final ObjectReader reader) throws IOException {
 
-        if (payload != null) {
+        SparkRestTransport.RequestWriter payload = null;
+
+        if (request != null) {
             if (verbose) {
+                final String text = SparkJson.VERBOSE_REQUEST_WRITER.writeValueAsString(request);
                 logger.println("[Spark-Deployer] VERBOSE : Invoking URL: " + method + " " + url.toString()
-                        + " with payload : \n" + payload);
+                        + " with payload : \n" + text);
+                payload = new SparkRestTransport.RequestWriter() {
+                    @Override
+                    public void write(OutputStream out) throws IOException {
+                        out.write(text.getBytes("UTF-8"));
+                    }
+                };
+            } else if (request.getPayload() != null) {
+                // Rendered from a template, so already serialized
+                final byte[] bytes = request.getPayload();
+                payload = new SparkRestTransport.RequestWriter() {
+                    @Override
+                    public void write(OutputStream out) throws IOException {
+                        out.write(bytes);
+                    }
+                };
+            } else {
+                payload = new SparkRestTransport.RequestWriter() {
+                    @Override
+                    public void write(OutputStream out) throws IOException {
+                        SparkJson.REQUEST_WRITER.writeValue(out, request);
+                    }
+                };
             }
-            connection.setDoOutput(true);
-            connection.setRequestProperty("Content-Type", "application/json");
-            OutputStream os = connection.getOutputStream();
-            os.write(payload.getBytes());
-            os.flush();
         } else {
             if (verbose) {
                 logger.println("[Spark-Deployer] VERBOSE : Invoking URL " + method + " " + url.toString());
             }
         }
 
-        InputStream responseStream;
+        SparkRestTransport transport = ConnectionPool.getInstance().getTransport(master, settings);
+        SparkRestTransport.Response<T> response = transport.execute(method, url, payload,
+                new SparkRestTransport.ResponseHandler<T>() {
+                    @Override
+                    public T handle(InputStream in) throws IOException {
+                        if (verbose) {
+                            String text = readText(in);
+                            logger.println("[Spark-Deployer] VERBOSE : Response from Spark : \n" + text);
+                            return reader.readValue(text);
+                        }
+                        return reader.readValue(in);
+                    }
+                });
+
+        if (! response.isSuccess()) {
+            if (verbose) {
+                logger.println("[Spark-Deployer] VERBOSE : Response from Spark : \n" + response.getErrorBody());
+            }
+            throw new HttpStatusException(response.getCode(), response.getMessage());
+        }
 
-        if (isSuccessResponseCode(connection.getResponseCode())) {
-            // 2xx - Success
-            responseStream = connection.getInputStream();
-        } else {
-            responseStream = connection.getErrorStream();
+        if (response.getBody() == null) {
+            throw new IOException("Empty response from Spark for " + method + " " + url);
         }
 
-        BufferedReader br = new BufferedReader(new InputStreamReader(responseStream));
+        return response.getBody();
+    }
+
+    private static String readText(InputStream in) throws IOException {
+        BufferedReader br = new BufferedReader(new InputStreamReader(in, "UTF-8"));
 
         StringBuilder response = new StringBuilder();
-        String line;
-        while ((line = br.readLine()) != null) {
-            response.append(line).append(System.lineSeparator());
+        char[] buffer = new char[1024];
+        int read;
+        while ((read = br.read(buffer)) != -1) {
+            response.append(buffer, 0, read);
         }
+        return response.toString();
+    }
 
-        if (verbose) {
-            logger.println("[Spark-Deployer] VERBOSE : Response from Spark : \n" + response);
-        }
+    /**
+     * Thrown when Spark responds with an unsuccessful HTTP status code.
+     */
+    private static final class HttpStatusException extends RuntimeException {
 
-        if (! isSuccessResponseCode(connection.getResponseCode())) {
-            throw new RuntimeException("Operation Failed. Response is " +
-                    connection.getResponseCode() + " : " + connection.getResponseMessage());
-        }
+        private static final long serialVersionUID = 1L;
 
-        return (Map) mapper.readValue(response.toString(), HashMap.class);
-    }
+        private final int code;
+
+        HttpStatusException(int code, String message) {
+            super("Operation Failed. Response is " + code + " : " + message);
+            this.code = code;
+        }
 
-    private boolean isSuccessResponseCode(int responseCode) throws IOException {
-        return responseCode >= 200 && responseCode < 300;
+        int getCode() {
+            return code;
+        }
     }
 }
@@ -0,0 +1,352 @@
+/*
+ * Copyright (C) 2015 Yohan Liyanage
+ *
+ * Release under the MIT License (MIT). See LICENSE file for details.
+ */
+
+package com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * JVM wide registry of deployment metrics, labelled by Spark Master, which can be exported in the Prometheus text
+ * format.
+ * <p>
+ * All recording is lock free: metrics are created once with {@code putIfAbsent} and updated with atomic operations.
+ *
+ * @author Yohan Liyanage
+ */
+public final class DeploymentMetrics {
+
+    private static final DeploymentMetrics INSTANCE = new DeploymentMetrics();
+
+    private static final String PREFIX = "spark_deploy_";
+
+    private final ConcurrentMap<Labels, AtomicLong> requests = new ConcurrentHashMap<Labels, AtomicLong>();
+    private final ConcurrentMap<Labels, LatencyHistogram> requestDurations =
+            new ConcurrentHashMap<Labels, LatencyHistogram>();
+    private final ConcurrentMap<Labels, AtomicLong> failures = new ConcurrentHashMap<Labels, AtomicLong>();
+    private final ConcurrentMap<Labels, AtomicLong> retries = new ConcurrentHashMap<Labels, AtomicLong>();
+    private final ConcurrentMap<Labels, AtomicLong> deployments = new ConcurrentHashMap<Labels, AtomicLong>();
+    private final ConcurrentMap<Labels, AtomicLong> restarts = new ConcurrentHashMap<Labels, AtomicLong>();
+    private final ConcurrentMap<Labels, LatencyHistogram> timeToRunning =
+            new ConcurrentHashMap<Labels, LatencyHistogram>();
+    private final ConcurrentMap<Labels, RecentLatency> recentLatencies =
+            new ConcurrentHashMap<Labels, RecentLatency>();
+
+    /**
+     * Returns the shared registry.
+     *
+     * @return registry
+     */
+    public static DeploymentMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Records a completed REST call.
+     *
+     * @param master master REST URL
+     * @param operation operation (ex. "submit")
+     * @param millis call duration
+     * @param success whether the call succeeded
+     */
+    public void recordCall(String master, String operation, long millis, boolean success) {
+        counter(requests, new Labels("master", master, "operation", operation,
+                "outcome", success ? "success" : "failure")).incrementAndGet();
+        histogram(requestDurations, new Labels("master", master, "operation", operation),
+                LatencyHistogram.REQUEST_BUCKETS).record(millis);
+
+        Labels labels = new Labels("master", master, "operation", operation);
+        RecentLatency recent = recentLatencies.get(labels);
+        if (recent == null) {
+            RecentLatency created = new RecentLatency();
+            recent = recentLatencies.putIfAbsent(labels, created);
+            if (recent == null) {
+                recent = created;
+            }
+        }
+        recent.update(millis);
+    }
+
+    /**
+     * Returns the recent latency of calls to the given master, as an exponentially weighted moving average that
+     * favours the last few calls.
+     *
+     * @param master master REST URL
+     * @param operation operation (ex. "submit")
+     * @return latency in milliseconds, or -1 if no call was recorded
+     */
+    public long getRecentLatency(String master, String operation) {
+        RecentLatency recent = recentLatencies.get(new Labels("master", master, "operation", operation));
+        return recent == null ? -1 : recent.get();
+    }
+
+    /**
+     * Records a failed REST call.
+     *
+     * @param master master REST URL
+     * @param operation operation
+     * @param reason short failure reason (ex. "timeout")
+     */
+    public void recordFailure(String master, String operation, String reason) {
+        counter(failures, new Labels("master", master, "operation", operation, "reason", reason)).incrementAndGet();
+    }
+
+    /**
+     * Records a retried REST call.
+     *
+     * @param master master REST URL
+     * @param operation operation
+     */
+    public void recordRetry(String master, String operation) {
+        counter(retries, new Labels("master", master, "operation", operation)).incrementAndGet();
+    }
+
+    /**
+     * Records the outcome of a deployment, and the time the driver took to start if it is running.
+     *
+     * @param master master REST URL
+     * @param driverState driver state after submission
+     * @param millis time from submission to the driver state being known
+     */
+    public void recordDeployment(String master, String driverState, long millis) {
+        counter(deployments, new Labels("master", master, "state", String.valueOf(driverState))).incrementAndGet();
+        if ("RUNNING".equals(driverState)) {
+            histogram(timeToRunning, new Labels("master", master), LatencyHistogram.STARTUP_BUCKETS).record(millis);
+        }
+    }
+
+    /**
+     * Records an application restarted by the watchdog after its driver failed.
+     *
+     * @param master master REST URL
+     * @param restarted true if restarted, false if the restart budget was exhausted
+     */
+    public void recordRestart(String master, boolean restarted) {
+        counter(restarts, new Labels("master", master, "outcome", restarted ? "restarted" : "budget_exhausted"))
+                .incrementAndGet();
+    }
+
+    /**
+     * Returns a short failure reason for the given exception.
+     *
+     * @param e exception
+     * @return reason
+     */
+    public static String reasonOf(Throwable e) {
+        if (e instanceof SocketTimeoutException) {
+            return "timeout";
+        }
+        if (e instanceof ConnectException) {
+            return "connect";
+        }
+        if (e instanceof IOException) {
+            return "io";
+        }
+        return "error";
+    }
+
+    /**
+     * Writes all metrics in the Prometheus text exposition format (version 0.0.4).
+     *
+     * @param out writer
+     * @throws IOException if writing fails
+     */
+    public void writePrometheus(Writer out) throws IOException {
+        writeCounters(out, "requests_total", "Spark REST calls by outcome.", requests);
+        writeHistograms(out, "request_duration_seconds", "Duration of Spark REST calls.", requestDurations);
+        writeCounters(out, "failures_total", "Failed Spark REST calls by reason.", failures);
+        writeCounters(out, "retries_total", "Retried Spark REST calls.", retries);
+        writeCounters(out, "deployments_total", "Deployments by driver state after submission.", deployments);
+        writeHistograms(out, "time_to_running_seconds", "Time from submission until the driver is RUNNING.",
+                timeToRunning);
+        writeCounters(out, "restarts_total", "Failed drivers of supervised applications by restart outcome.",
+                restarts);
+
+        header(out, "connections_active", "Connections in use per Spark Master.", "gauge");
+        for (TransportStatistics statistics : ConnectionPool.getInstance().getStatistics()) {
+            sample(out, "connections_active", new Labels("master", statistics.getMasterRestUrl()),
+                    statistics.getActiveConnections());
+        }
+        header(out, "circuit_state", "Circuit of each Spark Master (0 closed, 1 half open, 2 open).", "gauge");
+        for (Map.Entry<String, CircuitBreaker.State> circuit : CircuitBreaker.getInstance().getStates().entrySet()) {
+            sample(out, "circuit_state", new Labels("master", circuit.getKey()), circuit.getValue().ordinal());
+        }
+        header(out, "pending_drivers", "Submissions waiting for their driver to start.", "gauge");
+        sample(out, "pending_drivers", new Labels(), DriverStatePoller.getInstance().getPendingCount());
+
+        DeploymentLeases leases = DeploymentLeases.getInstance();
+        Map<Labels, AtomicLong> outcomes = new HashMap<Labels, AtomicLong>();
+        for (DeploymentLeases.Outcome outcome : DeploymentLeases.Outcome.values()) {
+            outcomes.put(new Labels("outcome", outcome.name().toLowerCase()), new AtomicLong(leases.getCount(outcome)));
+        }
+        writeCounters(out, "lease_requests_total", "Deployment lease requests by outcome.", outcomes);
+        writeHistograms(out, "lease_wait_seconds", "Time spent waiting for deployment leases.",
+                Collections.singletonMap(new Labels(), leases.getWaitTimes()));
+        int held = 0;
+        int waiting = 0;
+        for (DeploymentLeases.LeaseInfo lease : leases.getLeases()) {
+            held += lease.getHolder() != null ? 1 : 0;
+            waiting += lease.getWaiting();
+        }
+        header(out, "leases_held", "Deployment leases currently held.", "gauge");
+        sample(out, "leases_held", new Labels(), held);
+        header(out, "lease_waiters", "Deployments currently waiting for a lease.", "gauge");
+        sample(out, "lease_waiters", new Labels(), waiting);
+    }
+
+    private static void writeCounters(Writer out, String name, String help, Map<Labels, AtomicLong> counters)
+            throws IOException {
+        header(out, name, help, "counter");
+        for (Map.Entry<Labels, AtomicLong> entry : sorted(counters).entrySet()) {
+            sample(out, name, entry.getKey(), entry.getValue().get());
+        }
+    }
+
+    private static void writeHistograms(Writer out, String name, String help,
+                                        Map<Labels, LatencyHistogram> histograms) throws IOException {
+        header(out, name, help, "histogram");
+        for (Map.Entry<Labels, LatencyHistogram> entry : sorted(histograms).entrySet()) {
+            Labels labels = entry.getKey();
+            LatencyHistogram histogram = entry.getValue();
+            long[] bounds = histogram.getBounds();
+            long[] cumulative = histogram.getCumulativeCounts();
+            for (int i = 0; i < bounds.length; i++) {
+                sample(out, name + "_bucket", labels.with("le", seconds(bounds[i])), cumulative[i]);
+            }
+            sample(out, name + "_bucket", labels.with("le", "+Inf"), cumulative[bounds.length]);
+            out.write(PREFIX + name + "_sum" + labels + " " + seconds(histogram.getSumMillis()) + "\n");
+            sample(out, name + "_count", labels, histogram.getCount());
+        }
+    }
+
+    private static void header(Writer out, String name, String help, String type) throws IOException {
+        out.write("# HELP " + PREFIX + name + " " + help + "\n");
+        out.write("# TYPE " + PREFIX + name + " " + type + "\n");
+    }
+
+    private static void sample(Writer out, String name, Labels labels, long value) throws IOException {
+        out.write(PREFIX + name + labels + " " + value + "\n");
+    }
+
+    private static String seconds(long millis) {
+        return String.valueOf(millis / 1000.0);
+    }
+
+    private static <V> SortedMap<Labels, V> sorted(Map<Labels, V> metrics) {
+        return new TreeMap<Labels, V>(metrics);
+    }
+
+    private static AtomicLong counter(ConcurrentMap<Labels, AtomicLong> counters, Labels labels) {
+        AtomicLong counter = counters.get(labels);
+        if (counter == null) {
+            AtomicLong created = new AtomicLong();
+            counter = counters.putIfAbsent(labels, created);
+            if (counter == null) {
+                counter = created;
+            }
+        }
+        return counter;
+    }
+
+    private static LatencyHistogram histogram(ConcurrentMap<Labels, LatencyHistogram> histograms, Labels labels,
+                                              long[] buckets) {
+        LatencyHistogram histogram = histograms.get(labels);
+        if (histogram == null) {
+            LatencyHistogram created = new LatencyHistogram(buckets);
+            histogram = histograms.putIfAbsent(labels, created);
+            if (histogram == null) {
+                histogram = created;
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * Exponentially weighted moving average of call durations.
+     */
+    private static final class RecentLatency {
+
+        private static final double WEIGHT = 0.3;
+
+        private double average = -1;
+
+        synchronized void update(long millis) {
+            average = average < 0 ? millis : average + WEIGHT * (millis - average);
+        }
+
+        synchronized long get() {
+            return Math.round(average);
+        }
+    }
+
+    /**
+     * Metric labels, as alternating names and values. Renders in the Prometheus label syntax.
+     */
+    private static final class Labels implements Comparable<Labels> {
+
+        private final String[] pairs;
+        private final String text;
+
+        Labels(String... pairs) {
+            this.pairs = pairs;
+            StringBuilder builder = new StringBuilder();
+            for (int i = 0; i < pairs.length; i += 2) {
+                builder.append(i == 0 ? "{" : ",").append(pairs[i]).append("=\"").append(escape(pairs[i + 1]))
+                        .append('"');
+            }
+            if (pairs.length > 0) {
+                builder.append('}');
+            }
+            this.text = builder.toString();
+        }
+
+        Labels with(String name, String value) {
+            String[] extended = Arrays.copyOf(pairs, pairs.length + 2);
+            extended[pairs.length] = name;
+            extended[pairs.length + 1] = value;
+            return new Labels(extended);
+        }
+
+        private static String escape(String value) {
+            return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Labels && text.equals(((Labels) o).text);
+        }
+
+        @Override
+        public int hashCode() {
+            return text.hashCode();
+        }
+
+        @Override
+        public int compareTo(Labels o) {
+            return text.compareTo(o.text);
+        }
+
+        @Override
+        public String toString() {
+            return text;
+        }
+    }
+
+    private DeploymentMetrics() {
+        // Singleton
+    }
+}
@@ -6,8 +6,14 @@
 
 package com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer;
 
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.TreeMap;
 
 /**
  * Represents a request that is generated to deploy a Spark Application.
@@ -24,6 +30,7 @@ public class DeploymentRequest {
     private String mainClass;
     private Map<String, String> environmentVariables = new HashMap<String, String>();
     private Map<String, String> sparkProperties = new HashMap<String, String>();
+    private byte[] payload;
 
     /**
      * Instantiates a new Deployment request.
@@ -32,6 +39,20 @@ public class DeploymentRequest {
         environmentVariables.put("SPARK_ENV_LOADED", "1");
     }
 
+    /**
+     * Instantiates a request rendered from a {@link DeploymentTemplate}. Its maps are unmodifiable, since they are
+     * already serialized into the payload.
+     */
+    DeploymentRequest(String[] appArgs, String appResource, String mainClass, Map<String, String> environmentVariables,
+                      Map<String, String> sparkProperties, byte[] payload) {
+        this.appArgs = appArgs;
+        this.appResource = appResource;
+        this.mainClass = mainClass;
+        this.environmentVariables = Collections.unmodifiableMap(environmentVariables);
+        this.sparkProperties = Collections.unmodifiableMap(sparkProperties);
+        this.payload = payload;
+    }
+
     /**
      * Get app args.
      *
@@ -48,6 +69,7 @@ public class DeploymentRequest {
      */
     public void setAppArgs(String[] appArgs) {
         this.appArgs = appArgs;
+        this.payload = null;
     }
 
     /**
@@ -66,6 +88,7 @@ public class DeploymentRequest {
      */
     public void setAppResource(String appResource) {
         this.appResource = appResource;
+        this.payload = null;
     }
 
     /**
@@ -84,6 +107,7 @@ public class DeploymentRequest {
      */
     public void setMainClass(String mainClass) {
         this.mainClass = mainClass;
+        this.payload = null;
     }
 
     /**
@@ -102,6 +126,7 @@ public class DeploymentRequest {
      */
     public void setSparkProperties(Map<String, String> sparkProperties) {
         this.sparkProperties = sparkProperties;
+        this.payload = null;
     }
 
     /**
@@ -130,4 +155,89 @@ public class DeploymentRequest {
     public Map<String, String> getEnvironmentVariables() {
         return environmentVariables;
     }
+
+    /**
+     * Serializes this request to the JSON sent to Spark, so that it can be stored and submitted again later.
+     *
+     * @return JSON
+     * @throws IOException if serialization fails
+     */
+    public String toJson() throws IOException {
+        return payload != null ? new String(payload, "UTF-8") : SparkJson.REQUEST_WRITER.writeValueAsString(this);
+    }
+
+    /**
+     * Returns the JSON payload serialized when the request was rendered from a template, if it has not been modified
+     * since.
+     *
+     * @return payload, or null
+     */
+    byte[] getPayload() {
+        return payload;
+    }
+
+    /**
+     * Returns a digest of everything that decides what the driver runs: the application artifact, main class,
+     * arguments, Spark properties and environment variables. Maps are hashed in key order, so that equal requests have
+     * equal fingerprints however they were built.
+     *
+     * @param artifactDigest digest of the content of the application resource
+     * @return SHA-256 fingerprint, as hex
+     */
+    public String fingerprint(String artifactDigest) {
+        StringBuilder text = new StringBuilder();
+        appendField(text, artifactDigest);
+        appendField(text, appResource);
+        appendField(text, mainClass);
+        text.append(appArgs == null ? 0 : appArgs.length).append(';');
+        if (appArgs != null) {
+            for (String arg : appArgs) {
+                appendField(text, arg);
+            }
+        }
+        for (Map<String, String> map : Arrays.asList(sparkProperties, environmentVariables)) {
+            text.append(map.size()).append(';');
+            for (Map.Entry<String, String> entry : new TreeMap<String, String>(map).entrySet()) {
+                appendField(text, entry.getKey());
+                appendField(text, entry.getValue());
+            }
+        }
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest(text.toString().getBytes("UTF-8"))) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // Every JVM supports SHA-256
+            throw new IllegalStateException(e);
+        } catch (IOException e) {
+            // UTF-8 is always supported
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Appends a length prefixed field, so that no two sequences of fields give the same text.
+     */
+    private static void appendField(StringBuilder text, String value) {
+        if (value == null) {
+            text.append("-;");
+        } else {
+            text.append(value.length()).append(':').append(value);
+        }
+    }
+
+    /**
+     * Reads a request serialized with {@link #toJson()}.
+     *
+     * @param json JSON
+     * @return request
+     * @throws IOException if the JSON is not a valid request
+     */
+    public static DeploymentRequest fromJson(String json) throws IOException {
+        return SparkJson.REQUEST_READER.readValue(json);
+    }
 }
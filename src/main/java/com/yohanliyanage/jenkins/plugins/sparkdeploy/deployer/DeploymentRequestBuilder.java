@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2015 Yohan Liyanage
+ *
+ * Release under the MIT License (MIT). See LICENSE file for details.
+ */
+
+package com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer;
+
+import java.io.PrintStream;
+
+/**
+ * Builds a {@link DeploymentRequest} from the textual configuration of a deployment.
+ *
+ * @author Yohan Liyanage
+ */
+public class DeploymentRequestBuilder {
+
+    private String masterUrl;
+    private String scalaVersion;
+    private String appResource;
+    private String mainClass;
+    private String appArgs;
+    private String sparkProperties;
+
+    /**
+     * Sets master url.
+     *
+     * @param masterUrl Spark Master URL, passed to the driver as spark.master
+     * @return this builder
+     */
+    public DeploymentRequestBuilder masterUrl(String masterUrl) {
+        this.masterUrl = masterUrl;
+        return this;
+    }
+
+    /**
+     * Sets scala version.
+     *
+     * @param scalaVersion Spark Scala Version, or null
+     * @return this builder
+     */
+    public DeploymentRequestBuilder scalaVersion(String scalaVersion) {
+        this.scalaVersion = scalaVersion;
+        return this;
+    }
+
+    /**
+     * Sets app resource.
+     *
+     * @param appResource application resource URL
+     * @return this builder
+     */
+    public DeploymentRequestBuilder appResource(String appResource) {
+        this.appResource = appResource;
+        return this;
+    }
+
+    /**
+     * Sets main class.
+     *
+     * @param mainClass fully qualified main class name
+     * @return this builder
+     */
+    public DeploymentRequestBuilder mainClass(String mainClass) {
+        this.mainClass = mainClass;
+        return this;
+    }
+
+    /**
+     * Sets app args.
+     *
+     * @param appArgs space separated application arguments, which may be quoted
+     * @return this builder
+     */
+    public DeploymentRequestBuilder appArgs(String appArgs) {
+        this.appArgs = appArgs;
+        return this;
+    }
+
+    /**
+     * Sets spark properties.
+     *
+     * @param sparkProperties comma separated name value pairs (ex. prop1=value1,prop2=value2,...)
+     * @return this builder
+     */
+    public DeploymentRequestBuilder sparkProperties(String sparkProperties) {
+        this.sparkProperties = sparkProperties;
+        return this;
+    }
+
+    /**
+     * Compiles the configuration into a template, from which a request can be rendered for each build.
+     *
+     * @return template
+     * @throws IllegalArgumentException if the application arguments or spark properties are malformed
+     */
+    public DeploymentTemplate compile() {
+        return DeploymentTemplate.compile(masterUrl, scalaVersion, appResource, mainClass, appArgs, sparkProperties);
+    }
+
+    /**
+     * Builds the request, without substituting placeholders.
+     *
+     * @param logger logger, used to report overridden default properties
+     * @return request
+     * @throws IllegalArgumentException if the application arguments or spark properties are malformed
+     */
+    public DeploymentRequest build(PrintStream logger) {
+        DeploymentTemplate template = compile();
+        for (String warning : template.getWarnings()) {
+            logger.println("[Spark-Deployer] " + warning);
+        }
+        return template.render();
+    }
+}
@@ -0,0 +1,472 @@
+/*
+ * Copyright (C) 2015 Yohan Liyanage
+ *
+ * Release under the MIT License (MIT). See LICENSE file for details.
+ */
+
+package com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer;
+
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Deployment configuration compiled into an immutable template, from which a {@link DeploymentRequest} is rendered
+ * for each build.
+ * <p>
+ * Arguments and properties are parsed once, when the template is compiled, and malformed configuration is rejected
+ * then. Values may contain <code>${NAME}</code> placeholders, which are replaced with build variables (ex.
+ * <code>${BUILD_NUMBER}</code>) when rendering; placeholders without a value are left as is. The JSON payload of the
+ * request is serialized once as well, as a skeleton with slots for the values that change per build, so rendering only
+ * fills in these slots.
+ *
+ * @author Yohan Liyanage
+ */
+public final class DeploymentTemplate {
+
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\$\\{([^}]*)\\}");
+    private static final Map<String, String> NO_VARIABLES = Collections.emptyMap();
+
+    private final String appResource;
+    private final String mainClass;
+    private final Value[] appArgs;
+    private final Map<String, Value> sparkProperties;
+    private final Map<String, String> environmentVariables;
+    private final Slot[] slots;
+    private final byte[][] skeleton;
+    private final int[] slotOrder;
+    private final List<String> warnings;
+
+    private DeploymentTemplate(String appResource, String mainClass, Value[] appArgs,
+                               Map<String, Value> sparkProperties, Map<String, String> environmentVariables,
+                               Slot[] slots, List<String> warnings) throws IOException {
+        this.appResource = appResource;
+        this.mainClass = mainClass;
+        this.appArgs = appArgs;
+        this.sparkProperties = sparkProperties;
+        this.environmentVariables = environmentVariables;
+        this.slots = slots;
+        this.warnings = Collections.unmodifiableList(warnings);
+        this.slotOrder = new int[slots.length];
+        this.skeleton = serializeSkeleton();
+    }
+
+    /**
+     * Compiles a template.
+     *
+     * @param masterUrl Spark Master URL, passed to the driver as spark.master
+     * @param scalaVersion Spark Scala Version, or null
+     * @param appResource application resource URL
+     * @param mainClass fully qualified main class name
+     * @param appArgs application arguments, see {@link #parseArgs(String)}
+     * @param sparkProperties spark properties, see {@link #parseProperties(String)}
+     * @return template
+     * @throws IllegalArgumentException if the configuration is malformed
+     */
+    public static DeploymentTemplate compile(String masterUrl, String scalaVersion, String appResource,
+                                             String mainClass, String appArgs, String sparkProperties) {
+        checkPlaceholders(appResource);
+        List<Slot> slots = new ArrayList<Slot>();
+        List<String> warnings = new ArrayList<String>();
+
+        List<String> args = parseArgs(appArgs);
+        Value[] argValues = new Value[args.size()];
+        for (int i = 0; i < argValues.length; i++) {
+            argValues[i] = Value.of(args.get(i), SlotType.TEXT, slots);
+        }
+
+        // Default Properties
+        Map<String, String> configured = new LinkedHashMap<String, String>();
+        configured.put("spark.jars", appResource);
+        configured.put("spark.driver.supervise", "false");
+        configured.put("spark.app.name", mainClass);
+        configured.put("spark.master", masterUrl);
+
+        for (Map.Entry<String, String> property : parseProperties(sparkProperties).entrySet()) {
+            String previous = configured.put(property.getKey(), property.getValue());
+            if (previous != null) {
+                warnings.add("Overriding Spark Property '" + property.getKey() + "' : Previous Value = "
+                        + previous + ", New Value = " + property.getValue());
+            }
+        }
+
+        Map<String, Value> properties = new LinkedHashMap<String, Value>();
+        for (Map.Entry<String, String> property : configured.entrySet()) {
+            SlotType type = "spark.jars".equals(property.getKey()) ? SlotType.JARS
+                    : "spark.master".equals(property.getKey()) ? SlotType.MASTER : SlotType.TEXT;
+            properties.put(property.getKey(), Value.of(property.getValue(), type, slots));
+        }
+
+        // Environment Variables
+        Map<String, String> environment = new LinkedHashMap<String, String>();
+        environment.put("SPARK_ENV_LOADED", "1");
+        environment.put("SPARK_SCALA_VERSION", scalaVersion);
+
+        // The resource is always a slot, so that a staged resource can replace it
+        slots.add(new Slot(appResource, SlotType.RESOURCE));
+
+        try {
+            return new DeploymentTemplate(appResource, mainClass, argValues, properties, environment,
+                    slots.toArray(new Slot[slots.size()]), warnings);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to serialize deployment template", e);
+        }
+    }
+
+    /**
+     * Parses application arguments. Arguments are separated by whitespace. Arguments may be quoted with single quotes,
+     * which are taken literally, or with double quotes, within which a backslash escapes a double quote or a
+     * backslash. Outside of quotes, a backslash escapes whitespace, a quote or a backslash.
+     *
+     * @param appArgs arguments (ex. <code>--name "My App" --date ${BUILD_ID}</code>)
+     * @return arguments
+     * @throws IllegalArgumentException if a quote is not closed, or a placeholder is malformed
+     */
+    public static List<String> parseArgs(String appArgs) {
+        List<String> args = new ArrayList<String>();
+        if (appArgs == null) {
+            return args;
+        }
+
+        StringBuilder current = new StringBuilder();
+        boolean inArg = false;
+        char quote = 0;
+        for (int i = 0; i < appArgs.length(); i++) {
+            char c = appArgs.charAt(i);
+            if (quote == '\'') {
+                if (c == '\'') {
+                    quote = 0;
+                } else {
+                    current.append(c);
+                }
+            } else if (quote == '"') {
+                if (c == '\\' && i + 1 < appArgs.length() && isEscapable(appArgs.charAt(i + 1), false)) {
+                    current.append(appArgs.charAt(++i));
+                } else if (c == '"') {
+                    quote = 0;
+                } else {
+                    current.append(c);
+                }
+            } else if (Character.isWhitespace(c)) {
+                if (inArg) {
+                    args.add(current.toString());
+                    current.setLength(0);
+                    inArg = false;
+                }
+            } else {
+                inArg = true;
+                if (c == '\'' || c == '"') {
+                    quote = c;
+                } else if (c == '\\' && i + 1 < appArgs.length() && isEscapable(appArgs.charAt(i + 1), true)) {
+                    current.append(appArgs.charAt(++i));
+                } else {
+                    current.append(c);
+                }
+            }
+        }
+
+        if (quote != 0) {
+            throw new IllegalArgumentException("Invalid Application Arguments. Unterminated " + quote + " quote");
+        }
+        if (inArg) {
+            args.add(current.toString());
+        }
+        for (String arg : args) {
+            checkPlaceholders(arg);
+        }
+        return args;
+    }
+
+    /**
+     * Parses spark properties. Properties are <code>name=value</code> pairs separated by commas. A value extends to the
+     * next separating comma and may contain <code>=</code>. A value may be double quoted to contain commas, and a
+     * backslash escapes a comma, a double quote or a backslash.
+     *
+     * @param sparkProperties properties (ex. <code>spark.executor.memory=2G,spark.driver.extraJavaOptions="-Da=1,2"</code>)
+     * @return properties, in the order given
+     * @throws IllegalArgumentException if a property has no name or value separator, a quote is not closed, or a
+     * placeholder is malformed
+     */
+    public static Map<String, String> parseProperties(String sparkProperties) {
+        Map<String, String> properties = new LinkedHashMap<String, String>();
+        if (sparkProperties == null || sparkProperties.trim().isEmpty()) {
+            return properties;
+        }
+
+        List<String> entries = new ArrayList<String>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < sparkProperties.length(); i++) {
+            char c = sparkProperties.charAt(i);
+            if (c == '\\' && i + 1 < sparkProperties.length()
+                    && ",\"\\".indexOf(sparkProperties.charAt(i + 1)) >= 0) {
+                current.append(sparkProperties.charAt(++i));
+            } else if (c == '"') {
+                quoted = ! quoted;
+            } else if (c == ',' && ! quoted) {
+                entries.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Invalid Spark Properties. Unterminated \" quote");
+        }
+        entries.add(current.toString());
+
+        for (String entry : entries) {
+            if (entry.trim().isEmpty()) {
+                continue;
+            }
+            int separator = entry.indexOf('=');
+            if (separator <= 0 || entry.substring(0, separator).trim().isEmpty()) {
+                throw new IllegalArgumentException("Invalid Spark Property '" + entry.trim() + "'. It should be = "
+                        + "separated key value pairs combined using a comma. Example: "
+                        + "spark.driver.supervise=false,spark.executor.memory=2G");
+            }
+            String value = entry.substring(separator + 1).trim();
+            checkPlaceholders(value);
+            properties.put(entry.substring(0, separator).trim(), value);
+        }
+        return properties;
+    }
+
+    /**
+     * Returns warnings about the configuration found while compiling, such as overridden default properties.
+     *
+     * @return warnings
+     */
+    public List<String> getWarnings() {
+        return warnings;
+    }
+
+    /**
+     * Renders a request without build variables.
+     *
+     * @return request
+     */
+    public DeploymentRequest render() {
+        return render(NO_VARIABLES, null, null);
+    }
+
+    /**
+     * Renders a request for a build.
+     *
+     * @param variables values of placeholders
+     * @param appResourceOverride application resource to use instead of the configured one (ex. a staged copy), which
+     * replaces the configured resource in spark.jars as well, or null
+     * @return request, which holds its serialized payload
+     */
+    public DeploymentRequest render(Map<String, String> variables, String appResourceOverride) {
+        return render(variables, appResourceOverride, null);
+    }
+
+    /**
+     * Renders a request for a build, to be submitted to another Spark cluster than the configured one.
+     *
+     * @param variables values of placeholders
+     * @param appResourceOverride application resource to use instead of the configured one, or null
+     * @param masterUrlOverride Spark Master URL to pass to the driver as spark.master instead of the configured one,
+     * or null
+     * @return request, which holds its serialized payload
+     */
+    public DeploymentRequest render(Map<String, String> variables, String appResourceOverride,
+                                    String masterUrlOverride) {
+        String configuredResource = substitute(appResource, variables);
+        String resource = appResourceOverride != null ? appResourceOverride : configuredResource;
+
+        String[] values = new String[slots.length];
+        for (int i = 0; i < slots.length; i++) {
+            values[i] = slots[i].resolve(variables, configuredResource, resource, masterUrlOverride);
+        }
+
+        String[] args = new String[appArgs.length];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = appArgs[i].resolve(values);
+        }
+        Map<String, String> properties = new HashMap<String, String>();
+        for (Map.Entry<String, Value> property : sparkProperties.entrySet()) {
+            properties.put(property.getKey(), property.getValue().resolve(values));
+        }
+
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(skeleton.length * 64);
+        JsonStringEncoder encoder = JsonStringEncoder.getInstance();
+        for (int i = 0; i < skeleton.length; i++) {
+            payload.write(skeleton[i], 0, skeleton[i].length);
+            if (i < slotOrder.length) {
+                byte[] value = encoder.quoteAsUTF8(values[slotOrder[i]]);
+                payload.write(value, 0, value.length);
+            }
+        }
+
+        return new DeploymentRequest(args, resource, mainClass, environmentVariables, properties,
+                payload.toByteArray());
+    }
+
+    /**
+     * Serializes the request with a unique marker in place of each slot, and splits the payload at the markers. Slots
+     * appear in the payload in the order of {@link #slotOrder}.
+     */
+    private byte[][] serializeSkeleton() throws IOException {
+        String marker = "@@slot-" + Long.toHexString(System.nanoTime()) + "-";
+
+        String[] markers = new String[slots.length];
+        for (int i = 0; i < slots.length; i++) {
+            markers[i] = marker + i + "@@";
+        }
+        String[] args = new String[appArgs.length];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = appArgs[i].resolve(markers);
+        }
+        Map<String, String> properties = new HashMap<String, String>();
+        for (Map.Entry<String, Value> property : sparkProperties.entrySet()) {
+            properties.put(property.getKey(), property.getValue().resolve(markers));
+        }
+        DeploymentRequest request = new DeploymentRequest(args, markers[slots.length - 1], mainClass,
+                environmentVariables, properties, null);
+        String json = SparkJson.REQUEST_WRITER.writeValueAsString(request);
+
+        TreeMap<Integer, Integer> positions = new TreeMap<Integer, Integer>();
+        for (int i = 0; i < slots.length; i++) {
+            int index = json.indexOf(markers[i]);
+            if (index < 0 || json.indexOf(markers[i], index + 1) >= 0) {
+                throw new IllegalStateException("Slot " + i + " does not appear exactly once in the payload");
+            }
+            positions.put(index, i);
+        }
+
+        byte[][] parts = new byte[slots.length + 1][];
+        int start = 0;
+        int part = 0;
+        for (Map.Entry<Integer, Integer> position : positions.entrySet()) {
+            slotOrder[part] = position.getValue();
+            parts[part++] = json.substring(start, position.getKey()).getBytes("UTF-8");
+            start = position.getKey() + markers[position.getValue()].length();
+        }
+        parts[slots.length] = json.substring(start).getBytes("UTF-8");
+        return parts;
+    }
+
+    private static boolean isEscapable(char c, boolean outsideQuotes) {
+        return c == '"' || c == '\\' || (outsideQuotes && (c == '\'' || Character.isWhitespace(c)));
+    }
+
+    private static void checkPlaceholders(String text) {
+        if (text == null) {
+            return;
+        }
+        int open = text.indexOf("${");
+        while (open >= 0) {
+            int close = text.indexOf('}', open);
+            if (close < 0) {
+                throw new IllegalArgumentException("Unterminated placeholder in '" + text + "'");
+            }
+            if (close == open + 2) {
+                throw new IllegalArgumentException("Empty placeholder in '" + text + "'");
+            }
+            open = text.indexOf("${", close);
+        }
+    }
+
+    private static String substitute(String text, Map<String, String> variables) {
+        if (text == null || text.indexOf("${") < 0) {
+            return text;
+        }
+        Matcher matcher = PLACEHOLDER.matcher(text);
+        StringBuffer result = new StringBuffer(text.length() + 16);
+        while (matcher.find()) {
+            String value = variables.get(matcher.group(1));
+            matcher.appendReplacement(result, Matcher.quoteReplacement(value != null ? value : matcher.group()));
+        }
+        matcher.appendTail(result);
+        return result.toString();
+    }
+
+    private enum SlotType {
+        /**
+         * Text with placeholders.
+         */
+        TEXT,
+        /**
+         * The application resource.
+         */
+        RESOURCE,
+        /**
+         * A list of JARs, in which the configured application resource is replaced by the rendered one.
+         */
+        JARS,
+        /**
+         * The Spark Master URL, which is replaced when deploying to another cluster.
+         */
+        MASTER
+    }
+
+    /**
+     * A value of the payload that is filled in when rendering.
+     */
+    private static final class Slot {
+
+        private final String text;
+        private final SlotType type;
+
+        Slot(String text, SlotType type) {
+            this.text = text;
+            this.type = type;
+        }
+
+        String resolve(Map<String, String> variables, String configuredResource, String resource, String master) {
+            if (type == SlotType.RESOURCE) {
+                return resource;
+            }
+            if (type == SlotType.MASTER && master != null) {
+                return master;
+            }
+            String value = substitute(text, variables);
+            if (type == SlotType.JARS && value != null && ! resource.equals(configuredResource)) {
+                List<String> jars = new ArrayList<String>();
+                for (String jar : value.split(",")) {
+                    jars.add(jar.trim().equals(configuredResource) ? resource : jar.trim());
+                }
+                return Utils.join(jars, ",");
+            }
+            return value;
+        }
+    }
+
+    /**
+     * A value of the request, which is either a literal or a slot.
+     */
+    private static final class Value {
+
+        private final String text;
+        private final int slot;
+
+        private Value(String text, int slot) {
+            this.text = text;
+            this.slot = slot;
+        }
+
+        static Value of(String text, SlotType type, List<Slot> slots) {
+            if (type == SlotType.TEXT && (text == null || text.indexOf("${") < 0)) {
+                return new Value(text, -1);
+            }
+            slots.add(new Slot(text, type));
+            return new Value(text, slots.size() - 1);
+        }
+
+        String resolve(String[] values) {
+            return slot < 0 ? text : values[slot];
+        }
+    }
+}
@@ -0,0 +1,338 @@
+/*
+ * Copyright (C) 2015 Yohan Liyanage
+ *
+ * Release under the MIT License (MIT). See LICENSE file for details.
+ */
+
+package com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Copies the stdout and stderr of a driver into the build log while the driver starts.
+ * <p>
+ * The driver's worker is found from the status of the submission, and its web UI from the cluster state reported by
+ * the master. Logs are read from the /log endpoint of the worker with byte ranges, starting where the previous read
+ * ended, so each byte is downloaded once and every read is bounded. Lines are written whole; a line split across
+ * reads is held back until its end arrives. Each log is copied up to a limit, after which it is truncated.
+ *
+ * @author Yohan Liyanage
+ */
+public final class DriverLogTailer {
+
+    /**
+     * Port of the worker web UI if the master does not report it.
+     */
+    public static final int DEFAULT_WORKER_UI_PORT = 8081;
+
+    /**
+     * Maximum number of bytes read from a log at a time.
+     */
+    static final int MAX_FETCH_BYTES = 64 * 1024;
+
+    /**
+     * Maximum number of bytes copied from each log.
+     */
+    static final long MAX_TOTAL_BYTES = 1024 * 1024;
+
+    private static final long FOLLOW_INTERVAL_MILLIS = 2000;
+    private static final int TIMEOUT_MILLIS = 5000;
+    private static final String[] LOG_TYPES = {"stdout", "stderr"};
+    private static final Pattern RANGE_HEADER = Pattern.compile("==== Bytes (\\d+)-(\\d+) of (\\d+) of [^\\n]*\\n");
+
+    private static final ExecutorService FOLLOWERS = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60,
+            TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), new DaemonThreadFactory("spark-deploy-driver-logs"));
+
+    private final DeploymentManager deployer;
+    private final String submissionId;
+    private final List<String> masterUiUrls;
+    private final PrintStream logger;
+    private final LogStream[] streams = new LogStream[LOG_TYPES.length];
+    private String workerUiUrl;
+
+    /**
+     * Creates a tailer.
+     *
+     * @param deployer deployer for the master of the submission
+     * @param submissionId submission (driver) ID
+     * @param masterUiUrls web UI URLs of the masters, which report the web UIs of the workers
+     * @param logger logger, which receives the driver logs
+     */
+    public DriverLogTailer(DeploymentManager deployer, String submissionId, List<String> masterUiUrls,
+                           PrintStream logger) {
+        this.deployer = deployer;
+        this.submissionId = submissionId;
+        this.masterUiUrls = masterUiUrls;
+        this.logger = logger;
+        for (int i = 0; i < LOG_TYPES.length; i++) {
+            streams[i] = new LogStream(LOG_TYPES[i]);
+        }
+    }
+
+    /**
+     * Copies the logs until the given future completes, which is when the driver is stable, then copies what remains.
+     *
+     * @param until future that completes once the driver has left its pending states
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void follow(Future<?> until) throws InterruptedException {
+        while (! until.isDone()) {
+            fetch();
+            try {
+                until.get(FOLLOW_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                // Driver still pending
+            } catch (ExecutionException e) {
+                // The waiter reports the failure
+            } catch (CancellationException e) {
+                // The waiter was cancelled
+            }
+        }
+        // Drain the logs up to where the driver is now
+        while (fetch()) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+        for (LogStream stream : streams) {
+            stream.flush();
+        }
+    }
+
+    /**
+     * Copies the logs until the given future completes without blocking the calling thread.
+     *
+     * @param until future that completes once the driver has left its pending states
+     * @return future, which completes once the logs are copied
+     * @see #follow(Future)
+     */
+    public DeploymentFuture<Boolean> followAsync(final Future<?> until) {
+        return DeploymentFuture.supply(FOLLOWERS, new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                follow(until);
+                return Boolean.TRUE;
+            }
+        });
+    }
+
+    /**
+     * Reads the next range of each log, if the driver has been placed on a worker.
+     *
+     * @return true if a log has more bytes than were read
+     */
+    boolean fetch() {
+        if (workerUiUrl == null && ! resolveWorker()) {
+            return false;
+        }
+        boolean more = false;
+        for (LogStream stream : streams) {
+            more |= stream.fetch();
+        }
+        return more;
+    }
+
+    /**
+     * Finds the web UI of the worker running the driver.
+     *
+     * @return true if found
+     */
+    private boolean resolveWorker() {
+        SubmissionStatusResponse status;
+        try {
+            status = deployer.getStatus(submissionId);
+        } catch (IOException e) {
+            return false;
+        } catch (RuntimeException e) {
+            return false;
+        }
+        if (status.getWorkerId() == null) {
+            // Not launched yet
+            return false;
+        }
+
+        ClusterState state = ClusterAdmission.getInstance().getState(masterUiUrls, logger);
+        if (state != null) {
+            for (ClusterState.Worker worker : state.getWorkers()) {
+                if (status.getWorkerId().equals(worker.getId()) && worker.getWebUiAddress() != null) {
+                    workerUiUrl = worker.getWebUiAddress();
+                }
+            }
+        }
+        if (workerUiUrl == null && status.getWorkerHostPort() != null) {
+            String hostPort = status.getWorkerHostPort();
+            int colon = hostPort.lastIndexOf(':');
+            workerUiUrl = "http://" + (colon > 0 ? hostPort.substring(0, colon) : hostPort) + ":"
+                    + DEFAULT_WORKER_UI_PORT;
+        }
+        if (workerUiUrl != null) {
+            logger.println("[Spark-Deployer] Driver " + submissionId + " runs on worker " + status.getWorkerId()
+                    + ". Copying its logs from " + workerUiUrl);
+        }
+        return workerUiUrl != null;
+    }
+
+    /**
+     * Reads the given range of a log of the driver from the worker.
+     *
+     * @return range, or null if the log does not exist yet
+     */
+    private Range read(String logType, long offset, int length) throws IOException {
+        String base = workerUiUrl.endsWith("/") ? workerUiUrl : workerUiUrl + "/";
+        URL url = new URL(base + "log?driverId=" + URLEncoder.encode(submissionId, "UTF-8") + "&logType=" + logType
+                + "&offset=" + offset + "&byteLength=" + length);
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setConnectTimeout(TIMEOUT_MILLIS);
+        connection.setReadTimeout(TIMEOUT_MILLIS);
+        connection.setUseCaches(false);
+        try {
+            int code = connection.getResponseCode();
+            if (code == HttpURLConnection.HTTP_NOT_FOUND) {
+                return null;
+            }
+            if (code != HttpURLConnection.HTTP_OK) {
+                throw new IOException("HTTP " + code);
+            }
+            ByteArrayOutputStream body = new ByteArrayOutputStream(length + 256);
+            InputStream in = connection.getInputStream();
+            try {
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = in.read(buffer)) >= 0) {
+                    body.write(buffer, 0, read);
+                }
+            } finally {
+                in.close();
+            }
+            return Range.parse(body.toByteArray());
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * A range of a log, as returned by the worker: a header giving the byte range and the log length, followed by
+     * the bytes of the range. Only the end of the range and the log length are kept.
+     */
+    static final class Range {
+
+        private final long end;
+        private final long length;
+        private final byte[] bytes;
+
+        Range(long end, long length, byte[] bytes) {
+            this.end = end;
+            this.length = length;
+            this.bytes = bytes;
+        }
+
+        static Range parse(byte[] body) throws IOException {
+            // The header is ASCII, so it can be matched on a prefix of the body
+            String prefix = new String(body, 0, Math.min(body.length, 512), "ISO-8859-1");
+            Matcher matcher = RANGE_HEADER.matcher(prefix);
+            if (! matcher.lookingAt()) {
+                throw new IOException("Unexpected log response from worker");
+            }
+            byte[] bytes = new byte[body.length - matcher.end()];
+            System.arraycopy(body, matcher.end(), bytes, 0, bytes.length);
+            return new Range(Long.parseLong(matcher.group(2)), Long.parseLong(matcher.group(3)), bytes);
+        }
+    }
+
+    /**
+     * One log of the driver, with the offset up to which it has been copied.
+     */
+    private final class LogStream {
+
+        private final String logType;
+        private final ByteArrayOutputStream partialLine = new ByteArrayOutputStream();
+        private long offset;
+        private boolean done;
+        private boolean failed;
+
+        LogStream(String logType) {
+            this.logType = logType;
+        }
+
+        /**
+         * Copies the next range of the log.
+         *
+         * @return true if the log has more bytes than were read
+         */
+        boolean fetch() {
+            if (done) {
+                return false;
+            }
+            Range range;
+            try {
+                range = read(logType, offset, MAX_FETCH_BYTES);
+            } catch (IOException e) {
+                if (! failed) {
+                    logger.println("[Spark-Deployer] Could not read driver " + logType + " : " + e);
+                    failed = true;
+                }
+                return false;
+            }
+            if (range == null || range.end <= offset) {
+                return false;
+            }
+
+            write(range.bytes);
+            offset = range.end;
+            if (offset >= MAX_TOTAL_BYTES && range.length > offset) {
+                flush();
+                logger.println("[Spark-Deployer] Driver " + logType + " truncated after " + offset + " of "
+                        + range.length + " bytes. See " + workerUiUrl);
+                done = true;
+                return false;
+            }
+            return range.length > offset;
+        }
+
+        private void write(byte[] bytes) {
+            int lineStart = 0;
+            for (int i = 0; i < bytes.length; i++) {
+                if (bytes[i] == '\n') {
+                    partialLine.write(bytes, lineStart, i - lineStart);
+                    println();
+                    lineStart = i + 1;
+                }
+            }
+            partialLine.write(bytes, lineStart, bytes.length - lineStart);
+        }
+
+        void flush() {
+            if (partialLine.size() > 0) {
+                println();
+            }
+        }
+
+        private void println() {
+            try {
+                logger.println("[Spark-Driver " + logType + "] " + partialLine.toString("UTF-8"));
+            } catch (IOException e) {
+                // UTF-8 is always supported
+                throw new IllegalStateException(e);
+            }
+            partialLine.reset();
+        }
+    }
+}
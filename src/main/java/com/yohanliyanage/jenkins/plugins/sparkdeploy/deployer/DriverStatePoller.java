@@ -0,0 +1,280 @@
+/*
+ * Copyright (C) 2015 Yohan Liyanage
+ *
+ * Release under the MIT License (MIT). See LICENSE file for details.
+ */
+
+package com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JVM wide poller that waits for submitted drivers to leave their pending states.
+ * <p>
+ * All pending submissions are tracked by a single timer. On each tick, the submissions that are due are grouped by
+ * Spark Master and polled by one task per master, so that the number of threads used does not grow with the number
+ * of builds waiting on a deployment. Each waiter is notified through the {@link DeploymentFuture} returned by
+ * {@link #watch(DeploymentManager, String)}.
+ *
+ * @author Yohan Liyanage
+ */
+public final class DriverStatePoller {
+
+    /**
+     * Driver state reported when the driver did not leave its pending state within the allowed attempts.
+     */
+    public static final String ATTEMPTS_EXCEEDED_NO_RESPONSE = "ATTEMPTS_EXCEEDED_NO_RESPONSE";
+
+    /**
+     * States in which the driver is still being launched by default.
+     */
+    public static final Set<String> DEFAULT_PENDING_STATES = Collections.singleton("LOADING");
+
+    /**
+     * States in which the driver has not started running yet, for callers that wait until it is RUNNING.
+     */
+    public static final Set<String> STARTING_STATES = Collections.unmodifiableSet(
+            new HashSet<String>(Arrays.asList("SUBMITTED", "LOADING", "RELAUNCHING")));
+
+    /**
+     * States in which the driver of a killed submission has not stopped yet.
+     */
+    public static final Set<String> STOPPING_STATES = Collections.unmodifiableSet(
+            new HashSet<String>(Arrays.asList("SUBMITTED", "LOADING", "RUNNING", "RELAUNCHING")));
+
+    /**
+     * Polls of a driver in the default pending states before giving up.
+     */
+    public static final int DEFAULT_MAX_ATTEMPTS = 5;
+
+    /**
+     * Failed polls of a driver that are retried on a later tick before the watch fails. Polls are single calls, so
+     * that a failing master never holds a polling thread while every other watch on it waits.
+     */
+    private static final int MAX_FAILED_POLLS = 3;
+
+    private static final long BACKOFF_MILLIS = 2000;
+    private static final long TICK_MILLIS = 500;
+    private static final int MAX_POLLING_THREADS = 8;
+
+    private static final DriverStatePoller INSTANCE = new DriverStatePoller();
+
+    private final ConcurrentLinkedQueue<PendingSubmission> pending = new ConcurrentLinkedQueue<PendingSubmission>();
+    private final Set<String> busyMasters = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final ExecutorService pollers;
+
+    private DriverStatePoller() {
+        ScheduledExecutorService timer =
+                Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("spark-deploy-poller-timer"));
+        timer.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                tick();
+            }
+        }, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+
+        ThreadPoolExecutor workers = new ThreadPoolExecutor(MAX_POLLING_THREADS, MAX_POLLING_THREADS, 60,
+                TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new DaemonThreadFactory("spark-deploy-poller"));
+        workers.allowCoreThreadTimeOut(true);
+        this.pollers = workers;
+    }
+
+    /**
+     * Returns the shared poller.
+     *
+     * @return poller
+     */
+    public static DriverStatePoller getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Starts watching the given submission until its driver leaves the default pending states.
+     *
+     * @param deployer deployer for the master of the submission
+     * @param submissionId submission to watch
+     * @return future driver state, which is {@link #ATTEMPTS_EXCEEDED_NO_RESPONSE} if the driver stays pending
+     */
+    public DeploymentFuture<String> watch(DeploymentManager deployer, String submissionId) {
+        return watch(deployer, submissionId, DEFAULT_PENDING_STATES, DEFAULT_MAX_ATTEMPTS);
+    }
+
+    /**
+     * Starts watching the given submission until its driver leaves the given pending states. The first poll happens
+     * on the next tick; subsequent polls back off linearly.
+     *
+     * @param deployer deployer for the master of the submission
+     * @param submissionId submission to watch
+     * @param pendingStates driver states that are considered transient
+     * @param maxAttempts maximum number of polls after the first one
+     * @return future driver state, which is {@link #ATTEMPTS_EXCEEDED_NO_RESPONSE} if the driver stays pending
+     */
+    public DeploymentFuture<String> watch(DeploymentManager deployer, String submissionId, Set<String> pendingStates,
+                                          int maxAttempts) {
+        return watch(deployer, submissionId, pendingStates, maxAttempts, null);
+    }
+
+    /**
+     * Starts watching the given submission until its driver leaves the given pending states, and reports the first
+     * state polled, such as SUBMITTED while waiting until the driver runs.
+     *
+     * @param deployer deployer for the master of the submission
+     * @param submissionId submission to watch
+     * @param pendingStates driver states that are considered transient
+     * @param maxAttempts maximum number of polls after the first one
+     * @param firstState notified on a polling thread with the first state, or the failure of the first poll; may be
+     *                   null
+     * @return future driver state, which is {@link #ATTEMPTS_EXCEEDED_NO_RESPONSE} if the driver stays pending
+     */
+    public DeploymentFuture<String> watch(DeploymentManager deployer, String submissionId, Set<String> pendingStates,
+                                          int maxAttempts, DeploymentFuture.Callback<String> firstState) {
+        PendingSubmission submission = new PendingSubmission(deployer, submissionId, pendingStates, maxAttempts,
+                firstState);
+        pending.add(submission);
+        return submission.future;
+    }
+
+    /**
+     * Returns the number of submissions currently being watched.
+     *
+     * @return pending submissions
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    private void tick() {
+        long now = System.currentTimeMillis();
+        Map<String, List<PendingSubmission>> dueByMaster = new HashMap<String, List<PendingSubmission>>();
+
+        Iterator<PendingSubmission> iterator = pending.iterator();
+        while (iterator.hasNext()) {
+            PendingSubmission submission = iterator.next();
+            if (submission.future.isDone()) {
+                // Completed or cancelled by the waiter
+                iterator.remove();
+                continue;
+            }
+            if (submission.nextPollAt <= now && ! busyMasters.contains(submission.masterKey)) {
+                List<PendingSubmission> due = dueByMaster.get(submission.masterKey);
+                if (due == null) {
+                    due = new ArrayList<PendingSubmission>();
+                    dueByMaster.put(submission.masterKey, due);
+                }
+                due.add(submission);
+            }
+        }
+
+        for (Map.Entry<String, List<PendingSubmission>> entry : dueByMaster.entrySet()) {
+            busyMasters.add(entry.getKey());
+            pollers.execute(new PollTask(entry.getKey(), entry.getValue()));
+        }
+    }
+
+    /**
+     * Polls all due submissions of a single master in one pass.
+     */
+    private final class PollTask implements Runnable {
+
+        private final String masterKey;
+        private final List<PendingSubmission> due;
+
+        PollTask(String masterKey, List<PendingSubmission> due) {
+            this.masterKey = masterKey;
+            this.due = due;
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (PendingSubmission submission : due) {
+                    submission.poll();
+                    if (submission.future.isDone()) {
+                        pending.remove(submission);
+                    }
+                }
+            } finally {
+                busyMasters.remove(masterKey);
+            }
+        }
+    }
+
+    /**
+     * A submission that is being watched.
+     */
+    private static final class PendingSubmission {
+
+        private final DeploymentManager deployer;
+        private final String submissionId;
+        private final String masterKey;
+        private final Set<String> pendingStates;
+        private final int maxAttempts;
+        private final DeploymentFuture<String> future = new DeploymentFuture<String>();
+
+        private volatile long nextPollAt;
+        private int attempts;
+        private int failedPolls;
+        private DeploymentFuture.Callback<String> firstState;
+
+        PendingSubmission(DeploymentManager deployer, String submissionId, Set<String> pendingStates,
+                          int maxAttempts, DeploymentFuture.Callback<String> firstState) {
+            this.deployer = deployer;
+            this.submissionId = submissionId;
+            this.masterKey = deployer.getMasterRestUrl();
+            this.pendingStates = new HashSet<String>(pendingStates);
+            this.maxAttempts = maxAttempts;
+            this.firstState = firstState;
+            this.nextPollAt = System.currentTimeMillis();
+        }
+
+        void poll() {
+            if (future.isDone()) {
+                return;
+            }
+            DeploymentFuture.Callback<String> first = firstState;
+            firstState = null;
+            try {
+                String driverState = deployer.pollDriverState(submissionId);
+                failedPolls = 0;
+                if (first != null) {
+                    first.onSuccess(driverState);
+                }
+                if (! pendingStates.contains(driverState)) {
+                    future.complete(driverState);
+                } else if (attempts >= maxAttempts) {
+                    future.complete(ATTEMPTS_EXCEEDED_NO_RESPONSE);
+                } else {
+                    attempts++;
+                    nextPollAt = System.currentTimeMillis() + BACKOFF_MILLIS * attempts;
+                }
+            } catch (Exception e) {
+                if (failedPolls < MAX_FAILED_POLLS && DeploymentManager.isRetriable(e)) {
+                    failedPolls++;
+                    firstState = first;
+                    nextPollAt = System.currentTimeMillis() + BACKOFF_MILLIS * failedPolls;
+                    return;
+                }
+                if (first != null) {
+                    first.onFailure(e);
+                }
+                future.fail(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2015 Yohan Liyanage
+ *
+ * Release under the MIT License (MIT). See LICENSE file for details.
+ */
+
+package com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * Polls an HTTP endpoint of a deployed application until it reports healthy, by responding with a 2xx status code.
+ *
+ * @author Yohan Liyanage
+ */
+public final class HealthCheck {
+
+    private static final long INTERVAL_MILLIS = 2000;
+    private static final int TIMEOUT_MILLIS = 5000;
+
+    /**
+     * Polls the given URL until it responds with a 2xx status code, or the timeout elapses.
+     *
+     * @param url health check URL
+     * @param timeoutMillis maximum time to wait
+     * @param logger logger
+     * @return true if the application reported healthy in time
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public static boolean await(String url, long timeoutMillis, PrintStream logger) throws InterruptedException {
+        logger.println("[Spark-Deployer] Waiting for health check " + url);
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        String lastResult;
+
+        while (true) {
+            try {
+                int code = check(url);
+                if (code >= 200 && code < 300) {
+                    logger.println("[Spark-Deployer] Health check passed");
+                    return true;
+                }
+                lastResult = "HTTP " + code;
+            } catch (IOException e) {
+                lastResult = e.toString();
+            }
+
+            if (System.currentTimeMillis() + INTERVAL_MILLIS > deadline) {
+                logger.println("[Spark-Deployer] Health check did not pass within " + (timeoutMillis / 1000)
+                        + " seconds. Last result : " + lastResult);
+                return false;
+            }
+            Thread.sleep(INTERVAL_MILLIS);
+        }
+    }
+
+    private static int check(String url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setConnectTimeout(TIMEOUT_MILLIS);
+        connection.setReadTimeout(TIMEOUT_MILLIS);
+        connection.setUseCaches(false);
+        try {
+            int code = connection.getResponseCode();
+            InputStream in = code < 400 ? connection.getInputStream() : connection.getErrorStream();
+            if (in != null) {
+                in.close();
+            }
+            return code;
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private HealthCheck() {
+        // Utility class
+    }
+}
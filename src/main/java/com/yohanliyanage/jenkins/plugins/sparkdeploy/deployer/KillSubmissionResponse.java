@@ -0,0 +1,15 @@
+/*
+ * Copyright (C) 2015 Yohan Liyanage
+ *
+ * Release under the MIT License (MIT). See LICENSE file for details.
+ */
+
+package com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer;
+
+/**
+ * Spark KillSubmissionResponse returned by /v1/submissions/kill/{submissionId}.
+ *
+ * @author Yohan Liyanage
+ */
+public class KillSubmissionResponse extends SubmissionResponse {
+}
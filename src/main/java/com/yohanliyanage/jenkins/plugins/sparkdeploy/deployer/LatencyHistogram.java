@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2015 Yohan Liyanage
+ *
+ * Release under the MIT License (MIT). See LICENSE file for details.
+ */
+
+package com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock free histogram with fixed bucket bounds. Recording is a binary search and two atomic increments, so it can be
+ * called on every REST call without contention.
+ *
+ * @author Yohan Liyanage
+ */
+public final class LatencyHistogram {
+
+    /**
+     * Bucket upper bounds in milliseconds for REST calls.
+     */
+    public static final long[] REQUEST_BUCKETS = {5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000, 60000};
+
+    /**
+     * Bucket upper bounds in milliseconds for driver start up.
+     */
+    public static final long[] STARTUP_BUCKETS = {1000, 2000, 5000, 10000, 15000, 20000, 30000, 45000, 60000, 120000,
+            300000};
+
+    private final long[] bounds;
+    private final AtomicLongArray counts;
+    private final AtomicLong sumMillis = new AtomicLong();
+    private final AtomicLong count = new AtomicLong();
+
+    /**
+     * Creates a histogram.
+     *
+     * @param bounds ascending bucket upper bounds in milliseconds
+     */
+    public LatencyHistogram(long[] bounds) {
+        this.bounds = bounds.clone();
+        this.counts = new AtomicLongArray(bounds.length + 1);
+    }
+
+    /**
+     * Records a value.
+     *
+     * @param millis value in milliseconds
+     */
+    public void record(long millis) {
+        int low = 0;
+        int high = bounds.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (millis <= bounds[mid]) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        counts.incrementAndGet(low);
+        sumMillis.addAndGet(millis);
+        count.incrementAndGet();
+    }
+
+    /**
+     * Returns the bucket upper bounds.
+     *
+     * @return bounds in milliseconds
+     */
+    public long[] getBounds() {
+        return bounds.clone();
+    }
+
+    /**
+     * Returns the cumulative count of values up to and including each bound, followed by the total count.
+     *
+     * @return cumulative counts, one more than the number of bounds
+     */
+    public long[] getCumulativeCounts() {
+        long[] cumulative = new long[counts.length()];
+        long total = 0;
+        for (int i = 0; i < cumulative.length; i++) {
+            total += counts.get(i);
+            cumulative[i] = total;
+        }
+        return cumulative;
+    }
+
+    /**
+     * Returns the sum of all recorded values.
+     *
+     * @return sum in milliseconds
+     */
+    public long getSumMillis() {
+        return sumMillis.get();
+    }
+
+    /**
+     * Returns the number of recorded values.
+     *
+     * @return count
+     */
+    public long getCount() {
+        return count.get();
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2015 Yohan Liyanage
+ *
+ * Release under the MIT License (MIT). See LICENSE file for details.
+ */
+
+package com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Finds the leader of a highly available Spark Standalone cluster, which lists several masters of which only one is
+ * ALIVE at a time.
+ * <p>
+ * All masters are probed in parallel and the first one that reports itself as ALIVE wins. The leader is cached per
+ * cluster for {@link #LEADER_TTL_MILLIS}, or until {@link #invalidate(String)} is called after a failure.
+ *
+ * @author Yohan Liyanage
+ */
+public final class MasterResolver {
+
+    /**
+     * How long a resolved leader is trusted without probing again.
+     */
+    public static final long LEADER_TTL_MILLIS = 5 * 60 * 1000;
+
+    private static final String PROBE_SUBMISSION_ID = "spark-deploy-leader-probe";
+
+    private static final MasterResolver INSTANCE = new MasterResolver();
+
+    private final ConcurrentMap<String, Leader> leaders = new ConcurrentHashMap<String, Leader>();
+    private final ExecutorService probes = Executors.newCachedThreadPool(new DaemonThreadFactory("spark-deploy-probe"));
+
+    /**
+     * Returns the shared resolver.
+     *
+     * @return resolver
+     */
+    public static MasterResolver getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the REST URL of the leader of the given cluster. Clusters with a single master are returned as is.
+     *
+     * @param clusterUrl comma separated master REST URLs
+     * @param settings transport settings used for probing
+     * @return leader REST URL
+     * @throws IOException if no master reports itself as ALIVE
+     */
+    public String resolve(String clusterUrl, TransportSettings settings) throws IOException {
+        List<String> masters = Utils.getActualSparkMasterUrls(clusterUrl);
+        if (masters.size() == 1) {
+            return masters.get(0);
+        }
+
+        Leader cached = leaders.get(clusterUrl);
+        if (cached != null && cached.expiresAt > System.currentTimeMillis()) {
+            return cached.url;
+        }
+
+        String leader = probe(masters, settings);
+        leaders.put(clusterUrl, new Leader(leader, System.currentTimeMillis() + LEADER_TTL_MILLIS));
+        return leader;
+    }
+
+    /**
+     * Forgets the cached leader of the given cluster, so that the next call to {@link #resolve} probes again.
+     *
+     * @param clusterUrl comma separated master REST URLs
+     */
+    public void invalidate(String clusterUrl) {
+        leaders.remove(clusterUrl);
+    }
+
+    private String probe(List<String> masters, final TransportSettings settings) throws IOException {
+        ExecutorCompletionService<String> completion = new ExecutorCompletionService<String>(probes);
+        List<Future<String>> futures = new ArrayList<Future<String>>();
+
+        for (final String master : masters) {
+            futures.add(completion.submit(new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    return isAlive(master, settings) ? master : null;
+                }
+            }));
+        }
+
+        long deadline = System.currentTimeMillis() + settings.getRequestTimeout();
+        List<String> failures = new ArrayList<String>();
+        try {
+            for (int i = 0; i < masters.size(); i++) {
+                long remaining = deadline - System.currentTimeMillis();
+                Future<String> result = remaining > 0 ? completion.poll(remaining, TimeUnit.MILLISECONDS) : null;
+                if (result == null) {
+                    break;
+                }
+                try {
+                    String leader = result.get();
+                    if (leader != null) {
+                        return leader;
+                    }
+                } catch (ExecutionException e) {
+                    failures.add(e.getCause().toString());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while looking for the ALIVE Spark Master", e);
+        } finally {
+            for (Future<String> future : futures) {
+                future.cancel(true);
+            }
+        }
+
+        throw new IOException("None of the Spark Masters " + masters + " is ALIVE. Failures: " + failures);
+    }
+
+    /**
+     * A standby master answers status requests with a message saying it is not ALIVE, while the leader answers
+     * without one, even for an unknown submission.
+     */
+    private static boolean isAlive(String master, TransportSettings settings) throws IOException {
+        SparkRestTransport transport = ConnectionPool.getInstance().getTransport(master, settings);
+        URL statusUrl = new URL(new URL(master), "/v1/submissions/status/" + PROBE_SUBMISSION_ID);
+
+        SparkRestTransport.Response<SubmissionStatusResponse> response =
+                transport.execute("GET", statusUrl, null, SparkJson.<SubmissionStatusResponse>handler(SparkJson.STATUS_READER));
+
+        if (! response.isSuccess() || response.getBody() == null) {
+            return false;
+        }
+        String message = response.getBody().getMessage();
+        return message == null || ! message.toLowerCase().contains("alive");
+    }
+
+    /**
+     * A cached leader.
+     */
+    private static final class Leader {
+
+        private final String url;
+        private final long expiresAt;
+
+        Leader(String url, long expiresAt) {
+            this.url = url;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private MasterResolver() {
+        // Singleton
+    }
+}
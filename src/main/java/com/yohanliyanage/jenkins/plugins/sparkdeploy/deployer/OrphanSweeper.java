@@ -0,0 +1,245 @@
+/*
+ * Copyright (C) 2015 Yohan Liyanage
+ *
+ * Release under the MIT License (MIT). See LICENSE file for details.
+ */
+
+package com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Finds and kills drivers of an application that are still running although they are not its current submission,
+ * such as earlier submissions that were never stopped.
+ * <p>
+ * Drivers are listed from the state reported by the web UI of each master, and match an application by a submission
+ * ID known to belong to it. Other drivers running its main class (reported by Spark 2.3 and later) may belong to
+ * another job deploying the same class, since the master does not report the application name of a driver, so they
+ * are only reported. Found drivers are killed in parallel, by at most a given number of threads.
+ *
+ * @author Yohan Liyanage
+ */
+public final class OrphanSweeper {
+
+    /**
+     * Number of drivers killed at the same time if not given.
+     */
+    public static final int DEFAULT_PARALLELISM = 4;
+
+    private final int parallelism;
+    private final PrintStream logger;
+    private final List<Orphan> orphans = new ArrayList<Orphan>();
+    private final List<String> unavailable = new ArrayList<String>();
+    private final List<String> unclaimed = new ArrayList<String>();
+    private int unidentified;
+
+    /**
+     * Creates a sweeper.
+     *
+     * @param parallelism number of drivers killed at the same time
+     * @param logger logger
+     */
+    public OrphanSweeper(int parallelism, PrintStream logger) {
+        this.parallelism = parallelism > 0 ? parallelism : DEFAULT_PARALLELISM;
+        this.logger = logger;
+    }
+
+    /**
+     * Lists the active drivers of a cluster, and adds those of the given application to the drivers to kill.
+     *
+     * @param deployer deployer for the master of the cluster
+     * @param masterUiUrls web UI URLs of the masters, which list the drivers
+     * @param mainClass main class of the application
+     * @param known submission IDs known to belong to the application, the only ones killed
+     * @param keep submission IDs to leave running, such as the current submission
+     * @return number of drivers found to kill
+     */
+    public int scan(DeploymentManager deployer, List<String> masterUiUrls, String mainClass, Set<String> known,
+                    Set<String> keep) {
+        ClusterState state = ClusterAdmission.fetchState(masterUiUrls, logger);
+        if (state == null) {
+            unavailable.add(deployer.getMasterRestUrl());
+            return 0;
+        }
+
+        int found = 0;
+        for (ClusterState.Driver driver : state.getActiveDrivers()) {
+            if (driver.getId() == null || keep.contains(driver.getId())) {
+                continue;
+            }
+            if (known.contains(driver.getId())) {
+                orphans.add(new Orphan(deployer, driver.getId()));
+                found++;
+            } else if (mainClass.equals(driver.getMainClass())) {
+                unclaimed.add(driver.getId());
+            } else if (driver.getMainClass() == null) {
+                unidentified++;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Kills all drivers found by {@link #scan}.
+     *
+     * @return result
+     * @throws InterruptedException if interrupted while waiting for the kills
+     */
+    public Result killAll() throws InterruptedException {
+        Result result = new Result(orphans.size(), unidentified, unclaimed, unavailable);
+        if (orphans.isEmpty()) {
+            return result;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, orphans.size()),
+                new DaemonThreadFactory("spark-deploy-sweep"));
+        try {
+            Map<String, Future<Boolean>> kills = new LinkedHashMap<String, Future<Boolean>>();
+            for (final Orphan orphan : orphans) {
+                kills.put(orphan.submissionId, executor.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws Exception {
+                        return orphan.deployer.kill(orphan.submissionId);
+                    }
+                }));
+            }
+
+            for (Map.Entry<String, Future<Boolean>> kill : kills.entrySet()) {
+                try {
+                    if (kill.getValue().get()) {
+                        result.killed.add(kill.getKey());
+                    } else {
+                        result.failed.put(kill.getKey(), "rejected by the master");
+                    }
+                } catch (ExecutionException e) {
+                    result.failed.put(kill.getKey(), String.valueOf(e.getCause()));
+                }
+            }
+            return result;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * A driver to kill.
+     */
+    private static final class Orphan {
+
+        private final DeploymentManager deployer;
+        private final String submissionId;
+
+        Orphan(DeploymentManager deployer, String submissionId) {
+            this.deployer = deployer;
+            this.submissionId = submissionId;
+        }
+    }
+
+    /**
+     * Outcome of a sweep.
+     */
+    public static final class Result {
+
+        private final int found;
+        private final int unidentified;
+        private final List<String> unclaimed;
+        private final List<String> unavailable;
+        private final List<String> killed = new ArrayList<String>();
+        private final Map<String, String> failed = new LinkedHashMap<String, String>();
+
+        Result(int found, int unidentified, List<String> unclaimed, List<String> unavailable) {
+            this.found = found;
+            this.unidentified = unidentified;
+            this.unclaimed = new ArrayList<String>(unclaimed);
+            this.unavailable = new ArrayList<String>(unavailable);
+        }
+
+        /**
+         * Returns the number of drivers found.
+         *
+         * @return drivers found
+         */
+        public int getFound() {
+            return found;
+        }
+
+        /**
+         * Returns the submission IDs of the killed drivers.
+         *
+         * @return killed drivers
+         */
+        public List<String> getKilled() {
+            return Collections.unmodifiableList(killed);
+        }
+
+        /**
+         * Returns the drivers that could not be killed, with the reason.
+         *
+         * @return failed drivers by submission ID
+         */
+        public Map<String, String> getFailed() {
+            return Collections.unmodifiableMap(failed);
+        }
+
+        /**
+         * Returns the number of active drivers whose main class is not reported by the master, which can only be
+         * matched by a known submission ID.
+         *
+         * @return unidentified drivers
+         */
+        public int getUnidentified() {
+            return unidentified;
+        }
+
+        /**
+         * Returns the active drivers that run the main class of the application but are not known to belong to it.
+         * They are not killed, since another job may deploy the same class.
+         *
+         * @return submission IDs
+         */
+        public List<String> getUnclaimed() {
+            return Collections.unmodifiableList(unclaimed);
+        }
+
+        /**
+         * Returns the masters whose drivers could not be listed.
+         *
+         * @return master REST URLs
+         */
+        public List<String> getUnavailable() {
+            return Collections.unmodifiableList(unavailable);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder summary = new StringBuilder("Orphan sweep : " + found + " stray drivers found, "
+                    + killed.size() + " killed, " + failed.size() + " failed");
+            for (Map.Entry<String, String> failure : failed.entrySet()) {
+                summary.append("\n  ").append(failure.getKey()).append(" : ").append(failure.getValue());
+            }
+            if (! unclaimed.isEmpty()) {
+                summary.append("\n  ").append(unclaimed.size()).append(" active drivers run the same main class but "
+                        + "are not in the submission history of the job, and were not killed : ").append(unclaimed);
+            }
+            if (unidentified > 0) {
+                summary.append("\n  ").append(unidentified).append(" active drivers have no main class reported "
+                        + "(Spark before 2.3) and were not checked");
+            }
+            for (String master : unavailable) {
+                summary.append("\n  Drivers of ").append(master).append(" could not be listed");
+            }
+            return summary.toString();
+        }
+    }
+}
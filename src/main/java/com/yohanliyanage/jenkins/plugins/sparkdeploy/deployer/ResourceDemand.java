@@ -0,0 +1,230 @@
+/*
+ * Copyright (C) 2015 Yohan Liyanage
+ *
+ * Release under the MIT License (MIT). See LICENSE file for details.
+ */
+
+package com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cores and memory a Spark application needs on a standalone cluster, from the spark.driver.*, spark.executor.* and
+ * spark.cores.max properties of its request. Unset properties take the Spark defaults: one core and 1 GB for the
+ * driver, 1 GB per executor, and all free cores of a worker per executor.
+ * <p>
+ * The application fits when its driver fits on one worker, and the remaining free resources host executors with
+ * spark.cores.max cores in total (or one executor if unlimited). A spark.cores.max beyond the capacity of the cluster
+ * is capped, since Spark then simply runs with fewer cores.
+ *
+ * @author Yohan Liyanage
+ */
+public final class ResourceDemand {
+
+    private static final long DEFAULT_MEMORY_MB = 1024;
+
+    private final int driverCores;
+    private final long driverMemory;
+    private final int executorCores;
+    private final long executorMemory;
+    private final int maxCores;
+
+    /**
+     * Creates a demand.
+     *
+     * @param driverCores cores of the driver
+     * @param driverMemory memory of the driver in MB
+     * @param executorCores cores per executor, or 0 to use all free cores of a worker
+     * @param executorMemory memory per executor in MB
+     * @param maxCores total executor cores, or 0 if unlimited
+     */
+    public ResourceDemand(int driverCores, long driverMemory, int executorCores, long executorMemory, int maxCores) {
+        this.driverCores = driverCores;
+        this.driverMemory = driverMemory;
+        this.executorCores = executorCores;
+        this.executorMemory = executorMemory;
+        this.maxCores = maxCores;
+    }
+
+    /**
+     * Returns the demand of the given request.
+     *
+     * @param request request
+     * @return demand
+     * @throws IllegalArgumentException if a resource property is malformed
+     */
+    public static ResourceDemand of(DeploymentRequest request) {
+        Map<String, String> properties = request.getSparkProperties();
+        return new ResourceDemand(
+                parseCores(properties, "spark.driver.cores", 1),
+                parseMemory(properties, "spark.driver.memory"),
+                parseCores(properties, "spark.executor.cores", 0),
+                parseMemory(properties, "spark.executor.memory"),
+                parseCores(properties, "spark.cores.max", 0));
+    }
+
+    /**
+     * Checks whether the application could run on the cluster at all, if nothing else was running.
+     *
+     * @param cluster cluster state
+     * @return null if it could, or the reason why it never can
+     */
+    public String checkCapacity(ClusterState cluster) {
+        return place(cluster.getAliveWorkers(), false, false);
+    }
+
+    /**
+     * Checks whether the application fits into the free resources of the cluster.
+     *
+     * @param cluster cluster state
+     * @return null if it fits, or the reason why it does not fit now
+     */
+    public String checkFree(ClusterState cluster) {
+        return place(cluster.getAliveWorkers(), true, false);
+    }
+
+    /**
+     * Marks the resources of the application as used in the given cluster state, so that applications admitted
+     * before the state is fetched again account for it.
+     *
+     * @param cluster cluster state
+     */
+    public void reserve(ClusterState cluster) {
+        place(cluster.getAliveWorkers(), true, true);
+    }
+
+    /**
+     * Places the driver on the worker with most free cores that fits it, then executors greedily.
+     */
+    private String place(List<ClusterState.Worker> workers, boolean free, boolean reserve) {
+        if (workers.isEmpty()) {
+            return "no alive workers";
+        }
+
+        ClusterState.Worker driverWorker = null;
+        for (ClusterState.Worker worker : workers) {
+            if (cores(worker, free) >= driverCores && memory(worker, free) >= driverMemory
+                    && (driverWorker == null || cores(worker, free) > cores(driverWorker, free))) {
+                driverWorker = worker;
+            }
+        }
+        if (driverWorker == null) {
+            return "no worker has " + driverCores + " " + (free ? "free " : "") + "cores and " + driverMemory
+                    + " MB " + (free ? "free " : "") + "memory for the driver";
+        }
+
+        int capacity = 0;
+        for (ClusterState.Worker worker : workers) {
+            capacity += executorCores(worker, worker == driverWorker, false);
+        }
+        int available = 0;
+        for (ClusterState.Worker worker : workers) {
+            available += executorCores(worker, worker == driverWorker, free);
+        }
+        int required = maxCores > 0 ? Math.min(maxCores, Math.max(capacity, 1)) : Math.max(executorCores, 1);
+        if (available < required) {
+            return "executors need " + required + " " + (free ? "free " : "") + "cores with " + executorMemory
+                    + " MB memory each" + (executorCores > 0 ? " per " + executorCores + " cores" : "")
+                    + ", but only " + available + " are available";
+        }
+
+        if (reserve) {
+            driverWorker.setCoresUsed(driverWorker.getCoresUsed() + driverCores);
+            driverWorker.setMemoryUsed(driverWorker.getMemoryUsed() + driverMemory);
+            int remaining = required;
+            for (ClusterState.Worker worker : workers) {
+                while (remaining > 0 && executorCores(worker, false, true) > 0) {
+                    int cores = executorCores > 0 ? executorCores : worker.getCoresFree();
+                    worker.setCoresUsed(worker.getCoresUsed() + cores);
+                    worker.setMemoryUsed(worker.getMemoryUsed() + executorMemory);
+                    remaining -= cores;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the executor cores the given worker can host, after the driver if it runs there.
+     */
+    private int executorCores(ClusterState.Worker worker, boolean hostsDriver, boolean free) {
+        int cores = cores(worker, free) - (hostsDriver ? driverCores : 0);
+        long memory = memory(worker, free) - (hostsDriver ? driverMemory : 0);
+        if (executorMemory <= 0 || memory < executorMemory || cores < Math.max(executorCores, 1)) {
+            return 0;
+        }
+        if (executorCores == 0) {
+            // One executor taking all cores of the worker
+            return cores;
+        }
+        return (int) Math.min(cores / executorCores, memory / executorMemory) * executorCores;
+    }
+
+    private static int cores(ClusterState.Worker worker, boolean free) {
+        return free ? worker.getCoresFree() : worker.getCores();
+    }
+
+    private static long memory(ClusterState.Worker worker, boolean free) {
+        return free ? worker.getMemoryFree() : worker.getMemory();
+    }
+
+    private static int parseCores(Map<String, String> properties, String name, int defaultValue) {
+        String value = properties.get(name);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            int cores = Integer.parseInt(value.trim());
+            if (cores <= 0) {
+                throw new IllegalArgumentException("Invalid " + name + " '" + value + "'. It should be positive");
+            }
+            return cores;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + name + " '" + value + "'. It should be a number");
+        }
+    }
+
+    /**
+     * Parses a memory property the way Spark does: a number with an optional unit (k, m, g, t), in MB if none.
+     */
+    static long parseMemory(Map<String, String> properties, String name) {
+        String value = properties.get(name);
+        if (value == null || value.trim().isEmpty()) {
+            return DEFAULT_MEMORY_MB;
+        }
+        String text = value.trim().toLowerCase();
+        if (text.length() > 1 && text.endsWith("b") && "kmgt".indexOf(text.charAt(text.length() - 2)) >= 0) {
+            text = text.substring(0, text.length() - 1);
+        }
+        char unit = text.charAt(text.length() - 1);
+        String number = Character.isDigit(unit) ? text : text.substring(0, text.length() - 1);
+        try {
+            long amount = Long.parseLong(number);
+            switch (unit) {
+                case 'k':
+                    return amount / 1024;
+                case 'g':
+                    return amount * 1024;
+                case 't':
+                    return amount * 1024 * 1024;
+                case 'm':
+                default:
+                    if (! Character.isDigit(unit) && unit != 'm') {
+                        throw new NumberFormatException(value);
+                    }
+                    return amount;
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + name + " '" + value + "'. It should be a size such as "
+                    + "512m or 2g");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "driver " + driverCores + " cores / " + driverMemory + " MB, executors "
+                + (executorCores > 0 ? executorCores + " cores" : "all cores") + " / " + executorMemory + " MB"
+                + (maxCores > 0 ? ", " + maxCores + " cores max" : "");
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2015 Yohan Liyanage
+ *
+ * Release under the MIT License (MIT). See LICENSE file for details.
+ */
+
+package com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Shared, immutable Jackson readers and writers for the Spark REST API. These are thread safe and are built once, so
+ * that no per-request mapper configuration is needed.
+ *
+ * @author Yohan Liyanage
+ */
+final class SparkJson {
+
+    static final ObjectMapper MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+            .configure(JsonParser.Feature.AUTO_CLOSE_SOURCE, false)
+            .configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+
+    static final ObjectWriter REQUEST_WRITER = MAPPER.writerFor(DeploymentRequest.class);
+    static final ObjectWriter VERBOSE_REQUEST_WRITER = REQUEST_WRITER.withDefaultPrettyPrinter();
+    static final ObjectReader REQUEST_READER = MAPPER.readerFor(DeploymentRequest.class);
+    static final ObjectReader CREATE_READER = MAPPER.readerFor(CreateSubmissionResponse.class);
+    static final ObjectReader KILL_READER = MAPPER.readerFor(KillSubmissionResponse.class);
+    static final ObjectReader STATUS_READER = MAPPER.readerFor(SubmissionStatusResponse.class);
+
+    /**
+     * Reads a response straight from the stream using the given reader.
+     *
+     * @param reader reader
+     * @param <T> response type
+     * @return response handler
+     */
+    static <T> SparkRestTransport.ResponseHandler<T> handler(final ObjectReader reader) {
+        return new SparkRestTransport.ResponseHandler<T>() {
+            @Override
+            public T handle(InputStream in) throws IOException {
+                return reader.readValue(in);
+            }
+        };
+    }
+
+    private SparkJson() {
+        // No instantiation
+    }
+}
@@ -0,0 +1,353 @@
+/*
+ * Copyright (C) 2015 Yohan Liyanage
+ *
+ * Release under the MIT License (MIT). See LICENSE file for details.
+ */
+
+package com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * HTTP transport for a single Spark Master. Instances are shared by all builds through {@link ConnectionPool}.
+ * <p>
+ * Connections are bounded per master, and every response (including error responses) is fully drained and closed
+ * without disconnecting, which allows the JVM to return the underlying socket to its keep-alive cache for reuse by
+ * the next call to the same master.
+ *
+ * @author Yohan Liyanage
+ */
+public class SparkRestTransport {
+
+    private static final ScheduledExecutorService DEADLINE_TIMER =
+            Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("spark-deploy-deadline"));
+
+    private final String masterRestUrl;
+    private volatile TransportSettings settings;
+    private final ResizableSemaphore permits;
+
+    private final AtomicInteger activeConnections = new AtomicInteger();
+    private final AtomicInteger peakConnections = new AtomicInteger();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong totalWaitMillis = new AtomicLong();
+    private final AtomicLong totalRequestMillis = new AtomicLong();
+
+    SparkRestTransport(String masterRestUrl, TransportSettings settings) {
+        this.masterRestUrl = masterRestUrl;
+        this.settings = settings;
+        this.permits = new ResizableSemaphore(settings.getMaxConnections());
+    }
+
+    /**
+     * Executes a HTTP request against this master.
+     *
+     * @param method HTTP method
+     * @param url URL to invoke
+     * @param payload writes the request body, or null if there is none
+     * @param handler reads the body of a successful (2xx) response
+     * @param <T> response body type
+     * @return response
+     * @throws IOException if the call fails or the request deadline is exceeded
+     */
+    public <T> Response<T> execute(String method, URL url, RequestWriter payload, ResponseHandler<T> handler)
+            throws IOException {
+
+        TransportSettings current = settings;
+        long waitStart = System.currentTimeMillis();
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a connection to " + masterRestUrl);
+        }
+
+        long start = System.currentTimeMillis();
+        totalWaitMillis.addAndGet(start - waitStart);
+        requests.incrementAndGet();
+        updatePeak(activeConnections.incrementAndGet());
+
+        final HttpURLConnection connection;
+        try {
+            connection = (HttpURLConnection) url.openConnection();
+        } catch (IOException e) {
+            failures.incrementAndGet();
+            activeConnections.decrementAndGet();
+            permits.release();
+            throw e;
+        }
+        final AtomicBoolean expired = new AtomicBoolean();
+        ScheduledFuture<?> deadline = DEADLINE_TIMER.schedule(new Runnable() {
+            @Override
+            public void run() {
+                expired.set(true);
+                connection.disconnect();
+            }
+        }, current.getRequestTimeout(), TimeUnit.MILLISECONDS);
+
+        boolean reusable = false;
+        try {
+            connection.setConnectTimeout(current.getConnectTimeout());
+            connection.setReadTimeout(current.getReadTimeout());
+            connection.setRequestMethod(method);
+            connection.setRequestProperty("Accept", "application/json");
+
+            if (payload != null) {
+                connection.setDoOutput(true);
+                connection.setRequestProperty("Content-Type", "application/json");
+                connection.setChunkedStreamingMode(0);
+                OutputStream os = connection.getOutputStream();
+                try {
+                    payload.write(os);
+                } finally {
+                    os.close();
+                }
+            }
+
+            int responseCode = connection.getResponseCode();
+            boolean success = isSuccessResponseCode(responseCode);
+            InputStream responseStream = success ? connection.getInputStream() : connection.getErrorStream();
+
+            T body = null;
+            String errorBody = null;
+            if (responseStream != null) {
+                try {
+                    if (success) {
+                        body = handler.handle(responseStream);
+                        drain(responseStream);
+                    } else {
+                        errorBody = readText(responseStream);
+                    }
+                } finally {
+                    responseStream.close();
+                }
+            }
+            reusable = true;
+            return new Response<T>(responseCode, connection.getResponseMessage(), body, errorBody);
+        } catch (IOException e) {
+            failures.incrementAndGet();
+            if (expired.get()) {
+                timeouts.incrementAndGet();
+                SocketTimeoutException timeout = new SocketTimeoutException("Request to " + url + " exceeded deadline of "
+                        + current.getRequestTimeout() + "ms");
+                timeout.initCause(e);
+                throw timeout;
+            }
+            throw e;
+        } finally {
+            deadline.cancel(false);
+            if (! reusable) {
+                connection.disconnect();
+            }
+            activeConnections.decrementAndGet();
+            totalRequestMillis.addAndGet(System.currentTimeMillis() - start);
+            permits.release();
+        }
+    }
+
+    /**
+     * Returns master rest url.
+     *
+     * @return master rest url
+     */
+    public String getMasterRestUrl() {
+        return masterRestUrl;
+    }
+
+    /**
+     * Returns settings.
+     *
+     * @return settings
+     */
+    public TransportSettings getSettings() {
+        return settings;
+    }
+
+    /**
+     * Applies new settings. Calls already in flight keep the settings they started with.
+     *
+     * @param settings settings
+     */
+    void updateSettings(TransportSettings settings) {
+        if (! this.settings.equals(settings)) {
+            this.settings = settings;
+            permits.resize(settings.getMaxConnections());
+        }
+    }
+
+    /**
+     * Returns a snapshot of the statistics of this transport.
+     *
+     * @return statistics
+     */
+    public TransportStatistics getStatistics() {
+        return new TransportStatistics(masterRestUrl, settings.getMaxConnections(), activeConnections.get(),
+                peakConnections.get(), requests.get(), failures.get(), timeouts.get(), totalWaitMillis.get(),
+                totalRequestMillis.get());
+    }
+
+    private void updatePeak(int active) {
+        int peak;
+        do {
+            peak = peakConnections.get();
+        } while (active > peak && ! peakConnections.compareAndSet(peak, active));
+    }
+
+    private static void drain(InputStream in) throws IOException {
+        byte[] buffer = new byte[1024];
+        while (in.read(buffer) != -1) {
+            // Discard, so that the connection can be kept alive
+        }
+    }
+
+    private static String readText(InputStream in) throws IOException {
+        ByteArrayOutputStream text = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            text.write(buffer, 0, read);
+        }
+        return text.toString("UTF-8");
+    }
+
+    private static boolean isSuccessResponseCode(int responseCode) {
+        return responseCode >= 200 && responseCode < 300;
+    }
+
+    /**
+     * Writes a request body directly to the connection.
+     */
+    public interface RequestWriter {
+
+        /**
+         * Writes the request body to the given stream. The stream is closed by the transport.
+         *
+         * @param out request stream
+         * @throws IOException if writing fails
+         */
+        void write(OutputStream out) throws IOException;
+    }
+
+    /**
+     * Reads a response body.
+     *
+     * @param <T> type of the body
+     */
+    public interface ResponseHandler<T> {
+
+        /**
+         * Reads the response body from the given stream. The stream is drained and closed by the transport.
+         *
+         * @param in response stream
+         * @return body
+         * @throws IOException if reading fails
+         */
+        T handle(InputStream in) throws IOException;
+    }
+
+    /**
+     * A HTTP response.
+     *
+     * @param <T> type of the body
+     */
+    public static final class Response<T> {
+
+        private final int code;
+        private final String message;
+        private final T body;
+        private final String errorBody;
+
+        Response(int code, String message, T body, String errorBody) {
+            this.code = code;
+            this.message = message;
+            this.body = body;
+            this.errorBody = errorBody;
+        }
+
+        /**
+         * Returns the HTTP status code.
+         *
+         * @return status code
+         */
+        public int getCode() {
+            return code;
+        }
+
+        /**
+         * Returns the HTTP status message.
+         *
+         * @return status message
+         */
+        public String getMessage() {
+            return message;
+        }
+
+        /**
+         * Returns the body of a successful response, or null if the response had none.
+         *
+         * @return body
+         */
+        public T getBody() {
+            return body;
+        }
+
+        /**
+         * Returns the raw body of an unsuccessful response, or null if the response had none.
+         *
+         * @return error body
+         */
+        public String getErrorBody() {
+            return errorBody;
+        }
+
+        /**
+         * Is the status code 2xx.
+         *
+         * @return boolean
+         */
+        public boolean isSuccess() {
+            return isSuccessResponseCode(code);
+        }
+    }
+
+    /**
+     * Semaphore whose number of permits can be changed while in use.
+     */
+    private static final class ResizableSemaphore extends Semaphore {
+
+        private static final long serialVersionUID = 1L;
+
+        private int size;
+
+        ResizableSemaphore(int size) {
+            super(size, true);
+            this.size = size;
+        }
+
+        synchronized void resize(int newSize) {
+            int delta = newSize - size;
+            if (delta > 0) {
+                release(delta);
+            } else if (delta < 0) {
+                reducePermits(-delta);
+            }
+            size = newSize;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2015 Yohan Liyanage
+ *
+ * Release under the MIT License (MIT). See LICENSE file for details.
+ */
+
+package com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer;
+
+import java.io.Serializable;
+
+/**
+ * A submitted driver and the driver state observed after submission.
+ *
+ * @author Yohan Liyanage
+ */
+public final class Submission implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String submissionId;
+    private final String driverState;
+
+    /**
+     * Creates a submission.
+     *
+     * @param submissionId submission ID
+     * @param driverState driver state
+     */
+    public Submission(String submissionId, String driverState) {
+        this.submissionId = submissionId;
+        this.driverState = driverState;
+    }
+
+    /**
+     * Returns submission id.
+     *
+     * @return submission id
+     */
+    public String getSubmissionId() {
+        return submissionId;
+    }
+
+    /**
+     * Returns driver state.
+     *
+     * @return driver state
+     */
+    public String getDriverState() {
+        return driverState;
+    }
+
+    @Override
+    public String toString() {
+        return submissionId + " (" + driverState + ")";
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2015 Yohan Liyanage
+ *
+ * Release under the MIT License (MIT). See LICENSE file for details.
+ */
+
+package com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * Fields common to all responses of the Spark REST submission API. Fields that Spark omits keep their defaults, and
+ * unknown fields are ignored.
+ *
+ * @author Yohan Liyanage
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class SubmissionResponse {
+
+    private String action;
+    private String message;
+    private String serverSparkVersion;
+    private String submissionId;
+    private boolean success;
+
+    /**
+     * Returns action.
+     *
+     * @return action
+     */
+    public String getAction() {
+        return action;
+    }
+
+    /**
+     * Sets action.
+     *
+     * @param action action
+     */
+    public void setAction(String action) {
+        this.action = action;
+    }
+
+    /**
+     * Returns message.
+     *
+     * @return message
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * Sets message.
+     *
+     * @param message message
+     */
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    /**
+     * Returns server spark version.
+     *
+     * @return server spark version
+     */
+    public String getServerSparkVersion() {
+        return serverSparkVersion;
+    }
+
+    /**
+     * Sets server spark version.
+     *
+     * @param serverSparkVersion server spark version
+     */
+    public void setServerSparkVersion(String serverSparkVersion) {
+        this.serverSparkVersion = serverSparkVersion;
+    }
+
+    /**
+     * Returns submission id.
+     *
+     * @return submission id
+     */
+    public String getSubmissionId() {
+        return submissionId;
+    }
+
+    /**
+     * Sets submission id.
+     *
+     * @param submissionId submission id
+     */
+    public void setSubmissionId(String submissionId) {
+        this.submissionId = submissionId;
+    }
+
+    /**
+     * Is success. False if Spark did not report the flag.
+     *
+     * @return boolean
+     */
+    public boolean isSuccess() {
+        return success;
+    }
+
+    /**
+     * Sets success.
+     *
+     * @param success success
+     */
+    public void setSuccess(boolean success) {
+        this.success = success;
+    }
+}
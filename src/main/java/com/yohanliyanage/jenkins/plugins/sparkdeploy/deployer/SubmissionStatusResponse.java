@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2015 Yohan Liyanage
+ *
+ * Release under the MIT License (MIT). See LICENSE file for details.
+ */
+
+package com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer;
+
+/**
+ * Spark SubmissionStatusResponse returned by /v1/submissions/status/{submissionId}.
+ *
+ * @author Yohan Liyanage
+ */
+public class SubmissionStatusResponse extends SubmissionResponse {
+
+    private String driverState;
+    private String workerId;
+    private String workerHostPort;
+
+    /**
+     * Returns driver state.
+     *
+     * @return driver state
+     */
+    public String getDriverState() {
+        return driverState;
+    }
+
+    /**
+     * Sets driver state.
+     *
+     * @param driverState driver state
+     */
+    public void setDriverState(String driverState) {
+        this.driverState = driverState;
+    }
+
+    /**
+     * Returns the ID of the worker running the driver.
+     *
+     * @return worker id
+     */
+    public String getWorkerId() {
+        return workerId;
+    }
+
+    /**
+     * Sets worker id.
+     *
+     * @param workerId worker id
+     */
+    public void setWorkerId(String workerId) {
+        this.workerId = workerId;
+    }
+
+    /**
+     * Returns the host and port of the worker running the driver.
+     *
+     * @return worker host port
+     */
+    public String getWorkerHostPort() {
+        return workerHostPort;
+    }
+
+    /**
+     * Sets worker host port.
+     *
+     * @param workerHostPort worker host port
+     */
+    public void setWorkerHostPort(String workerHostPort) {
+        this.workerHostPort = workerHostPort;
+    }
+}
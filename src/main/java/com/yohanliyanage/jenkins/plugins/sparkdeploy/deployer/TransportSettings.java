@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2015 Yohan Liyanage
+ *
+ * Release under the MIT License (MIT). See LICENSE file for details.
+ */
+
+package com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer;
+
+import java.io.Serializable;
+
+/**
+ * Connection settings applied to all REST calls made against a single Spark Master.
+ * <p>
+ * All timeouts are in milliseconds. A value of zero (or less) falls back to the default for that setting.
+ *
+ * @author Yohan Liyanage
+ */
+public final class TransportSettings implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Default time allowed to establish a TCP connection to the master.
+     */
+    public static final int DEFAULT_CONNECT_TIMEOUT = 10000;
+
+    /**
+     * Default time allowed between two reads of the response.
+     */
+    public static final int DEFAULT_READ_TIMEOUT = 30000;
+
+    /**
+     * Default deadline for a single call, including connect, write and read.
+     */
+    public static final int DEFAULT_REQUEST_TIMEOUT = 60000;
+
+    /**
+     * Default number of concurrent connections allowed per master.
+     */
+    public static final int DEFAULT_MAX_CONNECTIONS = 5;
+
+    /**
+     * Settings used when nothing is configured.
+     */
+    public static final TransportSettings DEFAULTS = new TransportSettings(0, 0, 0, 0);
+
+    private final int connectTimeout;
+    private final int readTimeout;
+    private final int requestTimeout;
+    private final int maxConnections;
+
+    /**
+     * Creates transport settings.
+     *
+     * @param connectTimeout connect timeout in milliseconds
+     * @param readTimeout read timeout in milliseconds
+     * @param requestTimeout total deadline for a call in milliseconds
+     * @param maxConnections maximum concurrent connections to the master
+     */
+    public TransportSettings(int connectTimeout, int readTimeout, int requestTimeout, int maxConnections) {
+        this.connectTimeout = connectTimeout > 0 ? connectTimeout : DEFAULT_CONNECT_TIMEOUT;
+        this.readTimeout = readTimeout > 0 ? readTimeout : DEFAULT_READ_TIMEOUT;
+        this.requestTimeout = requestTimeout > 0 ? requestTimeout : DEFAULT_REQUEST_TIMEOUT;
+        this.maxConnections = maxConnections > 0 ? maxConnections : DEFAULT_MAX_CONNECTIONS;
+    }
+
+    /**
+     * Returns connect timeout.
+     *
+     * @return connect timeout in milliseconds
+     */
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    /**
+     * Returns read timeout.
+     *
+     * @return read timeout in milliseconds
+     */
+    public int getReadTimeout() {
+        return readTimeout;
+    }
+
+    /**
+     * Returns request timeout.
+     *
+     * @return total deadline for a call in milliseconds
+     */
+    public int getRequestTimeout() {
+        return requestTimeout;
+    }
+
+    /**
+     * Returns max connections.
+     *
+     * @return maximum concurrent connections to the master
+     */
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof TransportSettings)) {
+            return false;
+        }
+        TransportSettings that = (TransportSettings) o;
+        return connectTimeout == that.connectTimeout && readTimeout == that.readTimeout
+                && requestTimeout == that.requestTimeout && maxConnections == that.maxConnections;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = connectTimeout;
+        result = 31 * result + readTimeout;
+        result = 31 * result + requestTimeout;
+        result = 31 * result + maxConnections;
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "connectTimeout=" + connectTimeout + "ms, readTimeout=" + readTimeout + "ms, requestTimeout="
+                + requestTimeout + "ms, maxConnections=" + maxConnections;
+    }
+}
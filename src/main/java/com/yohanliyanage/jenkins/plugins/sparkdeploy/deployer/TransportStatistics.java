@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2015 Yohan Liyanage
+ *
+ * Release under the MIT License (MIT). See LICENSE file for details.
+ */
+
+package com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer;
+
+import java.io.Serializable;
+
+/**
+ * Point in time snapshot of the statistics of a {@link SparkRestTransport}.
+ *
+ * @author Yohan Liyanage
+ */
+public final class TransportStatistics implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String masterRestUrl;
+    private final int maxConnections;
+    private final int activeConnections;
+    private final int peakConnections;
+    private final long requests;
+    private final long failures;
+    private final long timeouts;
+    private final long totalWaitMillis;
+    private final long totalRequestMillis;
+
+    TransportStatistics(String masterRestUrl, int maxConnections, int activeConnections, int peakConnections,
+                        long requests, long failures, long timeouts, long totalWaitMillis, long totalRequestMillis) {
+        this.masterRestUrl = masterRestUrl;
+        this.maxConnections = maxConnections;
+        this.activeConnections = activeConnections;
+        this.peakConnections = peakConnections;
+        this.requests = requests;
+        this.failures = failures;
+        this.timeouts = timeouts;
+        this.totalWaitMillis = totalWaitMillis;
+        this.totalRequestMillis = totalRequestMillis;
+    }
+
+    /**
+     * Returns master rest url.
+     *
+     * @return master rest url
+     */
+    public String getMasterRestUrl() {
+        return masterRestUrl;
+    }
+
+    /**
+     * Returns the maximum number of concurrent connections.
+     *
+     * @return max connections
+     */
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    /**
+     * Returns the number of connections currently in use.
+     *
+     * @return active connections
+     */
+    public int getActiveConnections() {
+        return activeConnections;
+    }
+
+    /**
+     * Returns the highest number of connections used at once.
+     *
+     * @return peak connections
+     */
+    public int getPeakConnections() {
+        return peakConnections;
+    }
+
+    /**
+     * Returns the number of requests made.
+     *
+     * @return requests
+     */
+    public long getRequests() {
+        return requests;
+    }
+
+    /**
+     * Returns the number of requests that failed with an I/O error.
+     *
+     * @return failures
+     */
+    public long getFailures() {
+        return failures;
+    }
+
+    /**
+     * Returns the number of requests aborted because the request deadline was exceeded.
+     *
+     * @return timeouts
+     */
+    public long getTimeouts() {
+        return timeouts;
+    }
+
+    /**
+     * Returns the total time spent waiting for a free connection.
+     *
+     * @return total wait time in milliseconds
+     */
+    public long getTotalWaitMillis() {
+        return totalWaitMillis;
+    }
+
+    /**
+     * Returns the total time spent executing requests.
+     *
+     * @return total request time in milliseconds
+     */
+    public long getTotalRequestMillis() {
+        return totalRequestMillis;
+    }
+
+    @Override
+    public String toString() {
+        return masterRestUrl + " : requests=" + requests + ", failures=" + failures + ", timeouts=" + timeouts
+                + ", active=" + activeConnections + "/" + maxConnections + ", peak=" + peakConnections
+                + ", avgWait=" + (requests == 0 ? 0 : totalWaitMillis / requests) + "ms"
+                + ", avgRequest=" + (requests == 0 ? 0 : totalRequestMillis / requests) + "ms";
+    }
+}
@@ -6,6 +6,11 @@
 
 package com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
 /**
  * Utility Methods.
  *
@@ -25,6 +30,66 @@ public final class Utils {
         return masterUrl;
     }
 
+    /**
+     * Returns the individual REST URLs of a Spark Master URL, which may list several masters of a highly available
+     * cluster (ex. spark://m1:6066,m2:6066). The scheme of the URL applies to every master.
+     * @param masterUrl Master URL, with one or more comma separated masters
+     * @return actual master URLs with HTTP / HTTPS scheme, one per master
+     */
+    public static List<String> getActualSparkMasterUrls(String masterUrl) {
+        String actual = getActualSparkMasterUrl(masterUrl.trim());
+        List<String> urls = new ArrayList<String>();
+
+        int schemeEnd = actual.indexOf("://");
+        String scheme = schemeEnd < 0 ? "http://" : actual.substring(0, schemeEnd + 3);
+        String hosts = schemeEnd < 0 ? actual : actual.substring(schemeEnd + 3);
+
+        for (String host : hosts.split(",")) {
+            String trimmed = host.trim();
+            if (! trimmed.isEmpty()) {
+                urls.add(trimmed.contains("://") ? getActualSparkMasterUrl(trimmed) : scheme + trimmed);
+            }
+        }
+        return urls;
+    }
+
+    /**
+     * Returns a canonical form of the given master URL(s), so that the same cluster gives the same key however it was
+     * configured: schemes are resolved as by {@link #getActualSparkMasterUrls(String)}, and the masters are lower
+     * cased, stripped of trailing slashes and sorted.
+     * @param masterUrl Master URL or REST URL, with one or more comma separated masters
+     * @return key
+     */
+    public static String normalizeMasterKey(String masterUrl) {
+        List<String> masters = new ArrayList<String>();
+        for (String url : getActualSparkMasterUrls(masterUrl)) {
+            String master = url.toLowerCase(Locale.ENGLISH);
+            while (master.endsWith("/")) {
+                master = master.substring(0, master.length() - 1);
+            }
+            masters.add(master);
+        }
+        Collections.sort(masters);
+        return join(masters, ",");
+    }
+
+    /**
+     * Joins the given values using the given separator.
+     * @param values values
+     * @param separator separator
+     * @return joined string
+     */
+    public static String join(Iterable<String> values, String separator) {
+        StringBuilder joined = new StringBuilder();
+        for (String value : values) {
+            if (joined.length() > 0) {
+                joined.append(separator);
+            }
+            joined.append(value);
+        }
+        return joined.toString();
+    }
+
     private Utils() {
         // No instantiation
     }
@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2015 Yohan Liyanage
+ *
+ * Release under the MIT License (MIT). See LICENSE file for details.
+ */
+
+package com.yohanliyanage.jenkins.plugins.sparkdeploy.history;
+
+import java.io.Serializable;
+
+/**
+ * How long the phases of a deployment of an application took. Durations that were not measured, such as the kill of
+ * a deployment that had no previous submission, are {@link #UNKNOWN}.
+ *
+ * @author Yohan Liyanage
+ */
+public final class DeploymentTiming implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Value of a duration or size that is not known.
+     */
+    public static final long UNKNOWN = -1;
+
+    private static final int FIELDS = 9;
+
+    private final int buildNumber;
+    private final String app;
+    private final String driverState;
+    private final long submittedAt;
+    private final long killMillis;
+    private final long submitMillis;
+    private final long firstStateMillis;
+    private final long runningMillis;
+    private final long artifactBytes;
+
+    /**
+     * Creates a deployment timing.
+     *
+     * @param buildNumber number of the build that deployed
+     * @param app application (main class)
+     * @param driverState driver state the deployment ended with
+     * @param submittedAt submission time
+     * @param killMillis time the deployment waited for the previous submission to be killed
+     * @param submitMillis time the submit call took
+     * @param firstStateMillis time from submission until the first driver state was reported
+     * @param runningMillis time from submission until the driver was seen RUNNING
+     * @param artifactBytes size of the application resource
+     */
+    public DeploymentTiming(int buildNumber, String app, String driverState, long submittedAt, long killMillis,
+                            long submitMillis, long firstStateMillis, long runningMillis, long artifactBytes) {
+        this.buildNumber = buildNumber;
+        this.app = app;
+        this.driverState = driverState;
+        this.submittedAt = submittedAt;
+        this.killMillis = killMillis;
+        this.submitMillis = submitMillis;
+        this.firstStateMillis = firstStateMillis;
+        this.runningMillis = runningMillis;
+        this.artifactBytes = artifactBytes;
+    }
+
+    /**
+     * Returns build number.
+     *
+     * @return build number
+     */
+    public int getBuildNumber() {
+        return buildNumber;
+    }
+
+    /**
+     * Returns app.
+     *
+     * @return application (main class)
+     */
+    public String getApp() {
+        return app;
+    }
+
+    /**
+     * Returns driver state.
+     *
+     * @return driver state the deployment ended with, or null if unknown
+     */
+    public String getDriverState() {
+        return driverState;
+    }
+
+    /**
+     * Returns submitted at.
+     *
+     * @return submission time
+     */
+    public long getSubmittedAt() {
+        return submittedAt;
+    }
+
+    /**
+     * Returns kill millis.
+     *
+     * @return time waited for the kill, or {@link #UNKNOWN} if nothing was killed
+     */
+    public long getKillMillis() {
+        return killMillis;
+    }
+
+    /**
+     * Returns submit millis.
+     *
+     * @return time of the submit call, or {@link #UNKNOWN}
+     */
+    public long getSubmitMillis() {
+        return submitMillis;
+    }
+
+    /**
+     * Returns first state millis.
+     *
+     * @return time until the first driver state, or {@link #UNKNOWN}
+     */
+    public long getFirstStateMillis() {
+        return firstStateMillis;
+    }
+
+    /**
+     * Returns running millis.
+     *
+     * @return time until the driver ran, or {@link #UNKNOWN} if it was not seen RUNNING
+     */
+    public long getRunningMillis() {
+        return runningMillis;
+    }
+
+    /**
+     * Returns artifact bytes.
+     *
+     * @return size of the application resource, or {@link #UNKNOWN} if it is not in the workspace
+     */
+    public long getArtifactBytes() {
+        return artifactBytes;
+    }
+
+    /**
+     * Formats the line of this timing in the timing index.
+     *
+     * @return line, without the line terminator
+     */
+    String toLine() {
+        return buildNumber + "\t" + SubmissionRecord.escape(app) + "\t" + SubmissionRecord.escape(driverState) + "\t"
+                + submittedAt + "\t" + killMillis + "\t" + submitMillis + "\t" + firstStateMillis + "\t"
+                + runningMillis + "\t" + artifactBytes;
+    }
+
+    /**
+     * Parses a line of the timing index.
+     *
+     * @param line line, without the line terminator
+     * @return timing, or null if the line is malformed
+     */
+    static DeploymentTiming fromLine(String line) {
+        String[] fields = line.split("\t", -1);
+        if (fields.length != FIELDS) {
+            return null;
+        }
+        try {
+            return new DeploymentTiming(Integer.parseInt(fields[0]), SubmissionRecord.unescape(fields[1]),
+                    fields[2].isEmpty() ? null : SubmissionRecord.unescape(fields[2]), Long.parseLong(fields[3]),
+                    Long.parseLong(fields[4]), Long.parseLong(fields[5]), Long.parseLong(fields[6]),
+                    Long.parseLong(fields[7]), Long.parseLong(fields[8]));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "#" + buildNumber + " " + app + " : kill " + killMillis + " ms, submit " + submitMillis
+                + " ms, first state " + firstStateMillis + " ms, running " + runningMillis + " ms";
+    }
+}
@@ -0,0 +1,257 @@
+/*
+ * Copyright (C) 2015 Yohan Liyanage
+ *
+ * Release under the MIT License (MIT). See LICENSE file for details.
+ */
+
+package com.yohanliyanage.jenkins.plugins.sparkdeploy.history;
+
+import hudson.util.AtomicFileWriter;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Append-only log of the submissions made by a job, kept in the job root directory.
+ * <p>
+ * A submission is written once as a complete {@link SubmissionRecord}, including the request of a supervised
+ * submission; later driver states of it are written as short state update lines that only carry its ID, state and
+ * time. A line is appended with a single write and forced to disk, and an incomplete trailing line left by a crash is
+ * truncated on load, so the log never holds a torn record.
+ * <p>
+ * The log is read once per job, after which the latest live submission of each application is looked up from an
+ * in-memory index. Only live submissions are kept in memory, so jobs with a long history cost no more than new ones.
+ * Once the log holds more than {@link #COMPACTION_RATIO} times as many dead lines (superseded records and state
+ * updates, and submissions that stopped) as live submissions, it is rewritten with one complete line per live
+ * submission.
+ *
+ * @author Yohan Liyanage
+ */
+public class SubmissionHistory {
+
+    /**
+     * Name of the submission log in the job root directory.
+     */
+    public static final String LOG_FILE = "spark-deploy-submissions.log";
+
+    /**
+     * Dead lines per live submission above which the log is compacted.
+     */
+    public static final int COMPACTION_RATIO = 4;
+
+    /**
+     * Dead lines below which the log is never compacted, so that small logs are not rewritten on every write.
+     */
+    private static final int COMPACTION_MIN_LINES = 100;
+
+    private static final Map<File, SubmissionHistory> HISTORIES = new HashMap<File, SubmissionHistory>();
+
+    private final File logFile;
+    private final Map<String, SubmissionRecord> live = new LinkedHashMap<String, SubmissionRecord>();
+    private final Map<String, SubmissionRecord> latestLiveByApp = new HashMap<String, SubmissionRecord>();
+    private long length;
+    private int lines;
+
+    SubmissionHistory(File logFile) throws IOException {
+        this.logFile = logFile;
+        load();
+    }
+
+    /**
+     * Returns the submission history of the job with the given root directory. The log is read on first access, and
+     * again only if it was changed or removed outside of this class.
+     *
+     * @param jobRootDir job root directory
+     * @return history
+     * @throws IOException if the log cannot be read
+     */
+    public static synchronized SubmissionHistory forJob(File jobRootDir) throws IOException {
+        File logFile = new File(jobRootDir, LOG_FILE);
+        SubmissionHistory history = HISTORIES.get(logFile);
+        if (history != null && history.isCurrent()) {
+            return history;
+        }
+        history = new SubmissionHistory(logFile);
+        HISTORIES.put(logFile, history);
+        return history;
+    }
+
+    /**
+     * Returns the latest submission of the given application that may still be running.
+     *
+     * @param app application (main class)
+     * @return record, or null if there is none
+     */
+    public synchronized SubmissionRecord getLatestLive(String app) {
+        return latestLiveByApp.get(app);
+    }
+
+    /**
+     * Returns all submissions that may still be running, oldest first.
+     *
+     * @return records
+     */
+    public synchronized List<SubmissionRecord> getLive() {
+        return new ArrayList<SubmissionRecord>(live.values());
+    }
+
+    /**
+     * Appends a submission to the log.
+     *
+     * @param record record
+     * @throws IOException if the log cannot be written
+     */
+    public synchronized void record(SubmissionRecord record) throws IOException {
+        append(record.toLine());
+        apply(record);
+        compactIfNeeded();
+    }
+
+    /**
+     * Records a new driver state for a submission that is still live. Has no effect for other submissions.
+     *
+     * @param submissionId submission ID
+     * @param driverState driver state
+     * @return the updated record, or null if the submission is not live
+     * @throws IOException if the log cannot be written
+     */
+    public synchronized SubmissionRecord updateDriverState(String submissionId, String driverState)
+            throws IOException {
+        SubmissionRecord current = live.get(submissionId);
+        if (current == null) {
+            return null;
+        }
+        SubmissionRecord updated = current.withDriverState(driverState, System.currentTimeMillis());
+        append(updated.toStateLine());
+        apply(updated);
+        compactIfNeeded();
+        return updated;
+    }
+
+    private synchronized boolean isCurrent() {
+        return logFile.length() == length;
+    }
+
+    private void apply(SubmissionRecord record) {
+        String id = record.getSubmissionId();
+        String app = record.getApp();
+        SubmissionRecord latest = latestLiveByApp.get(app);
+
+        if (record.isLive()) {
+            live.put(id, record);
+            if (latest == null || latest.getSubmissionId().equals(id)
+                    || latest.getSubmittedAt() <= record.getSubmittedAt()) {
+                latestLiveByApp.put(app, record);
+            }
+            return;
+        }
+
+        live.remove(id);
+        if (latest != null && latest.getSubmissionId().equals(id)) {
+            // Fall back to the newest older submission of the application that is still live
+            latestLiveByApp.remove(app);
+            for (SubmissionRecord candidate : live.values()) {
+                SubmissionRecord current = latestLiveByApp.get(app);
+                if (candidate.getApp().equals(app)
+                        && (current == null || current.getSubmittedAt() <= candidate.getSubmittedAt())) {
+                    latestLiveByApp.put(app, candidate);
+                }
+            }
+        }
+    }
+
+    private void append(String text) throws IOException {
+        byte[] line = (text + "\n").getBytes("UTF-8");
+        FileOutputStream out = new FileOutputStream(logFile, true);
+        try {
+            out.write(line);
+            out.getChannel().force(false);
+        } finally {
+            out.close();
+        }
+        length = logFile.length();
+        lines++;
+    }
+
+    private void compactIfNeeded() throws IOException {
+        int dead = lines - live.size();
+        if (dead >= COMPACTION_MIN_LINES && dead > COMPACTION_RATIO * live.size()) {
+            compact();
+        }
+    }
+
+    /**
+     * Rewrites the log with one complete line per live submission.
+     */
+    private void compact() throws IOException {
+        AtomicFileWriter writer = new AtomicFileWriter(logFile, "UTF-8");
+        try {
+            for (SubmissionRecord record : live.values()) {
+                writer.write(record.toLine() + "\n");
+            }
+            writer.commit();
+        } finally {
+            writer.abort();
+        }
+        length = logFile.length();
+        lines = live.size();
+    }
+
+    private void load() throws IOException {
+        if (! logFile.exists()) {
+            length = 0;
+            return;
+        }
+
+        long complete = 0;
+        long position = 0;
+        InputStream in = new BufferedInputStream(new FileInputStream(logFile));
+        try {
+            ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+            int b;
+            while ((b = in.read()) != -1) {
+                position++;
+                if (b != '\n') {
+                    line.write(b);
+                    continue;
+                }
+                complete = position;
+                lines++;
+                String text = line.toString("UTF-8");
+                SubmissionRecord record = SubmissionRecord.fromLine(text);
+                if (record == null) {
+                    // State updates of submissions that already stopped are ignored
+                    record = SubmissionRecord.fromStateLine(text, live);
+                }
+                if (record != null) {
+                    apply(record);
+                }
+                line.reset();
+            }
+        } finally {
+            in.close();
+        }
+
+        if (complete < position) {
+            // Drop the torn record of an interrupted append, so that the next append starts on a new line
+            RandomAccessFile file = new RandomAccessFile(logFile, "rw");
+            try {
+                file.setLength(complete);
+            } finally {
+                file.close();
+            }
+        }
+        length = complete;
+    }
+}
@@ -0,0 +1,312 @@
+/*
+ * Copyright (C) 2015 Yohan Liyanage
+ *
+ * Release under the MIT License (MIT). See LICENSE file for details.
+ */
+
+package com.yohanliyanage.jenkins.plugins.sparkdeploy.history;
+
+import com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer.DriverStatePoller;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A submission made by a build, with the last known state of its driver.
+ *
+ * @author Yohan Liyanage
+ */
+public final class SubmissionRecord implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Driver states after which a submission no longer needs to be killed.
+     */
+    public static final Set<String> TERMINAL_STATES = Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(
+            "KILLED", "FINISHED", "FAILED", "ERROR", DriverStatePoller.ATTEMPTS_EXCEEDED_NO_RESPONSE)));
+
+    private static final int FIELDS = 9;
+    private static final int STATE_FIELDS = 3;
+
+    private final int buildNumber;
+    private final String submissionId;
+    private final String app;
+    private final String master;
+    private final String driverState;
+    private final long submittedAt;
+    private final long updatedAt;
+    private final String request;
+    private final String fingerprint;
+
+    /**
+     * Creates a submission record.
+     *
+     * @param buildNumber number of the build that made the submission
+     * @param submissionId submission ID
+     * @param app application (main class)
+     * @param master master REST URL(s) the submission was made to
+     * @param driverState last known driver state
+     * @param submittedAt submission time
+     * @param updatedAt time the driver state was last updated
+     */
+    public SubmissionRecord(int buildNumber, String submissionId, String app, String master, String driverState,
+                            long submittedAt, long updatedAt) {
+        this(buildNumber, submissionId, app, master, driverState, submittedAt, updatedAt, null);
+    }
+
+    /**
+     * Creates a submission record of a supervised submission, which keeps the request so that the submission can be
+     * made again if its driver fails.
+     *
+     * @param buildNumber number of the build that made the submission
+     * @param submissionId submission ID
+     * @param app application (main class)
+     * @param master master REST URL(s) the submission was made to
+     * @param driverState last known driver state
+     * @param submittedAt submission time
+     * @param updatedAt time the driver state was last updated
+     * @param request submitted request as JSON, or null if the submission is not supervised
+     */
+    public SubmissionRecord(int buildNumber, String submissionId, String app, String master, String driverState,
+                            long submittedAt, long updatedAt, String request) {
+        this(buildNumber, submissionId, app, master, driverState, submittedAt, updatedAt, request, null);
+    }
+
+    /**
+     * Creates a submission record with the fingerprint of the submitted request, so that a later deployment of the
+     * same request can be skipped while the driver runs.
+     *
+     * @param buildNumber number of the build that made the submission
+     * @param submissionId submission ID
+     * @param app application (main class)
+     * @param master master REST URL(s) the submission was made to
+     * @param driverState last known driver state
+     * @param submittedAt submission time
+     * @param updatedAt time the driver state was last updated
+     * @param request submitted request as JSON, or null if the submission is not supervised
+     * @param fingerprint fingerprint of the submitted request, or null if unknown
+     */
+    public SubmissionRecord(int buildNumber, String submissionId, String app, String master, String driverState,
+                            long submittedAt, long updatedAt, String request, String fingerprint) {
+        this.buildNumber = buildNumber;
+        this.submissionId = submissionId;
+        this.app = app;
+        this.master = master;
+        this.driverState = driverState;
+        this.submittedAt = submittedAt;
+        this.updatedAt = updatedAt;
+        this.request = request == null || request.isEmpty() ? null : request;
+        this.fingerprint = fingerprint == null || fingerprint.isEmpty() ? null : fingerprint;
+    }
+
+    /**
+     * Returns a copy of this record with the given driver state.
+     *
+     * @param state driver state
+     * @param time time of the update
+     * @return updated record
+     */
+    public SubmissionRecord withDriverState(String state, long time) {
+        return new SubmissionRecord(buildNumber, submissionId, app, master, state, submittedAt, time, request,
+                fingerprint);
+    }
+
+    /**
+     * Returns whether the driver of this submission may still be running.
+     *
+     * @return true if live
+     */
+    public boolean isLive() {
+        return ! TERMINAL_STATES.contains(driverState);
+    }
+
+    /**
+     * Returns build number.
+     *
+     * @return build number
+     */
+    public int getBuildNumber() {
+        return buildNumber;
+    }
+
+    /**
+     * Returns submission id.
+     *
+     * @return submission id
+     */
+    public String getSubmissionId() {
+        return submissionId;
+    }
+
+    /**
+     * Returns app.
+     *
+     * @return app
+     */
+    public String getApp() {
+        return app;
+    }
+
+    /**
+     * Returns master.
+     *
+     * @return master
+     */
+    public String getMaster() {
+        return master;
+    }
+
+    /**
+     * Returns driver state.
+     *
+     * @return driver state
+     */
+    public String getDriverState() {
+        return driverState;
+    }
+
+    /**
+     * Returns submitted at.
+     *
+     * @return submitted at
+     */
+    public long getSubmittedAt() {
+        return submittedAt;
+    }
+
+    /**
+     * Returns updated at.
+     *
+     * @return updated at
+     */
+    public long getUpdatedAt() {
+        return updatedAt;
+    }
+
+    /**
+     * Returns the submitted request as JSON.
+     *
+     * @return request, or null if the submission is not supervised
+     */
+    public String getRequest() {
+        return request;
+    }
+
+    /**
+     * Returns the fingerprint of the submitted request.
+     *
+     * @return fingerprint, or null if unknown
+     */
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Returns whether the submission is made again by the watchdog if its driver fails.
+     *
+     * @return true if supervised
+     */
+    public boolean isSupervised() {
+        return request != null;
+    }
+
+    /**
+     * Formats this record as one line of the submission log, without the line terminator. Fields are tab separated.
+     *
+     * @return line
+     */
+    String toLine() {
+        return buildNumber + "\t" + escape(submissionId) + "\t" + escape(app) + "\t" + escape(master) + "\t"
+                + escape(driverState) + "\t" + submittedAt + "\t" + updatedAt + "\t" + escape(request) + "\t"
+                + escape(fingerprint);
+    }
+
+    /**
+     * Formats the driver state of this record as a state update line of the submission log, which only refers to the
+     * submission by its ID, so that the request of a supervised submission is not written again on every update.
+     *
+     * @return line
+     */
+    String toStateLine() {
+        return escape(submissionId) + "\t" + escape(driverState) + "\t" + updatedAt;
+    }
+
+    /**
+     * Parses a state update line of the submission log, and applies it to the record of its submission.
+     *
+     * @param line line, without the line terminator
+     * @param records records by submission ID
+     * @return updated record, or null if the line is not a state update or its submission is not in the records
+     */
+    static SubmissionRecord fromStateLine(String line, Map<String, SubmissionRecord> records) {
+        String[] fields = line.split("\t", -1);
+        if (fields.length != STATE_FIELDS) {
+            return null;
+        }
+        SubmissionRecord record = records.get(unescape(fields[0]));
+        if (record == null) {
+            return null;
+        }
+        try {
+            return record.withDriverState(unescape(fields[1]), Long.parseLong(fields[2]));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Parses a line of the submission log. Lines written before fingerprints were recorded have one field less, and
+     * lines written before requests were recorded have two fields less.
+     *
+     * @param line line, without the line terminator
+     * @return record, or null if the line is malformed
+     */
+    static SubmissionRecord fromLine(String line) {
+        String[] fields = line.split("\t", -1);
+        if (fields.length < FIELDS - 2 || fields.length > FIELDS) {
+            return null;
+        }
+        try {
+            return new SubmissionRecord(Integer.parseInt(fields[0]), unescape(fields[1]), unescape(fields[2]),
+                    unescape(fields[3]), unescape(fields[4]), Long.parseLong(fields[5]), Long.parseLong(fields[6]),
+                    fields.length > FIELDS - 2 ? unescape(fields[7]) : null,
+                    fields.length == FIELDS ? unescape(fields[8]) : null);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    static String escape(String value) {
+        if (value == null) {
+            return "";
+        }
+        return value.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+    }
+
+    static String unescape(String value) {
+        if (value.indexOf('\\') < 0) {
+            return value;
+        }
+        StringBuilder builder = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                char next = value.charAt(++i);
+                builder.append(next == 't' ? '\t' : next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+
+    @Override
+    public String toString() {
+        return "#" + buildNumber + " " + app + " : " + submissionId + " (" + driverState + ")";
+    }
+}
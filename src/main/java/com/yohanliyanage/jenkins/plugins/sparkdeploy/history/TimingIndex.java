@@ -0,0 +1,225 @@
+/*
+ * Copyright (C) 2015 Yohan Liyanage
+ *
+ * Release under the MIT License (MIT). See LICENSE file for details.
+ */
+
+package com.yohanliyanage.jenkins.plugins.sparkdeploy.history;
+
+import hudson.util.AtomicFileWriter;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact index of the {@link DeploymentTiming}s of the recent builds of a job, kept in the job root directory, so that
+ * trends can be drawn and compared without loading every build.
+ * <p>
+ * The index is an append-only log with one timing per line, written and loaded like the {@link SubmissionHistory}.
+ * Only the latest {@link #MAX_ENTRIES} timings are kept in memory, and the log is rewritten with just those once it
+ * grows to twice as many lines.
+ *
+ * @author Yohan Liyanage
+ */
+public class TimingIndex {
+
+    /**
+     * Name of the timing index in the job root directory.
+     */
+    public static final String LOG_FILE = "spark-deploy-timings.log";
+
+    /**
+     * Number of timings kept, across all applications of the job.
+     */
+    public static final int MAX_ENTRIES = 500;
+
+    private static final Map<File, TimingIndex> INDEXES = new HashMap<File, TimingIndex>();
+
+    private final File logFile;
+    private final LinkedList<DeploymentTiming> timings = new LinkedList<DeploymentTiming>();
+    private long length;
+    private int lines;
+
+    TimingIndex(File logFile) throws IOException {
+        this.logFile = logFile;
+        load();
+    }
+
+    /**
+     * Returns the timing index of the job with the given root directory. The log is read on first access, and again
+     * only if it was changed or removed outside of this class.
+     *
+     * @param jobRootDir job root directory
+     * @return index
+     * @throws IOException if the log cannot be read
+     */
+    public static synchronized TimingIndex forJob(File jobRootDir) throws IOException {
+        File logFile = new File(jobRootDir, LOG_FILE);
+        TimingIndex index = INDEXES.get(logFile);
+        if (index != null && index.isCurrent()) {
+            return index;
+        }
+        index = new TimingIndex(logFile);
+        INDEXES.put(logFile, index);
+        return index;
+    }
+
+    /**
+     * Returns the kept timings, oldest first.
+     *
+     * @return timings
+     */
+    public synchronized List<DeploymentTiming> getTimings() {
+        return new ArrayList<DeploymentTiming>(timings);
+    }
+
+    /**
+     * Returns the times to RUNNING of the latest deployments of the given application made before the given build.
+     *
+     * @param app application (main class)
+     * @param beforeBuild build number; deployments of this build and later ones are left out
+     * @param limit maximum number of times
+     * @return times in milliseconds, oldest first
+     */
+    public synchronized List<Long> getRunningMillis(String app, int beforeBuild, int limit) {
+        LinkedList<Long> times = new LinkedList<Long>();
+        Iterator<DeploymentTiming> iterator = timings.descendingIterator();
+        while (iterator.hasNext() && times.size() < limit) {
+            DeploymentTiming timing = iterator.next();
+            if (timing.getBuildNumber() < beforeBuild && app.equals(timing.getApp())
+                    && timing.getRunningMillis() != DeploymentTiming.UNKNOWN) {
+                times.addFirst(timing.getRunningMillis());
+            }
+        }
+        return times;
+    }
+
+    /**
+     * Appends a timing to the index.
+     *
+     * @param timing timing
+     * @throws IOException if the log cannot be written
+     */
+    public synchronized void record(DeploymentTiming timing) throws IOException {
+        if (lines >= 2 * MAX_ENTRIES) {
+            apply(timing);
+            compact();
+            return;
+        }
+        append(timing);
+        apply(timing);
+    }
+
+    /**
+     * Returns the value below which the given percentage of the values fall, by the nearest rank method.
+     *
+     * @param values values
+     * @param percentile percentile, from 1 to 100
+     * @return value, or -1 if there are no values
+     */
+    public static long percentile(List<Long> values, int percentile) {
+        if (values.isEmpty()) {
+            return -1;
+        }
+        List<Long> sorted = new ArrayList<Long>(values);
+        Collections.sort(sorted);
+        int rank = (int) Math.ceil(percentile / 100.0 * sorted.size());
+        return sorted.get(Math.max(0, Math.min(rank, sorted.size()) - 1));
+    }
+
+    private synchronized boolean isCurrent() {
+        return logFile.length() == length;
+    }
+
+    private void apply(DeploymentTiming timing) {
+        timings.add(timing);
+        if (timings.size() > MAX_ENTRIES) {
+            timings.removeFirst();
+        }
+    }
+
+    private void append(DeploymentTiming timing) throws IOException {
+        byte[] line = (timing.toLine() + "\n").getBytes("UTF-8");
+        FileOutputStream out = new FileOutputStream(logFile, true);
+        try {
+            out.write(line);
+            out.getChannel().force(false);
+        } finally {
+            out.close();
+        }
+        length = logFile.length();
+        lines++;
+    }
+
+    /**
+     * Rewrites the log with the timings kept in memory.
+     */
+    private void compact() throws IOException {
+        AtomicFileWriter writer = new AtomicFileWriter(logFile, "UTF-8");
+        try {
+            for (DeploymentTiming timing : timings) {
+                writer.write(timing.toLine() + "\n");
+            }
+            writer.commit();
+        } finally {
+            writer.abort();
+        }
+        length = logFile.length();
+        lines = timings.size();
+    }
+
+    private void load() throws IOException {
+        if (! logFile.exists()) {
+            length = 0;
+            return;
+        }
+
+        long complete = 0;
+        long position = 0;
+        InputStream in = new BufferedInputStream(new FileInputStream(logFile));
+        try {
+            ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+            int b;
+            while ((b = in.read()) != -1) {
+                position++;
+                if (b != '\n') {
+                    line.write(b);
+                    continue;
+                }
+                complete = position;
+                lines++;
+                DeploymentTiming timing = DeploymentTiming.fromLine(line.toString("UTF-8"));
+                if (timing != null) {
+                    apply(timing);
+                }
+                line.reset();
+            }
+        } finally {
+            in.close();
+        }
+
+        if (complete < position) {
+            // Drop the torn line of an interrupted append, so that the next append starts on a new line
+            RandomAccessFile file = new RandomAccessFile(logFile, "rw");
+            try {
+                file.setLength(complete);
+            } finally {
+                file.close();
+            }
+        }
+        length = complete;
+    }
+}
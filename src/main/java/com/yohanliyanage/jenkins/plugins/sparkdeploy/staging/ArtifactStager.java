@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2015 Yohan Liyanage
+ *
+ * Release under the MIT License (MIT). See LICENSE file for details.
+ */
+
+package com.yohanliyanage.jenkins.plugins.sparkdeploy.staging;
+
+import hudson.FilePath;
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+/**
+ * Stages workspace artifacts into an {@link ArtifactStore}, addressed by their content. An artifact that has been
+ * staged before is not transferred again; only its digest is computed, on the node that holds the workspace.
+ *
+ * @author Yohan Liyanage
+ */
+public class ArtifactStager {
+
+    private static final int LOCK_STRIPES = 64;
+
+    private static ArtifactStager instance;
+
+    private final String location;
+    private final String publicUrl;
+    private final long maxBytes;
+    private final ArtifactStore store;
+    private final StagingCache cache;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    ArtifactStager(String location, String publicUrl, long maxBytes, File indexFile) throws IOException {
+        this.location = location;
+        this.publicUrl = publicUrl;
+        this.maxBytes = maxBytes;
+        this.store = ArtifactStores.create(location, publicUrl);
+        this.cache = new StagingCache(indexFile, maxBytes);
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * Returns the shared stager for the given configuration, creating a new one if the configuration changed.
+     *
+     * @param location staging location
+     * @param publicUrl base URL under which the cluster fetches staged artifacts, or empty to derive it
+     * @param maxBytes maximum total size of staged artifacts
+     * @param indexFile file that keeps the index of staged artifacts
+     * @return stager
+     * @throws IOException if the index cannot be read
+     */
+    public static synchronized ArtifactStager getInstance(String location, String publicUrl, long maxBytes,
+                                                          File indexFile) throws IOException {
+        if (instance == null || ! instance.location.equals(location) || ! instance.publicUrl.equals(publicUrl)
+                || instance.maxBytes != maxBytes) {
+            instance = new ArtifactStager(location, publicUrl, maxBytes, indexFile);
+        }
+        return instance;
+    }
+
+    /**
+     * Stages the given artifact if it is not staged already.
+     *
+     * @param artifact artifact in the workspace
+     * @param logger logger
+     * @return URL the cluster uses to fetch the artifact
+     * @throws IOException if staging fails
+     * @throws InterruptedException if interrupted
+     */
+    public String stage(FilePath artifact, PrintStream logger) throws IOException, InterruptedException {
+        if (! artifact.exists()) {
+            throw new IOException("Application resource " + artifact.getRemote() + " does not exist in the workspace");
+        }
+
+        String digest = digest(artifact);
+        String name = digest + "-" + artifact.getName();
+        String url = store.getUrl(name);
+
+        List<String> evicted;
+        synchronized (locks[(digest.hashCode() & Integer.MAX_VALUE) % LOCK_STRIPES]) {
+            if (cache.touch(name)) {
+                logger.println("[Spark-Deployer] " + artifact.getName() + " is already staged at " + url);
+                return url;
+            }
+
+            long length = artifact.length();
+            logger.println("[Spark-Deployer] Staging " + artifact.getName() + " (" + length + " bytes) to " + url);
+            InputStream in = artifact.read();
+            try {
+                store.store(name, in, length);
+            } finally {
+                in.close();
+            }
+            evicted = cache.add(name, length);
+        }
+
+        for (String old : evicted) {
+            try {
+                store.delete(old);
+            } catch (IOException e) {
+                logger.println("[Spark-Deployer] Failed to evict staged artifact " + old + " : " + e.getMessage());
+            }
+        }
+        return url;
+    }
+
+    /**
+     * Returns the SHA-256 digest of the given file, computed on the node that holds it.
+     *
+     * @param artifact file
+     * @return digest, as hex
+     * @throws IOException if the file cannot be read
+     * @throws InterruptedException if interrupted
+     */
+    public static String digest(FilePath artifact) throws IOException, InterruptedException {
+        return artifact.act(new Sha256());
+    }
+
+    /**
+     * Computes the SHA-256 digest of a file on the node that holds it.
+     */
+    private static final class Sha256 extends MasterToSlaveFileCallable<String> {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public String invoke(File file, VirtualChannel channel) throws IOException, InterruptedException {
+            MessageDigest digest;
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IOException(e);
+            }
+
+            InputStream in = new FileInputStream(file);
+            try {
+                byte[] buffer = new byte[64 * 1024];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    digest.update(buffer, 0, read);
+                }
+            } finally {
+                in.close();
+            }
+
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        }
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2015 Yohan Liyanage
+ *
+ * Release under the MIT License (MIT). See LICENSE file for details.
+ */
+
+package com.yohanliyanage.jenkins.plugins.sparkdeploy.staging;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A location where application artifacts are staged, so that the Spark cluster can fetch them.
+ *
+ * @author Yohan Liyanage
+ */
+public interface ArtifactStore {
+
+    /**
+     * Stores the given content under the given name, replacing any existing content.
+     *
+     * @param name artifact name
+     * @param content content
+     * @param length content length in bytes
+     * @throws IOException if storing fails
+     */
+    void store(String name, InputStream content, long length) throws IOException;
+
+    /**
+     * Deletes the artifact with the given name, if it exists.
+     *
+     * @param name artifact name
+     * @throws IOException if deleting fails
+     */
+    void delete(String name) throws IOException;
+
+    /**
+     * Returns the URL the Spark cluster uses to fetch the artifact with the given name.
+     *
+     * @param name artifact name
+     * @return artifact URL
+     */
+    String getUrl(String name);
+}
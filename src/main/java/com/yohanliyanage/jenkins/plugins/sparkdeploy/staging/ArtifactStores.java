@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2015 Yohan Liyanage
+ *
+ * Release under the MIT License (MIT). See LICENSE file for details.
+ */
+
+package com.yohanliyanage.jenkins.plugins.sparkdeploy.staging;
+
+import java.io.File;
+import java.net.URI;
+
+/**
+ * Creates {@link ArtifactStore}s from a staging location.
+ *
+ * @author Yohan Liyanage
+ */
+public final class ArtifactStores {
+
+    /**
+     * Creates the store for the given location.
+     * <ul>
+     *     <li>An absolute path or file: URL stages to a local (typically shared) directory.</li>
+     *     <li>A webhdfs:// URL stages to HDFS using WebHDFS. The cluster fetches from hdfs:// by default.</li>
+     *     <li>A http:// or https:// URL stages to a HTTP file server using PUT.</li>
+     * </ul>
+     *
+     * @param location staging location
+     * @param publicUrl base URL under which the cluster fetches staged artifacts, or empty to derive it from the
+     *                  location
+     * @return store
+     */
+    public static ArtifactStore create(String location, String publicUrl) {
+        String loc = location.trim();
+        String url = publicUrl == null ? "" : publicUrl.trim();
+
+        if (loc.startsWith("webhdfs://")) {
+            URI uri = URI.create(loc);
+            String webHdfs = "http://" + uri.getAuthority() + "/webhdfs/v1" + uri.getPath();
+            return new WebHdfsArtifactStore(webHdfs, url.isEmpty() ? "hdfs://" + uri.getHost() + uri.getPath() : url);
+        }
+        if (loc.startsWith("http://") || loc.startsWith("https://")) {
+            return new HttpArtifactStore(loc, url.isEmpty() ? loc : url);
+        }
+
+        File directory = loc.startsWith("file:") ? new File(URI.create(loc)) : new File(loc);
+        if (! directory.isAbsolute()) {
+            throw new IllegalArgumentException("Staging location should be an absolute path or a URL: " + location);
+        }
+        return new LocalDirectoryArtifactStore(directory, url.isEmpty() ? directory.toURI().toString() : url);
+    }
+
+    static String append(String base, String name) {
+        return base.endsWith("/") ? base + name : base + "/" + name;
+    }
+
+    private ArtifactStores() {
+        // No instantiation
+    }
+}
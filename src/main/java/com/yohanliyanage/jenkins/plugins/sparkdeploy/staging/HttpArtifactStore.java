@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2015 Yohan Liyanage
+ *
+ * Release under the MIT License (MIT). See LICENSE file for details.
+ */
+
+package com.yohanliyanage.jenkins.plugins.sparkdeploy.staging;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * Stages artifacts on a HTTP file server that accepts PUT and DELETE (ex. WebDAV, Nginx with dav_methods).
+ *
+ * @author Yohan Liyanage
+ */
+public class HttpArtifactStore implements ArtifactStore {
+
+    private static final int CONNECT_TIMEOUT = 10000;
+    private static final int READ_TIMEOUT = 5 * 60 * 1000;
+
+    private final String location;
+    private final String publicUrl;
+
+    /**
+     * Creates a HTTP store.
+     *
+     * @param location base URL artifacts are uploaded to
+     * @param publicUrl base URL under which the cluster fetches artifacts
+     */
+    public HttpArtifactStore(String location, String publicUrl) {
+        this.location = location;
+        this.publicUrl = publicUrl;
+    }
+
+    @Override
+    public void store(String name, InputStream content, long length) throws IOException {
+        HttpURLConnection connection = open("PUT", ArtifactStores.append(location, name));
+        try {
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/java-archive");
+            connection.setFixedLengthStreamingMode(length);
+            OutputStream out = connection.getOutputStream();
+            try {
+                copy(content, out);
+            } finally {
+                out.close();
+            }
+            check(connection, "upload " + name);
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    @Override
+    public void delete(String name) throws IOException {
+        HttpURLConnection connection = open("DELETE", ArtifactStores.append(location, name));
+        try {
+            if (connection.getResponseCode() != HttpURLConnection.HTTP_NOT_FOUND) {
+                check(connection, "delete " + name);
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    @Override
+    public String getUrl(String name) {
+        return ArtifactStores.append(publicUrl, name);
+    }
+
+    static HttpURLConnection open(String method, String url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT);
+        connection.setReadTimeout(READ_TIMEOUT);
+        connection.setRequestMethod(method);
+        connection.setInstanceFollowRedirects(false);
+        return connection;
+    }
+
+    static void check(HttpURLConnection connection, String operation) throws IOException {
+        int code = connection.getResponseCode();
+        if (code < 200 || code >= 300) {
+            throw new IOException("Failed to " + operation + ". Response is " + code + " : "
+                    + connection.getResponseMessage());
+        }
+    }
+
+    static void copy(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+    }
+}
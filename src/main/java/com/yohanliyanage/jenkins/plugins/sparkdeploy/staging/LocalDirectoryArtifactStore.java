@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2015 Yohan Liyanage
+ *
+ * Release under the MIT License (MIT). See LICENSE file for details.
+ */
+
+package com.yohanliyanage.jenkins.plugins.sparkdeploy.staging;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Stages artifacts in a local directory, typically a shared mount that is also visible to the Spark cluster.
+ *
+ * @author Yohan Liyanage
+ */
+public class LocalDirectoryArtifactStore implements ArtifactStore {
+
+    private final File directory;
+    private final String publicUrl;
+
+    /**
+     * Creates a local directory store.
+     *
+     * @param directory staging directory
+     * @param publicUrl base URL under which the cluster sees the directory
+     */
+    public LocalDirectoryArtifactStore(File directory, String publicUrl) {
+        this.directory = directory;
+        this.publicUrl = publicUrl;
+    }
+
+    @Override
+    public void store(String name, InputStream content, long length) throws IOException {
+        if (! directory.isDirectory() && ! directory.mkdirs()) {
+            throw new IOException("Unable to create staging directory " + directory);
+        }
+
+        // Write to a temporary file first, so that the cluster never sees a partial artifact
+        File target = new File(directory, name);
+        File temp = new File(directory, name + ".tmp");
+        OutputStream out = new FileOutputStream(temp);
+        try {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = content.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        } finally {
+            out.close();
+        }
+
+        if (! temp.renameTo(target)) {
+            if (! (target.delete() && temp.renameTo(target))) {
+                temp.delete();
+                throw new IOException("Unable to move staged artifact to " + target);
+            }
+        }
+    }
+
+    @Override
+    public void delete(String name) throws IOException {
+        File target = new File(directory, name);
+        if (target.exists() && ! target.delete()) {
+            throw new IOException("Unable to delete staged artifact " + target);
+        }
+    }
+
+    @Override
+    public String getUrl(String name) {
+        return ArtifactStores.append(publicUrl, name);
+    }
+}
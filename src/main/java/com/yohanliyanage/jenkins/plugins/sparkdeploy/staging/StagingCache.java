@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2015 Yohan Liyanage
+ *
+ * Release under the MIT License (MIT). See LICENSE file for details.
+ */
+
+package com.yohanliyanage.jenkins.plugins.sparkdeploy.staging;
+
+import hudson.util.AtomicFileWriter;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Size bounded, least recently used index of the artifacts in an {@link ArtifactStore}. The index is persisted so
+ * that staged artifacts survive restarts.
+ * <p>
+ * Each line of the index file holds the size and the name of one artifact, least recently used first.
+ *
+ * @author Yohan Liyanage
+ */
+public class StagingCache {
+
+    private final File indexFile;
+    private final long maxBytes;
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<String, Long>(16, 0.75f, true);
+    private long totalBytes;
+
+    /**
+     * Creates a staging cache, loading the index if it exists.
+     *
+     * @param indexFile index file
+     * @param maxBytes maximum total size of staged artifacts
+     * @throws IOException if the index cannot be read
+     */
+    public StagingCache(File indexFile, long maxBytes) throws IOException {
+        this.indexFile = indexFile;
+        this.maxBytes = maxBytes;
+        load();
+    }
+
+    /**
+     * Marks the given artifact as used, if it is staged.
+     *
+     * @param name artifact name
+     * @return true if the artifact is staged
+     */
+    public synchronized boolean touch(String name) {
+        return entries.get(name) != null;
+    }
+
+    /**
+     * Adds a newly staged artifact, evicting the least recently used artifacts until the cache fits its size limit.
+     * The artifact just added is never evicted.
+     *
+     * @param name artifact name
+     * @param size artifact size in bytes
+     * @return names of evicted artifacts, which should be deleted from the store
+     * @throws IOException if the index cannot be saved
+     */
+    public synchronized List<String> add(String name, long size) throws IOException {
+        Long previous = entries.put(name, size);
+        totalBytes += size - (previous == null ? 0 : previous);
+
+        List<String> evicted = new ArrayList<String>();
+        Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            if (eldest.getKey().equals(name)) {
+                continue;
+            }
+            totalBytes -= eldest.getValue();
+            evicted.add(eldest.getKey());
+            iterator.remove();
+        }
+
+        save();
+        return evicted;
+    }
+
+    /**
+     * Returns the total size of the staged artifacts.
+     *
+     * @return size in bytes
+     */
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * Returns the number of staged artifacts.
+     *
+     * @return count
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private void load() throws IOException {
+        if (! indexFile.exists()) {
+            return;
+        }
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(indexFile), "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int separator = line.indexOf(' ');
+                if (separator > 0) {
+                    long size = Long.parseLong(line.substring(0, separator));
+                    entries.put(line.substring(separator + 1), size);
+                    totalBytes += size;
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    private void save() throws IOException {
+        AtomicFileWriter writer = new AtomicFileWriter(indexFile, "UTF-8");
+        try {
+            for (Map.Entry<String, Long> entry : entries.entrySet()) {
+                writer.write(entry.getValue() + " " + entry.getKey() + "\n");
+            }
+            writer.commit();
+        } finally {
+            writer.abort();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2015 Yohan Liyanage
+ *
+ * Release under the MIT License (MIT). See LICENSE file for details.
+ */
+
+package com.yohanliyanage.jenkins.plugins.sparkdeploy.staging;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+
+/**
+ * Stages artifacts on HDFS through the WebHDFS REST API, so that no Hadoop client libraries are needed.
+ * <p>
+ * Uploads follow the two step WebHDFS protocol: the name node answers the CREATE call with a redirect to the data
+ * node which receives the content.
+ *
+ * @author Yohan Liyanage
+ */
+public class WebHdfsArtifactStore implements ArtifactStore {
+
+    private final String location;
+    private final String publicUrl;
+
+    /**
+     * Creates a WebHDFS store.
+     *
+     * @param location base WebHDFS URL (ex. http://namenode:50070/webhdfs/v1/spark/staging)
+     * @param publicUrl base URL under which the cluster fetches artifacts (ex. hdfs://namenode/spark/staging)
+     */
+    public WebHdfsArtifactStore(String location, String publicUrl) {
+        this.location = location;
+        this.publicUrl = publicUrl;
+    }
+
+    @Override
+    public void store(String name, InputStream content, long length) throws IOException {
+        String dataNodeUrl;
+        HttpURLConnection nameNode = HttpArtifactStore.open("PUT",
+                ArtifactStores.append(location, name) + "?op=CREATE&overwrite=true");
+        try {
+            int code = nameNode.getResponseCode();
+            dataNodeUrl = nameNode.getHeaderField("Location");
+            if ((code != HttpURLConnection.HTTP_MOVED_TEMP && code != 307) || dataNodeUrl == null) {
+                throw new IOException("WebHDFS did not redirect the upload of " + name + ". Response is " + code
+                        + " : " + nameNode.getResponseMessage());
+            }
+        } finally {
+            nameNode.disconnect();
+        }
+
+        HttpURLConnection dataNode = HttpArtifactStore.open("PUT", dataNodeUrl);
+        try {
+            dataNode.setDoOutput(true);
+            dataNode.setRequestProperty("Content-Type", "application/octet-stream");
+            dataNode.setFixedLengthStreamingMode(length);
+            OutputStream out = dataNode.getOutputStream();
+            try {
+                HttpArtifactStore.copy(content, out);
+            } finally {
+                out.close();
+            }
+            HttpArtifactStore.check(dataNode, "upload " + name);
+        } finally {
+            dataNode.disconnect();
+        }
+    }
+
+    @Override
+    public void delete(String name) throws IOException {
+        HttpURLConnection connection = HttpArtifactStore.open("DELETE",
+                ArtifactStores.append(location, name) + "?op=DELETE");
+        try {
+            HttpArtifactStore.check(connection, "delete " + name);
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    @Override
+    public String getUrl(String name) {
+        return ArtifactStores.append(publicUrl, name);
+    }
+}
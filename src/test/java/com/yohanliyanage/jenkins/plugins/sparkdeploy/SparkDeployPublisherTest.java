@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2015 Yohan Liyanage
+ *
+ * Release under the MIT License (MIT). See LICENSE file for details.
+ */
+
+package com.yohanliyanage.jenkins.plugins.sparkdeploy;
+
+import com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer.FakeSparkMaster;
+import com.yohanliyanage.jenkins.plugins.sparkdeploy.history.SubmissionHistory;
+import com.yohanliyanage.jenkins.plugins.sparkdeploy.history.SubmissionRecord;
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import hudson.model.Result;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Tests builds of jobs that deploy with the {@link SparkDeployPublisher} to a {@link FakeSparkMaster}.
+ *
+ * @author Yohan Liyanage
+ */
+public class SparkDeployPublisherTest {
+
+    private static final String APP = "com.example.spark.App";
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+
+    private FakeSparkMaster master;
+
+    @Before
+    public void setUp() throws IOException {
+        master = new FakeSparkMaster(8).startup(0, 0);
+    }
+
+    @After
+    public void tearDown() {
+        master.stop();
+    }
+
+    @Test
+    public void replacesDriverOfPreviousBuild() throws Exception {
+        FreeStyleProject project = createProject(APP);
+
+        FreeStyleBuild first = j.buildAndAssertSuccess(project);
+        SubmissionRecord deployed = SubmissionHistory.forJob(project.getRootDir()).getLatestLive(APP);
+        assertNotNull(deployed);
+        assertEquals("RUNNING", deployed.getDriverState());
+        assertEquals(first.getNumber(), deployed.getBuildNumber());
+        assertNotNull(first.getAction(DeploymentTimingAction.class));
+
+        j.buildAndAssertSuccess(project);
+        SubmissionRecord replaced = SubmissionHistory.forJob(project.getRootDir()).getLatestLive(APP);
+        assertFalse(deployed.getSubmissionId().equals(replaced.getSubmissionId()));
+        assertEquals("KILLED", master.getDriverState(deployed.getSubmissionId()));
+        assertEquals("RUNNING", master.getDriverState(replaced.getSubmissionId()));
+        assertEquals(1, master.getActiveDrivers());
+    }
+
+    @Test
+    public void failsBuildWhenDriverFails() throws Exception {
+        master.driverFailureRate(1);
+        FreeStyleProject project = createProject(APP);
+
+        j.assertBuildStatus(Result.FAILURE, project.scheduleBuild2(0).get());
+    }
+
+    @Test
+    public void deploysJobsConcurrently() throws Exception {
+        int jobs = 6;
+        j.jenkins.setNumExecutors(jobs);
+        List<FreeStyleProject> projects = new ArrayList<FreeStyleProject>();
+        List<Future<FreeStyleBuild>> builds = new ArrayList<Future<FreeStyleBuild>>();
+        for (int i = 0; i < jobs; i++) {
+            projects.add(createProject(APP + i));
+        }
+        for (FreeStyleProject project : projects) {
+            builds.add(project.scheduleBuild2(0));
+        }
+
+        for (int i = 0; i < jobs; i++) {
+            j.assertBuildStatusSuccess(builds.get(i));
+            SubmissionRecord deployed = SubmissionHistory.forJob(projects.get(i).getRootDir()).getLatestLive(APP + i);
+            assertEquals("RUNNING", master.getDriverState(deployed.getSubmissionId()));
+        }
+        assertEquals(jobs, master.getActiveDrivers());
+    }
+
+    private FreeStyleProject createProject(String mainClass) throws IOException {
+        FreeStyleProject project = j.createFreeStyleProject();
+        project.getPublishersList().add(new SparkDeployPublisher("spark://127.0.0.1:7077", master.getUrl(), "2.10",
+                "hdfs://namenode/spark/apps/app-${BUILD_NUMBER}.jar", mainClass, "--build ${BUILD_NUMBER}",
+                "spark.executor.memory=1G", true, true, false));
+        return project;
+    }
+}
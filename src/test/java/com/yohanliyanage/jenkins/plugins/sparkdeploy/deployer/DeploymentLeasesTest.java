@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2015 Yohan Liyanage
+ *
+ * Release under the MIT License (MIT). See LICENSE file for details.
+ */
+
+package com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the {@link DeploymentLeases}. The leases are shared by the JVM, so each test uses applications of its own.
+ *
+ * @author Yohan Liyanage
+ */
+public class DeploymentLeasesTest {
+
+    private static final String MASTER = "http://spark-master:6066";
+    private static final AtomicInteger APPS = new AtomicInteger();
+
+    private final DeploymentLeases leases = DeploymentLeases.getInstance();
+    private String app;
+
+    @Before
+    public void setUp() {
+        app = "com.example.spark.Lease" + APPS.incrementAndGet();
+    }
+
+    @Test
+    public void timesOutWhileHeld() throws InterruptedException {
+        DeploymentLeases.Lease held = leases.acquire(MASTER, app, "build #1", 1, 1000, false);
+        try {
+            DeploymentLeases.Lease waiting = leases.acquire(MASTER, app, "build #2", 2, 100, false);
+
+            assertTrue(held.isAcquired());
+            assertFalse(waiting.isAcquired());
+            assertEquals(DeploymentLeases.Outcome.TIMED_OUT, waiting.getOutcome());
+            assertEquals("build #1", waiting.getHolder());
+        } finally {
+            held.release();
+        }
+
+        DeploymentLeases.Lease next = leases.acquire(MASTER, app, "build #3", 3, 100, false);
+        assertTrue(next.isAcquired());
+        next.release();
+    }
+
+    @Test
+    public void doesNotSerializeOtherApplications() throws InterruptedException {
+        DeploymentLeases.Lease held = leases.acquire(MASTER, app, "build #1", 1, 1000, false);
+        try {
+            DeploymentLeases.Lease other = leases.acquire(MASTER, app + "Other", "build #2", 2, 0, false);
+            assertTrue(other.isAcquired());
+            other.release();
+
+            DeploymentLeases.Lease otherMaster = leases.acquire("http://other-master:6066", app, "build #3", 3, 0,
+                    false);
+            assertTrue(otherMaster.isAcquired());
+            otherMaster.release();
+        } finally {
+            held.release();
+        }
+    }
+
+    @Test
+    public void matchesMastersHoweverWritten() throws InterruptedException {
+        DeploymentLeases.Lease held = leases.acquire("http://master-a:6066,master-b:6066", app, "build #1", 1, 1000,
+                false);
+        try {
+            DeploymentLeases.Lease same = leases.acquire("http://Master-B:6066/,http://master-a:6066/", app,
+                    "build #2", 2, 100, false);
+            assertEquals(DeploymentLeases.Outcome.TIMED_OUT, same.getOutcome());
+        } finally {
+            held.release();
+        }
+    }
+
+    @Test
+    public void handsLeaseToWaiterOnRelease() throws Exception {
+        DeploymentLeases.Lease held = leases.acquire(MASTER, app, "build #1", 1, 1000, false);
+        final CountDownLatch waiting = new CountDownLatch(1);
+        final AtomicReference<DeploymentLeases.Lease> acquired = new AtomicReference<DeploymentLeases.Lease>();
+        Thread waiter = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    waiting.countDown();
+                    acquired.set(leases.acquire(MASTER, app, "build #2", 2, 10000, false));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        waiter.start();
+        waiting.await();
+        Thread.sleep(200);
+        held.release();
+        waiter.join(10000);
+
+        assertEquals(DeploymentLeases.Outcome.ACQUIRED, acquired.get().getOutcome());
+        acquired.get().release();
+    }
+
+    @Test
+    public void grantsAsynchronousWaiterOnRelease() throws Exception {
+        DeploymentLeases.Lease held = leases.acquire(MASTER, app, "build #1", 1, 1000, false);
+        DeploymentFuture<DeploymentLeases.Lease> waiting = leases.acquireAsync(MASTER, app, "build #2", 2, 10000,
+                false);
+        assertFalse(waiting.isDone());
+
+        held.release();
+
+        DeploymentLeases.Lease lease = waiting.get(10, TimeUnit.SECONDS);
+        assertTrue(lease.isAcquired());
+        lease.release();
+    }
+
+    @Test
+    public void timesOutAsynchronousWaiter() throws Exception {
+        DeploymentLeases.Lease held = leases.acquire(MASTER, app, "build #1", 1, 1000, false);
+        try {
+            DeploymentLeases.Lease lease = leases.acquireAsync(MASTER, app, "build #2", 2, 100, false)
+                    .get(10, TimeUnit.SECONDS);
+            assertEquals(DeploymentLeases.Outcome.TIMED_OUT, lease.getOutcome());
+        } finally {
+            held.release();
+        }
+    }
+
+    @Test
+    public void coalescesOlderWaiters() throws Exception {
+        DeploymentLeases.Lease held = leases.acquire(MASTER, app, "build #1", 1, 1000, true);
+        DeploymentFuture<DeploymentLeases.Lease> older = leases.acquireAsync(MASTER, app, "build #2", 2, 10000, true);
+        DeploymentFuture<DeploymentLeases.Lease> newer = leases.acquireAsync(MASTER, app, "build #3", 3, 10000, true);
+
+        held.release();
+
+        DeploymentLeases.Lease newest = newer.get(10, TimeUnit.SECONDS);
+        assertEquals(DeploymentLeases.Outcome.ACQUIRED, newest.getOutcome());
+        DeploymentLeases.Lease superseded = older.get(10, TimeUnit.SECONDS);
+        assertEquals(DeploymentLeases.Outcome.COALESCED, superseded.getOutcome());
+        assertEquals("build #3", superseded.getHolder());
+        newest.release();
+    }
+
+    @Test
+    public void withdrawsCancelledWaiter() throws Exception {
+        DeploymentLeases.Lease held = leases.acquire(MASTER, app, "build #1", 1, 1000, false);
+        DeploymentFuture<DeploymentLeases.Lease> waiting = leases.acquireAsync(MASTER, app, "build #2", 2, 10000,
+                false);
+
+        assertEquals(1, getWaiting());
+        assertTrue(waiting.cancel(true));
+        assertEquals(0, getWaiting());
+        held.release();
+
+        DeploymentLeases.Lease next = leases.acquire(MASTER, app, "build #3", 3, 0, false);
+        assertTrue(next.isAcquired());
+        next.release();
+    }
+
+    @Test
+    public void takesLeasesOfAllMasters() throws InterruptedException {
+        DeploymentLeases.Lease held = leases.acquire("http://master-b:6066", app, "build #1", 1, 1000, false);
+        try {
+            DeploymentLeases.Lease all = leases.acquireAll(Arrays.asList("http://master-a:6066",
+                    "http://master-b:6066"), app, "build #2", 2, 100, false);
+            assertEquals(DeploymentLeases.Outcome.TIMED_OUT, all.getOutcome());
+
+            // The lease of the first master was given back
+            DeploymentLeases.Lease first = leases.acquire("http://master-a:6066", app, "build #3", 3, 0, false);
+            assertTrue(first.isAcquired());
+            first.release();
+        } finally {
+            held.release();
+        }
+    }
+
+    private int getWaiting() {
+        for (DeploymentLeases.LeaseInfo info : leases.getLeases()) {
+            if (info.getApp().equals(app)) {
+                return info.getWaiting();
+            }
+        }
+        return 0;
+    }
+}
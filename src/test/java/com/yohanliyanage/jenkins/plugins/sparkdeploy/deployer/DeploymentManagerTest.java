@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2015 Yohan Liyanage
+ *
+ * Release under the MIT License (MIT). See LICENSE file for details.
+ */
+
+package com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests the retries and the circuit breaker of the {@link DeploymentManager} against a {@link FakeSparkMaster}. Each
+ * test has a master of its own, on its own port, so circuits do not carry over between tests.
+ *
+ * @author Yohan Liyanage
+ */
+public class DeploymentManagerTest {
+
+    static final PrintStream QUIET = new PrintStream(new OutputStream() {
+        @Override
+        public void write(int b) {
+            // Deployment logs are not of interest
+        }
+    });
+
+    private FakeSparkMaster master;
+    private DeploymentManager deployer;
+
+    @Before
+    public void setUp() throws IOException {
+        master = new FakeSparkMaster(4).startup(0, 0);
+        deployer = new DeploymentManager(master.getUrl(), QUIET, false);
+    }
+
+    @After
+    public void tearDown() {
+        master.stop();
+    }
+
+    @Test
+    public void submitsAndKills() throws IOException {
+        String submissionId = deployer.submit(request());
+
+        assertEquals("RUNNING", deployer.getDriverState(submissionId));
+        assertTrue(deployer.kill(submissionId));
+        assertEquals("KILLED", master.getDriverState(submissionId));
+    }
+
+    @Test
+    public void retriesStatusAfterServerErrors() throws IOException {
+        String submissionId = deployer.submit(request());
+        master.failNext(2);
+
+        assertEquals("RUNNING", deployer.getDriverState(submissionId));
+        assertEquals(4, master.getCalls());
+    }
+
+    @Test
+    public void retriesAsynchronousCallsAfterServerErrors() throws Exception {
+        String submissionId = deployer.submit(request());
+        master.failNext(2);
+
+        assertEquals("RUNNING", deployer.getDriverStateAsync(submissionId).await());
+        assertEquals(4, master.getCalls());
+    }
+
+    @Test
+    public void pollsStatusOnce() throws IOException {
+        String submissionId = deployer.submit(request());
+        master.failNext(1);
+
+        try {
+            deployer.pollDriverState(submissionId);
+            fail("Server error was not reported");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("503"));
+        }
+        assertEquals(2, master.getCalls());
+    }
+
+    @Test
+    public void doesNotRetrySubmit() throws IOException {
+        master.failNext(1);
+
+        try {
+            deployer.submit(request());
+            fail("Server error was not reported");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("503"));
+        }
+        assertEquals(1, master.getCalls());
+        assertEquals(0, master.getActiveDrivers());
+    }
+
+    @Test
+    public void doesNotRetryRejectedCalls() throws IOException {
+        try {
+            deployer.getDriverState("driver-unknown");
+            fail("Unknown submission was not reported");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("Status check failed"));
+        }
+        assertEquals(1, master.getCalls());
+    }
+
+    @Test
+    public void opensCircuitAfterConsecutiveFailures() throws IOException {
+        master.errorRate(1);
+
+        try {
+            deployer.getDriverState("driver-1");
+            fail("Server error was not reported");
+        } catch (RuntimeException e) {
+            // Retries exhausted
+        }
+        assertEquals(4, master.getCalls());
+
+        try {
+            deployer.getDriverState("driver-1");
+            fail("Open circuit was not reported");
+        } catch (CircuitBreaker.CircuitOpenException e) {
+            assertEquals(master.getUrl(), e.getMaster());
+        }
+        assertEquals(CircuitBreaker.FAILURE_THRESHOLD, master.getCalls());
+        assertEquals(CircuitBreaker.State.OPEN, CircuitBreaker.getInstance().getState(master.getUrl()));
+
+        try {
+            deployer.kill("driver-1");
+            fail("Open circuit was not reported");
+        } catch (CircuitBreaker.CircuitOpenException e) {
+            // Fails fast
+        }
+        assertEquals(CircuitBreaker.FAILURE_THRESHOLD, master.getCalls());
+    }
+
+    static DeploymentRequest request() {
+        return new DeploymentRequestBuilder()
+                .masterUrl("spark://127.0.0.1:7077")
+                .appResource("hdfs://namenode/spark/apps/test-1.0.0.jar")
+                .mainClass("com.example.spark.Test")
+                .appArgs("--batch 10")
+                .sparkProperties("spark.executor.memory=1G")
+                .build(QUIET);
+    }
+}
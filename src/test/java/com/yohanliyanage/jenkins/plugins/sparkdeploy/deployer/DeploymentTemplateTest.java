@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2015 Yohan Liyanage
+ *
+ * Release under the MIT License (MIT). See LICENSE file for details.
+ */
+
+package com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the parsing of the configuration by {@link DeploymentTemplate} and the requests it renders.
+ *
+ * @author Yohan Liyanage
+ */
+public class DeploymentTemplateTest {
+
+    private static final String RESOURCE = "hdfs://namenode/spark/apps/app-${VERSION}.jar";
+
+    @Test
+    public void parsesArguments() {
+        assertEquals(Arrays.asList("--name", "My App", "it's", "a \"b\" \\", "x y", "${BUILD_ID}"),
+                DeploymentTemplate.parseArgs("--name \"My App\"  it\\'s 'a \"b\" \\' x\\ y ${BUILD_ID}"));
+        assertEquals(Collections.<String>emptyList(), DeploymentTemplate.parseArgs(null));
+        assertEquals(Collections.<String>emptyList(), DeploymentTemplate.parseArgs("  "));
+        assertEquals(Collections.singletonList(""), DeploymentTemplate.parseArgs("\"\""));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnterminatedQuote() {
+        DeploymentTemplate.parseArgs("--name \"My App");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsEmptyPlaceholder() {
+        DeploymentTemplate.parseArgs("--date ${}");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnterminatedPlaceholder() {
+        DeploymentTemplate.parseArgs("--date ${BUILD_ID");
+    }
+
+    @Test
+    public void parsesProperties() {
+        Map<String, String> expected = new LinkedHashMap<String, String>();
+        expected.put("spark.executor.memory", "2G");
+        expected.put("spark.driver.extraJavaOptions", "-Da=1,2 -Db=x=y");
+        expected.put("spark.app.tags", "a,b");
+        expected.put("spark.quoted", "\"q\"");
+
+        assertEquals(expected, DeploymentTemplate.parseProperties(" spark.executor.memory = 2G ,"
+                + "spark.driver.extraJavaOptions=\"-Da=1,2 -Db=x=y\",spark.app.tags=a\\,b,,spark.quoted=\\\"q\\\""));
+        assertTrue(DeploymentTemplate.parseProperties(null).isEmpty());
+        assertTrue(DeploymentTemplate.parseProperties(" ").isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsPropertyWithoutValue() {
+        DeploymentTemplate.parseProperties("spark.executor.memory=2G,spark.cores.max");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsPropertyWithoutName() {
+        DeploymentTemplate.parseProperties("=2G");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnterminatedPropertyQuote() {
+        DeploymentTemplate.parseProperties("spark.driver.extraJavaOptions=\"-Da=1");
+    }
+
+    @Test
+    public void rendersPlaceholders() throws IOException {
+        DeploymentTemplate template = DeploymentTemplate.compile("spark://master:7077", "2.10", RESOURCE,
+                "com.example.spark.App", "--build ${BUILD_NUMBER} --missing ${MISSING} \"quote\\\"d\"",
+                "spark.executor.memory=2G,spark.app.name=app-${BUILD_NUMBER}");
+
+        Map<String, String> variables = new HashMap<String, String>();
+        variables.put("BUILD_NUMBER", "42");
+        variables.put("VERSION", "1.0.0");
+        DeploymentRequest request = template.render(variables, null);
+
+        assertArrayEquals(new String[] {"--build", "42", "--missing", "${MISSING}", "quote\"d"},
+                request.getAppArgs());
+        assertEquals("hdfs://namenode/spark/apps/app-1.0.0.jar", request.getAppResource());
+        assertEquals("hdfs://namenode/spark/apps/app-1.0.0.jar", request.getSparkProperties().get("spark.jars"));
+        assertEquals("app-42", request.getSparkProperties().get("spark.app.name"));
+        assertEquals("spark://master:7077", request.getSparkProperties().get("spark.master"));
+        assertEquals("2G", request.getSparkProperties().get("spark.executor.memory"));
+        assertEquals("2.10", request.getEnvironmentVariables().get("SPARK_SCALA_VERSION"));
+        assertEquals(1, template.getWarnings().size());
+        assertTrue(template.getWarnings().get(0).contains("spark.app.name"));
+        assertPayloadMatches(request);
+    }
+
+    @Test
+    public void rendersOverrides() throws IOException {
+        DeploymentTemplate template = DeploymentTemplate.compile("spark://master:7077", null, RESOURCE,
+                "com.example.spark.App", "", "spark.jars=\"" + RESOURCE + ",hdfs://namenode/lib/dep.jar\"");
+
+        DeploymentRequest request = template.render(Collections.singletonMap("VERSION", "1.0.0"),
+                "http://staging/app-1.0.0.jar", "spark://other:7077");
+
+        assertEquals("http://staging/app-1.0.0.jar", request.getAppResource());
+        assertEquals("http://staging/app-1.0.0.jar,hdfs://namenode/lib/dep.jar",
+                request.getSparkProperties().get("spark.jars"));
+        assertEquals("spark://other:7077", request.getSparkProperties().get("spark.master"));
+        assertEquals(0, request.getAppArgs().length);
+        assertPayloadMatches(request);
+    }
+
+    @Test
+    public void rendersEachBuildIndependently() throws IOException {
+        DeploymentTemplate template = DeploymentTemplate.compile("spark://master:7077", null, RESOURCE,
+                "com.example.spark.App", "${BUILD_NUMBER}", "");
+
+        DeploymentRequest first = template.render(Collections.singletonMap("BUILD_NUMBER", "1"), null);
+        DeploymentRequest second = template.render(Collections.singletonMap("BUILD_NUMBER", "2"), null);
+        DeploymentRequest plain = template.render();
+
+        assertArrayEquals(new String[] {"1"}, first.getAppArgs());
+        assertArrayEquals(new String[] {"2"}, second.getAppArgs());
+        assertArrayEquals(new String[] {"${BUILD_NUMBER}"}, plain.getAppArgs());
+        assertEquals(RESOURCE, plain.getAppResource());
+        assertPayloadMatches(first);
+        assertPayloadMatches(second);
+        assertPayloadMatches(plain);
+    }
+
+    /**
+     * Checks that the payload filled in from the skeleton is the JSON the request serializes to.
+     */
+    private static void assertPayloadMatches(DeploymentRequest request) throws IOException {
+        DeploymentRequest copy = new DeploymentRequest(request.getAppArgs(), request.getAppResource(),
+                request.getMainClass(), request.getEnvironmentVariables(), request.getSparkProperties(), null);
+        ObjectMapper mapper = new ObjectMapper();
+        assertEquals(mapper.readTree(SparkJson.REQUEST_WRITER.writeValueAsString(copy)),
+                mapper.readTree(request.getPayload()));
+    }
+}
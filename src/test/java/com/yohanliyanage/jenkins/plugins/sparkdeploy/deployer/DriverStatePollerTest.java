@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2015 Yohan Liyanage
+ *
+ * Release under the MIT License (MIT). See LICENSE file for details.
+ */
+
+package com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests the {@link DriverStatePoller} against a {@link FakeSparkMaster}.
+ *
+ * @author Yohan Liyanage
+ */
+public class DriverStatePollerTest {
+
+    private FakeSparkMaster master;
+    private DeploymentManager deployer;
+
+    @Before
+    public void setUp() throws IOException {
+        master = new FakeSparkMaster(4);
+        deployer = new DeploymentManager(master.getUrl(), DeploymentManagerTest.QUIET, false);
+    }
+
+    @After
+    public void tearDown() {
+        master.stop();
+    }
+
+    @Test(timeout = 30000)
+    public void waitsUntilDriverRuns() throws Exception {
+        master.startup(1500, 0);
+        String submissionId = deployer.submit(DeploymentManagerTest.request());
+
+        String state = DriverStatePoller.getInstance().watch(deployer, submissionId,
+                DriverStatePoller.STARTING_STATES, 5).await();
+
+        assertEquals("RUNNING", state);
+    }
+
+    @Test(timeout = 30000)
+    public void reportsFailedDriver() throws Exception {
+        master.startup(0, 0).driverFailureRate(1);
+        String submissionId = deployer.submit(DeploymentManagerTest.request());
+
+        String state = DriverStatePoller.getInstance().watch(deployer, submissionId,
+                DriverStatePoller.STARTING_STATES, 5).await();
+
+        assertEquals("FAILED", state);
+    }
+
+    @Test(timeout = 30000)
+    public void givesUpOnPendingDriver() throws Exception {
+        master.startup(TimeUnit.MINUTES.toMillis(10), 0);
+        String submissionId = deployer.submit(DeploymentManagerTest.request());
+
+        String state = DriverStatePoller.getInstance().watch(deployer, submissionId,
+                DriverStatePoller.STARTING_STATES, 1).await();
+
+        assertEquals(DriverStatePoller.ATTEMPTS_EXCEEDED_NO_RESPONSE, state);
+    }
+
+    @Test(timeout = 30000)
+    public void absorbsFailedPolls() throws Exception {
+        master.startup(0, 0);
+        String submissionId = deployer.submit(DeploymentManagerTest.request());
+        master.failNext(1);
+
+        String state = DriverStatePoller.getInstance().watch(deployer, submissionId,
+                DriverStatePoller.STARTING_STATES, 5).await();
+
+        assertEquals("RUNNING", state);
+        // Submit, the failed poll and the poll on a later tick; failed polls are not retried on the polling thread
+        assertEquals(3, master.getCalls());
+    }
+
+    @Test(timeout = 30000)
+    public void failsWatchOfUnknownSubmission() throws Exception {
+        DeploymentFuture<String> watching = DriverStatePoller.getInstance().watch(deployer, "driver-unknown",
+                DriverStatePoller.STARTING_STATES, 5);
+
+        try {
+            watching.get();
+            fail("Unknown submission was not reported");
+        } catch (ExecutionException e) {
+            assertTrue(String.valueOf(e.getCause()), e.getCause().getMessage().contains("Status check failed"));
+        }
+        assertEquals(1, master.getCalls());
+    }
+
+    @Test(timeout = 30000)
+    public void stopsWatchingCancelledSubmission() throws Exception {
+        master.startup(TimeUnit.MINUTES.toMillis(10), 0);
+        String submissionId = deployer.submit(DeploymentManagerTest.request());
+        DeploymentFuture<String> watching = DriverStatePoller.getInstance().watch(deployer, submissionId,
+                DriverStatePoller.STARTING_STATES, 100);
+
+        Thread.sleep(1000);
+        assertTrue(watching.cancel(true));
+        long calls = master.getCalls();
+        Thread.sleep(3000);
+
+        assertEquals(calls, master.getCalls());
+    }
+}
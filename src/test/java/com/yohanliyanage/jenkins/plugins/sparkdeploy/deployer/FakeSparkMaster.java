@@ -0,0 +1,352 @@
+/*
+ * Copyright (C) 2015 Yohan Liyanage
+ *
+ * Release under the MIT License (MIT). See LICENSE file for details.
+ */
+
+package com.yohanliyanage.jenkins.plugins.sparkdeploy.deployer;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Embeddable stand-in for the REST submission API of a Spark standalone master, for tests and load tests of the
+ * deployment client that must not touch a real cluster.
+ * <p>
+ * Unlike the {@link StubSparkRestServer}, submissions have state: each driver is SUBMITTED, then RUNNING (or FAILED)
+ * after a configurable startup time, and KILLED once killed. Every call can be delayed, fail with an HTTP 503 or be
+ * rejected with an unsuccessful response, at configurable rates, and a given number of calls can be made to fail for
+ * deterministic tests. Settings may be changed while the server runs.
+ *
+ * @author Yohan Liyanage
+ */
+public class FakeSparkMaster {
+
+    private static final String SERVER_VERSION = "1.5.1";
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ConcurrentMap<String, Driver> drivers = new ConcurrentHashMap<String, Driver>();
+    private final AtomicLong nextDriver = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicInteger failures = new AtomicInteger();
+
+    private volatile long latencyMillis;
+    private volatile long latencyJitterMillis;
+    private volatile double errorRate;
+    private volatile double rejectRate;
+    private volatile long startupMillis = 1000;
+    private volatile long startupJitterMillis;
+    private volatile double driverFailureRate;
+
+    /**
+     * Starts the server on an ephemeral port.
+     *
+     * @param threads number of threads serving calls, which bounds the calls the master handles at a time
+     * @throws IOException if the server cannot be started
+     */
+    public FakeSparkMaster(int threads) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        executor = Executors.newFixedThreadPool(threads, new DaemonThreadFactory("fake-spark-master"));
+        server.setExecutor(executor);
+        server.createContext("/v1/submissions/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                int current = inFlight.incrementAndGet();
+                try {
+                    updatePeak(current);
+                    calls.incrementAndGet();
+                    handleCall(exchange);
+                } finally {
+                    inFlight.decrementAndGet();
+                    exchange.close();
+                }
+            }
+        });
+        server.start();
+    }
+
+    /**
+     * Sets the time every call takes.
+     *
+     * @param millis fixed latency
+     * @param jitterMillis maximum random latency added to the fixed latency
+     * @return this
+     */
+    public FakeSparkMaster latency(long millis, long jitterMillis) {
+        this.latencyMillis = millis;
+        this.latencyJitterMillis = jitterMillis;
+        return this;
+    }
+
+    /**
+     * Sets the share of calls that fail with an HTTP 503.
+     *
+     * @param errorRate rate between 0 and 1
+     * @return this
+     */
+    public FakeSparkMaster errorRate(double errorRate) {
+        this.errorRate = errorRate;
+        return this;
+    }
+
+    /**
+     * Makes the next calls fail with an HTTP 503, whatever the error rate.
+     *
+     * @param calls number of calls to fail
+     * @return this
+     */
+    public FakeSparkMaster failNext(int calls) {
+        failures.set(calls);
+        return this;
+    }
+
+    /**
+     * Sets the share of calls that are answered with an unsuccessful response.
+     *
+     * @param rejectRate rate between 0 and 1
+     * @return this
+     */
+    public FakeSparkMaster rejectRate(double rejectRate) {
+        this.rejectRate = rejectRate;
+        return this;
+    }
+
+    /**
+     * Sets the time a driver takes from submission until it runs.
+     *
+     * @param millis fixed startup time
+     * @param jitterMillis maximum random time added to the fixed startup time
+     * @return this
+     */
+    public FakeSparkMaster startup(long millis, long jitterMillis) {
+        this.startupMillis = millis;
+        this.startupJitterMillis = jitterMillis;
+        return this;
+    }
+
+    /**
+     * Sets the share of drivers that fail instead of running.
+     *
+     * @param driverFailureRate rate between 0 and 1
+     * @return this
+     */
+    public FakeSparkMaster driverFailureRate(double driverFailureRate) {
+        this.driverFailureRate = driverFailureRate;
+        return this;
+    }
+
+    /**
+     * Returns the REST URL of this master.
+     *
+     * @return URL
+     */
+    public String getUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /**
+     * Returns the number of calls served so far.
+     *
+     * @return calls
+     */
+    public long getCalls() {
+        return calls.get();
+    }
+
+    /**
+     * Returns the largest number of calls served at the same time.
+     *
+     * @return calls
+     */
+    public int getPeakInFlight() {
+        return peakInFlight.get();
+    }
+
+    /**
+     * Returns the number of drivers that are submitted or running.
+     *
+     * @return active drivers
+     */
+    public int getActiveDrivers() {
+        int active = 0;
+        long now = System.currentTimeMillis();
+        for (Driver driver : drivers.values()) {
+            String state = driver.getState(now);
+            active += "SUBMITTED".equals(state) || "RUNNING".equals(state) ? 1 : 0;
+        }
+        return active;
+    }
+
+    /**
+     * Returns the current state of a driver.
+     *
+     * @param submissionId submission ID
+     * @return state, or null if no such driver was submitted
+     */
+    public String getDriverState(String submissionId) {
+        Driver driver = drivers.get(submissionId);
+        return driver == null ? null : driver.getState(System.currentTimeMillis());
+    }
+
+    /**
+     * Stops the server.
+     */
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handleCall(HttpExchange exchange) throws IOException {
+        drain(exchange.getRequestBody());
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long delay = latencyMillis + (latencyJitterMillis > 0 ? random.nextLong(latencyJitterMillis + 1) : 0);
+        if (delay > 0) {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        if (takeFailure() || random.nextDouble() < errorRate) {
+            exchange.sendResponseHeaders(503, -1);
+            return;
+        }
+
+        String path = exchange.getRequestURI().getPath();
+        boolean rejected = random.nextDouble() < rejectRate;
+        String response;
+        if (path.startsWith("/v1/submissions/create")) {
+            response = create(rejected);
+        } else if (path.startsWith("/v1/submissions/kill/")) {
+            response = kill(path.substring("/v1/submissions/kill/".length()), rejected);
+        } else if (path.startsWith("/v1/submissions/status/")) {
+            response = status(path.substring("/v1/submissions/status/".length()), rejected);
+        } else {
+            exchange.sendResponseHeaders(404, -1);
+            return;
+        }
+
+        byte[] bytes = response.getBytes("UTF-8");
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(bytes);
+        out.close();
+    }
+
+    private String create(boolean rejected) {
+        if (rejected) {
+            return response("CreateSubmissionResponse", null, false, "Submission rejected by fake master", null);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String submissionId = String.format("driver-%014d-%04d", System.currentTimeMillis() / 1000,
+                nextDriver.incrementAndGet());
+        long runningAt = System.currentTimeMillis() + startupMillis
+                + (startupJitterMillis > 0 ? random.nextLong(startupJitterMillis + 1) : 0);
+        drivers.put(submissionId, new Driver(runningAt, random.nextDouble() < driverFailureRate));
+        return response("CreateSubmissionResponse", submissionId, true,
+                "Driver successfully submitted as " + submissionId, null);
+    }
+
+    private String kill(String submissionId, boolean rejected) {
+        Driver driver = drivers.get(submissionId);
+        if (rejected || driver == null) {
+            return response("KillSubmissionResponse", submissionId, false,
+                    "Driver " + submissionId + " has already finished or does not exist", null);
+        }
+        driver.killed = true;
+        return response("KillSubmissionResponse", submissionId, true,
+                "Kill request for " + submissionId + " submitted", null);
+    }
+
+    private String status(String submissionId, boolean rejected) {
+        Driver driver = drivers.get(submissionId);
+        if (rejected || driver == null) {
+            return response("SubmissionStatusResponse", submissionId, false,
+                    "Driver " + submissionId + " not found", null);
+        }
+        return response("SubmissionStatusResponse", submissionId, true, null,
+                driver.getState(System.currentTimeMillis()));
+    }
+
+    private static String response(String action, String submissionId, boolean success, String message,
+                                   String driverState) {
+        StringBuilder json = new StringBuilder("{\n  \"action\" : \"").append(action).append("\",\n");
+        if (driverState != null) {
+            json.append("  \"driverState\" : \"").append(driverState).append("\",\n");
+        }
+        if (message != null) {
+            json.append("  \"message\" : \"").append(message).append("\",\n");
+        }
+        json.append("  \"serverSparkVersion\" : \"").append(SERVER_VERSION).append("\",\n");
+        if (submissionId != null) {
+            json.append("  \"submissionId\" : \"").append(submissionId).append("\",\n");
+        }
+        return json.append("  \"success\" : ").append(success).append("\n}").toString();
+    }
+
+    private boolean takeFailure() {
+        int remaining;
+        do {
+            remaining = failures.get();
+        } while (remaining > 0 && ! failures.compareAndSet(remaining, remaining - 1));
+        return remaining > 0;
+    }
+
+    private void updatePeak(int current) {
+        int peak;
+        do {
+            peak = peakInFlight.get();
+        } while (current > peak && ! peakInFlight.compareAndSet(peak, current));
+    }
+
+    private static void drain(InputStream in) throws IOException {
+        byte[] buffer = new byte[4096];
+        while (in.read(buffer) != -1) {
+            // Discard request body
+        }
+    }
+
+    /**
+     * A submitted driver, which runs from a given time unless it fails or is killed.
+     */
+    private static final class Driver {
+
+        private final long runningAt;
+        private final boolean fails;
+        private volatile boolean killed;
+
+        Driver(long runningAt, boolean fails) {
+            this.runningAt = runningAt;
+            this.fails = fails;
+        }
+
+        String getState(long now) {
+            if (killed) {
+                return "KILLED";
+            }
+            if (now < runningAt) {
+                return "SUBMITTED";
+            }
+            return fails ? "FAILED" : "RUNNING";
+        }
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright (C) 2015 Yohan Liyanage
+ *
+ * Release under the MIT License (MIT). See LICENSE file for details.
+ */
+
+package com.yohanliyanage.jenkins.plugins.sparkdeploy.history;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that the {@link SubmissionHistory} survives reloading, torn lines and compaction.
+ *
+ * @author Yohan Liyanage
+ */
+public class SubmissionHistoryTest {
+
+    private static final String APP = "com.example.spark.App";
+    private static final String MASTER = "http://spark-master:6066";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File logFile;
+
+    @Before
+    public void setUp() throws IOException {
+        logFile = new File(folder.newFolder(), SubmissionHistory.LOG_FILE);
+    }
+
+    @Test
+    public void reloadsLatestLiveSubmissions() throws IOException {
+        SubmissionHistory history = new SubmissionHistory(logFile);
+        history.record(record(1, "driver-1", APP, 1000));
+        history.record(record(2, "driver-2", APP, 2000));
+        history.record(record(2, "driver-3", "com.example.spark.Other", 2000));
+        history.updateDriverState("driver-2", "RUNNING");
+
+        SubmissionHistory reloaded = new SubmissionHistory(logFile);
+
+        assertEquals("driver-2", reloaded.getLatestLive(APP).getSubmissionId());
+        assertEquals("RUNNING", reloaded.getLatestLive(APP).getDriverState());
+        assertEquals("driver-3", reloaded.getLatestLive("com.example.spark.Other").getSubmissionId());
+        assertEquals(3, reloaded.getLive().size());
+    }
+
+    @Test
+    public void fallsBackToOlderLiveSubmission() throws IOException {
+        SubmissionHistory history = new SubmissionHistory(logFile);
+        history.record(record(1, "driver-1", APP, 1000));
+        history.record(record(2, "driver-2", APP, 2000));
+
+        history.updateDriverState("driver-2", "FAILED");
+        assertEquals("driver-1", history.getLatestLive(APP).getSubmissionId());
+
+        history.updateDriverState("driver-1", "KILLED");
+        assertNull(history.getLatestLive(APP));
+        assertNull(history.updateDriverState("driver-1", "RUNNING"));
+
+        SubmissionHistory reloaded = new SubmissionHistory(logFile);
+        assertNull(reloaded.getLatestLive(APP));
+        assertTrue(reloaded.getLive().isEmpty());
+    }
+
+    @Test
+    public void keepsSupervisedRequest() throws IOException {
+        String request = "{\n\t\"appArgs\" : [ \"a\\\\b\" ]\n}";
+        SubmissionHistory history = new SubmissionHistory(logFile);
+        history.record(new SubmissionRecord(1, "driver-1", APP, MASTER, "SUBMITTED", 1000, 1000, request, "abc"));
+        history.updateDriverState("driver-1", "RUNNING");
+
+        SubmissionRecord reloaded = new SubmissionHistory(logFile).getLatestLive(APP);
+
+        assertTrue(reloaded.isSupervised());
+        assertEquals(request, reloaded.getRequest());
+        assertEquals("abc", reloaded.getFingerprint());
+        assertEquals("RUNNING", reloaded.getDriverState());
+        assertEquals(MASTER, reloaded.getMaster());
+    }
+
+    @Test
+    public void dropsTornLine() throws IOException {
+        SubmissionHistory history = new SubmissionHistory(logFile);
+        history.record(record(1, "driver-1", APP, 1000));
+        long complete = logFile.length();
+        append(record(2, "driver-2", APP, 2000).toLine().substring(0, 12));
+
+        SubmissionHistory reloaded = new SubmissionHistory(logFile);
+
+        assertEquals(complete, logFile.length());
+        assertEquals("driver-1", reloaded.getLatestLive(APP).getSubmissionId());
+
+        reloaded.record(record(3, "driver-3", APP, 3000));
+        SubmissionHistory again = new SubmissionHistory(logFile);
+        assertEquals("driver-3", again.getLatestLive(APP).getSubmissionId());
+        assertEquals(2, again.getLive().size());
+        assertEquals(2, countLines());
+    }
+
+    @Test
+    public void ignoresMalformedLines() throws IOException {
+        append("not a record\n");
+        SubmissionHistory history = new SubmissionHistory(logFile);
+        history.record(record(1, "driver-1", APP, 1000));
+        append("driver-unknown\tKILLED\t2000\n");
+
+        SubmissionHistory reloaded = new SubmissionHistory(logFile);
+
+        assertEquals("driver-1", reloaded.getLatestLive(APP).getSubmissionId());
+        assertEquals(1, reloaded.getLive().size());
+    }
+
+    @Test
+    public void compactsDeadLines() throws IOException {
+        SubmissionHistory history = new SubmissionHistory(logFile);
+        history.record(new SubmissionRecord(1, "driver-1", APP, MASTER, "SUBMITTED", 1000, 1000, "{}"));
+        history.updateDriverState("driver-1", "RUNNING");
+        for (int i = 2; i <= 50; i++) {
+            history.record(record(i, "driver-" + i, APP, i * 1000));
+            history.updateDriverState("driver-" + i, "KILLED");
+        }
+        assertEquals(100, countLines());
+
+        history.record(record(51, "driver-51", APP, 51000));
+        history.updateDriverState("driver-51", "KILLED");
+
+        // 101 of the 102 lines were dead, so the log was rewritten with the only live submission
+        assertEquals(1, countLines());
+        SubmissionHistory reloaded = new SubmissionHistory(logFile);
+        List<SubmissionRecord> live = reloaded.getLive();
+        assertEquals(1, live.size());
+        assertEquals("driver-1", live.get(0).getSubmissionId());
+        assertEquals("RUNNING", live.get(0).getDriverState());
+        assertEquals("{}", live.get(0).getRequest());
+
+        history.record(record(52, "driver-52", APP, 52000));
+        assertEquals(2, countLines());
+        assertEquals("driver-52", new SubmissionHistory(logFile).getLatestLive(APP).getSubmissionId());
+    }
+
+    @Test
+    public void reloadsChangedLog() throws IOException {
+        File root = logFile.getParentFile();
+        SubmissionHistory history = SubmissionHistory.forJob(root);
+        history.record(record(1, "driver-1", APP, 1000));
+        assertSame(history, SubmissionHistory.forJob(root));
+
+        append(record(2, "driver-2", APP, 2000).toLine() + "\n");
+
+        assertEquals("driver-2", SubmissionHistory.forJob(root).getLatestLive(APP).getSubmissionId());
+    }
+
+    private static SubmissionRecord record(int build, String submissionId, String app, long submittedAt) {
+        return new SubmissionRecord(build, submissionId, app, MASTER, "SUBMITTED", submittedAt, submittedAt);
+    }
+
+    private void append(String text) throws IOException {
+        FileOutputStream out = new FileOutputStream(logFile, true);
+        try {
+            out.write(text.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+
+    private int countLines() throws IOException {
+        RandomAccessFile file = new RandomAccessFile(logFile, "r");
+        try {
+            int lines = 0;
+            String line;
+            while ((line = file.readLine()) != null) {
+                lines += line.isEmpty() ? 0 : 1;
+            }
+            return lines;
+        } finally {
+            file.close();
+        }
+    }
+}